@@ -0,0 +1,440 @@
+package it.pagopa.ecommerce.commons.client;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import it.pagopa.ecommerce.commons.exceptions.ConcurrencyLimitExceededException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+
+import java.net.ConnectException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>
+ * Client-side adaptive concurrency limiter for outbound requests.
+ * </p>
+ * <p>
+ * Each key (e.g. a PSP or an API key fingerprint) has its own concurrency
+ * limit, adjusted with an AIMD (additive increase, multiplicative decrease)
+ * policy driven by the observed request outcomes: a request completed
+ * successfully within the configured latency threshold while the limit is in
+ * use raises the limit by one, while a slow request or a request failed with an
+ * overload error scales it down by the configured backoff ratio. Overload
+ * errors are recognized by a per client predicate, by default
+ * {@link #isOverloadError(Throwable)}: other failures, such as 4xx responses,
+ * leave the limit unchanged. Requests exceeding the limit wait in a bounded
+ * per-key FIFO queue and fail with a {@link ConcurrencyLimitExceededException}
+ * once the queue is full.
+ * </p>
+ * <p>
+ * Current limit, in-flight requests and queue depth are exported per key as
+ * gauges, together with a counter of rejected requests. Keys are exported as
+ * metric attributes: they must have a bounded cardinality and must not contain
+ * secrets.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Prefix of the metrics exported by the limiter
+     */
+    public static final String METRIC_PREFIX = "ecommerce.client.concurrency_limiter.";
+
+    private static final AttributeKey<String> CLIENT_ATTRIBUTE = AttributeKey.stringKey("client");
+
+    private static final AttributeKey<String> KEY_ATTRIBUTE = AttributeKey.stringKey("key");
+
+    private static final AdaptiveConcurrencyLimiter DISABLED = new AdaptiveConcurrencyLimiter();
+
+    private final String clientName;
+
+    private final AdaptiveConcurrencyLimiterConfiguration configuration;
+
+    private final LongSupplier nanoClock;
+
+    private final Predicate<Throwable> overloadErrorPredicate;
+
+    private final Map<String, KeyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+
+    private final LongCounter rejectedRequests;
+
+    /**
+     * Build a new limiter recognizing overload errors with
+     * {@link #isOverloadError(Throwable)}
+     *
+     * @param clientName    the limited client name, exported as metric attribute
+     * @param configuration the limiter configuration
+     * @param meter         the meter used to register metrics
+     */
+    public AdaptiveConcurrencyLimiter(
+            String clientName,
+            AdaptiveConcurrencyLimiterConfiguration configuration,
+            Meter meter
+    ) {
+        this(clientName, configuration, meter, AdaptiveConcurrencyLimiter::isOverloadError);
+    }
+
+    /**
+     * Build a new limiter recognizing overload errors with the input predicate
+     *
+     * @param clientName             the limited client name, exported as metric
+     *                               attribute
+     * @param configuration          the limiter configuration
+     * @param meter                  the meter used to register metrics
+     * @param overloadErrorPredicate predicate matching the request errors that
+     *                               signal an overloaded remote service and scale
+     *                               the limit down
+     */
+    public AdaptiveConcurrencyLimiter(
+            String clientName,
+            AdaptiveConcurrencyLimiterConfiguration configuration,
+            Meter meter,
+            Predicate<Throwable> overloadErrorPredicate
+    ) {
+        this(clientName, configuration, meter, overloadErrorPredicate, System::nanoTime);
+    }
+
+    /**
+     * Build a new limiter measuring latencies with the input clock
+     *
+     * @param clientName             the limited client name, exported as metric
+     *                               attribute
+     * @param configuration          the limiter configuration
+     * @param meter                  the meter used to register metrics
+     * @param overloadErrorPredicate predicate matching the request errors that
+     *                               scale the limit down
+     * @param nanoClock              the clock used to measure request latencies, in
+     *                               nanoseconds
+     */
+    AdaptiveConcurrencyLimiter(
+            String clientName,
+            AdaptiveConcurrencyLimiterConfiguration configuration,
+            Meter meter,
+            Predicate<Throwable> overloadErrorPredicate,
+            LongSupplier nanoClock
+    ) {
+        this.clientName = clientName;
+        this.configuration = configuration;
+        this.nanoClock = nanoClock;
+        this.overloadErrorPredicate = Objects.requireNonNull(overloadErrorPredicate);
+        this.enabled = true;
+        this.rejectedRequests = meter.counterBuilder(METRIC_PREFIX + "rejected")
+                .setDescription("Number of requests rejected because concurrency limit and queue are exhausted")
+                .build();
+        meter.gaugeBuilder(METRIC_PREFIX + "limit")
+                .setDescription("Current concurrency limit, by client and key")
+                .ofLongs()
+                .buildWithCallback(measurement -> observe(measurement, KeyLimiter::limit));
+        meter.gaugeBuilder(METRIC_PREFIX + "in_flight")
+                .setDescription("Number of requests holding a permit, by client and key")
+                .ofLongs()
+                .buildWithCallback(measurement -> observe(measurement, KeyLimiter::inFlight));
+        meter.gaugeBuilder(METRIC_PREFIX + "queue_depth")
+                .setDescription("Number of requests waiting for a permit, by client and key")
+                .ofLongs()
+                .buildWithCallback(measurement -> observe(measurement, KeyLimiter::queueDepth));
+    }
+
+    private AdaptiveConcurrencyLimiter() {
+        this.clientName = "disabled";
+        this.configuration = AdaptiveConcurrencyLimiterConfiguration.withDefaults();
+        this.nanoClock = System::nanoTime;
+        this.overloadErrorPredicate = AdaptiveConcurrencyLimiter::isOverloadError;
+        this.enabled = false;
+        this.rejectedRequests = MeterProvider.noop().get(AdaptiveConcurrencyLimiter.class.getName())
+                .counterBuilder(METRIC_PREFIX + "rejected").build();
+    }
+
+    /**
+     * Get a limiter that does not limit requests, used by clients built without a
+     * limiter
+     *
+     * @return the disabled limiter
+     */
+    public static AdaptiveConcurrencyLimiter disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Default overload error predicate: an error signals an overloaded remote
+     * service if it is, or is caused by, a timeout, a connection error or a
+     * {@code 429} or {@code 5xx} HTTP response. Errors are matched along the whole
+     * cause chain, so that clients wrapping errors inside the limited request (e.g.
+     * {@code NpgResponseException}) are classified on the original error
+     *
+     * @param error the request error
+     * @return {@code true} if the error signals an overloaded remote service
+     */
+    public static boolean isOverloadError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof WebClientResponseException response) {
+                return response.getStatusCode().is5xxServerError()
+                        || response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+            }
+            if (cause instanceof WebClientRequestException
+                    || cause instanceof TimeoutException
+                    || cause instanceof io.netty.handler.timeout.TimeoutException
+                    || cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Subscribe to the input request once a permit for the input key is available.
+     * The permit is released when the request terminates or is cancelled, and the
+     * request outcome is used to adjust the key limit
+     *
+     * @param key     the limited key
+     * @param request the request to be limited
+     * @param <T>     the request result type
+     * @return the limited request, failing with
+     *         {@link ConcurrencyLimitExceededException} if no permit can be
+     *         acquired nor queued
+     */
+    public <T> Mono<T> limit(
+                             String key,
+                             Mono<T> request
+    ) {
+        if (!enabled) {
+            return request;
+        }
+        return Mono.defer(() -> limiters.computeIfAbsent(key, KeyLimiter::new).acquire())
+                .flatMap(permit -> permit.run(request));
+    }
+
+    /**
+     * Get the current concurrency limit for the input key
+     *
+     * @param key the limited key
+     * @return the current limit, the initial one for keys never used
+     */
+    public int getLimit(String key) {
+        KeyLimiter limiter = limiters.get(key);
+        return limiter != null ? limiter.limit() : configuration.initialLimit();
+    }
+
+    private void observe(
+                         ObservableLongMeasurement measurement,
+                         ToIntFunction<KeyLimiter> value
+    ) {
+        for (KeyLimiter limiter : limiters.values()) {
+            measurement.record(value.applyAsInt(limiter), limiter.attributes);
+        }
+    }
+
+    /**
+     * Per key limiter state. State changes are guarded by the instance monitor,
+     * while queued requests are granted outside of it
+     */
+    private final class KeyLimiter {
+
+        private final String key;
+
+        private final Attributes attributes;
+
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+        private int limit = configuration.initialLimit();
+
+        private int inFlight;
+
+        private KeyLimiter(String key) {
+            this.key = key;
+            this.attributes = Attributes.of(CLIENT_ATTRIBUTE, clientName, KEY_ATTRIBUTE, key);
+        }
+
+        private synchronized int limit() {
+            return limit;
+        }
+
+        private synchronized int inFlight() {
+            return inFlight;
+        }
+
+        private synchronized int queueDepth() {
+            return queue.size();
+        }
+
+        private Mono<Permit> acquire() {
+            synchronized (this) {
+                if (inFlight < limit) {
+                    inFlight++;
+                    return Mono.just(new Permit(this));
+                }
+                if (queue.size() >= configuration.maxQueueSize()) {
+                    rejectedRequests.add(1, attributes);
+                    return Mono.error(new ConcurrencyLimitExceededException(clientName, key, limit));
+                }
+            }
+            return Mono.create(this::enqueue);
+        }
+
+        private void enqueue(MonoSink<Permit> sink) {
+            Waiter waiter = new Waiter(sink, new Permit(this));
+            boolean granted = false;
+            synchronized (this) {
+                // permits may have been released between acquire and subscription
+                if (inFlight < limit) {
+                    inFlight++;
+                    granted = waiter.grant();
+                } else if (queue.size() >= configuration.maxQueueSize()) {
+                    rejectedRequests.add(1, attributes);
+                    sink.error(new ConcurrencyLimitExceededException(clientName, key, limit));
+                    return;
+                } else {
+                    queue.addLast(waiter);
+                }
+            }
+            sink.onCancel(() -> cancel(waiter));
+            if (granted) {
+                sink.success(waiter.permit);
+            }
+        }
+
+        private void cancel(Waiter waiter) {
+            if (waiter.cancel()) {
+                synchronized (this) {
+                    queue.remove(waiter);
+                }
+            } else {
+                // granted concurrently with cancellation, the permit is never delivered
+                waiter.permit.release(SignalType.CANCEL);
+            }
+        }
+
+        private void release(
+                             long latencyNanos,
+                             boolean dropped
+        ) {
+            List<Waiter> granted = new ArrayList<>();
+            synchronized (this) {
+                if (dropped) {
+                    limit = Math.max(
+                            configuration.minLimit(),
+                            (int) (limit * configuration.backoffRatio())
+                    );
+                } else if (latencyNanos >= 0 && inFlight * 2 >= limit) {
+                    // the limit grows only when it is actually being used
+                    limit = Math.min(configuration.maxLimit(), limit + 1);
+                }
+                inFlight--;
+                while (inFlight < limit && !queue.isEmpty()) {
+                    Waiter waiter = queue.pollFirst();
+                    if (waiter.grant()) {
+                        inFlight++;
+                        granted.add(waiter);
+                    }
+                }
+            }
+            for (Waiter waiter : granted) {
+                waiter.sink.success(waiter.permit);
+            }
+        }
+    }
+
+    /**
+     * Queued request waiting for a permit
+     */
+    private static final class Waiter {
+
+        private static final int WAITING = 0;
+
+        private static final int GRANTED = 1;
+
+        private static final int CANCELLED = 2;
+
+        private final MonoSink<Permit> sink;
+
+        private final Permit permit;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private Waiter(
+                MonoSink<Permit> sink,
+                Permit permit
+        ) {
+            this.sink = sink;
+            this.permit = permit;
+        }
+
+        private boolean grant() {
+            return state.compareAndSet(WAITING, GRANTED);
+        }
+
+        private boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+    }
+
+    /**
+     * Permit held by a running request, released exactly once
+     */
+    private final class Permit {
+
+        private final KeyLimiter limiter;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private long startNanos;
+
+        private boolean dropped;
+
+        private long latencyNanos = -1;
+
+        private Permit(KeyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        private <T> Mono<T> run(Mono<T> request) {
+            startNanos = nanoClock.getAsLong();
+            return request
+                    .doOnSuccess(this::succeeded)
+                    .doOnError(this::failed)
+                    .doFinally(this::release);
+        }
+
+        private void succeeded(Object ignored) {
+            latencyNanos = nanoClock.getAsLong() - startNanos;
+            dropped = latencyNanos > configuration.latencyThreshold().toNanos();
+        }
+
+        private void failed(Throwable error) {
+            // errors that are not overload signals leave the limit unchanged
+            dropped = overloadErrorPredicate.test(error);
+        }
+
+        private void release(SignalType signalType) {
+            if (released.compareAndSet(false, true)) {
+                if (signalType == SignalType.CANCEL) {
+                    // cancelled requests say nothing about the remote service health
+                    limiter.release(-1, false);
+                } else {
+                    limiter.release(latencyNanos, dropped);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package it.pagopa.ecommerce.commons.client;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration for an {@link AdaptiveConcurrencyLimiter}
+ *
+ * @param initialLimit     concurrency limit assigned to a key when it is first
+ *                         used
+ * @param minLimit         lower bound of the concurrency limit
+ * @param maxLimit         upper bound of the concurrency limit
+ * @param maxQueueSize     max number of requests waiting for a permit, per key.
+ *                         With {@code 0} requests over the limit fail fast
+ * @param latencyThreshold request latency over which the request is considered
+ *                         a sign of overload
+ * @param backoffRatio     factor applied to the limit on overload, in
+ *                         {@code (0, 1)}
+ */
+public record AdaptiveConcurrencyLimiterConfiguration(
+        int initialLimit,
+        int minLimit,
+        int maxLimit,
+        int maxQueueSize,
+        Duration latencyThreshold,
+        double backoffRatio
+) {
+
+    /**
+     * Default initial concurrency limit
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    /**
+     * Default min concurrency limit
+     */
+    public static final int DEFAULT_MIN_LIMIT = 2;
+
+    /**
+     * Default max concurrency limit
+     */
+    public static final int DEFAULT_MAX_LIMIT = 200;
+
+    /**
+     * Default max number of queued requests per key
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 50;
+
+    /**
+     * Default overload latency threshold
+     */
+    public static final Duration DEFAULT_LATENCY_THRESHOLD = Duration.ofSeconds(2);
+
+    /**
+     * Default limit backoff ratio
+     */
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    /**
+     * Validate configuration parameters
+     *
+     * @param initialLimit     initial concurrency limit
+     * @param minLimit         min concurrency limit
+     * @param maxLimit         max concurrency limit
+     * @param maxQueueSize     max number of queued requests per key
+     * @param latencyThreshold overload latency threshold
+     * @param backoffRatio     limit backoff ratio
+     */
+    public AdaptiveConcurrencyLimiterConfiguration {
+        if (minLimit <= 0) {
+            throw new IllegalArgumentException("Invalid minLimit: [%s], it must be > 0".formatted(minLimit));
+        }
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException(
+                    "Invalid maxLimit: [%s], it must be >= minLimit [%s]".formatted(maxLimit, minLimit)
+            );
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(
+                    "Invalid initialLimit: [%s], it must be in [%s, %s]".formatted(initialLimit, minLimit, maxLimit)
+            );
+        }
+        if (maxQueueSize < 0) {
+            throw new IllegalArgumentException("Invalid maxQueueSize: [%s], it must be >= 0".formatted(maxQueueSize));
+        }
+        Objects.requireNonNull(latencyThreshold, "latencyThreshold null not valid");
+        if (latencyThreshold.isNegative() || latencyThreshold.isZero()) {
+            throw new IllegalArgumentException(
+                    "Invalid latencyThreshold: [%s], it must be > 0".formatted(latencyThreshold)
+            );
+        }
+        if (!(backoffRatio > 0 && backoffRatio < 1)) {
+            throw new IllegalArgumentException(
+                    "Invalid backoffRatio: [%s], it must be in (0, 1)".formatted(backoffRatio)
+            );
+        }
+    }
+
+    /**
+     * Build a configuration with default values
+     *
+     * @return the configuration
+     */
+    public static AdaptiveConcurrencyLimiterConfiguration withDefaults() {
+        return new AdaptiveConcurrencyLimiterConfiguration(
+                DEFAULT_INITIAL_LIMIT,
+                DEFAULT_MIN_LIMIT,
+                DEFAULT_MAX_LIMIT,
+                DEFAULT_MAX_QUEUE_SIZE,
+                DEFAULT_LATENCY_THRESHOLD,
+                DEFAULT_BACKOFF_RATIO
+        );
+    }
+}
@@ -0,0 +1,316 @@
+package it.pagopa.ecommerce.commons.client;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Hedging policy for idempotent, read-only requests.
+ * </p>
+ * <p>
+ * The request is sent and, if no response has been received once the hedging
+ * delay has elapsed, the same request is sent a second time: the first
+ * response, or error, received wins and the other request is cancelled. The
+ * hedging delay of each operation is the configured percentile of its recently
+ * observed latencies, bounded by the configured min and max delays.
+ * </p>
+ * <p>
+ * Hedged requests are limited by a budget shared among all operations: each
+ * request adds the configured budget ratio to the budget and each hedged
+ * request consumes one unit of it, so that hedged requests never exceed that
+ * ratio of the requests, even when the remote service slows down as a whole.
+ * </p>
+ * <p>
+ * Requests, hedged requests, hedged requests winning the race and hedged
+ * requests skipped for budget exhaustion are exported as counters by operation,
+ * from which hedge rate and win rate are derived.
+ * </p>
+ * <p>
+ * Hedged requests are subscribed with {@link #HEDGED_REQUEST_CONTEXT_KEY} set
+ * in their subscriber context, so that the request can tell them apart from the
+ * original one (see {@link #isHedgedRequest(ContextView)}). Any
+ * per-subscription limit applied by the request, such as an
+ * {@link AdaptiveConcurrencyLimiter}, is applied to the hedged request as well:
+ * hedged requests count against that limit and can wait for the request they
+ * race to release its permit.
+ * </p>
+ */
+public class HedgingPolicy {
+
+    /**
+     * Prefix of the metrics exported by the policy
+     */
+    public static final String METRIC_PREFIX = "ecommerce.client.hedging.";
+
+    /**
+     * Key of the subscriber context entry set to {@code true} for hedged requests
+     */
+    public static final String HEDGED_REQUEST_CONTEXT_KEY = HedgingPolicy.class.getName() + ".hedgedRequest";
+
+    private static final AttributeKey<String> OPERATION_ATTRIBUTE = AttributeKey.stringKey("operation");
+
+    /**
+     * Min number of observed latencies for the hedging delay to be computed
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private static final HedgingPolicy DISABLED = new HedgingPolicy(
+            HedgingPolicyConfiguration.withDefaults(),
+            MeterProvider.noop().get(HedgingPolicy.class.getName()),
+            Schedulers.immediate(),
+            false
+    );
+
+    private final HedgingPolicyConfiguration configuration;
+
+    private final Scheduler scheduler;
+
+    private final boolean enabled;
+
+    private final Map<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+
+    private final LongCounter requests;
+
+    private final LongCounter hedgedRequests;
+
+    private final LongCounter hedgeWins;
+
+    private final LongCounter budgetExhausted;
+
+    private double budget;
+
+    /**
+     * Build a new hedging policy
+     *
+     * @param configuration the policy configuration
+     * @param meter         the meter used to register metrics
+     */
+    public HedgingPolicy(
+            HedgingPolicyConfiguration configuration,
+            Meter meter
+    ) {
+        this(configuration, meter, Schedulers.parallel(), true);
+    }
+
+    /**
+     * Build a new hedging policy scheduling hedged requests on the input scheduler
+     *
+     * @param configuration the policy configuration
+     * @param meter         the meter used to register metrics
+     * @param scheduler     the scheduler used to delay hedged requests and measure
+     *                      latencies
+     */
+    HedgingPolicy(
+            HedgingPolicyConfiguration configuration,
+            Meter meter,
+            Scheduler scheduler
+    ) {
+        this(configuration, meter, scheduler, true);
+    }
+
+    private HedgingPolicy(
+            HedgingPolicyConfiguration configuration,
+            Meter meter,
+            Scheduler scheduler,
+            boolean enabled
+    ) {
+        this.configuration = configuration;
+        this.scheduler = scheduler;
+        this.enabled = enabled;
+        this.requests = meter.counterBuilder(METRIC_PREFIX + "requests")
+                .setDescription("Number of requests subject to hedging, by operation")
+                .build();
+        this.hedgedRequests = meter.counterBuilder(METRIC_PREFIX + "hedged")
+                .setDescription("Number of hedged requests sent, by operation")
+                .build();
+        this.hedgeWins = meter.counterBuilder(METRIC_PREFIX + "wins")
+                .setDescription("Number of hedged requests answering before the original request, by operation")
+                .build();
+        this.budgetExhausted = meter.counterBuilder(METRIC_PREFIX + "budget_exhausted")
+                .setDescription("Number of hedged requests not sent because of hedging budget exhaustion, by operation")
+                .build();
+    }
+
+    /**
+     * Get a policy that never hedges requests, used by clients built without a
+     * hedging policy
+     *
+     * @return the disabled policy
+     */
+    public static HedgingPolicy disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Apply the hedging policy to the input request. The request must be idempotent
+     * and must perform a new call for each subscription
+     *
+     * @param operation the operation name, used to track latencies and exported as
+     *                  metric attribute
+     * @param request   the request to be hedged
+     * @param <T>       the request result type
+     * @return the hedged request
+     */
+    public <T> Mono<T> hedge(
+                             String operation,
+                             Mono<T> request
+    ) {
+        if (!enabled) {
+            return request;
+        }
+        return Mono.defer(() -> hedged(latencyWindows.computeIfAbsent(operation, LatencyWindow::new), request));
+    }
+
+    /**
+     * Check whether the input subscriber context is the one of a hedged request
+     *
+     * @param context the request subscriber context
+     * @return true if the request is a hedged request, false if it is the original
+     *         one or a request not subject to hedging
+     */
+    public static boolean isHedgedRequest(ContextView context) {
+        return context.getOrDefault(HEDGED_REQUEST_CONTEXT_KEY, false);
+    }
+
+    /**
+     * Get the current hedging delay for the input operation
+     *
+     * @param operation the operation name
+     * @return the hedging delay
+     */
+    public Duration getDelay(String operation) {
+        LatencyWindow latencyWindow = latencyWindows.get(operation);
+        return Duration
+                .ofNanos(latencyWindow != null ? latencyWindow.delayNanos() : configuration.maxDelay().toNanos());
+    }
+
+    private <T> Mono<T> hedged(
+                               LatencyWindow latencyWindow,
+                               Mono<T> request
+    ) {
+        requests.add(1, latencyWindow.attributes);
+        depositBudget();
+        long startNanos = now();
+        AtomicBoolean hedgeSent = new AtomicBoolean();
+        Mono<Attempt<T>> original = request
+                .doOnSuccess(value -> latencyWindow.record(now() - startNanos))
+                .doOnCancel(() -> {
+                    // lower bound of the latency of requests beaten by the hedged one
+                    if (hedgeSent.get()) {
+                        latencyWindow.record(now() - startNanos);
+                    }
+                })
+                .map(value -> new Attempt<>(value, false));
+        Mono<Attempt<T>> hedge = Mono.delay(Duration.ofNanos(latencyWindow.delayNanos()), scheduler)
+                .flatMap(tick -> {
+                    if (!withdrawBudget()) {
+                        budgetExhausted.add(1, latencyWindow.attributes);
+                        return Mono.never();
+                    }
+                    hedgeSent.set(true);
+                    hedgedRequests.add(1, latencyWindow.attributes);
+                    return request
+                            .contextWrite(Context.of(HEDGED_REQUEST_CONTEXT_KEY, true))
+                            .map(value -> new Attempt<>(value, true));
+                });
+        return Mono.firstWithSignal(original, hedge)
+                .doOnNext(attempt -> {
+                    if (attempt.hedged()) {
+                        hedgeWins.add(1, latencyWindow.attributes);
+                    }
+                })
+                .map(Attempt::value);
+    }
+
+    private synchronized void depositBudget() {
+        budget = Math.min(configuration.maxBudget(), budget + configuration.budgetRatio());
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Response of one of the racing requests
+     *
+     * @param value  the response value
+     * @param hedged whether the response comes from the hedged request
+     * @param <T>    the response value type
+     */
+    private record Attempt<T> (
+            T value,
+            boolean hedged
+    ) {
+    }
+
+    /**
+     * Sliding window of the most recent latencies of an operation, with the hedging
+     * delay recomputed periodically from them
+     */
+    private final class LatencyWindow {
+
+        private final Attributes attributes;
+
+        private final long[] latencies = new long[configuration.latencyWindowSize()];
+
+        private final int minSamples = Math.min(MIN_SAMPLES, latencies.length);
+
+        private final int updateInterval = Math.max(1, latencies.length / 16);
+
+        private int size;
+
+        private int next;
+
+        private int recordedSinceUpdate;
+
+        private volatile long delayNanos = configuration.maxDelay().toNanos();
+
+        private LatencyWindow(String operation) {
+            this.attributes = Attributes.of(OPERATION_ATTRIBUTE, operation);
+        }
+
+        private long delayNanos() {
+            return delayNanos;
+        }
+
+        private synchronized void record(long latencyNanos) {
+            latencies[next] = latencyNanos;
+            next = (next + 1) % latencies.length;
+            size = Math.min(size + 1, latencies.length);
+            recordedSinceUpdate++;
+            if (size >= minSamples && (size == minSamples || recordedSinceUpdate >= updateInterval)) {
+                recordedSinceUpdate = 0;
+                long[] sorted = Arrays.copyOf(latencies, size);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(configuration.delayPercentile() / 100 * size) - 1;
+                delayNanos = Math.min(
+                        configuration.maxDelay().toNanos(),
+                        Math.max(configuration.minDelay().toNanos(), sorted[Math.max(0, index)])
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package it.pagopa.ecommerce.commons.client;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration for a {@link HedgingPolicy}
+ *
+ * @param delayPercentile   latency percentile, in {@code (0, 100)}, after which
+ *                          a hedged request is sent
+ * @param minDelay          lower bound of the hedging delay
+ * @param maxDelay          upper bound of the hedging delay, also used until
+ *                          enough latencies have been observed
+ * @param latencyWindowSize number of most recent latencies, per operation, the
+ *                          percentile is computed on
+ * @param budgetRatio       max ratio of hedged requests to requests, in
+ *                          {@code (0, 1]}
+ * @param maxBudget         max number of hedged requests that can be
+ *                          accumulated in the budget and sent in a burst
+ */
+public record HedgingPolicyConfiguration(
+        double delayPercentile,
+        Duration minDelay,
+        Duration maxDelay,
+        int latencyWindowSize,
+        double budgetRatio,
+        int maxBudget
+) {
+
+    /**
+     * Default hedging delay percentile
+     */
+    public static final double DEFAULT_DELAY_PERCENTILE = 95;
+
+    /**
+     * Default min hedging delay
+     */
+    public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(50);
+
+    /**
+     * Default max hedging delay
+     */
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(2);
+
+    /**
+     * Default latency window size
+     */
+    public static final int DEFAULT_LATENCY_WINDOW_SIZE = 512;
+
+    /**
+     * Default hedged requests budget ratio
+     */
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+
+    /**
+     * Default max hedged requests budget
+     */
+    public static final int DEFAULT_MAX_BUDGET = 10;
+
+    /**
+     * Validate configuration parameters
+     *
+     * @param delayPercentile   hedging delay percentile
+     * @param minDelay          min hedging delay
+     * @param maxDelay          max hedging delay
+     * @param latencyWindowSize latency window size
+     * @param budgetRatio       hedged requests budget ratio
+     * @param maxBudget         max hedged requests budget
+     */
+    public HedgingPolicyConfiguration {
+        if (!(delayPercentile > 0 && delayPercentile < 100)) {
+            throw new IllegalArgumentException(
+                    "Invalid delayPercentile: [%s], it must be in (0, 100)".formatted(delayPercentile)
+            );
+        }
+        Objects.requireNonNull(minDelay, "minDelay null not valid");
+        Objects.requireNonNull(maxDelay, "maxDelay null not valid");
+        if (minDelay.isNegative() || minDelay.isZero()) {
+            throw new IllegalArgumentException("Invalid minDelay: [%s], it must be > 0".formatted(minDelay));
+        }
+        if (maxDelay.compareTo(minDelay) < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid maxDelay: [%s], it must be >= minDelay [%s]".formatted(maxDelay, minDelay)
+            );
+        }
+        if (latencyWindowSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid latencyWindowSize: [%s], it must be > 0".formatted(latencyWindowSize)
+            );
+        }
+        if (!(budgetRatio > 0 && budgetRatio <= 1)) {
+            throw new IllegalArgumentException(
+                    "Invalid budgetRatio: [%s], it must be in (0, 1]".formatted(budgetRatio)
+            );
+        }
+        if (maxBudget <= 0) {
+            throw new IllegalArgumentException("Invalid maxBudget: [%s], it must be > 0".formatted(maxBudget));
+        }
+    }
+
+    /**
+     * Build a configuration with default values
+     *
+     * @return the configuration
+     */
+    public static HedgingPolicyConfiguration withDefaults() {
+        return new HedgingPolicyConfiguration(
+                DEFAULT_DELAY_PERCENTILE,
+                DEFAULT_MIN_DELAY,
+                DEFAULT_MAX_DELAY,
+                DEFAULT_LATENCY_WINDOW_SIZE,
+                DEFAULT_BUDGET_RATIO,
+                DEFAULT_MAX_BUDGET
+        );
+    }
+}
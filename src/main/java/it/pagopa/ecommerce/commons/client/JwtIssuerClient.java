@@ -48,8 +48,15 @@ public class JwtIssuerClient {
 
     private static final String JWT_ISSUER_LOG_ERROR_MESSAGE = "Got bad response from jwt-issuer-service [HTTP {}]";
 
+    /**
+     * Key used to limit concurrent requests to the jwt issuer
+     */
+    public static final String CONCURRENCY_LIMITER_KEY = "jwt-issuer";
+
     private final JwtIssuerApi jwtIssuerApi;
 
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
     /**
      * Instantiate a jwt issuer client to establish communication via the jwt issuer
      * api
@@ -58,8 +65,23 @@ public class JwtIssuerClient {
      */
     public JwtIssuerClient(
             @NotNull JwtIssuerApi jwtIssuerApi
+    ) {
+        this(jwtIssuerApi, AdaptiveConcurrencyLimiter.disabled());
+    }
+
+    /**
+     * Instantiate a jwt issuer client to establish communication via the jwt issuer
+     * api, limiting concurrent requests with the input limiter
+     *
+     * @param jwtIssuerApi       the api
+     * @param concurrencyLimiter the limiter of concurrent requests
+     */
+    public JwtIssuerClient(
+            @NotNull JwtIssuerApi jwtIssuerApi,
+            @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter
     ) {
         this.jwtIssuerApi = jwtIssuerApi;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     private static void logError(WebClientResponseException e) {
@@ -75,7 +97,7 @@ public class JwtIssuerClient {
      * @return An object containing the keys to validate a token
      */
     public Mono<JWKSResponseDto> getKeys() {
-        return jwtIssuerApi.getTokenPublicKeys().doOnError(
+        return concurrencyLimiter.limit(CONCURRENCY_LIMITER_KEY, jwtIssuerApi.getTokenPublicKeys()).doOnError(
                 WebClientResponseException.class,
                 JwtIssuerClient::logError
         )
@@ -97,11 +119,14 @@ public class JwtIssuerClient {
                                                        Integer duration,
                                                        Map<String, String> privateClaims
     ) {
-        return jwtIssuerApi.createJwtToken(
-                new CreateTokenRequestDto()
-                        .audience(audience)
-                        .duration(duration)
-                        .privateClaims(privateClaims)
+        return concurrencyLimiter.limit(
+                CONCURRENCY_LIMITER_KEY,
+                jwtIssuerApi.createJwtToken(
+                        new CreateTokenRequestDto()
+                                .audience(audience)
+                                .duration(duration)
+                                .privateClaims(privateClaims)
+                )
         ).doOnError(
                 WebClientResponseException.class,
                 JwtIssuerClient::logError
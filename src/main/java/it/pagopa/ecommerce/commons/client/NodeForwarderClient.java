@@ -1,15 +1,13 @@
 package it.pagopa.ecommerce.commons.client;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import it.pagopa.ecommerce.commons.exceptions.NodeForwarderClientException;
 import it.pagopa.ecommerce.commons.generated.nodeforwarder.v1.ApiClient;
 import it.pagopa.ecommerce.commons.generated.nodeforwarder.v1.api.ProxyApi;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -34,13 +32,12 @@ public class NodeForwarderClient<T, R> {
 
     private final ProxyApi proxyApiClient;
 
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .registerModule(new Jdk8Module())
-            .configure(DeserializationFeature.FAIL_ON_NULL_CREATOR_PROPERTIES, true)
-            .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, true)
-            .configure(DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES, true)
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true)
-            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final ObjectMapperRegistry objectMapperRegistry = ObjectMapperRegistry.getInstance();
+
+    private final ObjectMapper objectMapper = objectMapperRegistry
+            .getObjectMapper(ObjectMapperRegistry.MapperConfiguration.STRICT);
 
     /**
      * Node forwarder api key header
@@ -79,8 +76,29 @@ public class NodeForwarderClient<T, R> {
             int readTimeout,
             int connectionTimeout
     ) {
-        this.proxyApiClient = initializeClient(apiKey, backendUrl, readTimeout, connectionTimeout);
+        this(apiKey, backendUrl, readTimeout, connectionTimeout, AdaptiveConcurrencyLimiter.disabled());
+    }
 
+    /**
+     * Build a new instance for this Node Forwarder Client limiting concurrent
+     * requests per proxy destination, identified by its host and port
+     *
+     * @param apiKey             the node forwarder api key
+     * @param backendUrl         the node forwarder backend URL
+     * @param readTimeout        the node forwarder read timeout
+     * @param connectionTimeout  the node forwarder connection timeout
+     * @param concurrencyLimiter the limiter of concurrent requests per proxy
+     *                           destination
+     */
+    public NodeForwarderClient(
+            String apiKey,
+            String backendUrl,
+            int readTimeout,
+            int connectionTimeout,
+            AdaptiveConcurrencyLimiter concurrencyLimiter
+    ) {
+        this.proxyApiClient = initializeClient(apiKey, backendUrl, readTimeout, connectionTimeout);
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     /**
@@ -92,8 +110,23 @@ public class NodeForwarderClient<T, R> {
     NodeForwarderClient(
             ProxyApi proxyApiClient
     ) {
-        this.proxyApiClient = proxyApiClient;
+        this(proxyApiClient, AdaptiveConcurrencyLimiter.disabled());
+    }
 
+    /**
+     * Build a new NodeForwarderClient instance with the using the input
+     * proxyApiClient instance and concurrency limiter
+     *
+     * @param proxyApiClient     the api client instance
+     * @param concurrencyLimiter the limiter of concurrent requests per proxy
+     *                           destination
+     */
+    NodeForwarderClient(
+            ProxyApi proxyApiClient,
+            AdaptiveConcurrencyLimiter concurrencyLimiter
+    ) {
+        this.proxyApiClient = proxyApiClient;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     /**
@@ -169,20 +202,28 @@ public class NodeForwarderClient<T, R> {
                 path,
                 requestId
         );
-        return proxyApiClient
-                .forwardWithHttpInfo(
-                        hostName,
-                        port,
-                        path,
-                        requestId,
-                        requestPayload
-                )
+        return concurrencyLimiter.limit(
+                hostName + ":" + port,
+                proxyApiClient
+                        .forwardWithHttpInfo(
+                                hostName,
+                                port,
+                                path,
+                                requestId,
+                                requestPayload
+                        )
+        )
                 .onErrorMap(e -> new NodeForwarderClientException("Error communicating with Node forwarder", e))
                 .flatMap(response -> {
                     try {
                         return Mono.just(
                                 new NodeForwarderResponse<>(
-                                        objectMapper.readValue(response.getBody(), responseClass),
+                                        objectMapperRegistry
+                                                .readerFor(
+                                                        ObjectMapperRegistry.MapperConfiguration.STRICT,
+                                                        responseClass
+                                                )
+                                                .<R>readValue(response.getBody()),
                                         Optional.ofNullable(response.getHeaders().getFirst(REQUEST_ID_HEADER_VALUE))
                                 )
                         );
@@ -2,28 +2,40 @@ package it.pagopa.ecommerce.commons.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
 import io.opentelemetry.api.trace.Span;
-import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
 import it.pagopa.ecommerce.commons.exceptions.NpgResponseException;
 import it.pagopa.ecommerce.commons.generated.npg.v1.api.PaymentServicesApi;
 import it.pagopa.ecommerce.commons.generated.npg.v1.dto.*;
+import it.pagopa.ecommerce.commons.utils.RecordingSpanUtils;
 import jakarta.validation.constraints.NotNull;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -58,8 +70,29 @@ public class NpgClient {
 
     private static final AttributeKey<Long> NPG_HTTP_ERROR_CODE = AttributeKey
             .longKey("npg.http_error_code");
+    private static final AttributeKey<Boolean> NPG_HEDGED_REQUEST_ATTRIBUTE_NAME = AttributeKey
+            .booleanKey("npg.hedged_request");
     private static final String EUR_CURRENCY = "EUR";
 
+    /**
+     * Prefix used for all the metrics exported by this client
+     */
+    public static final String METRIC_PREFIX = "ecommerce.npg.client.";
+
+    private static final AttributeKey<String> OPERATION_ATTRIBUTE = AttributeKey.stringKey("operation");
+
+    private static final AttributeKey<String> PAYMENT_METHOD_ATTRIBUTE = AttributeKey.stringKey("payment_method");
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private static final AttributeKey<Long> HTTP_STATUS_ATTRIBUTE = AttributeKey.longKey("http_status");
+
+    private static final AttributeKey<String> ERROR_CODE_ATTRIBUTE = AttributeKey.stringKey("error_code");
+
+    private static final String ATTRIBUTE_NOT_AVAILABLE = "N/A";
+
+    private static final int API_KEY_FINGERPRINT_BYTES = 8;
+
     /**
      * The npg Api
      */
@@ -67,7 +100,21 @@ public class NpgClient {
 
     private final Tracer tracer;
 
-    private final ObjectMapper objectMapper;
+    private final NpgErrorCodesExtractor errorCodesExtractor;
+
+    private final DoubleHistogram operationDuration;
+
+    private final LongUpDownCounter inFlightOperations;
+
+    private final LongCounter operationErrors;
+
+    private final LongCounter operationErrorCodes;
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final HedgingPolicy hedgingPolicy;
+
+    private final Map<String, String> apiKeyFingerprints = new ConcurrentHashMap<>();
 
     private static final String NPG_LOG_ERROR_MESSAGE = "Got bad response from npg-service [HTTP {}]";
 
@@ -253,9 +300,102 @@ public class NpgClient {
             @NotNull Tracer tracer,
             @NotNull ObjectMapper objectMapper
     ) {
+        this(paymentServicesApi, tracer, objectMapper, MeterProvider.noop().get(NpgClient.class.getName()));
+    }
+
+    /**
+     * Instantiate a npg-client to establish communication via the npg api,
+     * recording per operation latency, in-flight requests and errors metrics
+     *
+     * @param paymentServicesApi the api
+     * @param tracer             the OpenTelemetry {@link Tracer} used to add
+     *                           monitoring info to this client
+     * @param objectMapper       object mapper used to decode error response bodies
+     * @param meter              the meter used to register metrics
+     */
+    public NpgClient(
+            @NotNull PaymentServicesApi paymentServicesApi,
+            @NotNull Tracer tracer,
+            @NotNull ObjectMapper objectMapper,
+            @NotNull Meter meter
+    ) {
+        this(paymentServicesApi, tracer, objectMapper, meter, AdaptiveConcurrencyLimiter.disabled());
+    }
+
+    /**
+     * Instantiate a npg-client to establish communication via the npg api,
+     * recording per operation latency, in-flight requests and errors metrics and
+     * limiting concurrent requests per API key. Limiter keys are API key
+     * fingerprints, so that API keys are never exported as metric attributes
+     *
+     * @param paymentServicesApi the api
+     * @param tracer             the OpenTelemetry {@link Tracer} used to add
+     *                           monitoring info to this client
+     * @param objectMapper       object mapper used to decode error response bodies
+     * @param meter              the meter used to register metrics
+     * @param concurrencyLimiter the limiter of concurrent requests per API key
+     */
+    public NpgClient(
+            @NotNull PaymentServicesApi paymentServicesApi,
+            @NotNull Tracer tracer,
+            @NotNull ObjectMapper objectMapper,
+            @NotNull Meter meter,
+            @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter
+    ) {
+        this(paymentServicesApi, tracer, objectMapper, meter, concurrencyLimiter, HedgingPolicy.disabled());
+    }
+
+    /**
+     * Instantiate a npg-client to establish communication via the npg api,
+     * recording per operation latency, in-flight requests and errors metrics,
+     * limiting concurrent requests per API key and hedging the read-only
+     * {@link #getState(UUID, String, String)} and
+     * {@link #getOrder(UUID, String, String)} operations. Each hedged request is
+     * traced and measured as a request on its own, with the same correlation id of
+     * the request it races and its span marked with the {@code npg.hedged_request}
+     * attribute. Hedged requests count against the per API key concurrency limit
+     * too: a hedged request acquires its own permit and can wait for the request it
+     * races to release one
+     *
+     * @param paymentServicesApi the api
+     * @param tracer             the OpenTelemetry {@link Tracer} used to add
+     *                           monitoring info to this client
+     * @param objectMapper       object mapper used to decode error response bodies
+     * @param meter              the meter used to register metrics
+     * @param concurrencyLimiter the limiter of concurrent requests per API key
+     * @param hedgingPolicy      the hedging policy for read-only operations
+     */
+    public NpgClient(
+            @NotNull PaymentServicesApi paymentServicesApi,
+            @NotNull Tracer tracer,
+            @NotNull ObjectMapper objectMapper,
+            @NotNull Meter meter,
+            @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+            @NotNull HedgingPolicy hedgingPolicy
+    ) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.hedgingPolicy = hedgingPolicy;
         this.paymentServicesApi = paymentServicesApi;
         this.tracer = tracer;
-        this.objectMapper = objectMapper;
+        this.errorCodesExtractor = new NpgErrorCodesExtractor(
+                objectMapper.getFactory(),
+                NpgErrorCodesExtractor.DEFAULT_MAX_BODY_SIZE
+        );
+        this.operationDuration = meter.histogramBuilder(METRIC_PREFIX + "duration")
+                .setDescription("Duration of NPG operations, by operation, payment method and outcome")
+                .setUnit("ms")
+                .build();
+        this.inFlightOperations = meter.upDownCounterBuilder(METRIC_PREFIX + "in_flight")
+                .setDescription("Number of NPG operations in progress, by operation")
+                .build();
+        this.operationErrors = meter.counterBuilder(METRIC_PREFIX + "errors")
+                .setDescription("Number of failed NPG operations, by operation, payment method and HTTP status")
+                .build();
+        this.operationErrorCodes = meter.counterBuilder(METRIC_PREFIX + "error_codes")
+                .setDescription(
+                        "Number of NPG error codes returned by failed operations, by operation, HTTP status and NPG error code"
+                )
+                .build();
     }
 
     /**
@@ -520,35 +660,45 @@ public class NpgClient {
                                              String language
     ) {
         GatewayOperation gatewayOperation = GatewayOperation.BUILD_FORM;
-        return Mono.using(
-                () -> tracer.spanBuilder(gatewayOperation.spanName)
-                        .setParent(Context.current().with(Span.current()))
-                        .setAttribute(NPG_CORRELATION_ID_ATTRIBUTE_NAME, correlationId.toString())
-                        .startSpan(),
-                span -> paymentServicesApi.pspApiV1OrdersBuildPost(
-                        correlationId,
-                        defaultApiKey,
-                        buildOrderRequestDto(
-                                merchantUrl,
-                                resultUrl,
-                                notificationUrl,
-                                cancelUrl,
-                                orderId,
-                                customerId,
-                                paymentMethod,
-                                contractId,
-                                totalAmount,
-                                language
-                        )
-                ).doOnError(
-                        WebClientResponseException.class,
-                        e -> log.info(
-                                NPG_LOG_ERROR_MESSAGE,
-                                e.getStatusCode()
+        return concurrencyLimiter.limit(
+                apiKeyFingerprint(defaultApiKey),
+                Mono.using(
+                        () -> startOperation(gatewayOperation, paymentMethod, correlationId),
+                        operation -> paymentServicesApi.pspApiV1OrdersBuildPost(
+                                correlationId,
+                                defaultApiKey,
+                                buildOrderRequestDto(
+                                        merchantUrl,
+                                        resultUrl,
+                                        notificationUrl,
+                                        cancelUrl,
+                                        orderId,
+                                        customerId,
+                                        paymentMethod,
+                                        contractId,
+                                        totalAmount,
+                                        language
+                                )
+                        ).doOnError(
+                                WebClientResponseException.class,
+                                e -> log.info(
+                                        NPG_LOG_ERROR_MESSAGE,
+                                        e.getStatusCode()
+                                )
                         )
+                                .doOnSuccess(operation::succeeded)
+                                .onErrorMap(
+                                        err -> operation
+                                                .failed(
+                                                        exceptionToNpgResponseException(
+                                                                err,
+                                                                operation.span,
+                                                                gatewayOperation
+                                                        )
+                                                )
+                                ),
+                        InstrumentedOperation::end
                 )
-                        .onErrorMap(err -> exceptionToNpgResponseException(err, span, gatewayOperation)),
-                Span::end
         );
     }
 
@@ -568,24 +718,34 @@ public class NpgClient {
 
     ) {
         GatewayOperation gatewayOperation = GatewayOperation.GET_CARD_DATA;
-        return Mono.using(
-                () -> tracer.spanBuilder(gatewayOperation.spanName)
-                        .setParent(Context.current().with(Span.current()))
-                        .setAttribute(NPG_CORRELATION_ID_ATTRIBUTE_NAME, correlationId.toString())
-                        .startSpan(),
-                span -> paymentServicesApi.pspApiV1BuildCardDataGet(
-                        correlationId,
-                        sessionId,
-                        defaultApiKey
-                ).doOnError(
-                        WebClientResponseException.class,
-                        e -> log.info(
-                                NPG_LOG_ERROR_MESSAGE,
-                                e.getStatusCode()
+        return concurrencyLimiter.limit(
+                apiKeyFingerprint(defaultApiKey),
+                Mono.using(
+                        () -> startOperation(gatewayOperation, PaymentMethod.CARDS, correlationId),
+                        operation -> paymentServicesApi.pspApiV1BuildCardDataGet(
+                                correlationId,
+                                sessionId,
+                                defaultApiKey
+                        ).doOnError(
+                                WebClientResponseException.class,
+                                e -> log.info(
+                                        NPG_LOG_ERROR_MESSAGE,
+                                        e.getStatusCode()
+                                )
                         )
+                                .doOnSuccess(operation::succeeded)
+                                .onErrorMap(
+                                        err -> operation
+                                                .failed(
+                                                        exceptionToNpgResponseException(
+                                                                err,
+                                                                operation.span,
+                                                                gatewayOperation
+                                                        )
+                                                )
+                                ),
+                        InstrumentedOperation::end
                 )
-                        .onErrorMap(err -> exceptionToNpgResponseException(err, span, gatewayOperation)),
-                Span::end
         );
     }
 
@@ -606,25 +766,35 @@ public class NpgClient {
                                                  @NonNull String pspApiKey
     ) {
         GatewayOperation gatewayOperation = GatewayOperation.CONFIRM_PAYMENT;
-        return Mono.using(
-                () -> tracer.spanBuilder(gatewayOperation.spanName)
-                        .setParent(Context.current().with(Span.current()))
-                        .setAttribute(NPG_CORRELATION_ID_ATTRIBUTE_NAME, correlationId.toString())
-                        .startSpan(),
-                span -> paymentServicesApi.pspApiV1BuildConfirmPaymentPost(
-                        correlationId,
-                        pspApiKey,
-                        new ConfirmPaymentRequestDto()
-                                .amount(String.valueOf(grandTotal.toString())).sessionId(sessionId)
-                ).doOnError(
-                        WebClientResponseException.class,
-                        e -> log.info(
-                                NPG_LOG_ERROR_MESSAGE,
-                                e.getStatusCode()
+        return concurrencyLimiter.limit(
+                apiKeyFingerprint(pspApiKey),
+                Mono.using(
+                        () -> startOperation(gatewayOperation, PaymentMethod.CARDS, correlationId),
+                        operation -> paymentServicesApi.pspApiV1BuildConfirmPaymentPost(
+                                correlationId,
+                                pspApiKey,
+                                new ConfirmPaymentRequestDto()
+                                        .amount(String.valueOf(grandTotal.toString())).sessionId(sessionId)
+                        ).doOnError(
+                                WebClientResponseException.class,
+                                e -> log.info(
+                                        NPG_LOG_ERROR_MESSAGE,
+                                        e.getStatusCode()
+                                )
                         )
+                                .doOnSuccess(operation::succeeded)
+                                .onErrorMap(
+                                        err -> operation
+                                                .failed(
+                                                        exceptionToNpgResponseException(
+                                                                err,
+                                                                operation.span,
+                                                                gatewayOperation
+                                                        )
+                                                )
+                                ),
+                        InstrumentedOperation::end
                 )
-                        .onErrorMap(err -> exceptionToNpgResponseException(err, span, gatewayOperation)),
-                Span::end
         );
     }
 
@@ -640,6 +810,8 @@ public class NpgClient {
      * @param description    the description of the refund request. Not mandatory.
      * @return An object containing the state of the transaction and the info about
      *         operation details.
+     * @see #refundPayment(UUID, String, UUID, BigDecimal, String, String,
+     *      PaymentMethod)
      */
     public Mono<RefundResponseDto> refundPayment(
                                                  @NotNull UUID correlationId,
@@ -648,28 +820,83 @@ public class NpgClient {
                                                  @NotNull BigDecimal grandTotal,
                                                  @NonNull String defaultApiKey,
                                                  String description
+    ) {
+        return refundPayment(
+                correlationId,
+                operationId,
+                idempotenceKey,
+                grandTotal,
+                defaultApiKey,
+                description,
+                null
+        );
+    }
+
+    /**
+     * method to invoke the refund api for the input payment method, that is used as
+     * the payment method attribute of the refund operation metrics
+     *
+     * @param correlationId  the unique id to identify the rest api invocation
+     * @param operationId    the unique id used to identify a payment operation
+     * @param idempotenceKey the idempotenceKey used to identify a refund reqeust
+     *                       for the same transaction
+     * @param grandTotal     the grand total to be refunded
+     * @param defaultApiKey  default API key
+     * @param description    the description of the refund request. Not mandatory.
+     * @param paymentMethod  the payment method of the refunded payment. Not
+     *                       mandatory.
+     * @return An object containing the state of the transaction and the info about
+     *         operation details.
+     */
+    /*
+     * @formatter:off
+     *
+     * Warning java:S107 - Methods should not have too many parameters
+     * Suppressed because this method wraps the underlying API which has this many parameters
+     *
+     * @formatter:on
+     */
+    @SuppressWarnings("java:S107")
+    public Mono<RefundResponseDto> refundPayment(
+                                                 @NotNull UUID correlationId,
+                                                 @NotNull String operationId,
+                                                 @NotNull UUID idempotenceKey,
+                                                 @NotNull BigDecimal grandTotal,
+                                                 @NonNull String defaultApiKey,
+                                                 @Nullable String description,
+                                                 @Nullable PaymentMethod paymentMethod
     ) {
         GatewayOperation gatewayOperation = GatewayOperation.REFUND_PAYMENT;
-        return Mono.using(
-                () -> tracer.spanBuilder(gatewayOperation.spanName)
-                        .setParent(Context.current().with(Span.current()))
-                        .setAttribute(NPG_CORRELATION_ID_ATTRIBUTE_NAME, correlationId.toString())
-                        .startSpan(),
-                span -> paymentServicesApi.pspApiV1OperationsOperationIdRefundsPost(
-                        operationId,
-                        correlationId,
-                        defaultApiKey,
-                        idempotenceKey.toString(),
-                        buildRefundRequestDto(grandTotal, description)
-                ).doOnError(
-                        WebClientResponseException.class,
-                        e -> log.info(
-                                NPG_LOG_ERROR_MESSAGE,
-                                e.getStatusCode()
+        return concurrencyLimiter.limit(
+                apiKeyFingerprint(defaultApiKey),
+                Mono.using(
+                        () -> startOperation(gatewayOperation, paymentMethod, correlationId),
+                        operation -> paymentServicesApi.pspApiV1OperationsOperationIdRefundsPost(
+                                operationId,
+                                correlationId,
+                                defaultApiKey,
+                                idempotenceKey.toString(),
+                                buildRefundRequestDto(grandTotal, description)
+                        ).doOnError(
+                                WebClientResponseException.class,
+                                e -> log.info(
+                                        NPG_LOG_ERROR_MESSAGE,
+                                        e.getStatusCode()
+                                )
                         )
+                                .doOnSuccess(operation::succeeded)
+                                .onErrorMap(
+                                        err -> operation
+                                                .failed(
+                                                        exceptionToNpgResponseException(
+                                                                err,
+                                                                operation.span,
+                                                                gatewayOperation
+                                                        )
+                                                )
+                                ),
+                        InstrumentedOperation::end
                 )
-                        .onErrorMap(err -> exceptionToNpgResponseException(err, span, gatewayOperation)),
-                Span::end
         );
     }
 
@@ -689,21 +916,37 @@ public class NpgClient {
                                            @NonNull String pspApiKey
     ) {
         GatewayOperation gatewayOperation = GatewayOperation.GET_STATE;
-        return Mono.using(
-                () -> tracer.spanBuilder(gatewayOperation.spanName)
-                        .setParent(Context.current().with(Span.current()))
-                        .setAttribute(NPG_CORRELATION_ID_ATTRIBUTE_NAME, correlationId.toString())
-                        .startSpan(),
-                span -> paymentServicesApi.pspApiV1BuildStateGet(correlationId, sessionId, pspApiKey)
-                        .doOnError(
-                                WebClientResponseException.class,
-                                e -> log.info(
-                                        NPG_LOG_ERROR_MESSAGE,
-                                        e.getStatusCode()
+        return hedgingPolicy.hedge(
+                gatewayOperation.name(),
+                concurrencyLimiter.limit(
+                        apiKeyFingerprint(pspApiKey),
+                        Mono.deferContextual(
+                                context -> Mono.using(
+                                        () -> startHedgeableOperation(gatewayOperation, correlationId, context),
+                                        operation -> paymentServicesApi
+                                                .pspApiV1BuildStateGet(correlationId, sessionId, pspApiKey)
+                                                .doOnError(
+                                                        WebClientResponseException.class,
+                                                        e -> log.info(
+                                                                NPG_LOG_ERROR_MESSAGE,
+                                                                e.getStatusCode()
+                                                        )
+                                                )
+                                                .doOnSuccess(operation::succeeded)
+                                                .onErrorMap(
+                                                        err -> operation
+                                                                .failed(
+                                                                        exceptionToNpgResponseException(
+                                                                                err,
+                                                                                operation.span,
+                                                                                gatewayOperation
+                                                                        )
+                                                                )
+                                                ),
+                                        InstrumentedOperation::end
                                 )
                         )
-                        .onErrorMap(err -> exceptionToNpgResponseException(err, span, gatewayOperation)),
-                Span::end
+                )
         );
     }
 
@@ -722,21 +965,37 @@ public class NpgClient {
                                            String orderId
     ) {
         final var gatewayOperation = GatewayOperation.GET_ORDER;
-        return Mono.using(
-                () -> tracer.spanBuilder(gatewayOperation.spanName)
-                        .setParent(Context.current().with(Span.current()))
-                        .setAttribute(NPG_CORRELATION_ID_ATTRIBUTE_NAME, correlationId.toString())
-                        .startSpan(),
-                span -> paymentServicesApi.pspApiV1OrdersOrderIdGet(correlationId, orderId, pspApiKey)
-                        .doOnError(
-                                WebClientResponseException.class,
-                                e -> log.info(
-                                        NPG_LOG_ERROR_MESSAGE,
-                                        e.getStatusCode()
+        return hedgingPolicy.hedge(
+                gatewayOperation.name(),
+                concurrencyLimiter.limit(
+                        apiKeyFingerprint(pspApiKey),
+                        Mono.deferContextual(
+                                context -> Mono.using(
+                                        () -> startHedgeableOperation(gatewayOperation, correlationId, context),
+                                        operation -> paymentServicesApi
+                                                .pspApiV1OrdersOrderIdGet(correlationId, orderId, pspApiKey)
+                                                .doOnError(
+                                                        WebClientResponseException.class,
+                                                        e -> log.info(
+                                                                NPG_LOG_ERROR_MESSAGE,
+                                                                e.getStatusCode()
+                                                        )
+                                                )
+                                                .doOnSuccess(operation::succeeded)
+                                                .onErrorMap(
+                                                        err -> operation
+                                                                .failed(
+                                                                        exceptionToNpgResponseException(
+                                                                                err,
+                                                                                operation.span,
+                                                                                gatewayOperation
+                                                                        )
+                                                                )
+                                                ),
+                                        InstrumentedOperation::end
                                 )
                         )
-                        .onErrorMap(err -> exceptionToNpgResponseException(err, span, gatewayOperation)),
-                Span::end
+                )
         );
     }
 
@@ -821,25 +1080,12 @@ public class NpgClient {
         if (err instanceof WebClientResponseException e) {
             try {
                 HttpStatus errorStatusCode = HttpStatus.valueOf(e.getStatusCode().value());
-                List<ErrorsInnerDto> responseErrors = switch (errorStatusCode) {
-                    case INTERNAL_SERVER_ERROR -> objectMapper.readValue(
-                            e.getResponseBodyAsByteArray(),
-                            ServerErrorDto.class
-                    ).getErrors();
-
-                    case BAD_REQUEST -> objectMapper.readValue(
-                            e.getResponseBodyAsByteArray(),
-                            ClientErrorDto.class
-                    ).getErrors();
-
+                errors = switch (errorStatusCode) {
+                    case INTERNAL_SERVER_ERROR, BAD_REQUEST -> errorCodesExtractor.extractErrorCodes(
+                            e.getResponseBodyAsByteArray()
+                    );
                     default -> List.of();
                 };
-
-                errors = Optional
-                        .ofNullable(responseErrors)
-                        .orElse(List.of())
-                        .stream()
-                        .map(ErrorsInnerDto::getCode).toList();
                 statusCode = Optional.ofNullable(HttpStatus.resolve(e.getStatusCode().value()));
             } catch (IOException ex) {
                 String errorMessage = "Invalid error response from NPG with status code %s";
@@ -853,15 +1099,7 @@ public class NpgClient {
             }
         }
 
-        span.setAttribute(
-                NPG_ERROR_CODES_ATTRIBUTE_NAME,
-                errors
-        );
-        span.setAttribute(
-                NPG_HTTP_ERROR_CODE,
-                statusCode.map(HttpStatus::value).orElse(0)
-        );
-        span.setStatus(StatusCode.ERROR);
+        setSpanError(span, errors, statusCode);
 
         return new NpgResponseException(
                 "Error while invoke method for %s".formatted(gatewayOperation.spanName),
@@ -870,4 +1108,160 @@ public class NpgClient {
                 err
         );
     }
+
+    private static void setSpanError(
+                                     Span span,
+                                     List<String> errors,
+                                     Optional<HttpStatus> statusCode
+    ) {
+        RecordingSpanUtils.setError(
+                span,
+                () -> Attributes.of(
+                        NPG_ERROR_CODES_ATTRIBUTE_NAME,
+                        errors,
+                        NPG_HTTP_ERROR_CODE,
+                        statusCode.map(HttpStatus::value).orElse(0).longValue()
+                )
+        );
+    }
+
+    private String apiKeyFingerprint(String apiKey) {
+        return apiKeyFingerprints.computeIfAbsent(apiKey, NpgClient::fingerprint);
+    }
+
+    private static String fingerprint(String apiKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, API_KEY_FINGERPRINT_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private InstrumentedOperation startOperation(
+                                                 GatewayOperation gatewayOperation,
+                                                 @Nullable PaymentMethod paymentMethod,
+                                                 UUID correlationId
+    ) {
+        Span span = RecordingSpanUtils.setAttribute(
+                tracer.spanBuilder(gatewayOperation.spanName)
+                        .setParent(Context.current().with(Span.current()))
+                        .startSpan(),
+                NPG_CORRELATION_ID_ATTRIBUTE_NAME,
+                correlationId::toString
+        );
+        return new InstrumentedOperation(gatewayOperation, paymentMethod, span);
+    }
+
+    /*
+     * Start an operation subject to hedging, marking the span of hedged requests.
+     * Hedged requests share the correlation id of the request they race
+     */
+    private InstrumentedOperation startHedgeableOperation(
+                                                          GatewayOperation gatewayOperation,
+                                                          UUID correlationId,
+                                                          ContextView context
+    ) {
+        InstrumentedOperation operation = startOperation(gatewayOperation, null, correlationId);
+        RecordingSpanUtils.setAttribute(
+                operation.span,
+                NPG_HEDGED_REQUEST_ATTRIBUTE_NAME,
+                () -> HedgingPolicy.isHedgedRequest(context)
+        );
+        return operation;
+    }
+
+    /**
+     * Instrumentation of a single NPG operation, from subscription to termination.
+     * Metrics are recorded with the operation span as context, so that exemplars
+     * link them to the span
+     */
+    private final class InstrumentedOperation {
+
+        private final GatewayOperation gatewayOperation;
+
+        private final String paymentMethod;
+
+        private final Span span;
+
+        private final Context spanContext;
+
+        private final Attributes operationAttributes;
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile String outcome;
+
+        private InstrumentedOperation(
+                GatewayOperation gatewayOperation,
+                @Nullable PaymentMethod paymentMethod,
+                Span span
+        ) {
+            this.gatewayOperation = gatewayOperation;
+            this.paymentMethod = paymentMethod != null ? paymentMethod.serviceName : ATTRIBUTE_NOT_AVAILABLE;
+            this.span = span;
+            this.spanContext = Context.current().with(span);
+            this.operationAttributes = Attributes.of(OPERATION_ATTRIBUTE, gatewayOperation.name());
+            inFlightOperations.add(1, operationAttributes, spanContext);
+        }
+
+        private void succeeded(@Nullable Object response) {
+            outcome = "OK";
+        }
+
+        private NpgResponseException failed(NpgResponseException exception) {
+            outcome = "KO";
+            long httpStatus = exception.getStatusCode().map(HttpStatus::value).orElse(0);
+            operationErrors.add(
+                    1,
+                    Attributes.of(
+                            OPERATION_ATTRIBUTE,
+                            gatewayOperation.name(),
+                            PAYMENT_METHOD_ATTRIBUTE,
+                            paymentMethod,
+                            HTTP_STATUS_ATTRIBUTE,
+                            httpStatus
+                    ),
+                    spanContext
+            );
+            // a failed operation can return more than one error code
+            List<String> errorCodes = exception.getErrors().isEmpty() ? List.of(ATTRIBUTE_NOT_AVAILABLE)
+                    : exception.getErrors();
+            for (String errorCode : errorCodes) {
+                operationErrorCodes.add(
+                        1,
+                        Attributes.of(
+                                OPERATION_ATTRIBUTE,
+                                gatewayOperation.name(),
+                                HTTP_STATUS_ATTRIBUTE,
+                                httpStatus,
+                                ERROR_CODE_ATTRIBUTE,
+                                errorCode
+                        ),
+                        spanContext
+                );
+            }
+            return exception;
+        }
+
+        private void end() {
+            inFlightOperations.add(-1, operationAttributes, spanContext);
+            // cancelled operations have no outcome and their duration is not recorded
+            if (outcome != null) {
+                operationDuration.record(
+                        (System.nanoTime() - startNanos) / 1_000_000d,
+                        Attributes.of(
+                                OPERATION_ATTRIBUTE,
+                                gatewayOperation.name(),
+                                PAYMENT_METHOD_ATTRIBUTE,
+                                paymentMethod,
+                                OUTCOME_ATTRIBUTE,
+                                outcome
+                        ),
+                        spanContext
+                );
+            }
+            span.end();
+        }
+    }
 }
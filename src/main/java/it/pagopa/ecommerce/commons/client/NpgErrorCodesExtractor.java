@@ -0,0 +1,127 @@
+package it.pagopa.ecommerce.commons.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Streaming extractor of the error codes contained in NPG error response
+ * bodies.
+ * </p>
+ * <p>
+ * Client and server error bodies share the same {@code {"errors": [{"code":
+ * ..., "description": ...}]}} structure: this extractor reads only the
+ * {@code errors[*].code} values token by token, skipping every other field,
+ * instead of binding the whole body to the generated error DTOs. Bodies larger
+ * than the configured size are rejected without being parsed.
+ * </p>
+ */
+final class NpgErrorCodesExtractor {
+
+    /**
+     * Default max size of the parsed error bodies, in bytes
+     */
+    static final int DEFAULT_MAX_BODY_SIZE = 64 * 1024;
+
+    private static final String ERRORS_FIELD = "errors";
+
+    private static final String CODE_FIELD = "code";
+
+    private final JsonFactory jsonFactory;
+
+    private final int maxBodySize;
+
+    /**
+     * Build a new extractor
+     *
+     * @param jsonFactory the factory used to create body parsers
+     * @param maxBodySize the max size of the parsed error bodies, in bytes
+     */
+    NpgErrorCodesExtractor(
+            JsonFactory jsonFactory,
+            int maxBodySize
+    ) {
+        if (maxBodySize <= 0) {
+            throw new IllegalArgumentException("Invalid max body size: [%s], it must be > 0".formatted(maxBodySize));
+        }
+        this.jsonFactory = jsonFactory;
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Extract the error codes from the input NPG error body
+     *
+     * @param body the error body
+     * @return the error codes, in body order, with {@code null} for errors without
+     *         code
+     * @throws IOException if the body exceeds the max size or is not a valid error
+     *                     body
+     */
+    List<String> extractErrorCodes(byte[] body) throws IOException {
+        if (body.length > maxBodySize) {
+            throw new IOException(
+                    "Error body of %s bytes exceeds max size of %s bytes".formatted(body.length, maxBodySize)
+            );
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Error body is not a JSON object");
+            }
+            List<String> errorCodes = List.of();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (ERRORS_FIELD.equals(fieldName)) {
+                    errorCodes = readErrorCodes(parser, value);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return errorCodes;
+        }
+    }
+
+    private static List<String> readErrorCodes(
+                                               JsonParser parser,
+                                               JsonToken value
+    ) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return List.of();
+        }
+        if (value != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Field `errors` is not an array");
+        }
+        List<String> errorCodes = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Field `errors` contains a non object element");
+            }
+            errorCodes.add(readErrorCode(parser));
+        }
+        return Collections.unmodifiableList(errorCodes);
+    }
+
+    private static String readErrorCode(JsonParser parser) throws IOException {
+        String errorCode = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (CODE_FIELD.equals(fieldName)) {
+                if (!value.isScalarValue()) {
+                    throw new JsonParseException(parser, "Field `code` is not a scalar value");
+                }
+                errorCode = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return errorCode;
+    }
+}
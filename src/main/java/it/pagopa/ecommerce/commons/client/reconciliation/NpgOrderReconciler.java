@@ -0,0 +1,297 @@
+package it.pagopa.ecommerce.commons.client.reconciliation;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.vavr.control.Either;
+import it.pagopa.ecommerce.commons.client.NpgClient;
+import it.pagopa.ecommerce.commons.documents.NpgOrderReconciliationCheckpoint;
+import it.pagopa.ecommerce.commons.exceptions.NpgApiKeyConfigurationException;
+import it.pagopa.ecommerce.commons.utils.NpgApiKeyConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Bulk reconciliation engine of transactions with their NPG orders: for each
+ * input {@link NpgOrderReconciliationRequest} the NPG order is retrieved
+ * through {@link NpgClient#getOrder(UUID, String, String)} and a typed
+ * {@link NpgOrderReconciliationResult} is emitted, in request order.
+ * </p>
+ * <p>
+ * Reconciliation is performed as a job identified by a caller provided id:
+ * </p>
+ * <ul>
+ * <li>PSP api keys are resolved through {@link NpgApiKeyConfiguration} once per
+ * payment method and PSP for each job run</li>
+ * <li>orders are retrieved with bounded global concurrency and at most at the
+ * configured rate per api key. Requests waiting for their api key rate hold a
+ * concurrency slot, so that results can be emitted in request order</li>
+ * <li>a request whose api key cannot be resolved or whose order cannot be
+ * retrieved produces a non reconciled result and does not stop the job</li>
+ * <li>the job progress, that is the number of processed requests, is saved
+ * every configured number of requests and when the job terminates, successfully
+ * or not, or is cancelled by its subscriber. Running again a job with the same
+ * id skips the requests already processed, so the requests must be provided in
+ * the same order on each run, and requests can be processed more than once if a
+ * job fails between two checkpoints</li>
+ * </ul>
+ */
+@Slf4j
+public class NpgOrderReconciler {
+
+    /**
+     * Prefix used for all the metrics exported by this reconciler
+     */
+    public static final String METRIC_PREFIX = "ecommerce.npg.reconciliation.";
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private static final Attributes OK_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "OK");
+
+    private static final Attributes KO_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "KO");
+
+    private static final Map<NpgOrderReconciliationResult.Outcome, Attributes> RESULT_ATTRIBUTES = resultAttributes();
+
+    private final NpgClient npgClient;
+
+    private final NpgApiKeyConfiguration npgApiKeyConfiguration;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final NpgOrderReconciliationConfiguration configuration;
+
+    private final Scheduler scheduler;
+
+    private final long requestIntervalNanos;
+
+    private final LongCounter requests;
+
+    private final LongCounter jobs;
+
+    /**
+     * Build a new reconciler instance
+     *
+     * @param npgClient              the NPG client used to retrieve orders
+     * @param npgApiKeyConfiguration the NPG api keys configuration
+     * @param mongoOperations        the reactive Mongo operations used to access
+     *                               the checkpoint collection
+     * @param configuration          the reconciliation configuration
+     * @param scheduler              the scheduler used to rate limit order
+     *                               retrievals
+     * @param meter                  the meter used to register metrics
+     */
+    public NpgOrderReconciler(
+            NpgClient npgClient,
+            NpgApiKeyConfiguration npgApiKeyConfiguration,
+            ReactiveMongoOperations mongoOperations,
+            NpgOrderReconciliationConfiguration configuration,
+            Scheduler scheduler,
+            Meter meter
+    ) {
+        this.npgClient = Objects.requireNonNull(npgClient);
+        this.npgApiKeyConfiguration = Objects.requireNonNull(npgApiKeyConfiguration);
+        this.mongoOperations = Objects.requireNonNull(mongoOperations);
+        this.configuration = Objects.requireNonNull(configuration);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.requestIntervalNanos = Duration.ofSeconds(1).toNanos() / configuration.maxRequestsPerSecondPerKey();
+        this.requests = meter.counterBuilder(METRIC_PREFIX + "requests")
+                .setDescription("Number of reconciliation requests processed, by outcome")
+                .build();
+        this.jobs = meter.counterBuilder(METRIC_PREFIX + "jobs")
+                .setDescription("Number of reconciliation job runs, by outcome")
+                .build();
+    }
+
+    /**
+     * Reconcile the input requests, resuming the job with the input id if it has
+     * already been run
+     *
+     * @param jobId    the reconciliation job id
+     * @param requests the requests to be reconciled, in the same order on each job
+     *                 run
+     * @return a {@link Flux} emitting the result of each request not processed by
+     *         previous job runs, in request order, and failing with the error that
+     *         stopped the job after its progress has been saved
+     */
+    public Flux<NpgOrderReconciliationResult> reconcile(
+                                                        String jobId,
+                                                        Flux<NpgOrderReconciliationRequest> requests
+    ) {
+        return mongoOperations.findById(jobId, NpgOrderReconciliationCheckpoint.class)
+                .defaultIfEmpty(new NpgOrderReconciliationCheckpoint(jobId, 0, 0, 0, null, false))
+                .flatMapMany(checkpoint -> checkpoint.isCompleted() ? Flux.empty() : run(checkpoint, requests))
+                .doOnComplete(() -> {
+                    jobs.add(1, OK_ATTRIBUTES);
+                    log.info("Reconciliation job with id: [{}] completed", jobId);
+                })
+                .doOnError(e -> {
+                    jobs.add(1, KO_ATTRIBUTES);
+                    log.error("Reconciliation job with id: [{}] stopped", jobId, e);
+                });
+    }
+
+    private Flux<NpgOrderReconciliationResult> run(
+                                                   NpgOrderReconciliationCheckpoint checkpoint,
+                                                   Flux<NpgOrderReconciliationRequest> requests
+    ) {
+        JobRun jobRun = new JobRun();
+        int checkpointInterval = configuration.checkpointInterval();
+        AtomicLong sinceLastSave = new AtomicLong();
+        return requests
+                .skip(checkpoint.getProcessedRequests())
+                .flatMapSequential(request -> reconcile(request, jobRun), configuration.maxConcurrency())
+                .concatMap(result -> {
+                    // results are emitted in request order, so the checkpoint is always
+                    // the length of a prefix of processed requests
+                    updateCheckpoint(checkpoint, result);
+                    if (sinceLastSave.incrementAndGet() < checkpointInterval) {
+                        return Mono.just(result);
+                    }
+                    sinceLastSave.set(0);
+                    return mongoOperations.save(checkpoint).thenReturn(result);
+                })
+                .onErrorResume(e -> mongoOperations.save(checkpoint).then(Mono.error(e)))
+                .doOnCancel(() -> {
+                    log.info(
+                            "Reconciliation job with id: [{}] cancelled after processed requests: [{}]",
+                            checkpoint.getJobId(),
+                            checkpoint.getProcessedRequests()
+                    );
+                    // cancellation cannot be delayed until the save completes
+                    mongoOperations.save(checkpoint).subscribe(
+                            saved -> {
+                            },
+                            e -> log.error(
+                                    "Error saving progress of cancelled reconciliation job with id: [{}]",
+                                    checkpoint.getJobId(),
+                                    e
+                            )
+                    );
+                })
+                .concatWith(Mono.defer(() -> {
+                    checkpoint.setCompleted(true);
+                    log.info(
+                            "Reconciliation job with id: [{}] processed requests: [{}], reconciled orders: [{}], failed requests: [{}]",
+                            checkpoint.getJobId(),
+                            checkpoint.getProcessedRequests(),
+                            checkpoint.getReconciledOrders(),
+                            checkpoint.getFailedRequests()
+                    );
+                    return mongoOperations.save(checkpoint).then(Mono.<NpgOrderReconciliationResult>empty());
+                }));
+    }
+
+    private Mono<NpgOrderReconciliationResult> reconcile(
+                                                         NpgOrderReconciliationRequest request,
+                                                         JobRun jobRun
+    ) {
+        Either<NpgApiKeyConfigurationException, String> apiKey = jobRun.apiKey(request);
+        if (apiKey.isLeft()) {
+            log.warn(
+                    "Cannot reconcile transaction with id: [{}], api key not found for payment method: [{}] and psp: [{}]",
+                    request.transactionId(),
+                    request.paymentMethod(),
+                    request.pspId()
+            );
+            return Mono.just(NpgOrderReconciliationResult.apiKeyNotFound(request, apiKey.getLeft()));
+        }
+        return jobRun.acquire(apiKey.get())
+                .then(Mono.defer(() -> npgClient.getOrder(UUID.randomUUID(), apiKey.get(), request.orderId())))
+                .map(order -> NpgOrderReconciliationResult.reconciled(request, order))
+                .onErrorResume(e -> {
+                    log.warn(
+                            "Cannot reconcile transaction with id: [{}], error retrieving order with id: [{}]",
+                            request.transactionId(),
+                            request.orderId(),
+                            e
+                    );
+                    return Mono.just(NpgOrderReconciliationResult.failed(request, e));
+                });
+    }
+
+    private void updateCheckpoint(
+                                  NpgOrderReconciliationCheckpoint checkpoint,
+                                  NpgOrderReconciliationResult result
+    ) {
+        requests.add(1, RESULT_ATTRIBUTES.get(result.outcome()));
+        checkpoint.setProcessedRequests(checkpoint.getProcessedRequests() + 1);
+        checkpoint.setLastTransactionId(result.request().transactionId());
+        if (result.outcome() == NpgOrderReconciliationResult.Outcome.RECONCILED) {
+            checkpoint.setReconciledOrders(checkpoint.getReconciledOrders() + 1);
+        } else {
+            checkpoint.setFailedRequests(checkpoint.getFailedRequests() + 1);
+        }
+    }
+
+    private static Map<NpgOrderReconciliationResult.Outcome, Attributes> resultAttributes() {
+        Map<NpgOrderReconciliationResult.Outcome, Attributes> attributes = new EnumMap<>(
+                NpgOrderReconciliationResult.Outcome.class
+        );
+        for (NpgOrderReconciliationResult.Outcome outcome : NpgOrderReconciliationResult.Outcome.values()) {
+            attributes.put(outcome, Attributes.of(OUTCOME_ATTRIBUTE, outcome.name()));
+        }
+        return attributes;
+    }
+
+    /**
+     * State of a single job run: resolved api keys and per api key rate limiting
+     */
+    private final class JobRun {
+
+        private final Map<PspApiKeyId, Either<NpgApiKeyConfigurationException, String>> apiKeys = new ConcurrentHashMap<>();
+
+        private final Map<String, AtomicLong> nextRequestNanos = new ConcurrentHashMap<>();
+
+        private Either<NpgApiKeyConfigurationException, String> apiKey(NpgOrderReconciliationRequest request) {
+            return apiKeys.computeIfAbsent(
+                    new PspApiKeyId(request.paymentMethod(), request.pspId()),
+                    this::resolveApiKey
+            );
+        }
+
+        private Either<NpgApiKeyConfigurationException, String> resolveApiKey(PspApiKeyId id) {
+            return npgApiKeyConfiguration.getApiKeyForPaymentMethod(id.paymentMethod(), id.pspId());
+        }
+
+        /**
+         * Reserve the next request slot for the input api key
+         *
+         * @param apiKey the api key
+         * @return a {@link Mono} completing at the reserved slot
+         */
+        private Mono<Void> acquire(String apiKey) {
+            long now = scheduler.now(TimeUnit.NANOSECONDS);
+            long reserved = nextRequestNanos.computeIfAbsent(apiKey, key -> new AtomicLong(now))
+                    .getAndAccumulate(now, this::nextSlot);
+            long delayNanos = Math.max(reserved, now) - now;
+            return delayNanos == 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(delayNanos), scheduler).then();
+        }
+
+        private long nextSlot(
+                              long next,
+                              long now
+        ) {
+            return Math.max(next, now) + requestIntervalNanos;
+        }
+    }
+
+    private record PspApiKeyId(
+            NpgClient.PaymentMethod paymentMethod,
+            String pspId
+    ) {
+    }
+}
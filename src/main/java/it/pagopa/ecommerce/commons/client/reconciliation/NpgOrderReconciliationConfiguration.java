@@ -0,0 +1,69 @@
+package it.pagopa.ecommerce.commons.client.reconciliation;
+
+/**
+ * Configuration for a {@link NpgOrderReconciler}
+ *
+ * @param maxConcurrency             max number of orders being retrieved
+ *                                   concurrently, across all api keys
+ * @param maxRequestsPerSecondPerKey max number of orders retrieved per second
+ *                                   with the same api key
+ * @param checkpointInterval         number of processed requests after which
+ *                                   the job progress is saved
+ */
+public record NpgOrderReconciliationConfiguration(
+        int maxConcurrency,
+        int maxRequestsPerSecondPerKey,
+        int checkpointInterval
+) {
+
+    /**
+     * Default max number of concurrent order retrievals
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+    /**
+     * Default max number of order retrievals per second per api key
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_SECOND_PER_KEY = 10;
+
+    /**
+     * Default number of requests between two progress checkpoints
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+
+    /**
+     * Validate configuration parameters
+     *
+     * @param maxConcurrency             max number of concurrent order retrievals
+     * @param maxRequestsPerSecondPerKey max number of order retrievals per second
+     *                                   per api key
+     * @param checkpointInterval         number of requests between two checkpoints
+     */
+    public NpgOrderReconciliationConfiguration {
+        requirePositive(maxConcurrency, "maxConcurrency");
+        requirePositive(maxRequestsPerSecondPerKey, "maxRequestsPerSecondPerKey");
+        requirePositive(checkpointInterval, "checkpointInterval");
+    }
+
+    /**
+     * Build a configuration with default values
+     *
+     * @return the configuration
+     */
+    public static NpgOrderReconciliationConfiguration withDefaults() {
+        return new NpgOrderReconciliationConfiguration(
+                DEFAULT_MAX_CONCURRENCY,
+                DEFAULT_MAX_REQUESTS_PER_SECOND_PER_KEY,
+                DEFAULT_CHECKPOINT_INTERVAL
+        );
+    }
+
+    private static void requirePositive(
+                                        int value,
+                                        String name
+    ) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid %s: [%s], it must be > 0".formatted(name, value));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package it.pagopa.ecommerce.commons.client.reconciliation;
+
+import it.pagopa.ecommerce.commons.client.NpgClient;
+
+import java.util.Objects;
+
+/**
+ * Request to reconcile a transaction with its NPG order
+ *
+ * @param transactionId the transaction id
+ * @param orderId       the NPG order id
+ * @param paymentMethod the transaction payment method, used to resolve the PSP
+ *                      api key
+ * @param pspId         the transaction PSP id, used to resolve the PSP api key
+ */
+public record NpgOrderReconciliationRequest(
+        String transactionId,
+        String orderId,
+        NpgClient.PaymentMethod paymentMethod,
+        String pspId
+) {
+
+    /**
+     * Validate request fields
+     *
+     * @param transactionId the transaction id
+     * @param orderId       the NPG order id
+     * @param paymentMethod the transaction payment method
+     * @param pspId         the transaction PSP id
+     */
+    public NpgOrderReconciliationRequest {
+        Objects.requireNonNull(transactionId, "transactionId null not valid");
+        Objects.requireNonNull(orderId, "orderId null not valid");
+        Objects.requireNonNull(paymentMethod, "paymentMethod null not valid");
+        Objects.requireNonNull(pspId, "pspId null not valid");
+    }
+}
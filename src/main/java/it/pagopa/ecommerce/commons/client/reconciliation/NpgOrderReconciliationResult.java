@@ -0,0 +1,126 @@
+package it.pagopa.ecommerce.commons.client.reconciliation;
+
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationTypeDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OrderResponseDto;
+import it.pagopa.ecommerce.commons.utils.NpgClientUtils;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Result of the reconciliation of a transaction with its NPG order
+ *
+ * @param request                the reconciliation request
+ * @param outcome                the reconciliation outcome
+ * @param order                  the retrieved NPG order, if any
+ * @param authorizationOperation the last authorization operation of the order,
+ *                               if any
+ * @param paymentEndToEndId      the payment end to end id of the authorization
+ *                               operation, if any
+ * @param error                  the error that prevented the order retrieval,
+ *                               if any
+ */
+public record NpgOrderReconciliationResult(
+        NpgOrderReconciliationRequest request,
+        Outcome outcome,
+        @Nullable OrderResponseDto order,
+        @Nullable OperationDto authorizationOperation,
+        @Nullable String paymentEndToEndId,
+        @Nullable Throwable error
+) {
+
+    /**
+     * Reconciliation outcome
+     */
+    public enum Outcome {
+        /**
+         * The NPG order has been retrieved
+         */
+        RECONCILED,
+        /**
+         * No api key is configured for the request payment method and PSP
+         */
+        API_KEY_NOT_FOUND,
+        /**
+         * The NPG order could not be retrieved
+         */
+        FAILED
+    }
+
+    /**
+     * Build the result of a retrieved NPG order
+     *
+     * @param request the reconciliation request
+     * @param order   the retrieved NPG order
+     * @return the reconciliation result
+     */
+    public static NpgOrderReconciliationResult reconciled(
+                                                          NpgOrderReconciliationRequest request,
+                                                          OrderResponseDto order
+    ) {
+        OperationDto authorizationOperation = lastAuthorizationOperation(order.getOperations());
+        return new NpgOrderReconciliationResult(
+                request,
+                Outcome.RECONCILED,
+                order,
+                authorizationOperation,
+                paymentEndToEndId(authorizationOperation),
+                null
+        );
+    }
+
+    /**
+     * Build the result of a request whose api key could not be resolved
+     *
+     * @param request the reconciliation request
+     * @param error   the api key resolution error
+     * @return the reconciliation result
+     */
+    public static NpgOrderReconciliationResult apiKeyNotFound(
+                                                              NpgOrderReconciliationRequest request,
+                                                              Throwable error
+    ) {
+        return new NpgOrderReconciliationResult(request, Outcome.API_KEY_NOT_FOUND, null, null, null, error);
+    }
+
+    /**
+     * Build the result of a request whose NPG order could not be retrieved
+     *
+     * @param request the reconciliation request
+     * @param error   the order retrieval error
+     * @return the reconciliation result
+     */
+    public static NpgOrderReconciliationResult failed(
+                                                      NpgOrderReconciliationRequest request,
+                                                      Throwable error
+    ) {
+        return new NpgOrderReconciliationResult(request, Outcome.FAILED, null, null, null, error);
+    }
+
+    @Nullable
+    private static String paymentEndToEndId(@Nullable OperationDto authorizationOperation) {
+        try {
+            return NpgClientUtils.getPaymentEndToEndId(authorizationOperation);
+        } catch (NullPointerException e) {
+            // circuit specific end to end id missing from the operation additional data:
+            // the order is still reconciled, without end to end id
+            return null;
+        }
+    }
+
+    @Nullable
+    private static OperationDto lastAuthorizationOperation(@Nullable List<OperationDto> operations) {
+        if (operations == null) {
+            return null;
+        }
+        // operations are listed in chronological order
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            OperationDto operation = operations.get(i);
+            if (operation != null && operation.getOperationType() == OperationTypeDto.AUTHORIZATION) {
+                return operation;
+            }
+        }
+        return null;
+    }
+}
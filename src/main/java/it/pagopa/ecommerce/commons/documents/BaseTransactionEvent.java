@@ -1,11 +1,14 @@
 package it.pagopa.ecommerce.commons.documents;
 
 import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import it.pagopa.ecommerce.commons.utils.EventTimestampUtils;
+import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.ZonedDateTime;
+
 /**
  * <p>
  * Base class for all eCommerce events, regardless of event version.
@@ -29,6 +32,16 @@ public abstract class BaseTransactionEvent<T> {
 
     private String eventCode;
 
+    /**
+     * Creation date parsed on first access, never persisted
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient ZonedDateTime parsedCreationDate;
+
     /**
      * Primary constructor for a base transaction event.
      *
@@ -51,4 +64,38 @@ public abstract class BaseTransactionEvent<T> {
         this.data = data;
         this.eventCode = eventCode;
     }
+
+    /**
+     * Set the event creation date, resetting the memoized parsed creation date
+     *
+     * @param creationDate the creation timestamp for the event
+     */
+    public void setCreationDate(String creationDate) {
+        this.creationDate = creationDate;
+        this.parsedCreationDate = null;
+    }
+
+    /**
+     * Get the parsed event creation date. The creation date is parsed once and then
+     * memoized, so that replaying events does not parse it again
+     *
+     * @return the event creation date
+     */
+    public ZonedDateTime creationDateTime() {
+        ZonedDateTime parsed = parsedCreationDate;
+        if (parsed == null) {
+            parsed = EventTimestampUtils.parse(creationDate);
+            parsedCreationDate = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * Get the event creation date as epoch milliseconds
+     *
+     * @return the number of milliseconds since epoch of the event creation date
+     */
+    public long creationDateEpochMillis() {
+        return creationDateTime().toInstant().toEpochMilli();
+    }
 }
@@ -0,0 +1,60 @@
+package it.pagopa.ecommerce.commons.documents;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import javax.annotation.Nullable;
+
+/**
+ * Persistence class for the progress of a dead letter events reprocessing job
+ */
+@Document(collection = "dead-letter-reprocessing-checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterReprocessingCheckpoint {
+
+    /**
+     * Reprocessing job unique id
+     */
+    @Id
+    private String jobId;
+    /**
+     * Name of the queue whose dead letter events are reprocessed
+     */
+    private String queueName;
+    /**
+     * Insertion date of the first dead letter event to be reprocessed, inclusive
+     */
+    private String fromInsertionDate;
+    /**
+     * Insertion date of the last dead letter event to be reprocessed, exclusive
+     */
+    private String toInsertionDate;
+    /**
+     * Insertion date of the last reprocessed dead letter event
+     */
+    @Nullable
+    private String lastInsertionDate;
+    /**
+     * Id of the last reprocessed dead letter event
+     */
+    @Nullable
+    private String lastEventId;
+    /**
+     * Number of dead letter events re-enqueued
+     */
+    private long reprocessedEvents;
+    /**
+     * Number of dead letter events skipped since their data is not a valid queue
+     * event
+     */
+    private long skippedEvents;
+    /**
+     * Whether all the dead letter events in range have been reprocessed
+     */
+    private boolean completed;
+}
@@ -0,0 +1,47 @@
+package it.pagopa.ecommerce.commons.documents;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import javax.annotation.Nullable;
+
+/**
+ * Persistence class for the progress of a NPG order reconciliation job
+ */
+@Document(collection = "npg-order-reconciliation-checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NpgOrderReconciliationCheckpoint {
+
+    /**
+     * Reconciliation job unique id
+     */
+    @Id
+    private String jobId;
+    /**
+     * Number of reconciliation requests processed, that is the length of the
+     * processed prefix of the job requests
+     */
+    private long processedRequests;
+    /**
+     * Number of requests whose NPG order has been retrieved
+     */
+    private long reconciledOrders;
+    /**
+     * Number of requests whose NPG order could not be retrieved
+     */
+    private long failedRequests;
+    /**
+     * Transaction id of the last processed request
+     */
+    @Nullable
+    private String lastTransactionId;
+    /**
+     * Whether all the job requests have been processed
+     */
+    private boolean completed;
+}
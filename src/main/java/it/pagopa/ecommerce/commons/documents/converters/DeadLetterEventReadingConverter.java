@@ -0,0 +1,33 @@
+package it.pagopa.ecommerce.commons.documents.converters;
+
+import it.pagopa.ecommerce.commons.documents.DeadLetterEvent;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import static it.pagopa.ecommerce.commons.documents.converters.DocumentMappings.*;
+
+/**
+ * Hand-written converter from Mongo documents to {@link DeadLetterEvent}
+ * documents, reading the documents written by both the reflective mapping and
+ * {@link DeadLetterEventWritingConverter}
+ */
+@ReadingConverter
+public enum DeadLetterEventReadingConverter implements Converter<Document, DeadLetterEvent> {
+
+    /**
+     * Converter instance
+     */
+    INSTANCE;
+
+    @Override
+    public DeadLetterEvent convert(Document source) {
+        return new DeadLetterEvent(
+                getString(source, ID_FIELD),
+                getString(source, "queueName"),
+                getString(source, "insertionDate"),
+                getString(source, "data"),
+                getDocument(source, "transactionInfo", DocumentMappings::readDeadLetterTransactionInfo)
+        );
+    }
+}
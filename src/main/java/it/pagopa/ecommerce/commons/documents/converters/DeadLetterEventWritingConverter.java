@@ -0,0 +1,35 @@
+package it.pagopa.ecommerce.commons.documents.converters;
+
+import it.pagopa.ecommerce.commons.documents.DeadLetterEvent;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+
+import static it.pagopa.ecommerce.commons.documents.converters.DocumentMappings.*;
+
+/**
+ * Hand-written converter from {@link DeadLetterEvent} documents to Mongo
+ * documents, producing the same document as the reflective mapping
+ */
+@WritingConverter
+public enum DeadLetterEventWritingConverter implements Converter<DeadLetterEvent, Document> {
+
+    /**
+     * Converter instance
+     */
+    INSTANCE;
+
+    @Override
+    public Document convert(DeadLetterEvent source) {
+        Document document = new Document();
+        put(document, ID_FIELD, source.getId());
+        put(document, "queueName", source.getQueueName());
+        put(document, "insertionDate", source.getInsertionDate());
+        put(document, "data", source.getData());
+        if (source.getTransactionInfo() != null) {
+            document.put("transactionInfo", writeDeadLetterTransactionInfo(source.getTransactionInfo()));
+        }
+        document.put(CLASS_FIELD, DeadLetterEvent.class.getName());
+        return document;
+    }
+}
@@ -0,0 +1,61 @@
+package it.pagopa.ecommerce.commons.documents.converters;
+
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Hand-written Mongo converters for the documents written and read on hot
+ * paths, such as the transactions view written by projections and the dead
+ * letter events.
+ * </p>
+ * <p>
+ * Converters map documents field by field instead of going through the
+ * reflective {@code MappingMongoConverter} entity instantiation and property
+ * access, and produce the same Mongo documents, so that documents written by
+ * either mapping can be read by the other one. They are registered through the
+ * application {@link MongoCustomConversions} bean, for example:
+ * </p>
+ *
+ * <pre>
+ * &#64;Bean
+ * public MongoCustomConversions mongoCustomConversions() {
+ *     return DocumentConverters.customConversions(List.of());
+ * }
+ * </pre>
+ */
+public final class DocumentConverters {
+
+    private DocumentConverters() {
+        // Utility class, no need to instantiate it
+    }
+
+    /**
+     * Get all the hand-written document converters
+     *
+     * @return the reading and writing converters
+     */
+    public static List<Object> converters() {
+        return List.of(
+                TransactionViewWritingConverter.INSTANCE,
+                TransactionViewReadingConverter.INSTANCE,
+                DeadLetterEventWritingConverter.INSTANCE,
+                DeadLetterEventReadingConverter.INSTANCE
+        );
+    }
+
+    /**
+     * Build custom conversions registering the hand-written document converters
+     * together with application specific ones
+     *
+     * @param additionalConverters the application specific converters
+     * @return the custom conversions to be registered
+     */
+    public static MongoCustomConversions customConversions(List<?> additionalConverters) {
+        List<Object> converters = new ArrayList<>(converters());
+        converters.addAll(additionalConverters);
+        return new MongoCustomConversions(converters);
+    }
+}
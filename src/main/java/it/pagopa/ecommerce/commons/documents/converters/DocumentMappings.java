@@ -0,0 +1,291 @@
+package it.pagopa.ecommerce.commons.documents.converters;
+
+import it.pagopa.ecommerce.commons.documents.PaymentNotice;
+import it.pagopa.ecommerce.commons.documents.PaymentTransferInformation;
+import it.pagopa.ecommerce.commons.documents.v2.ClosureErrorData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterNpgTransactionInfoDetailsData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterRedirectTransactionInfoDetailsData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterTransactionInfo;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterTransactionInfoDetailsData;
+import it.pagopa.ecommerce.commons.domain.Confidential;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.utils.ConfidentialDataManager;
+import org.bson.Document;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Field by field mappings between document classes and Mongo documents, shared
+ * by the hand-written converters. Mappings produce the same documents as the
+ * reflective {@code MappingMongoConverter}: null fields are not written and
+ * polymorphic values are written with their {@value #CLASS_FIELD} type hint
+ */
+final class DocumentMappings {
+
+    static final String ID_FIELD = "_id";
+
+    static final String CLASS_FIELD = "_class";
+
+    private DocumentMappings() {
+        // Utility class, no need to instantiate it
+    }
+
+    static void put(
+                    Document document,
+                    String field,
+                    @Nullable Object value
+    ) {
+        if (value != null) {
+            document.put(field, value);
+        }
+    }
+
+    static void putEnum(
+                        Document document,
+                        String field,
+                        @Nullable Enum<?> value
+    ) {
+        if (value != null) {
+            document.put(field, value.name());
+        }
+    }
+
+    static <T> void putList(
+                            Document document,
+                            String field,
+                            @Nullable List<T> values,
+                            Function<? super T, ?> mapper
+    ) {
+        if (values != null) {
+            List<Object> mapped = new ArrayList<>(values.size());
+            for (T value : values) {
+                mapped.add(value == null ? null : mapper.apply(value));
+            }
+            document.put(field, mapped);
+        }
+    }
+
+    @Nullable
+    static String getString(
+                            Document document,
+                            String field
+    ) {
+        return (String) document.get(field);
+    }
+
+    @Nullable
+    static Long getLong(
+                        Document document,
+                        String field
+    ) {
+        Number value = (Number) document.get(field);
+        return value == null ? null : value.longValue();
+    }
+
+    @Nullable
+    static Integer getInteger(
+                              Document document,
+                              String field
+    ) {
+        Number value = (Number) document.get(field);
+        return value == null ? null : value.intValue();
+    }
+
+    @Nullable
+    static Boolean getBoolean(
+                              Document document,
+                              String field
+    ) {
+        return (Boolean) document.get(field);
+    }
+
+    @Nullable
+    static <E extends Enum<E>> E getEnum(
+                                         Document document,
+                                         String field,
+                                         Class<E> enumType
+    ) {
+        String value = (String) document.get(field);
+        return value == null ? null : Enum.valueOf(enumType, value);
+    }
+
+    @Nullable
+    static <T> List<T> getList(
+                               Document document,
+                               String field,
+                               Function<Object, T> mapper
+    ) {
+        List<?> values = (List<?>) document.get(field);
+        if (values == null) {
+            return null;
+        }
+        List<T> mapped = new ArrayList<>(values.size());
+        for (Object value : values) {
+            mapped.add(value == null ? null : mapper.apply(value));
+        }
+        return mapped;
+    }
+
+    @Nullable
+    static <T> T getDocument(
+                             Document document,
+                             String field,
+                             Function<Document, T> mapper
+    ) {
+        Document value = (Document) document.get(field);
+        return value == null ? null : mapper.apply(value);
+    }
+
+    static Document writeConfidential(Confidential<?> confidential) {
+        Document document = new Document();
+        put(document, "data", confidential.opaqueData());
+        return document;
+    }
+
+    static <T extends ConfidentialDataManager.ConfidentialData> Confidential<T> readConfidential(Document document) {
+        return new Confidential<>(getString(document, "data"));
+    }
+
+    static Document writePaymentNotice(PaymentNotice paymentNotice) {
+        Document document = new Document();
+        put(document, "paymentToken", paymentNotice.getPaymentToken());
+        put(document, "rptId", paymentNotice.getRptId());
+        put(document, "description", paymentNotice.getDescription());
+        put(document, "amount", paymentNotice.getAmount());
+        put(document, "paymentContextCode", paymentNotice.getPaymentContextCode());
+        putList(
+                document,
+                "transferList",
+                paymentNotice.getTransferList(),
+                DocumentMappings::writePaymentTransferInformation
+        );
+        put(document, "isAllCCP", paymentNotice.isAllCCP());
+        put(document, "companyName", paymentNotice.getCompanyName());
+        put(document, "creditorReferenceId", paymentNotice.getCreditorReferenceId());
+        return document;
+    }
+
+    static PaymentNotice readPaymentNotice(Object value) {
+        Document document = (Document) value;
+        Boolean isAllCCP = getBoolean(document, "isAllCCP");
+        return new PaymentNotice(
+                getString(document, "paymentToken"),
+                getString(document, "rptId"),
+                getString(document, "description"),
+                getLong(document, "amount"),
+                getString(document, "paymentContextCode"),
+                getList(document, "transferList", DocumentMappings::readPaymentTransferInformation),
+                isAllCCP != null && isAllCCP,
+                getString(document, "companyName"),
+                getString(document, "creditorReferenceId")
+        );
+    }
+
+    static Document writePaymentTransferInformation(PaymentTransferInformation transferInformation) {
+        Document document = new Document();
+        put(document, "paFiscalCode", transferInformation.getPaFiscalCode());
+        put(document, "digitalStamp", transferInformation.getDigitalStamp());
+        put(document, "transferAmount", transferInformation.getTransferAmount());
+        put(document, "transferCategory", transferInformation.getTransferCategory());
+        return document;
+    }
+
+    static PaymentTransferInformation readPaymentTransferInformation(Object value) {
+        Document document = (Document) value;
+        return new PaymentTransferInformation(
+                getString(document, "paFiscalCode"),
+                getBoolean(document, "digitalStamp"),
+                getLong(document, "transferAmount"),
+                getString(document, "transferCategory")
+        );
+    }
+
+    static Document writeClosureErrorData(ClosureErrorData closureErrorData) {
+        Document document = new Document();
+        putEnum(document, "httpErrorCode", closureErrorData.getHttpErrorCode());
+        put(document, "errorDescription", closureErrorData.getErrorDescription());
+        putEnum(document, "errorType", closureErrorData.getErrorType());
+        return document;
+    }
+
+    static ClosureErrorData readClosureErrorData(Document document) {
+        return new ClosureErrorData(
+                getEnum(document, "httpErrorCode", HttpStatus.class),
+                getString(document, "errorDescription"),
+                getEnum(document, "errorType", ClosureErrorData.ErrorType.class)
+        );
+    }
+
+    static Document writeDeadLetterTransactionInfo(DeadLetterTransactionInfo transactionInfo) {
+        Document document = new Document();
+        put(document, "transactionId", transactionInfo.getTransactionId());
+        put(document, "authorizationRequestId", transactionInfo.getAuthorizationRequestId());
+        putEnum(document, "eCommerceStatus", transactionInfo.getECommerceStatus());
+        putEnum(document, "gateway", transactionInfo.getGateway());
+        putList(document, "paymentTokens", transactionInfo.getPaymentTokens(), Function.identity());
+        put(document, "pspId", transactionInfo.getPspId());
+        put(document, "paymentMethodName", transactionInfo.getPaymentMethodName());
+        put(document, "grandTotal", transactionInfo.getGrandTotal());
+        put(document, "rrn", transactionInfo.getRrn());
+        if (transactionInfo.getDetails() != null) {
+            document.put("details", writeDeadLetterDetails(transactionInfo.getDetails()));
+        }
+        return document;
+    }
+
+    static DeadLetterTransactionInfo readDeadLetterTransactionInfo(Document document) {
+        return new DeadLetterTransactionInfo(
+                getString(document, "transactionId"),
+                getString(document, "authorizationRequestId"),
+                getEnum(document, "eCommerceStatus", TransactionStatusDto.class),
+                getEnum(document, "gateway", TransactionAuthorizationRequestData.PaymentGateway.class),
+                getList(document, "paymentTokens", String.class::cast),
+                getString(document, "pspId"),
+                getString(document, "paymentMethodName"),
+                getLong(document, "grandTotal"),
+                getString(document, "rrn"),
+                getDocument(document, "details", DocumentMappings::readDeadLetterDetails)
+        );
+    }
+
+    private static Document writeDeadLetterDetails(DeadLetterTransactionInfoDetailsData details) {
+        Document document = new Document();
+        switch (details) {
+            case DeadLetterNpgTransactionInfoDetailsData npgDetails -> {
+                putEnum(document, "operationResult", npgDetails.getOperationResult());
+                put(document, "operationId", npgDetails.getOperationId());
+                put(document, "correlationId", npgDetails.getCorrelationId());
+                put(document, "paymentEndToEndId", npgDetails.getPaymentEndToEndId());
+            }
+            case DeadLetterRedirectTransactionInfoDetailsData redirectDetails -> put(
+                    document,
+                    "outcome",
+                    redirectDetails.getOutcome()
+            );
+        }
+        document.put(CLASS_FIELD, details.getClass().getName());
+        return document;
+    }
+
+    private static DeadLetterTransactionInfoDetailsData readDeadLetterDetails(Document document) {
+        String type = getString(document, CLASS_FIELD);
+        if (DeadLetterNpgTransactionInfoDetailsData.class.getName().equals(type)) {
+            return new DeadLetterNpgTransactionInfoDetailsData(
+                    getEnum(document, "operationResult", OperationResultDto.class),
+                    getString(document, "operationId"),
+                    getString(document, "correlationId"),
+                    getString(document, "paymentEndToEndId")
+            );
+        }
+        if (DeadLetterRedirectTransactionInfoDetailsData.class.getName().equals(type)) {
+            return new DeadLetterRedirectTransactionInfoDetailsData(getString(document, "outcome"));
+        }
+        throw new IllegalArgumentException("Unknown dead letter transaction info details type: [%s]".formatted(type));
+    }
+}
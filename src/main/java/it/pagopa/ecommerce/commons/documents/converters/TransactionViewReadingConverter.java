@@ -0,0 +1,56 @@
+package it.pagopa.ecommerce.commons.documents.converters;
+
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import static it.pagopa.ecommerce.commons.documents.converters.DocumentMappings.*;
+
+/**
+ * Hand-written converter from Mongo documents to {@link Transaction} view
+ * documents, reading the documents written by both the reflective mapping and
+ * {@link TransactionViewWritingConverter}
+ */
+@ReadingConverter
+public enum TransactionViewReadingConverter implements Converter<Document, Transaction> {
+
+    /**
+     * Converter instance
+     */
+    INSTANCE;
+
+    @Override
+    public Transaction convert(Document source) {
+        Transaction transaction = new Transaction(
+                getString(source, ID_FIELD),
+                getList(source, "paymentNotices", DocumentMappings::readPaymentNotice),
+                getInteger(source, "feeTotal"),
+                getDocument(source, "email", DocumentMappings::readConfidential),
+                getEnum(source, "status", TransactionStatusDto.class),
+                getEnum(source, "clientId", Transaction.ClientId.class),
+                getString(source, "creationDate"),
+                getString(source, "idCart"),
+                getString(source, "rrn"),
+                getString(source, "userId"),
+                getString(source, "paymentTypeCode"),
+                getString(source, "pspId"),
+                getLong(source, "lastProcessedEventAt")
+        );
+        transaction.setPaymentGateway(getString(source, "paymentGateway"));
+        transaction.setSendPaymentResultOutcome(
+                getEnum(source, "sendPaymentResultOutcome", TransactionUserReceiptData.Outcome.class)
+        );
+        transaction.setAuthorizationCode(getString(source, "authorizationCode"));
+        transaction.setAuthorizationErrorCode(getString(source, "authorizationErrorCode"));
+        transaction.setGatewayAuthorizationStatus(getString(source, "gatewayAuthorizationStatus"));
+        transaction
+                .setClosureErrorData(getDocument(source, "closureErrorData", DocumentMappings::readClosureErrorData));
+        transaction.setAuthorizationRequestId(getString(source, "authorizationRequestId"));
+        transaction.setEndToEndId(getString(source, "endToEndId"));
+        transaction.setLastProcessedEventId(getString(source, "lastProcessedEventId"));
+        return transaction;
+    }
+}
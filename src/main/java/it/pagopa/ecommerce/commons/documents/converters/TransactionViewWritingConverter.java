@@ -0,0 +1,54 @@
+package it.pagopa.ecommerce.commons.documents.converters;
+
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+
+import static it.pagopa.ecommerce.commons.documents.converters.DocumentMappings.*;
+
+/**
+ * Hand-written converter from {@link Transaction} view documents to Mongo
+ * documents, producing the same document as the reflective mapping
+ */
+@WritingConverter
+public enum TransactionViewWritingConverter implements Converter<Transaction, Document> {
+
+    /**
+     * Converter instance
+     */
+    INSTANCE;
+
+    @Override
+    public Document convert(Transaction source) {
+        Document document = new Document();
+        put(document, ID_FIELD, source.getTransactionId());
+        putEnum(document, "clientId", source.getClientId());
+        if (source.getEmail() != null) {
+            document.put("email", writeConfidential(source.getEmail()));
+        }
+        putEnum(document, "status", source.getStatus());
+        put(document, "feeTotal", source.getFeeTotal());
+        put(document, "creationDate", source.getCreationDate());
+        putList(document, "paymentNotices", source.getPaymentNotices(), DocumentMappings::writePaymentNotice);
+        put(document, "idCart", source.getIdCart());
+        put(document, "rrn", source.getRrn());
+        put(document, "paymentGateway", source.getPaymentGateway());
+        putEnum(document, "sendPaymentResultOutcome", source.getSendPaymentResultOutcome());
+        put(document, "authorizationCode", source.getAuthorizationCode());
+        put(document, "authorizationErrorCode", source.getAuthorizationErrorCode());
+        put(document, "gatewayAuthorizationStatus", source.getGatewayAuthorizationStatus());
+        put(document, "userId", source.getUserId());
+        if (source.getClosureErrorData() != null) {
+            document.put("closureErrorData", writeClosureErrorData(source.getClosureErrorData()));
+        }
+        put(document, "paymentTypeCode", source.getPaymentTypeCode());
+        put(document, "pspId", source.getPspId());
+        put(document, "authorizationRequestId", source.getAuthorizationRequestId());
+        put(document, "endToEndId", source.getEndToEndId());
+        put(document, "lastProcessedEventAt", source.getLastProcessedEventAt());
+        put(document, "lastProcessedEventId", source.getLastProcessedEventId());
+        document.put(CLASS_FIELD, Transaction.class.getName());
+        return document;
+    }
+}
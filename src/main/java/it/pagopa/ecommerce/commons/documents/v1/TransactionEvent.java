@@ -5,12 +5,11 @@ import com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver;
 import it.pagopa.ecommerce.commons.documents.BaseTransactionEvent;
 import it.pagopa.ecommerce.commons.documents.v1.serialization.TransactionEventTypeResolver;
 import it.pagopa.ecommerce.commons.domain.v1.TransactionEventCode;
+import it.pagopa.ecommerce.commons.utils.DocumentIds;
 import lombok.*;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.util.UUID;
-
-import static java.time.ZonedDateTime.now;
+import static it.pagopa.ecommerce.commons.utils.EventTimestampUtils.now;
 
 /**
  * Hierarchy root for transaction events.
@@ -34,7 +33,7 @@ public abstract sealed class TransactionEvent<T> extends
             String creationDate,
             T data
     ) {
-        super(UUID.randomUUID().toString(), transactionId, creationDate, data, eventCode.toString());
+        super(DocumentIds.newId(), transactionId, creationDate, data, eventCode.toString());
 
         /*
          * CHK-1413 -> transaction id length lesser than 35 chars here is checked that
@@ -54,6 +53,6 @@ public abstract sealed class TransactionEvent<T> extends
             TransactionEventCode eventCode,
             T data
     ) {
-        this(transactionId, eventCode, now().toString(), data);
+        this(transactionId, eventCode, now(), data);
     }
 }
@@ -84,6 +84,14 @@ public class Transaction extends BaseTransactionView {
     @Nullable
     private Long lastProcessedEventAt;
 
+    /**
+     * Id of the last processed event, used together with
+     * {@link #lastProcessedEventAt} to order events created within the same
+     * millisecond
+     */
+    @Nullable
+    private String lastProcessedEventId;
+
     /**
      * Enumeration of transaction client initiators
      */
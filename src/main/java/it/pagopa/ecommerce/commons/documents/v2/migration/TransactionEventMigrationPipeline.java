@@ -0,0 +1,249 @@
+package it.pagopa.ecommerce.commons.documents.v2.migration;
+
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Streaming bulk migration pipeline that converts v1 event store documents into
+ * v2 ones.
+ * </p>
+ * <p>
+ * Input v1 events must be ordered by transaction id and then by creation date,
+ * as returned by a sorted event store query, since each transaction is upcasted
+ * as a whole (see {@link TransactionEventUpcaster#upcast(List)}). Events are
+ * read in batches of the configured number of transactions, each batch is
+ * upcasted on the input scheduler and then written with the input writer, with
+ * up to the configured parallelism batches in flight at the same time: only
+ * those batches are held in memory.
+ * </p>
+ * <p>
+ * Transactions with events that cannot be upcasted are logged, counted as
+ * failed and skipped, so that no partial transaction is written, while a write
+ * error stops the migration. Upcasted events keep the v1 event id, so an
+ * idempotent writer (e.g. one saving documents by id) allows an interrupted
+ * migration to be safely restarted.
+ * </p>
+ */
+@Slf4j
+public class TransactionEventMigrationPipeline {
+
+    /**
+     * Prefix used for all the metrics exported by this pipeline
+     */
+    public static final String METRIC_PREFIX = "ecommerce.migration.events.";
+
+    private final TransactionEventUpcaster upcaster;
+
+    private final Scheduler scheduler;
+
+    private final int batchSize;
+
+    private final int parallelism;
+
+    private final LongCounter readEvents;
+
+    private final LongCounter migratedEvents;
+
+    private final LongCounter failedEvents;
+
+    private final LongHistogram batchWriteDuration;
+
+    private final DoubleHistogram throughput;
+
+    /**
+     * Migration outcome
+     *
+     * @param read     the number of v1 events read
+     * @param migrated the number of v2 events written, including synthetic events
+     *                 added by the upcaster
+     * @param failed   the number of v1 events that could not be upcasted, all the
+     *                 events of a transaction are skipped when one of them cannot
+     *                 be upcasted
+     * @param elapsed  the migration duration
+     */
+    public record MigrationResult(
+            long read,
+            long migrated,
+            long failed,
+            Duration elapsed
+    ) {
+
+        /**
+         * Get the migration throughput
+         *
+         * @return the number of events migrated per second
+         */
+        public double eventsPerSecond() {
+            return migrated / (Math.max(elapsed.toNanos(), 1) / 1_000_000_000d);
+        }
+    }
+
+    /**
+     * Build a new migration pipeline instance
+     *
+     * @param upcaster    the upcaster used to convert events
+     * @param scheduler   the scheduler on which batches are upcasted
+     * @param batchSize   the number of transactions whose events are read and
+     *                    written together
+     * @param parallelism the max number of batches processed concurrently
+     * @param meter       the meter used to register metrics
+     */
+    public TransactionEventMigrationPipeline(
+            TransactionEventUpcaster upcaster,
+            Scheduler scheduler,
+            int batchSize,
+            int parallelism,
+            Meter meter
+    ) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: [%s], it must be > 0".formatted(batchSize));
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Invalid parallelism: [%s], it must be > 0".formatted(parallelism));
+        }
+        this.upcaster = Objects.requireNonNull(upcaster);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.readEvents = meter.counterBuilder(METRIC_PREFIX + "read")
+                .setDescription("Number of v1 events read")
+                .build();
+        this.migratedEvents = meter.counterBuilder(METRIC_PREFIX + "migrated")
+                .setDescription("Number of v2 events written")
+                .build();
+        this.failedEvents = meter.counterBuilder(METRIC_PREFIX + "failed")
+                .setDescription("Number of v1 events that could not be upcasted")
+                .build();
+        this.batchWriteDuration = meter.histogramBuilder(METRIC_PREFIX + "batch_write_duration")
+                .setDescription("Time taken to write a batch of v2 events")
+                .setUnit("ms")
+                .ofLongs()
+                .build();
+        this.throughput = meter.histogramBuilder(METRIC_PREFIX + "throughput")
+                .setDescription("Migrated events per second, recorded at the end of each migration")
+                .setUnit("{event}/s")
+                .build();
+    }
+
+    /**
+     * Migrate the input v1 events
+     *
+     * @param v1Events the v1 events to be migrated, ordered by transaction id and
+     *                 creation date
+     * @param writer   function used to write a batch of v2 events, the batch is
+     *                 considered written when the returned publisher completes
+     * @return a {@link Mono} emitting the migration outcome
+     */
+    public Mono<MigrationResult> migrate(
+                                         Flux<? extends it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> v1Events,
+                                         Function<List<TransactionEvent<?>>, ? extends Publisher<?>> writer
+    ) {
+        return Mono.defer(() -> {
+            AtomicLong read = new AtomicLong();
+            AtomicLong migrated = new AtomicLong();
+            AtomicLong failed = new AtomicLong();
+            long start = System.nanoTime();
+            return v1Events
+                    .bufferUntilChanged(it.pagopa.ecommerce.commons.documents.v1.TransactionEvent::getTransactionId)
+                    .buffer(batchSize)
+                    .flatMap(
+                            batch -> Mono.fromCallable(() -> upcast(batch, failed))
+                                    .subscribeOn(scheduler)
+                                    .flatMap(upcasted -> write(upcasted, writer))
+                                    .doOnNext(written -> {
+                                        long batchEvents = batch.stream().mapToLong(List::size).sum();
+                                        readEvents.add(batchEvents);
+                                        migratedEvents.add(written);
+                                        log.info(
+                                                "Migration progress: read [{}], migrated [{}], failed [{}] events",
+                                                read.addAndGet(batchEvents),
+                                                migrated.addAndGet(written),
+                                                failed.get()
+                                        );
+                                    }),
+                            parallelism
+                    )
+                    .then(Mono.fromSupplier(() -> complete(read.get(), migrated.get(), failed.get(), start)));
+        });
+    }
+
+    private List<TransactionEvent<?>> upcast(
+                                             List<? extends List<? extends it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>>> batch,
+                                             AtomicLong failed
+    ) {
+        List<TransactionEvent<?>> upcasted = new ArrayList<>();
+        for (List<? extends it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> transactionEvents : batch) {
+            try {
+                upcasted.addAll(upcaster.upcast(transactionEvents));
+            } catch (RuntimeException e) {
+                log.error(
+                        "Error upcasting v1 events for transaction with id: [{}]",
+                        transactionEvents.get(0).getTransactionId(),
+                        e
+                );
+                failed.addAndGet(transactionEvents.size());
+                failedEvents.add(transactionEvents.size());
+            }
+        }
+        return upcasted;
+    }
+
+    private Mono<Long> write(
+                             List<TransactionEvent<?>> upcasted,
+                             Function<List<TransactionEvent<?>>, ? extends Publisher<?>> writer
+    ) {
+        if (upcasted.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Flux.from(writer.apply(upcasted))
+                    .then(
+                            Mono.fromSupplier(() -> {
+                                batchWriteDuration.record(Duration.ofNanos(System.nanoTime() - start).toMillis());
+                                return (long) upcasted.size();
+                            })
+                    );
+        });
+    }
+
+    private MigrationResult complete(
+                                     long read,
+                                     long migrated,
+                                     long failed,
+                                     long start
+    ) {
+        MigrationResult result = new MigrationResult(
+                read,
+                migrated,
+                failed,
+                Duration.ofNanos(System.nanoTime() - start)
+        );
+        throughput.record(result.eventsPerSecond());
+        log.info(
+                "Migration completed: read [{}], migrated [{}], failed [{}] events in [{}] ms ({} events/s)",
+                read,
+                migrated,
+                failed,
+                result.elapsed().toMillis(),
+                "%.1f".formatted(result.eventsPerSecond())
+        );
+        return result;
+    }
+}
@@ -0,0 +1,327 @@
+package it.pagopa.ecommerce.commons.documents.v2.migration;
+
+import it.pagopa.ecommerce.commons.documents.BaseTransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.*;
+import it.pagopa.ecommerce.commons.documents.v2.activation.EmptyTransactionGatewayActivationData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.PgsTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.PgsTransactionGatewayAuthorizationRequestedData;
+import it.pagopa.ecommerce.commons.documents.v2.refund.EmptyGatewayRefundData;
+import it.pagopa.ecommerce.commons.domain.Confidential;
+import it.pagopa.ecommerce.commons.domain.v2.Email;
+import reactor.core.publisher.Flux;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Upcaster that converts v1 event documents
+ * ({@link it.pagopa.ecommerce.commons.documents.v1.TransactionEvent}) into the
+ * equivalent v2 ones ({@link TransactionEvent}), so that consumers can replay a
+ * single v2 model.
+ * </p>
+ * <p>
+ * Upcasted events keep the v1 event id, transaction id, creation date and event
+ * code. Data fields that have no v2 counterpart are dropped, while v2 mandatory
+ * data missing in v1 is filled as follows:
+ * </p>
+ * <ul>
+ * <li>activation: {@link EmptyTransactionGatewayActivationData} gateway data
+ * and no user id</li>
+ * <li>authorization requested:
+ * {@link PgsTransactionGatewayAuthorizationRequestedData} built from the v1
+ * logo and card brand</li>
+ * <li>authorization completed: {@link PgsTransactionGatewayAuthorizationData}
+ * built from the v1 authorization result and error code, so that the
+ * authorization outcome is preserved</li>
+ * <li>refund events: no gateway authorization data and
+ * {@link EmptyGatewayRefundData} gateway refund data</li>
+ * <li>closure error and closure retried events: no closure error data</li>
+ * </ul>
+ * <p>
+ * v1 transactions go from authorization completed straight to the closure
+ * outcome, while v2 aggregates only accept the closure outcome after a
+ * {@link TransactionClosureRequestedEvent}. When upcasting the events of a
+ * transaction, a synthetic closure requested event is therefore emitted right
+ * before the first v1 closure event (closed, closure error or closure failed)
+ * following an authorization completed event. The synthetic event id is derived
+ * from the closure event one, so that upcasting the same events twice produces
+ * the same documents.
+ * </p>
+ * <p>
+ * This class is stateless and thread safe.
+ * </p>
+ */
+public class TransactionEventUpcaster {
+
+    /**
+     * Suffix appended to the v1 closure event id to build the id of the synthetic
+     * closure requested event
+     */
+    public static final String SYNTHETIC_CLOSURE_REQUESTED_ID_SUFFIX = "-closure-requested";
+
+    /**
+     * Upcast the input event. v2 events are returned as they are. This method
+     * converts a single event and never emits synthetic closure requested events,
+     * use {@link #upcast(List)} or {@link #upcast(Flux)} to upcast whole
+     * transactions
+     *
+     * @param event the v1 or v2 event
+     * @return the v2 event
+     * @throws IllegalArgumentException if the input event is neither a v1 nor a v2
+     *                                  transaction event or it cannot be converted
+     */
+    public TransactionEvent<?> upcast(BaseTransactionEvent<?> event) {
+        Objects.requireNonNull(event, "Event to upcast cannot be null");
+        if (event instanceof TransactionEvent<?> v2Event) {
+            return v2Event;
+        }
+        if (event instanceof it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> v1Event) {
+            return upcastV1(v1Event);
+        }
+        throw new IllegalArgumentException(
+                "Unhandled event class: [%s]".formatted(event.getClass())
+        );
+    }
+
+    /**
+     * Upcast the events of a single transaction
+     *
+     * @param transactionEvents the v1 or v2 events of a transaction, ordered by
+     *                          creation date
+     * @return the v2 events, including synthetic closure requested events
+     */
+    public List<TransactionEvent<?>> upcast(List<? extends BaseTransactionEvent<?>> transactionEvents) {
+        UpcastState state = new UpcastState();
+        List<TransactionEvent<?>> upcasted = new ArrayList<>(transactionEvents.size() + 1);
+        for (BaseTransactionEvent<?> event : transactionEvents) {
+            upcasted.addAll(upcast(event, state));
+        }
+        return upcasted;
+    }
+
+    /**
+     * Upcast the input events on read, keeping their order. v2 events are emitted
+     * as they are
+     *
+     * @param events the v1 or v2 events, with the events of each transaction
+     *               contiguous and ordered by creation date
+     * @return a {@link Flux} emitting the v2 events, including synthetic closure
+     *         requested events
+     */
+    public Flux<TransactionEvent<?>> upcast(Flux<? extends BaseTransactionEvent<?>> events) {
+        return Flux.defer(() -> {
+            UpcastState state = new UpcastState();
+            return events.concatMapIterable(event -> upcast(event, state));
+        });
+    }
+
+    private List<TransactionEvent<?>> upcast(
+                                             BaseTransactionEvent<?> event,
+                                             UpcastState state
+    ) {
+        if (!Objects.equals(state.transactionId, event.getTransactionId())) {
+            state.transactionId = event.getTransactionId();
+            state.authorizationCompleted = false;
+            state.closureRequested = false;
+        }
+        TransactionEvent<?> upcasted = upcast(event);
+        if (upcasted instanceof TransactionAuthorizationCompletedEvent) {
+            state.authorizationCompleted = true;
+        } else if (upcasted instanceof TransactionClosureRequestedEvent) {
+            state.closureRequested = true;
+        } else if (isV1ClosureEvent(event) && state.authorizationCompleted && !state.closureRequested) {
+            state.closureRequested = true;
+            return List.of(syntheticClosureRequested(upcasted), upcasted);
+        }
+        return List.of(upcasted);
+    }
+
+    private static boolean isV1ClosureEvent(BaseTransactionEvent<?> event) {
+        return event instanceof it.pagopa.ecommerce.commons.documents.v1.BaseTransactionClosureEvent
+                || event instanceof it.pagopa.ecommerce.commons.documents.v1.TransactionClosureErrorEvent;
+    }
+
+    private static TransactionClosureRequestedEvent syntheticClosureRequested(TransactionEvent<?> closureEvent) {
+        TransactionClosureRequestedEvent closureRequestedEvent = new TransactionClosureRequestedEvent(
+                closureEvent.getTransactionId()
+        );
+        closureRequestedEvent.setId(closureEvent.getId() + SYNTHETIC_CLOSURE_REQUESTED_ID_SUFFIX);
+        // placed right before the closure event when sorting by creation date
+        closureRequestedEvent.setCreationDate(
+                closureEvent.creationDateTime().minus(1, ChronoUnit.MILLIS).toString()
+        );
+        return closureRequestedEvent;
+    }
+
+    private TransactionEvent<?> upcastV1(it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> v1Event) {
+        String transactionId = v1Event.getTransactionId();
+        if (v1Event.getData() == null
+                && !(v1Event instanceof it.pagopa.ecommerce.commons.documents.v1.TransactionUserCanceledEvent)
+                && !(v1Event instanceof it.pagopa.ecommerce.commons.documents.v1.TransactionClosureErrorEvent)) {
+            throw new IllegalArgumentException(
+                    "Missing data for v1 event with id: [%s], event code: [%s]"
+                            .formatted(v1Event.getId(), v1Event.getEventCode())
+            );
+        }
+        TransactionEvent<?> v2Event = switch (v1Event) {
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionActivatedEvent e -> new TransactionActivatedEvent(
+                        transactionId,
+                        e.getCreationDate(),
+                        activatedData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionAuthorizationRequestedEvent e -> new TransactionAuthorizationRequestedEvent(
+                        transactionId,
+                        authorizationRequestData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionAuthorizationCompletedEvent e -> new TransactionAuthorizationCompletedEvent(
+                        transactionId,
+                        authorizationCompletedData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionClosedEvent e -> new TransactionClosedEvent(
+                        transactionId,
+                        closureData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionClosureFailedEvent e -> new TransactionClosureFailedEvent(
+                        transactionId,
+                        closureData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionClosureErrorEvent e -> new TransactionClosureErrorEvent(
+                        transactionId,
+                        null
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionClosureRetriedEvent e -> new TransactionClosureRetriedEvent(
+                        transactionId,
+                        new TransactionClosureRetriedData(null, e.getData().getRetryCount())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionExpiredEvent e -> new TransactionExpiredEvent(
+                        transactionId,
+                        new TransactionExpiredData(e.getData().getStatusBeforeExpiration())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionRefundRequestedEvent e -> new TransactionRefundRequestedEvent(
+                        transactionId,
+                        new TransactionRefundRequestedData(null, e.getData().getStatusBeforeRefunded())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionRefundErrorEvent e -> new TransactionRefundErrorEvent(
+                        transactionId,
+                        new TransactionRefundErrorData(e.getData().getStatusBeforeRefunded())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionRefundRetriedEvent e -> new TransactionRefundRetriedEvent(
+                        transactionId,
+                        new TransactionRefundRetriedData(null, e.getData().getRetryCount())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionRefundedEvent e -> new TransactionRefundedEvent(
+                        transactionId,
+                        new TransactionRefundedData(new EmptyGatewayRefundData(), e.getData().getStatusBeforeRefunded())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionUserCanceledEvent e -> new TransactionUserCanceledEvent(
+                        transactionId
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionUserReceiptRequestedEvent e -> new TransactionUserReceiptRequestedEvent(
+                        transactionId,
+                        userReceiptData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionUserReceiptAddedEvent e -> new TransactionUserReceiptAddedEvent(
+                        transactionId,
+                        userReceiptData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionUserReceiptAddErrorEvent e -> new TransactionUserReceiptAddErrorEvent(
+                        transactionId,
+                        userReceiptData(e.getData())
+                );
+                case it.pagopa.ecommerce.commons.documents.v1.TransactionUserReceiptAddRetriedEvent e -> new TransactionUserReceiptAddRetriedEvent(
+                        transactionId,
+                        new TransactionRetriedData(e.getData().getRetryCount())
+                );
+        };
+        v2Event.setId(v1Event.getId());
+        v2Event.setCreationDate(v1Event.getCreationDate());
+        return v2Event;
+    }
+
+    private static TransactionActivatedData activatedData(
+                                                          it.pagopa.ecommerce.commons.documents.v1.TransactionActivatedData data
+    ) {
+        return new TransactionActivatedData(
+                data.getEmail() == null ? null : new Confidential<Email>(data.getEmail().opaqueData()),
+                data.getPaymentNotices(),
+                data.getFaultCode(),
+                data.getFaultCodeString(),
+                data.getClientId() == null ? null : Transaction.ClientId.valueOf(data.getClientId().name()),
+                data.getIdCart(),
+                data.getPaymentTokenValiditySeconds(),
+                new EmptyTransactionGatewayActivationData(),
+                null
+        );
+    }
+
+    private static TransactionAuthorizationRequestData authorizationRequestData(
+                                                                                it.pagopa.ecommerce.commons.documents.v1.TransactionAuthorizationRequestData data
+    ) {
+        return new TransactionAuthorizationRequestData(
+                data.getAmount(),
+                data.getFee(),
+                data.getPaymentInstrumentId(),
+                data.getPspId(),
+                data.getPaymentTypeCode(),
+                data.getBrokerName(),
+                data.getPspChannelCode(),
+                data.getPaymentMethodName(),
+                data.getPspBusinessName(),
+                data.isPspOnUs(),
+                data.getAuthorizationRequestId(),
+                data.getPaymentGateway() == null ? null
+                        : TransactionAuthorizationRequestData.PaymentGateway.valueOf(data.getPaymentGateway().name()),
+                data.getPaymentMethodDescription(),
+                new PgsTransactionGatewayAuthorizationRequestedData(
+                        data.getLogo(),
+                        data.getBrand() == null ? null
+                                : PgsTransactionGatewayAuthorizationRequestedData.CardBrand
+                                        .valueOf(data.getBrand().name())
+                ),
+                null,
+                null
+        );
+    }
+
+    private static TransactionAuthorizationCompletedData authorizationCompletedData(
+                                                                                    it.pagopa.ecommerce.commons.documents.v1.TransactionAuthorizationCompletedData data
+    ) {
+        return new TransactionAuthorizationCompletedData(
+                data.getAuthorizationCode(),
+                data.getRrn(),
+                data.getTimestampOperation(),
+                new PgsTransactionGatewayAuthorizationData(data.getErrorCode(), data.getAuthorizationResultDto())
+        );
+    }
+
+    private static TransactionClosureData closureData(
+                                                      it.pagopa.ecommerce.commons.documents.v1.TransactionClosureData data
+    ) {
+        return new TransactionClosureData(
+                TransactionClosureData.Outcome.valueOf(data.getResponseOutcome().name()),
+                null
+        );
+    }
+
+    private static TransactionUserReceiptData userReceiptData(
+                                                              it.pagopa.ecommerce.commons.documents.v1.TransactionUserReceiptData data
+    ) {
+        return new TransactionUserReceiptData(
+                TransactionUserReceiptData.Outcome.valueOf(data.getResponseOutcome().name()),
+                data.getLanguage(),
+                data.getPaymentDate()
+        );
+    }
+
+    /**
+     * Upcast state of the transaction being upcasted
+     */
+    private static final class UpcastState {
+        private String transactionId;
+        private boolean authorizationCompleted;
+        private boolean closureRequested;
+    }
+}
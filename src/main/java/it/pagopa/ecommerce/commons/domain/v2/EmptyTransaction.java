@@ -3,7 +3,6 @@ package it.pagopa.ecommerce.commons.domain.v2;
 import it.pagopa.ecommerce.commons.documents.v2.TransactionActivatedEvent;
 import lombok.EqualsAndHashCode;
 
-import java.time.ZonedDateTime;
 import java.util.stream.Collectors;
 
 /**
@@ -65,7 +64,7 @@ public final class EmptyTransaction implements Transaction {
                 event.getData().getEmail(),
                 event.getData().getFaultCode(),
                 event.getData().getFaultCodeString(),
-                ZonedDateTime.parse(event.getCreationDate()),
+                event.creationDateTime(),
                 event.getData().getClientId(),
                 event.getData().getIdCart(),
                 event.getData().getPaymentTokenValiditySeconds(),
@@ -2,6 +2,7 @@ package it.pagopa.ecommerce.commons.domain.v2.pojos;
 
 import it.pagopa.ecommerce.commons.documents.v2.TransactionExpiredData;
 import it.pagopa.ecommerce.commons.documents.v2.TransactionExpiredEvent;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -27,6 +28,7 @@ import lombok.experimental.FieldDefaults;
 @Getter
 public abstract class BaseTransactionExpired extends BaseTransactionWithRequestedAuthorization {
     TransactionExpiredData transactionExpiredData;
+    @ToString.Exclude
     BaseTransactionWithRequestedAuthorization transactionAtPreviousState;
 
     /**
@@ -47,4 +49,15 @@ public abstract class BaseTransactionExpired extends BaseTransactionWithRequeste
         this.transactionExpiredData = transactionExpiredData;
         this.transactionAtPreviousState = baseTransaction;
     }
+
+    /**
+     * Status of the previous state, printed by {@code toString} instead of the
+     * whole previous-state chain
+     *
+     * @return the previous state status
+     */
+    @ToString.Include(name = "transactionAtPreviousState")
+    private TransactionStatusDto previousStateStatus() {
+        return transactionAtPreviousState.getStatus();
+    }
 }
@@ -1,6 +1,7 @@
 package it.pagopa.ecommerce.commons.domain.v2.pojos;
 
 import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureErrorEvent;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -23,6 +24,7 @@ import lombok.experimental.FieldDefaults;
 @Getter
 public abstract class BaseTransactionWithClosureError extends BaseTransactionWithPaymentToken {
 
+    @ToString.Exclude
     BaseTransaction transactionAtPreviousState;
 
     TransactionClosureErrorEvent transactionClosureErrorEvent;
@@ -44,4 +46,15 @@ public abstract class BaseTransactionWithClosureError extends BaseTransactionWit
         this.transactionAtPreviousState = baseTransaction;
         this.transactionClosureErrorEvent = event;
     }
+
+    /**
+     * Status of the previous state, printed by {@code toString} instead of the
+     * whole previous-state chain
+     *
+     * @return the previous state status
+     */
+    @ToString.Include(name = "transactionAtPreviousState")
+    private TransactionStatusDto previousStateStatus() {
+        return transactionAtPreviousState.getStatus();
+    }
 }
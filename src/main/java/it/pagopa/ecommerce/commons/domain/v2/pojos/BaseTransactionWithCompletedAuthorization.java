@@ -55,8 +55,20 @@ public abstract class BaseTransactionWithCompletedAuthorization extends BaseTran
      * @return true iff the transaction was authorized
      */
     public boolean wasTransactionAuthorized() {
-        TransactionGatewayAuthorizationData data = this.getTransactionAuthorizationCompletedData()
-                .getTransactionGatewayAuthorizationData();
+        return wasTransactionAuthorized(
+                this.getTransactionAuthorizationCompletedData().getTransactionGatewayAuthorizationData()
+        );
+    }
+
+    /**
+     * Check if the input gateway authorization data reports a successful
+     * authorization for the gateway it belongs to
+     *
+     * @param data the gateway authorization data
+     * @return true iff the gateway authorization data reports a successful
+     *         authorization
+     */
+    public static boolean wasTransactionAuthorized(TransactionGatewayAuthorizationData data) {
         if (data instanceof PgsTransactionGatewayAuthorizationData p) {
             return p.getAuthorizationResultDto().equals(AuthorizationResultDto.OK);
         } else if (data instanceof NpgTransactionGatewayAuthorizationData n) {
@@ -50,28 +50,7 @@ public abstract class BaseTransactionWithPaymentToken extends BaseTransaction {
     ) {
         super(
                 baseTransaction.getTransactionId(),
-                transactionActivatedData.getPaymentNotices().stream()
-                        .map(
-                                noticeCode -> new PaymentNotice(
-                                        new PaymentToken(noticeCode.getPaymentToken()),
-                                        new RptId(noticeCode.getRptId()),
-                                        new TransactionAmount(noticeCode.getAmount()),
-                                        new TransactionDescription(noticeCode.getDescription()),
-                                        new PaymentContextCode(noticeCode.getPaymentContextCode()),
-                                        noticeCode.getTransferList().stream()
-                                                .map(
-                                                        tx -> new PaymentTransferInfo(
-                                                                tx.getPaFiscalCode(),
-                                                                tx.getDigitalStamp(),
-                                                                tx.getTransferAmount(),
-                                                                tx.getTransferCategory()
-                                                        )
-                                                ).toList(),
-                                        noticeCode.isAllCCP(),
-                                        new CompanyName(noticeCode.getCompanyName()),
-                                        noticeCode.getCreditorReferenceId()
-                                )
-                        ).toList(),
+                paymentNoticesOf(baseTransaction, transactionActivatedData),
                 baseTransaction.getEmail(),
                 baseTransaction.getCreationDate(),
                 baseTransaction.getClientId()
@@ -107,4 +86,46 @@ public abstract class BaseTransactionWithPaymentToken extends BaseTransaction {
         );
         this.transactionActivatedData = transactionActivatedData;
     }
+
+    /**
+     * Get the domain payment notices for the input activation data. When the base
+     * transaction was already built from the same activation data its (immutable)
+     * payment notices are shared instead of being rebuilt, so that state
+     * transitions do not duplicate them
+     *
+     * @param baseTransaction          base transaction to be extended
+     * @param transactionActivatedData data generated with the activation event
+     * @return the payment notices
+     */
+    private static List<PaymentNotice> paymentNoticesOf(
+                                                        BaseTransaction baseTransaction,
+                                                        TransactionActivatedData transactionActivatedData
+    ) {
+        if (baseTransaction instanceof BaseTransactionWithPaymentToken transactionWithPaymentToken
+                && transactionWithPaymentToken.getTransactionActivatedData() == transactionActivatedData) {
+            return baseTransaction.getPaymentNotices();
+        }
+        return transactionActivatedData.getPaymentNotices().stream()
+                .map(
+                        noticeCode -> new PaymentNotice(
+                                new PaymentToken(noticeCode.getPaymentToken()),
+                                new RptId(noticeCode.getRptId()),
+                                new TransactionAmount(noticeCode.getAmount()),
+                                new TransactionDescription(noticeCode.getDescription()),
+                                new PaymentContextCode(noticeCode.getPaymentContextCode()),
+                                noticeCode.getTransferList().stream()
+                                        .map(
+                                                tx -> new PaymentTransferInfo(
+                                                        tx.getPaFiscalCode(),
+                                                        tx.getDigitalStamp(),
+                                                        tx.getTransferAmount(),
+                                                        tx.getTransferCategory()
+                                                )
+                                        ).toList(),
+                                noticeCode.isAllCCP(),
+                                new CompanyName(noticeCode.getCompanyName()),
+                                noticeCode.getCreditorReferenceId()
+                        )
+                ).toList();
+    }
 }
@@ -1,6 +1,7 @@
 package it.pagopa.ecommerce.commons.domain.v2.pojos;
 
 import it.pagopa.ecommerce.commons.documents.v2.authorization.TransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -23,6 +24,7 @@ import java.util.Optional;
 @Getter
 public abstract class BaseTransactionWithRefundRequested extends BaseTransactionWithRequestedAuthorization {
 
+    @ToString.Exclude
     BaseTransactionWithRequestedAuthorization transactionAtPreviousState;
     @Nullable
     TransactionGatewayAuthorizationData refundRequestedAuthorizationGatewayData;
@@ -76,4 +78,15 @@ public abstract class BaseTransactionWithRefundRequested extends BaseTransaction
         }
         return optionalGatewayData;
     }
+
+    /**
+     * Status of the previous state, printed by {@code toString} instead of the
+     * whole previous-state chain
+     *
+     * @return the previous state status
+     */
+    @ToString.Include(name = "transactionAtPreviousState")
+    private TransactionStatusDto previousStateStatus() {
+        return transactionAtPreviousState.getStatus();
+    }
 }
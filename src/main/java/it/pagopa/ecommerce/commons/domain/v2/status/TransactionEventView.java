@@ -0,0 +1,98 @@
+package it.pagopa.ecommerce.commons.domain.v2.status;
+
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationCompletedData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.domain.v2.TransactionEventCode;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithCompletedAuthorization;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Minimal, read-only view over a transaction event exposing only the fields
+ * needed by {@link TransactionStatusReducer} to compute the transaction status.
+ * </p>
+ * <p>
+ * Event data fields are read lazily: the reducer only asks for them when the
+ * event code and the current status make them relevant for the transition.
+ * </p>
+ */
+public interface TransactionEventView {
+
+    /**
+     * Get the event code
+     *
+     * @return the event code
+     */
+    TransactionEventCode eventCode();
+
+    /**
+     * Get the authorization outcome carried by an authorization completed event
+     *
+     * @return true iff the gateway authorization data reports a successful
+     *         authorization
+     */
+    boolean wasAuthorized();
+
+    /**
+     * Get the Nodo closePayment outcome carried by a closure event
+     *
+     * @return the closure outcome, if any
+     */
+    @Nullable
+    TransactionClosureData.Outcome closureOutcome();
+
+    /**
+     * Get the Nodo sendPaymentResult outcome carried by a user receipt event
+     *
+     * @return the user receipt outcome, if any
+     */
+    @Nullable
+    TransactionUserReceiptData.Outcome userReceiptOutcome();
+
+    /**
+     * Create a view over the input transaction event
+     *
+     * @param event the transaction event
+     * @return the event view
+     */
+    static TransactionEventView of(TransactionEvent<?> event) {
+        return new EventBackedView(Objects.requireNonNull(event, "Transaction event cannot be null"));
+    }
+
+    /**
+     * {@link TransactionEventView} backed by an already deserialized
+     * {@link TransactionEvent}
+     *
+     * @param event the backing event
+     */
+    record EventBackedView(TransactionEvent<?> event)
+            implements
+            TransactionEventView {
+
+        @Override
+        public TransactionEventCode eventCode() {
+            return TransactionEventCode.valueOf(event.getEventCode());
+        }
+
+        @Override
+        public boolean wasAuthorized() {
+            return event.getData()instanceof TransactionAuthorizationCompletedData data
+                    && BaseTransactionWithCompletedAuthorization
+                            .wasTransactionAuthorized(data.getTransactionGatewayAuthorizationData());
+        }
+
+        @Override
+        public TransactionClosureData.Outcome closureOutcome() {
+            return event.getData()instanceof TransactionClosureData data ? data.getResponseOutcome() : null;
+        }
+
+        @Override
+        public TransactionUserReceiptData.Outcome userReceiptOutcome() {
+            return event.getData()instanceof TransactionUserReceiptData data ? data.getResponseOutcome() : null;
+        }
+    }
+}
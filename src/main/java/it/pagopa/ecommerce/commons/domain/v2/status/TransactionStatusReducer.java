@@ -0,0 +1,447 @@
+package it.pagopa.ecommerce.commons.domain.v2.status;
+
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.domain.v2.TransactionEventCode;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>
+ * Status-only fold of a transaction event stream.
+ * </p>
+ * <p>
+ * This reducer computes the same status the full aggregate computes through
+ * {@link it.pagopa.ecommerce.commons.domain.v2.Transaction#applyEvent(Object)},
+ * together with the authorization and closure outcomes, without building any
+ * aggregate: no payment notices conversion nor date parsing is performed and
+ * only the event code and a few event data fields are read, through
+ * {@link TransactionEventView}.
+ * </p>
+ * <p>
+ * Transitions mirror the ones implemented by the v2 aggregates (see also
+ * {@code specs/v2/state_machine.js}): events that are not valid for the current
+ * status are ignored, as the aggregates do. Instances are mutable and not
+ * thread safe, a new reducer must be used for each event stream.
+ * </p>
+ */
+public final class TransactionStatusReducer {
+
+    /**
+     * Statuses whose aggregate is a
+     * {@link it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithClosureRequested}
+     */
+    private static final Set<TransactionStatusDto> CLOSURE_REQUESTED_STATUSES = EnumSet.of(
+            TransactionStatusDto.CLOSURE_REQUESTED,
+            TransactionStatusDto.CLOSED,
+            TransactionStatusDto.NOTIFICATION_REQUESTED,
+            TransactionStatusDto.NOTIFICATION_ERROR,
+            TransactionStatusDto.NOTIFIED_KO
+    );
+
+    /**
+     * Statuses whose aggregate is a
+     * {@link it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionClosed}
+     */
+    private static final Set<TransactionStatusDto> CLOSED_STATUSES = EnumSet.of(
+            TransactionStatusDto.CLOSED,
+            TransactionStatusDto.NOTIFICATION_REQUESTED,
+            TransactionStatusDto.NOTIFICATION_ERROR,
+            TransactionStatusDto.NOTIFIED_KO
+    );
+
+    /**
+     * Statuses whose aggregate is a
+     * {@link it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithRequestedUserReceipt}
+     */
+    private static final Set<TransactionStatusDto> USER_RECEIPT_REQUESTED_STATUSES = EnumSet.of(
+            TransactionStatusDto.NOTIFICATION_REQUESTED,
+            TransactionStatusDto.NOTIFICATION_ERROR,
+            TransactionStatusDto.NOTIFIED_KO
+    );
+
+    @Nullable
+    private TransactionStatusDto status;
+
+    /**
+     * Status of the aggregate wrapped by expired and closure error aggregates
+     */
+    @Nullable
+    private TransactionStatusDto previousStatus;
+
+    @Nullable
+    private Boolean wasAuthorized;
+
+    @Nullable
+    private TransactionClosureData.Outcome closureOutcome;
+
+    @Nullable
+    private TransactionUserReceiptData.Outcome userReceiptOutcome;
+
+    /**
+     * Statuses whose transitions depend on the status of the aggregate they wrap,
+     * that cannot be resumed without replaying the events that led to them
+     */
+    private static final Set<TransactionStatusDto> NOT_RESUMABLE_STATUSES = EnumSet.of(
+            TransactionStatusDto.CLOSURE_ERROR,
+            TransactionStatusDto.EXPIRED
+    );
+
+    /**
+     * Build a reducer resuming from a previously computed status, so that only the
+     * events following that status have to be applied. Expired and closure error
+     * statuses cannot be resumed, since their transitions depend on the status
+     * preceding them. The closure outcome of the returned reducer snapshots is only
+     * set by closure events applied after resuming.
+     *
+     * @param status             the status to resume from
+     * @param wasAuthorized      the authorization outcome, {@code null} if the
+     *                           authorization was not completed
+     * @param userReceiptOutcome the outcome of the last user receipt requested or
+     *                           user receipt error event, if any
+     * @return the resumed reducer, empty if the input status cannot be resumed
+     */
+    public static Optional<TransactionStatusReducer> resume(
+                                                            TransactionStatusDto status,
+                                                            @Nullable Boolean wasAuthorized,
+                                                            @Nullable TransactionUserReceiptData.Outcome userReceiptOutcome
+    ) {
+        if (status == null || NOT_RESUMABLE_STATUSES.contains(status)) {
+            return Optional.empty();
+        }
+        TransactionStatusReducer reducer = new TransactionStatusReducer();
+        reducer.status = status;
+        reducer.wasAuthorized = wasAuthorized;
+        reducer.userReceiptOutcome = userReceiptOutcome;
+        return Optional.of(reducer);
+    }
+
+    /**
+     * Reduce the input events to the transaction status
+     *
+     * @param events the transaction events, in order
+     * @return the transaction status, empty if no activation event was found
+     */
+    public static Optional<TransactionStatusSnapshot> reduce(Iterable<? extends TransactionEvent<?>> events) {
+        TransactionStatusReducer reducer = new TransactionStatusReducer();
+        for (TransactionEvent<?> event : events) {
+            reducer.apply(event);
+        }
+        return reducer.snapshot();
+    }
+
+    /**
+     * Reduce the input events to the transaction status
+     *
+     * @param events the transaction events, in order
+     * @return a {@link Mono} emitting the transaction status, empty if no
+     *         activation event was found
+     */
+    public static Mono<TransactionStatusSnapshot> reduce(Flux<? extends TransactionEvent<?>> events) {
+        return events
+                .reduceWith(TransactionStatusReducer::new, TransactionStatusReducer::apply)
+                .flatMap(reducer -> Mono.justOrEmpty(reducer.snapshot()));
+    }
+
+    /**
+     * Apply the input event
+     *
+     * @param event the event to apply
+     * @return this reducer
+     */
+    public TransactionStatusReducer apply(TransactionEvent<?> event) {
+        return apply(TransactionEventView.of(event));
+    }
+
+    /**
+     * Apply the input event view
+     *
+     * @param event the event to apply
+     * @return this reducer
+     */
+    public TransactionStatusReducer apply(TransactionEventView event) {
+        TransactionEventCode eventCode = event.eventCode();
+        if (status == null) {
+            if (eventCode == TransactionEventCode.TRANSACTION_ACTIVATED_EVENT) {
+                status = TransactionStatusDto.ACTIVATED;
+            }
+            return this;
+        }
+        switch (status) {
+            case ACTIVATED -> applyToActivated(eventCode);
+            case AUTHORIZATION_REQUESTED -> applyToAuthorizationRequested(eventCode, event);
+            case AUTHORIZATION_COMPLETED -> applyToAuthorizationCompleted(eventCode);
+            case CLOSURE_REQUESTED -> applyToClosureRequested(eventCode, event);
+            case CLOSURE_ERROR -> applyToClosureError(eventCode, event);
+            case CANCELLATION_REQUESTED -> applyToCancellationRequested(eventCode, event);
+            case CLOSED -> applyToClosed(eventCode, event);
+            case EXPIRED -> applyToExpired(eventCode, event);
+            case NOTIFICATION_REQUESTED -> applyToNotificationRequested(eventCode, event);
+            case NOTIFICATION_ERROR -> applyToNotificationError(eventCode, event);
+            case NOTIFIED_KO -> applyToNotifiedKo(eventCode);
+            case REFUND_REQUESTED, REFUND_ERROR -> applyToRefundRequested(eventCode);
+            default -> {
+                // final statuses: no transition allowed
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Get the current transaction status
+     *
+     * @return the transaction status, empty if no activation event was applied
+     */
+    public Optional<TransactionStatusSnapshot> snapshot() {
+        return Optional.ofNullable(status)
+                .map(s -> new TransactionStatusSnapshot(s, wasAuthorized, closureOutcome));
+    }
+
+    private void applyToActivated(TransactionEventCode eventCode) {
+        switch (eventCode) {
+            case TRANSACTION_AUTHORIZATION_REQUESTED_EVENT -> status = TransactionStatusDto.AUTHORIZATION_REQUESTED;
+            case TRANSACTION_EXPIRED_EVENT -> status = TransactionStatusDto.EXPIRED_NOT_AUTHORIZED;
+            case TRANSACTION_USER_CANCELED_EVENT -> status = TransactionStatusDto.CANCELLATION_REQUESTED;
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToAuthorizationRequested(
+                                               TransactionEventCode eventCode,
+                                               TransactionEventView event
+    ) {
+        switch (eventCode) {
+            case TRANSACTION_AUTHORIZATION_COMPLETED_EVENT -> {
+                wasAuthorized = event.wasAuthorized();
+                status = TransactionStatusDto.AUTHORIZATION_COMPLETED;
+            }
+            case TRANSACTION_EXPIRED_EVENT -> expire(status);
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToAuthorizationCompleted(TransactionEventCode eventCode) {
+        switch (eventCode) {
+            case TRANSACTION_CLOSURE_REQUESTED_EVENT -> status = TransactionStatusDto.CLOSURE_REQUESTED;
+            case TRANSACTION_EXPIRED_EVENT -> expire(status);
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToClosureRequested(
+                                         TransactionEventCode eventCode,
+                                         TransactionEventView event
+    ) {
+        boolean authorized = Boolean.TRUE.equals(wasAuthorized);
+        switch (eventCode) {
+            case TRANSACTION_CLOSED_EVENT, TRANSACTION_CLOSURE_SYNTHETIC_EVENT -> {
+                if (authorized) {
+                    close(TransactionStatusDto.CLOSED, event);
+                }
+            }
+            case TRANSACTION_CLOSURE_ERROR_EVENT -> {
+                previousStatus = status;
+                status = TransactionStatusDto.CLOSURE_ERROR;
+            }
+            case TRANSACTION_CLOSURE_FAILED_EVENT -> {
+                if (!authorized) {
+                    close(TransactionStatusDto.UNAUTHORIZED, event);
+                }
+            }
+            case TRANSACTION_EXPIRED_EVENT -> expire(status);
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToClosureError(
+                                     TransactionEventCode eventCode,
+                                     TransactionEventView event
+    ) {
+        if (previousStatus == TransactionStatusDto.CANCELLATION_REQUESTED) {
+            switch (eventCode) {
+                case TRANSACTION_CLOSED_EVENT -> close(TransactionStatusDto.CANCELED, event);
+                case TRANSACTION_EXPIRED_EVENT -> status = TransactionStatusDto.CANCELLATION_EXPIRED;
+                default -> {
+                    // event ignored
+                }
+            }
+            return;
+        }
+        boolean authorized = Boolean.TRUE.equals(wasAuthorized);
+        switch (eventCode) {
+            case TRANSACTION_CLOSED_EVENT, TRANSACTION_CLOSURE_SYNTHETIC_EVENT -> {
+                if (authorized) {
+                    close(TransactionStatusDto.CLOSED, event);
+                }
+            }
+            case TRANSACTION_EXPIRED_EVENT -> expire(previousStatus);
+            case TRANSACTION_REFUND_REQUESTED_EVENT -> status = TransactionStatusDto.REFUND_REQUESTED;
+            case TRANSACTION_CLOSURE_FAILED_EVENT -> {
+                if (!authorized) {
+                    close(TransactionStatusDto.UNAUTHORIZED, event);
+                }
+            }
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToCancellationRequested(
+                                              TransactionEventCode eventCode,
+                                              TransactionEventView event
+    ) {
+        switch (eventCode) {
+            case TRANSACTION_CLOSED_EVENT -> close(TransactionStatusDto.CANCELED, event);
+            case TRANSACTION_CLOSURE_ERROR_EVENT -> {
+                previousStatus = status;
+                status = TransactionStatusDto.CLOSURE_ERROR;
+            }
+            case TRANSACTION_EXPIRED_EVENT -> status = TransactionStatusDto.CANCELLATION_EXPIRED;
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToClosed(
+                               TransactionEventCode eventCode,
+                               TransactionEventView event
+    ) {
+        switch (eventCode) {
+            case TRANSACTION_EXPIRED_EVENT -> expire(status);
+            case TRANSACTION_REFUND_REQUESTED_EVENT -> status = TransactionStatusDto.REFUND_REQUESTED;
+            case TRANSACTION_USER_RECEIPT_REQUESTED_EVENT -> requestUserReceipt(event);
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToExpired(
+                                TransactionEventCode eventCode,
+                                TransactionEventView event
+    ) {
+        switch (eventCode) {
+            case TRANSACTION_REFUND_REQUESTED_EVENT -> status = TransactionStatusDto.REFUND_REQUESTED;
+            case TRANSACTION_CLOSURE_SYNTHETIC_EVENT -> {
+                if (CLOSURE_REQUESTED_STATUSES.contains(previousStatus) && Boolean.TRUE.equals(wasAuthorized)) {
+                    close(TransactionStatusDto.CLOSED, event);
+                }
+            }
+            case TRANSACTION_USER_RECEIPT_REQUESTED_EVENT -> {
+                if (CLOSED_STATUSES.contains(previousStatus)) {
+                    requestUserReceipt(event);
+                }
+            }
+            case TRANSACTION_USER_RECEIPT_ADDED_EVENT -> {
+                if (USER_RECEIPT_REQUESTED_STATUSES.contains(previousStatus)) {
+                    addUserReceipt(event);
+                }
+            }
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToNotificationRequested(
+                                              TransactionEventCode eventCode,
+                                              TransactionEventView event
+    ) {
+        switch (eventCode) {
+            case TRANSACTION_USER_RECEIPT_ADDED_EVENT -> addUserReceipt(event);
+            case TRANSACTION_EXPIRED_EVENT -> expire(status);
+            case TRANSACTION_ADD_USER_RECEIPT_ERROR_EVENT -> {
+                userReceiptOutcome = event.userReceiptOutcome();
+                status = TransactionStatusDto.NOTIFICATION_ERROR;
+            }
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToNotificationError(
+                                          TransactionEventCode eventCode,
+                                          TransactionEventView event
+    ) {
+        switch (eventCode) {
+            case TRANSACTION_USER_RECEIPT_ADDED_EVENT -> addUserReceipt(event);
+            case TRANSACTION_EXPIRED_EVENT -> expire(status);
+            case TRANSACTION_REFUND_REQUESTED_EVENT -> {
+                if (userReceiptOutcome == TransactionUserReceiptData.Outcome.KO) {
+                    status = TransactionStatusDto.REFUND_REQUESTED;
+                }
+            }
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToNotifiedKo(TransactionEventCode eventCode) {
+        switch (eventCode) {
+            case TRANSACTION_REFUND_REQUESTED_EVENT -> status = TransactionStatusDto.REFUND_REQUESTED;
+            case TRANSACTION_EXPIRED_EVENT -> expire(status);
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void applyToRefundRequested(TransactionEventCode eventCode) {
+        switch (eventCode) {
+            case TRANSACTION_REFUNDED_EVENT -> status = TransactionStatusDto.REFUNDED;
+            case TRANSACTION_REFUND_ERROR_EVENT, TRANSACTION_REFUND_RETRIED_EVENT -> {
+                // refund retried is only accepted while in refund error
+                if (eventCode == TransactionEventCode.TRANSACTION_REFUND_ERROR_EVENT
+                        || status == TransactionStatusDto.REFUND_ERROR) {
+                    status = TransactionStatusDto.REFUND_ERROR;
+                }
+            }
+            default -> {
+                // event ignored
+            }
+        }
+    }
+
+    private void expire(@Nullable TransactionStatusDto wrappedStatus) {
+        previousStatus = wrappedStatus;
+        status = TransactionStatusDto.EXPIRED;
+    }
+
+    private void close(
+                       TransactionStatusDto closedStatus,
+                       TransactionEventView event
+    ) {
+        closureOutcome = event.closureOutcome();
+        status = closedStatus;
+    }
+
+    private void requestUserReceipt(TransactionEventView event) {
+        userReceiptOutcome = event.userReceiptOutcome();
+        status = TransactionStatusDto.NOTIFICATION_REQUESTED;
+    }
+
+    private void addUserReceipt(TransactionEventView event) {
+        status = event.userReceiptOutcome() == TransactionUserReceiptData.Outcome.OK
+                ? TransactionStatusDto.NOTIFIED_OK
+                : TransactionStatusDto.NOTIFIED_KO;
+    }
+}
@@ -0,0 +1,36 @@
+package it.pagopa.ecommerce.commons.domain.v2.status;
+
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureData;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * Lightweight transaction status computed by {@link TransactionStatusReducer}
+ * without building the full transaction aggregate
+ *
+ * @param status         the transaction status
+ * @param wasAuthorized  the authorization outcome, {@code null} if the
+ *                       authorization was not completed
+ * @param closureOutcome the Nodo closePayment outcome that closed the
+ *                       transaction, {@code null} if the transaction was not
+ *                       closed
+ */
+public record TransactionStatusSnapshot(
+        TransactionStatusDto status,
+        @Nullable Boolean wasAuthorized,
+        @Nullable TransactionClosureData.Outcome closureOutcome
+) {
+
+    /**
+     * Compact constructor
+     *
+     * @param status         the transaction status
+     * @param wasAuthorized  the authorization outcome
+     * @param closureOutcome the closure outcome
+     */
+    public TransactionStatusSnapshot {
+        Objects.requireNonNull(status, "Transaction status cannot be null");
+    }
+}
@@ -0,0 +1,41 @@
+package it.pagopa.ecommerce.commons.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Exception thrown when a request to an external service is rejected because
+ * both the client-side concurrency limit and the waiting queue are exhausted
+ */
+@Getter
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    /**
+     * The limited client name
+     */
+    private final String clientName;
+
+    /**
+     * The limited key
+     */
+    private final String key;
+
+    /**
+     * Constructor
+     *
+     * @param clientName the limited client name
+     * @param key        the limited key
+     * @param limit      the concurrency limit at rejection time
+     */
+    public ConcurrencyLimitExceededException(
+            String clientName,
+            String key,
+            int limit
+    ) {
+        super(
+                "Concurrency limit exceeded for client [%s], key [%s]: limit [%s] reached and queue full"
+                        .formatted(clientName, key, limit)
+        );
+        this.clientName = clientName;
+        this.key = key;
+    }
+}
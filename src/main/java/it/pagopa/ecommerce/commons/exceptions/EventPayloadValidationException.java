@@ -0,0 +1,54 @@
+package it.pagopa.ecommerce.commons.exceptions;
+
+import java.util.List;
+
+/**
+ * Exception thrown when an event payload does not conform to its JSON schema
+ *
+ * @see it.pagopa.ecommerce.commons.queues.EventPayloadSchemaValidator
+ */
+public class EventPayloadValidationException extends RuntimeException {
+
+    /**
+     * Name of the schema the payload was validated against
+     */
+    private final String schemaName;
+
+    /**
+     * Schema violations found in the payload
+     */
+    private final List<String> violations;
+
+    /**
+     * Exception constructor
+     *
+     * @param schemaName the name of the schema the payload was validated against
+     * @param violations the schema violations found in the payload
+     */
+    public EventPayloadValidationException(
+            String schemaName,
+            List<String> violations
+    ) {
+        super("Event payload does not conform to schema [%s]: %s".formatted(schemaName, violations));
+        this.schemaName = schemaName;
+        this.violations = List.copyOf(violations);
+    }
+
+    /**
+     * Schema name getter
+     *
+     * @return the name of the schema the payload was validated against
+     */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /**
+     * Violations getter
+     *
+     * @return the schema violations found in the payload
+     */
+    public List<String> getViolations() {
+        return violations;
+    }
+}
@@ -0,0 +1,59 @@
+package it.pagopa.ecommerce.commons.exceptions;
+
+/**
+ * Exception thrown when events cannot be appended to a transaction event stream
+ * because the stream has been modified since the expected version was read
+ *
+ * @see it.pagopa.ecommerce.commons.repositories.TransactionEventStoreRepository
+ */
+public class EventStoreConcurrencyException extends RuntimeException {
+
+    /**
+     * The transaction whose events could not be appended
+     */
+    private final String transactionId;
+
+    /**
+     * The stream version expected by the writer
+     */
+    private final long expectedVersion;
+
+    /**
+     * Exception constructor
+     *
+     * @param transactionId   the transaction whose events could not be appended
+     * @param expectedVersion the stream version expected by the writer
+     * @param cause           the underlying write error
+     */
+    public EventStoreConcurrencyException(
+            String transactionId,
+            long expectedVersion,
+            Throwable cause
+    ) {
+        super(
+                "Concurrent modification of event stream for transaction with id: [%s], expected version: [%s]"
+                        .formatted(transactionId, expectedVersion),
+                cause
+        );
+        this.transactionId = transactionId;
+        this.expectedVersion = expectedVersion;
+    }
+
+    /**
+     * Transaction id getter
+     *
+     * @return the transaction whose events could not be appended
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Expected version getter
+     *
+     * @return the stream version expected by the writer
+     */
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+}
@@ -0,0 +1,107 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationCompletedData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.NpgTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.RedirectTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterNpgTransactionInfoDetailsData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterRedirectTransactionInfoDetailsData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterTransactionInfo;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterTransactionInfoDetailsData;
+import it.pagopa.ecommerce.commons.domain.v2.PaymentNotice;
+import it.pagopa.ecommerce.commons.domain.v2.PaymentToken;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithCompletedAuthorization;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithPaymentToken;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithRequestedAuthorization;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Mapper from transaction aggregates to the {@link DeadLetterTransactionInfo}
+ * attached to dead letter events. The mapping only reads the aggregate state,
+ * looking up authorization data in its previous states as
+ * {@link TransactionViewMapper} does, so that it can be performed on the
+ * aggregate already rebuilt by the event processing that is dead lettering the
+ * event
+ */
+public final class DeadLetterTransactionInfoMapper {
+
+    private DeadLetterTransactionInfoMapper() {
+        // Utility class, no need to instantiate it
+    }
+
+    /**
+     * Map the input aggregate to the corresponding dead letter transaction info.
+     * Authorization fields are null for transactions that never requested an
+     * authorization
+     *
+     * @param aggregate the transaction aggregate
+     * @return the dead letter transaction info, or an empty Optional for aggregates
+     *         without an activation (e.g. {@code EmptyTransaction})
+     */
+    public static Optional<DeadLetterTransactionInfo> toTransactionInfo(
+                                                                        it.pagopa.ecommerce.commons.domain.v2.Transaction aggregate
+    ) {
+        if (!(aggregate instanceof BaseTransactionWithPaymentToken transaction)) {
+            return Optional.empty();
+        }
+        Optional<TransactionAuthorizationRequestData> authorizationRequestData = TransactionViewMapper.findInHistory(
+                transaction,
+                BaseTransactionWithRequestedAuthorization.class
+        ).map(BaseTransactionWithRequestedAuthorization::getTransactionAuthorizationRequestData);
+        Optional<TransactionAuthorizationCompletedData> authorizationCompletedData = TransactionViewMapper
+                .findInHistory(
+                        transaction,
+                        BaseTransactionWithCompletedAuthorization.class
+                ).map(BaseTransactionWithCompletedAuthorization::getTransactionAuthorizationCompletedData);
+        return Optional.of(
+                new DeadLetterTransactionInfo(
+                        transaction.getTransactionId().value().replace("-", ""),
+                        authorizationRequestData.map(TransactionAuthorizationRequestData::getAuthorizationRequestId)
+                                .orElse(null),
+                        transaction.getStatus(),
+                        authorizationRequestData.map(TransactionAuthorizationRequestData::getPaymentGateway)
+                                .orElse(null),
+                        paymentTokens(transaction),
+                        authorizationRequestData.map(TransactionAuthorizationRequestData::getPspId).orElse(null),
+                        authorizationRequestData.map(TransactionAuthorizationRequestData::getPaymentMethodName)
+                                .orElse(null),
+                        authorizationRequestData.map(DeadLetterTransactionInfoMapper::grandTotal).orElse(null),
+                        authorizationCompletedData.map(TransactionAuthorizationCompletedData::getRrn).orElse(null),
+                        authorizationCompletedData.map(DeadLetterTransactionInfoMapper::details).orElse(null)
+                )
+        );
+    }
+
+    private static long grandTotal(TransactionAuthorizationRequestData authorizationRequestData) {
+        return authorizationRequestData.getAmount() + authorizationRequestData.getFee();
+    }
+
+    private static List<String> paymentTokens(BaseTransaction transaction) {
+        return transaction.getPaymentNotices().stream()
+                .map(PaymentNotice::paymentToken)
+                .map(PaymentToken::value)
+                .toList();
+    }
+
+    @Nullable
+    private static DeadLetterTransactionInfoDetailsData details(
+                                                                TransactionAuthorizationCompletedData authorizationCompletedData
+    ) {
+        return switch (authorizationCompletedData.getTransactionGatewayAuthorizationData()) {
+            case NpgTransactionGatewayAuthorizationData npgData -> new DeadLetterNpgTransactionInfoDetailsData(
+                    npgData.getOperationResult(),
+                    npgData.getOperationId(),
+                    null,
+                    npgData.getPaymentEndToEndId()
+            );
+            case RedirectTransactionGatewayAuthorizationData redirectData -> new DeadLetterRedirectTransactionInfoDetailsData(
+                    redirectData.getOutcome() == null ? null : redirectData.getOutcome().toString()
+            );
+            case null, default -> null;
+        };
+    }
+}
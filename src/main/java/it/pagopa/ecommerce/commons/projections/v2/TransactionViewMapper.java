@@ -0,0 +1,230 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionActivatedData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationCompletedData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.NpgTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.PgsTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.RedirectTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.TransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionExpired;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithClosureError;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithCompletedAuthorization;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithPaymentToken;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithRefundRequested;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithRequestedAuthorization;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithRequestedUserReceipt;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.AuthorizationResultDto;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Mapper from transaction aggregates to {@link Transaction} view documents
+ */
+public final class TransactionViewMapper {
+
+    /**
+     * Gateway authorization statuses of successful authorizations, for each gateway
+     */
+    private static final Set<String> AUTHORIZED_GATEWAY_STATUSES = Set.copyOf(
+            List.of(
+                    OperationResultDto.EXECUTED.toString(),
+                    RedirectTransactionGatewayAuthorizationData.Outcome.OK.toString(),
+                    AuthorizationResultDto.OK.toString()
+            )
+    );
+
+    private TransactionViewMapper() {
+        // Utility class, no need to instantiate it
+    }
+
+    /**
+     * Map the input aggregate to the corresponding view document, filling every
+     * view field from the activation, authorization, closure error and user receipt
+     * data. Data not carried by the aggregate current state (e.g. authorization
+     * data for an expired or a closure error transaction) is looked up in the
+     * aggregate previous states.
+     *
+     * @param aggregate          the transaction aggregate
+     * @param lastProcessedEvent the last event applied to the aggregate, whose
+     *                           creation date and id are stored as the view last
+     *                           processed event
+     * @return the view document, or an empty Optional for aggregates without an
+     *         activation (e.g. {@code EmptyTransaction})
+     */
+    public static Optional<Transaction> toView(
+                                               it.pagopa.ecommerce.commons.domain.v2.Transaction aggregate,
+                                               @Nullable TransactionEvent<?> lastProcessedEvent
+    ) {
+        if (!(aggregate instanceof BaseTransactionWithPaymentToken transaction)) {
+            return Optional.empty();
+        }
+        TransactionActivatedData activatedData = transaction.getTransactionActivatedData();
+        Optional<TransactionAuthorizationRequestData> authorizationRequestData = findInHistory(
+                transaction,
+                BaseTransactionWithRequestedAuthorization.class
+        ).map(BaseTransactionWithRequestedAuthorization::getTransactionAuthorizationRequestData);
+        Optional<TransactionAuthorizationCompletedData> authorizationCompletedData = findInHistory(
+                transaction,
+                BaseTransactionWithCompletedAuthorization.class
+        ).map(BaseTransactionWithCompletedAuthorization::getTransactionAuthorizationCompletedData);
+        TransactionGatewayAuthorizationData gatewayAuthorizationData = authorizationCompletedData
+                .map(TransactionAuthorizationCompletedData::getTransactionGatewayAuthorizationData)
+                .orElse(null);
+        Transaction view = new Transaction(
+                transaction.getTransactionId().value().replace("-", ""),
+                activatedData.getPaymentNotices(),
+                authorizationRequestData.map(TransactionAuthorizationRequestData::getFee).orElse(null),
+                activatedData.getEmail(),
+                transaction.getStatus(),
+                activatedData.getClientId(),
+                transaction.getCreationDate().toString(),
+                activatedData.getIdCart(),
+                authorizationCompletedData.map(TransactionAuthorizationCompletedData::getRrn).orElse(null),
+                activatedData.getUserId(),
+                authorizationRequestData.map(TransactionAuthorizationRequestData::getPaymentTypeCode)
+                        .orElse(null),
+                authorizationRequestData.map(TransactionAuthorizationRequestData::getPspId).orElse(null),
+                lastProcessedEvent == null ? null : lastProcessedEvent.creationDateEpochMillis()
+        );
+        view.setLastProcessedEventId(lastProcessedEvent == null ? null : lastProcessedEvent.getId());
+        view.setPaymentGateway(
+                authorizationRequestData.map(TransactionAuthorizationRequestData::getPaymentGateway)
+                        .map(Enum::toString)
+                        .orElse(null)
+        );
+        view.setAuthorizationRequestId(
+                authorizationRequestData.map(TransactionAuthorizationRequestData::getAuthorizationRequestId)
+                        .orElse(null)
+        );
+        view.setAuthorizationCode(
+                authorizationCompletedData.map(TransactionAuthorizationCompletedData::getAuthorizationCode)
+                        .orElse(null)
+        );
+        view.setGatewayAuthorizationStatus(gatewayAuthorizationStatus(gatewayAuthorizationData));
+        view.setAuthorizationErrorCode(authorizationErrorCode(gatewayAuthorizationData));
+        view.setEndToEndId(endToEndId(gatewayAuthorizationData));
+        // closure error data is only carried by the closure error state: expiration
+        // and refund requests wrap the state preceding the closure error
+        view.setClosureErrorData(
+                transaction instanceof BaseTransactionWithClosureError closureError
+                        ? closureError.getTransactionClosureErrorEvent().getData()
+                        : null
+        );
+        view.setSendPaymentResultOutcome(
+                findInHistory(transaction, BaseTransactionWithRequestedUserReceipt.class)
+                        .map(BaseTransactionWithRequestedUserReceipt::getTransactionUserReceiptData)
+                        .map(TransactionUserReceiptData::getResponseOutcome)
+                        .orElse(null)
+        );
+        return Optional.of(view);
+    }
+
+    /**
+     * Get the gateway authorization status, that is the NPG operation result, the
+     * redirect outcome or the PGS authorization result
+     *
+     * @param gatewayAuthorizationData the gateway authorization data
+     * @return the gateway authorization status, if any
+     */
+    @Nullable
+    static String gatewayAuthorizationStatus(@Nullable TransactionGatewayAuthorizationData gatewayAuthorizationData) {
+        Object status = switch (gatewayAuthorizationData) {
+            case null -> null;
+            case NpgTransactionGatewayAuthorizationData npgData -> npgData.getOperationResult();
+            case RedirectTransactionGatewayAuthorizationData redirectData -> redirectData.getOutcome();
+            case PgsTransactionGatewayAuthorizationData pgsData -> pgsData.getAuthorizationResultDto();
+        };
+        return status == null ? null : status.toString();
+    }
+
+    /**
+     * Get the authorization outcome of a view document from its gateway
+     * authorization status, consistently with
+     * {@link BaseTransactionWithCompletedAuthorization#wasTransactionAuthorized(TransactionGatewayAuthorizationData)}
+     *
+     * @param view the view document
+     * @return the authorization outcome, {@code null} if the authorization was not
+     *         completed
+     */
+    @Nullable
+    static Boolean wasAuthorized(Transaction view) {
+        String gatewayAuthorizationStatus = view.getGatewayAuthorizationStatus();
+        return gatewayAuthorizationStatus == null ? null
+                : AUTHORIZED_GATEWAY_STATUSES.contains(gatewayAuthorizationStatus);
+    }
+
+    /**
+     * Get the authorization error code returned by the payment gateway
+     *
+     * @param gatewayAuthorizationData the gateway authorization data
+     * @return the authorization error code, if any
+     */
+    @Nullable
+    static String authorizationErrorCode(@Nullable TransactionGatewayAuthorizationData gatewayAuthorizationData) {
+        return switch (gatewayAuthorizationData) {
+            case null -> null;
+            case NpgTransactionGatewayAuthorizationData npgData -> npgData.getErrorCode();
+            case RedirectTransactionGatewayAuthorizationData redirectData -> redirectData.getErrorCode();
+            case PgsTransactionGatewayAuthorizationData pgsData -> pgsData.getErrorCode();
+        };
+    }
+
+    /**
+     * Get the payment end to end id, only communicated by NPG
+     *
+     * @param gatewayAuthorizationData the gateway authorization data
+     * @return the payment end to end id, if any
+     */
+    @Nullable
+    static String endToEndId(@Nullable TransactionGatewayAuthorizationData gatewayAuthorizationData) {
+        return gatewayAuthorizationData instanceof NpgTransactionGatewayAuthorizationData npgData
+                ? npgData.getPaymentEndToEndId()
+                : null;
+    }
+
+    /**
+     * Search the input transaction and its previous states, from the most recent
+     * one, for a state of the wanted type
+     *
+     * @param transaction the transaction
+     * @param stateType   the wanted state type
+     * @param <T>         the wanted state type
+     * @return the most recent state of the wanted type, if any
+     */
+    static <T extends BaseTransaction> Optional<T> findInHistory(
+                                                                 BaseTransaction transaction,
+                                                                 Class<T> stateType
+    ) {
+        BaseTransaction current = transaction;
+        while (current != null) {
+            if (stateType.isInstance(current)) {
+                return Optional.of(stateType.cast(current));
+            }
+            current = previousState(current);
+        }
+        return Optional.empty();
+    }
+
+    @Nullable
+    private static BaseTransaction previousState(BaseTransaction transaction) {
+        if (transaction instanceof BaseTransactionExpired expired) {
+            return expired.getTransactionAtPreviousState();
+        }
+        if (transaction instanceof BaseTransactionWithRefundRequested refundRequested) {
+            return refundRequested.getTransactionAtPreviousState();
+        }
+        if (transaction instanceof BaseTransactionWithClosureError closureError) {
+            return closureError.getTransactionAtPreviousState();
+        }
+        return null;
+    }
+}
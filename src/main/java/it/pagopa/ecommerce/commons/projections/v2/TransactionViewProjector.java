@@ -0,0 +1,465 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionActivatedData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionActivatedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationCompletedData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationCompletedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureErrorEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptAddErrorEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptRequestedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.TransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.status.TransactionStatusReducer;
+import it.pagopa.ecommerce.commons.domain.v2.status.TransactionStatusSnapshot;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.repositories.TransactionEventStoreRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Incremental projector for the {@link Transaction} view (transactions-view
+ * collection).
+ * </p>
+ * <p>
+ * Instead of replaying the whole transaction history into an aggregate and
+ * saving the whole view document, the projector loads the current view and
+ * applies only the events following its last processed event, that is
+ * identified by the {@code lastProcessedEventAt} creation timestamp and, for
+ * events created within the same millisecond, by the
+ * {@code lastProcessedEventId} event id:
+ * </p>
+ * <ul>
+ * <li>the transaction events are read in chronological order (see
+ * {@link TransactionEventStoreRepository#findByTransactionId(String)}) and the
+ * ones following the last processed event are selected in memory by creation
+ * date. Event ids are not used as a server side filter since they are not
+ * guaranteed to be time ordered: random ids, ids of upcast v1 events and ids of
+ * events written by services using previous library versions</li>
+ * <li>the transaction status is computed with a
+ * {@link TransactionStatusReducer} resumed from the view status, that is a
+ * constant time switch per new event that does not build any domain object</li>
+ * <li>view fields are updated only with the data of new events accepted by the
+ * status state machine, so that the result is the same as the one produced by
+ * {@link TransactionViewMapper} from the rebuilt aggregate</li>
+ * <li>only the changed fields are written, with an update conditioned on the
+ * last processed event read, so that concurrent projections of the same
+ * transaction are detected</li>
+ * </ul>
+ * <p>
+ * Already processed events are replayed to compute the transaction status when
+ * the view has no last processed event id (i.e. it was written before that
+ * field was introduced) and when the view status cannot be resumed (expired and
+ * closure error statuses, whose transitions depend on the status preceding
+ * them).
+ * </p>
+ */
+@Slf4j
+public class TransactionViewProjector {
+
+    /**
+     * Prefix used for all the metrics exported by this projector
+     */
+    public static final String METRIC_PREFIX = "ecommerce.projection.incremental.";
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final TransactionEventStoreRepository<TransactionEvent<?>> eventStoreRepository;
+
+    private final LongCounter projections;
+
+    private final LongCounter appliedEvents;
+
+    /**
+     * Projection outcomes
+     */
+    public enum Outcome {
+        /**
+         * No event was created after the last processed one
+         */
+        UP_TO_DATE,
+        /**
+         * The view document has been updated with new events
+         */
+        UPDATED,
+        /**
+         * The view document did not exist and has been built from the full history
+         */
+        CREATED,
+        /**
+         * No view document can be built since the transaction has no activation
+         */
+        NOT_FOUND,
+        /**
+         * The view document has been modified by a concurrent projection, no update has
+         * been written
+         */
+        CONFLICT;
+
+        private final Attributes attributes = Attributes.of(OUTCOME_ATTRIBUTE, name());
+    }
+
+    /**
+     * Projection result
+     *
+     * @param outcome       the projection outcome
+     * @param view          the projected view document, null if no view could be
+     *                      built or the projection was in conflict
+     * @param appliedEvents the number of events applied to the view
+     */
+    public record ProjectionResult(
+            Outcome outcome,
+            @Nullable Transaction view,
+            int appliedEvents
+    ) {
+    }
+
+    /**
+     * Build a new projector instance
+     *
+     * @param mongoOperations      the reactive Mongo operations used to access the
+     *                             view collection
+     * @param eventStoreRepository the repository used to read transaction events
+     * @param meter                the meter used to register metrics
+     */
+    public TransactionViewProjector(
+            ReactiveMongoOperations mongoOperations,
+            TransactionEventStoreRepository<TransactionEvent<?>> eventStoreRepository,
+            Meter meter
+    ) {
+        this.mongoOperations = Objects.requireNonNull(mongoOperations);
+        this.eventStoreRepository = Objects.requireNonNull(eventStoreRepository);
+        this.projections = meter.counterBuilder(METRIC_PREFIX + "projections")
+                .setDescription("Number of transactions view projections, by outcome")
+                .build();
+        this.appliedEvents = meter.counterBuilder(METRIC_PREFIX + "events")
+                .setDescription("Number of new events applied to transactions view documents")
+                .build();
+    }
+
+    /**
+     * Bring the view document of the input transaction up to date with the event
+     * store
+     *
+     * @param transactionId the transaction id
+     * @return a {@link Mono} emitting the projection result
+     */
+    public Mono<ProjectionResult> project(String transactionId) {
+        return mongoOperations.findById(transactionId, Transaction.class)
+                .flatMap(this::update)
+                .switchIfEmpty(Mono.defer(() -> create(transactionId)))
+                .doOnNext(result -> {
+                    projections.add(1, result.outcome().attributes);
+                    appliedEvents.add(result.appliedEvents());
+                    log.debug(
+                            "Projected transaction with id: [{}], outcome: [{}], applied events: [{}]",
+                            transactionId,
+                            result.outcome(),
+                            result.appliedEvents()
+                    );
+                });
+    }
+
+    private Mono<ProjectionResult> create(String transactionId) {
+        return eventStoreRepository.findByTransactionId(transactionId)
+                .collectList()
+                .flatMap(this::create);
+    }
+
+    private Mono<ProjectionResult> create(List<TransactionEvent<?>> events) {
+        if (events.isEmpty()) {
+            return Mono.just(new ProjectionResult(Outcome.NOT_FOUND, null, 0));
+        }
+        it.pagopa.ecommerce.commons.domain.v2.Transaction aggregate = new EmptyTransaction();
+        for (TransactionEvent<?> event : events) {
+            aggregate = aggregate.applyEvent(event);
+        }
+        return TransactionViewMapper.toView(aggregate, events.get(events.size() - 1))
+                .map(
+                        view -> mongoOperations.insert(view)
+                                .map(inserted -> new ProjectionResult(Outcome.CREATED, inserted, events.size()))
+                                .onErrorResume(
+                                        DuplicateKeyException.class,
+                                        e -> Mono.just(new ProjectionResult(Outcome.CONFLICT, null, 0))
+                                )
+                )
+                .orElseGet(() -> Mono.just(new ProjectionResult(Outcome.NOT_FOUND, null, 0)));
+    }
+
+    private Mono<ProjectionResult> update(Transaction view) {
+        return eventStoreRepository.findByTransactionId(view.getTransactionId())
+                .collectList()
+                .flatMap(events -> {
+                    int processedEvents = processedEvents(view, events);
+                    Optional<TransactionStatusReducer> resumedReducer = view.getLastProcessedEventAt() == null
+                            || view.getLastProcessedEventId() == null
+                                    ? Optional.empty()
+                                    : TransactionStatusReducer.resume(
+                                            view.getStatus(),
+                                            TransactionViewMapper.wasAuthorized(view),
+                                            view.getSendPaymentResultOutcome()
+                                    );
+                    TransactionStatusReducer statusReducer = resumedReducer.orElseGet(() -> {
+                        // replay the already processed events to rebuild the status
+                        TransactionStatusReducer replayedReducer = new TransactionStatusReducer();
+                        events.subList(0, processedEvents).forEach(replayedReducer::apply);
+                        return replayedReducer;
+                    });
+                    return update(view, statusReducer, events.subList(processedEvents, events.size()));
+                });
+    }
+
+    private Mono<ProjectionResult> update(
+                                          Transaction view,
+                                          TransactionStatusReducer statusReducer,
+                                          List<TransactionEvent<?>> newEvents
+    ) {
+        if (newEvents.isEmpty()) {
+            return Mono.just(new ProjectionResult(Outcome.UP_TO_DATE, view, 0));
+        }
+        Long lastProcessedEventAt = view.getLastProcessedEventAt();
+        String lastProcessedEventId = view.getLastProcessedEventId();
+        Update update = new Update();
+        for (TransactionEvent<?> event : newEvents) {
+            TransactionStatusDto statusBefore = status(statusReducer);
+            statusReducer.apply(event);
+            if (statusBefore != status(statusReducer)) {
+                applyEventData(view, event, update);
+            }
+        }
+        TransactionStatusDto status = status(statusReducer);
+        if (status != null) {
+            setIfChanged(update, "status", view.getStatus(), status, view::setStatus);
+        }
+        TransactionEvent<?> lastEvent = newEvents.get(newEvents.size() - 1);
+        setIfChanged(
+                update,
+                "lastProcessedEventAt",
+                lastProcessedEventAt,
+                lastEvent.creationDateEpochMillis(),
+                view::setLastProcessedEventAt
+        );
+        setIfChanged(
+                update,
+                "lastProcessedEventId",
+                lastProcessedEventId,
+                lastEvent.getId(),
+                view::setLastProcessedEventId
+        );
+        Query query = Query.query(
+                Criteria.where("transactionId").is(view.getTransactionId())
+                        .and("lastProcessedEventAt").is(lastProcessedEventAt)
+                        .and("lastProcessedEventId").is(lastProcessedEventId)
+        );
+        return mongoOperations.updateFirst(query, update, Transaction.class)
+                .map(
+                        result -> result.getMatchedCount() == 0
+                                ? new ProjectionResult(Outcome.CONFLICT, null, 0)
+                                : new ProjectionResult(Outcome.UPDATED, view, newEvents.size())
+                );
+    }
+
+    /*
+     * Count the events, in chronological order, up to the view last processed one.
+     * Events created in the same millisecond as the last processed one are
+     * processed up to the event with the last processed event id: if the view has
+     * no such id (i.e. it was written before that field was introduced) or the
+     * event is not found, all of them are considered already processed
+     */
+    private static int processedEvents(
+                                       Transaction view,
+                                       List<TransactionEvent<?>> events
+    ) {
+        Long lastProcessedEventAt = view.getLastProcessedEventAt();
+        if (lastProcessedEventAt == null) {
+            return 0;
+        }
+        String lastProcessedEventId = view.getLastProcessedEventId();
+        int processedEvents = 0;
+        for (int i = 0; i < events.size(); i++) {
+            TransactionEvent<?> event = events.get(i);
+            long creationDate = event.creationDateEpochMillis();
+            if (creationDate > lastProcessedEventAt) {
+                break;
+            }
+            processedEvents = i + 1;
+            if (creationDate == lastProcessedEventAt && lastProcessedEventId != null
+                    && lastProcessedEventId.equals(event.getId())) {
+                // events following the last processed one in the same millisecond are new
+                return processedEvents;
+            }
+        }
+        return processedEvents;
+    }
+
+    /*
+     * Apply the data of an event accepted by the status state machine to the view,
+     * mirroring the data taken by TransactionViewMapper from the aggregate states
+     */
+    private static void applyEventData(
+                                       Transaction view,
+                                       TransactionEvent<?> event,
+                                       Update update
+    ) {
+        // closure error data is only carried by the closure error state, any other
+        // transition leaves it behind
+        if (!(event instanceof TransactionClosureErrorEvent)) {
+            setIfChanged(update, "closureErrorData", view.getClosureErrorData(), null, view::setClosureErrorData);
+        }
+        switch (event) {
+            case TransactionActivatedEvent activatedEvent -> {
+                TransactionActivatedData data = activatedEvent.getData();
+                setIfChanged(update, "paymentNotices", view.getPaymentNotices(), data.getPaymentNotices(), view::setPaymentNotices);
+                setIfChanged(update, "email", view.getEmail(), data.getEmail(), view::setEmail);
+                setIfChanged(update, "clientId", view.getClientId(), data.getClientId(), view::setClientId);
+                setIfChanged(
+                        update,
+                        "creationDate",
+                        view.getCreationDate(),
+                        event.creationDateTime().toString(),
+                        view::setCreationDate
+                );
+                setIfChanged(update, "idCart", view.getIdCart(), data.getIdCart(), view::setIdCart);
+                setIfChanged(update, "userId", view.getUserId(), data.getUserId(), view::setUserId);
+            }
+            case TransactionAuthorizationRequestedEvent authorizationRequestedEvent -> {
+                TransactionAuthorizationRequestData data = authorizationRequestedEvent.getData();
+                setIfChanged(update, "feeTotal", view.getFeeTotal(), data.getFee(), view::setFeeTotal);
+                setIfChanged(
+                        update,
+                        "paymentTypeCode",
+                        view.getPaymentTypeCode(),
+                        data.getPaymentTypeCode(),
+                        view::setPaymentTypeCode
+                );
+                setIfChanged(update, "pspId", view.getPspId(), data.getPspId(), view::setPspId);
+                setIfChanged(
+                        update,
+                        "paymentGateway",
+                        view.getPaymentGateway(),
+                        data.getPaymentGateway() == null ? null : data.getPaymentGateway().toString(),
+                        view::setPaymentGateway
+                );
+                setIfChanged(
+                        update,
+                        "authorizationRequestId",
+                        view.getAuthorizationRequestId(),
+                        data.getAuthorizationRequestId(),
+                        view::setAuthorizationRequestId
+                );
+            }
+            case TransactionAuthorizationCompletedEvent authorizationCompletedEvent -> {
+                TransactionAuthorizationCompletedData data = authorizationCompletedEvent.getData();
+                TransactionGatewayAuthorizationData gatewayData = data.getTransactionGatewayAuthorizationData();
+                setIfChanged(update, "rrn", view.getRrn(), data.getRrn(), view::setRrn);
+                setIfChanged(
+                        update,
+                        "authorizationCode",
+                        view.getAuthorizationCode(),
+                        data.getAuthorizationCode(),
+                        view::setAuthorizationCode
+                );
+                setIfChanged(
+                        update,
+                        "gatewayAuthorizationStatus",
+                        view.getGatewayAuthorizationStatus(),
+                        TransactionViewMapper.gatewayAuthorizationStatus(gatewayData),
+                        view::setGatewayAuthorizationStatus
+                );
+                setIfChanged(
+                        update,
+                        "authorizationErrorCode",
+                        view.getAuthorizationErrorCode(),
+                        TransactionViewMapper.authorizationErrorCode(gatewayData),
+                        view::setAuthorizationErrorCode
+                );
+                setIfChanged(
+                        update,
+                        "endToEndId",
+                        view.getEndToEndId(),
+                        TransactionViewMapper.endToEndId(gatewayData),
+                        view::setEndToEndId
+                );
+            }
+            case TransactionClosureErrorEvent closureErrorEvent -> setIfChanged(
+                    update,
+                    "closureErrorData",
+                    view.getClosureErrorData(),
+                    closureErrorEvent.getData(),
+                    view::setClosureErrorData
+            );
+            case TransactionUserReceiptRequestedEvent userReceiptRequestedEvent -> setSendPaymentResultOutcome(
+                    view,
+                    userReceiptRequestedEvent.getData(),
+                    update
+            );
+            case TransactionUserReceiptAddErrorEvent userReceiptAddErrorEvent -> setSendPaymentResultOutcome(
+                    view,
+                    userReceiptAddErrorEvent.getData(),
+                    update
+            );
+            default -> {
+                // other events only change the transaction status
+            }
+        }
+    }
+
+    private static void setSendPaymentResultOutcome(
+                                                    Transaction view,
+                                                    TransactionUserReceiptData data,
+                                                    Update update
+    ) {
+        setIfChanged(
+                update,
+                "sendPaymentResultOutcome",
+                view.getSendPaymentResultOutcome(),
+                data.getResponseOutcome(),
+                view::setSendPaymentResultOutcome
+        );
+    }
+
+    private static <T> void setIfChanged(
+                                         Update update,
+                                         String field,
+                                         @Nullable T current,
+                                         @Nullable T updated,
+                                         Consumer<T> setter
+    ) {
+        if (!Objects.equals(current, updated)) {
+            // null fields are not persisted by the view writing converter
+            if (updated == null) {
+                update.unset(field);
+            } else {
+                update.set(field, updated);
+            }
+            setter.accept(updated);
+        }
+    }
+
+    @Nullable
+    private static TransactionStatusDto status(TransactionStatusReducer statusReducer) {
+        return statusReducer.snapshot().map(TransactionStatusSnapshot::status).orElse(null);
+    }
+}
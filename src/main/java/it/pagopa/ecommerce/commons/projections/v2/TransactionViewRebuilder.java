@@ -0,0 +1,169 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction;
+import it.pagopa.ecommerce.commons.repositories.TransactionEventStoreRepository;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Rebuild pipeline for the {@link Transaction} view (transactions-view
+ * collection) starting from the event store.
+ * </p>
+ * <p>
+ * Input events must be grouped by transaction id, as returned by an event store
+ * query sorted by transaction id: contiguous events of the same transaction are
+ * buffered together, so only the events of the transactions being processed are
+ * held in memory. Each group is then sorted by creation instant (see
+ * {@link TransactionEventStoreRepository#CREATION_DATE_ORDER}), since the
+ * creation date strings stored in the event store cannot be sorted server side,
+ * and reduced to the transaction aggregate on the input scheduler, with the
+ * configured parallelism, and mapped to the view document with
+ * {@link TransactionViewMapper}.
+ * </p>
+ * <p>
+ * Output view documents are not emitted in input order.
+ * </p>
+ */
+@Slf4j
+public class TransactionViewRebuilder {
+
+    /**
+     * Prefix used for all the metrics exported by this rebuilder
+     */
+    public static final String METRIC_PREFIX = "ecommerce.projection.rebuild.";
+
+    private static final int RAIL_PREFETCH = 32;
+
+    private final Scheduler scheduler;
+
+    private final int parallelism;
+
+    private final LongCounter rebuiltTransactions;
+
+    private final LongCounter skippedTransactions;
+
+    private final LongCounter processedEvents;
+
+    private final LongHistogram eventsPerTransaction;
+
+    private final DoubleHistogram throughput;
+
+    /**
+     * Build a new rebuilder instance
+     *
+     * @param scheduler   the scheduler on which aggregates are reduced. A bounded
+     *                    scheduler (e.g. {@code Schedulers.parallel()}) should be
+     *                    used since reduction is CPU bound
+     * @param parallelism the max number of transactions reduced concurrently
+     * @param meter       the meter used to register metrics
+     */
+    public TransactionViewRebuilder(
+            Scheduler scheduler,
+            int parallelism,
+            Meter meter
+    ) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Invalid parallelism: [%s], it must be > 0".formatted(parallelism));
+        }
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.parallelism = parallelism;
+        this.rebuiltTransactions = meter.counterBuilder(METRIC_PREFIX + "transactions")
+                .setDescription("Number of transactions view documents rebuilt")
+                .build();
+        this.skippedTransactions = meter.counterBuilder(METRIC_PREFIX + "skipped")
+                .setDescription("Number of transactions skipped since no view document could be built")
+                .build();
+        this.processedEvents = meter.counterBuilder(METRIC_PREFIX + "events")
+                .setDescription("Number of events applied to rebuilt aggregates")
+                .build();
+        this.eventsPerTransaction = meter.histogramBuilder(METRIC_PREFIX + "events_per_transaction")
+                .setDescription("Number of events per rebuilt transaction")
+                .ofLongs()
+                .build();
+        this.throughput = meter.histogramBuilder(METRIC_PREFIX + "throughput")
+                .setDescription("Rebuilt transactions per second, recorded at the end of each rebuild")
+                .setUnit("{transaction}/s")
+                .build();
+    }
+
+    /**
+     * Rebuild view documents from the input events
+     *
+     * @param events the event store events, grouped by transaction id
+     * @return a {@link Flux} emitting the rebuilt view documents
+     */
+    public Flux<Transaction> rebuild(Flux<? extends TransactionEvent<?>> events) {
+        return Flux.defer(() -> {
+            AtomicLong rebuilt = new AtomicLong();
+            long start = System.nanoTime();
+            return events
+                    .bufferUntilChanged(TransactionEvent::getTransactionId)
+                    .parallel(parallelism, RAIL_PREFETCH)
+                    .runOn(scheduler, RAIL_PREFETCH)
+                    .map(this::reduce)
+                    .sequential()
+                    .flatMap(Mono::justOrEmpty)
+                    .doOnNext(view -> rebuilt.incrementAndGet())
+                    .doOnComplete(() -> logCompletion(rebuilt.get(), Duration.ofNanos(System.nanoTime() - start)));
+        });
+    }
+
+    private Optional<Transaction> reduce(List<? extends TransactionEvent<?>> transactionEvents) {
+        // stable sort, events created at the same instant keep their input order
+        transactionEvents.sort(TransactionEventStoreRepository.CREATION_DATE_ORDER);
+        String transactionId = transactionEvents.get(0).getTransactionId();
+        processedEvents.add(transactionEvents.size());
+        eventsPerTransaction.record(transactionEvents.size());
+        try {
+            it.pagopa.ecommerce.commons.domain.v2.Transaction aggregate = new EmptyTransaction();
+            for (TransactionEvent<?> event : transactionEvents) {
+                aggregate = aggregate.applyEvent(event);
+            }
+            Optional<Transaction> view = TransactionViewMapper.toView(
+                    aggregate,
+                    transactionEvents.get(transactionEvents.size() - 1)
+            );
+            if (view.isPresent()) {
+                rebuiltTransactions.add(1);
+            } else {
+                log.warn("No view document built for transaction with id: [{}], missing activation", transactionId);
+                skippedTransactions.add(1);
+            }
+            return view;
+        } catch (RuntimeException e) {
+            log.error("Error rebuilding transaction with id: [{}]", transactionId, e);
+            skippedTransactions.add(1);
+            return Optional.empty();
+        }
+    }
+
+    private void logCompletion(
+                               long rebuilt,
+                               Duration elapsed
+    ) {
+        double seconds = Math.max(elapsed.toNanos(), 1) / 1_000_000_000d;
+        double transactionsPerSecond = rebuilt / seconds;
+        throughput.record(transactionsPerSecond);
+        log.info(
+                "Rebuilt [{}] transactions in [{}] ms ({} transactions/s)",
+                rebuilt,
+                elapsed.toMillis(),
+                "%.1f".formatted(transactionsPerSecond)
+        );
+    }
+}
@@ -0,0 +1,330 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Writer of {@link Transaction} view documents (transactions-view collection)
+ * that only writes the fields that changed.
+ * </p>
+ * <p>
+ * Before and after views are converted to Mongo documents with the mapping
+ * converter of the input operations, so that field names and values are the
+ * persisted ones, and compared field by field: changed fields are written with
+ * {@code $set}, while fields no more present (i.e. set to null) are written
+ * with {@code $unset} only if they are in {@link #CLEARABLE_FIELDS}, that are
+ * the fields {@link TransactionViewMapper} clears as the transaction moves on.
+ * Any other field missing from the after view is left untouched, so that a
+ * partially populated view never erases persisted data. Unchanged fields, such
+ * as payment notices once the transaction has been activated, are never
+ * rewritten.
+ * </p>
+ * <p>
+ * When a coalescing window is configured, updates to the same transaction
+ * received within the window are merged, with later values overriding earlier
+ * ones, and written with a single update at the end of the window. All the
+ * merged writes complete when the single update is acknowledged.
+ * </p>
+ */
+@Slf4j
+public class TransactionViewUpdateWriter {
+
+    /**
+     * Prefix used for all the metrics exported by this writer
+     */
+    public static final String METRIC_PREFIX = "ecommerce.projection.writer.";
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private static final Attributes OK_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "OK");
+
+    private static final Attributes KO_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "KO");
+
+    /**
+     * View fields that are cleared when the transaction leaves the status carrying
+     * them: closure error data is only set while in closure error status
+     */
+    public static final Set<String> CLEARABLE_FIELDS = Set.of("closureErrorData");
+
+    private static final String ID_FIELD = "_id";
+
+    private static final String CLASS_FIELD = "_class";
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final Duration coalescingWindow;
+
+    private final Scheduler scheduler;
+
+    private final Map<String, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
+
+    private final LongCounter writes;
+
+    private final LongCounter coalescedUpdates;
+
+    private final LongCounter unchangedUpdates;
+
+    private final LongHistogram changedFields;
+
+    /**
+     * Build a new writer instance
+     *
+     * @param mongoOperations  the reactive Mongo operations used to access the view
+     *                         collection
+     * @param coalescingWindow the time window in which updates to the same
+     *                         transaction are merged into a single write, zero to
+     *                         write each update immediately
+     * @param scheduler        the scheduler used to time coalescing windows
+     * @param meter            the meter used to register metrics
+     */
+    public TransactionViewUpdateWriter(
+            ReactiveMongoOperations mongoOperations,
+            Duration coalescingWindow,
+            Scheduler scheduler,
+            Meter meter
+    ) {
+        if (coalescingWindow.isNegative()) {
+            throw new IllegalArgumentException(
+                    "Invalid coalescing window: [%s], it must be >= 0".formatted(coalescingWindow)
+            );
+        }
+        this.mongoOperations = Objects.requireNonNull(mongoOperations);
+        this.coalescingWindow = coalescingWindow;
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.writes = meter.counterBuilder(METRIC_PREFIX + "writes")
+                .setDescription("Number of update operations written to the transactions view collection")
+                .build();
+        this.coalescedUpdates = meter.counterBuilder(METRIC_PREFIX + "coalesced")
+                .setDescription("Number of updates merged into an already pending write")
+                .build();
+        this.unchangedUpdates = meter.counterBuilder(METRIC_PREFIX + "unchanged")
+                .setDescription("Number of updates skipped since no field changed")
+                .build();
+        this.changedFields = meter.histogramBuilder(METRIC_PREFIX + "changed_fields")
+                .setDescription("Number of fields written per update operation")
+                .ofLongs()
+                .build();
+    }
+
+    /**
+     * Compute the minimal update turning the before view into the after view
+     *
+     * @param before the view document as currently persisted
+     * @param after  the updated view document
+     * @return the update with the changed fields, empty if no field changed
+     * @throws IllegalArgumentException if the views belong to different
+     *                                  transactions
+     */
+    public Update diff(
+                       Transaction before,
+                       Transaction after
+    ) {
+        return new FieldChanges(before, after).toUpdate();
+    }
+
+    /**
+     * Write the fields changed between the before and after views of a transaction.
+     * No write is performed if no field changed
+     *
+     * @param before the view document as currently persisted
+     * @param after  the updated view document
+     * @return a {@link Mono} completing when the changes have been written
+     */
+    public Mono<Void> write(
+                            Transaction before,
+                            Transaction after
+    ) {
+        return Mono.defer(() -> {
+            FieldChanges changes = new FieldChanges(before, after);
+            if (changes.isEmpty()) {
+                unchangedUpdates.add(1);
+                return Mono.empty();
+            }
+            if (coalescingWindow.isZero()) {
+                return writeChanges(after.getTransactionId(), changes);
+            }
+            return enqueue(after.getTransactionId(), changes);
+        });
+    }
+
+    /**
+     * Write all the pending coalesced updates without waiting for their coalescing
+     * windows to elapse, e.g. on shutdown
+     *
+     * @return a {@link Mono} completing when all pending updates have been written
+     */
+    public Mono<Void> flush() {
+        return Flux.fromIterable(Map.copyOf(pendingUpdates).entrySet())
+                .flatMap(pending -> flush(pending.getKey(), pending.getValue()))
+                .then();
+    }
+
+    private Mono<Void> enqueue(
+                               String transactionId,
+                               FieldChanges changes
+    ) {
+        PendingUpdate created = new PendingUpdate(changes);
+        // merge atomically with the map update, so that a pending update is never
+        // modified after having been removed for writing
+        PendingUpdate pending = pendingUpdates.merge(transactionId, created, PendingUpdate::merge);
+        if (pending == created) {
+            Mono.delay(coalescingWindow, scheduler)
+                    .then(flush(transactionId, pending))
+                    .subscribe();
+        } else {
+            coalescedUpdates.add(1);
+        }
+        return pending.result.asMono();
+    }
+
+    private Mono<Void> flush(
+                             String transactionId,
+                             PendingUpdate pending
+    ) {
+        return Mono.defer(() -> {
+            if (!pendingUpdates.remove(transactionId, pending)) {
+                // already written by a concurrent flush
+                return Mono.empty();
+            }
+            return writeChanges(transactionId, pending.changes)
+                    .doOnSuccess(ignored -> pending.result.tryEmitEmpty())
+                    .doOnError(pending.result::tryEmitError)
+                    .onErrorResume(e -> Mono.empty());
+        });
+    }
+
+    private Mono<Void> writeChanges(
+                                    String transactionId,
+                                    FieldChanges changes
+    ) {
+        Update update = changes.toUpdate();
+        return mongoOperations.updateFirst(
+                Query.query(Criteria.where("transactionId").is(transactionId)),
+                update,
+                Transaction.class
+        )
+                .doOnNext(result -> {
+                    writes.add(1, OK_ATTRIBUTES);
+                    changedFields.record(changes.size());
+                    log.debug(
+                            "Updated [{}] fields of transaction view with id: [{}]",
+                            changes.size(),
+                            transactionId
+                    );
+                })
+                .doOnError(e -> {
+                    writes.add(1, KO_ATTRIBUTES);
+                    log.error("Error updating transaction view with id: [{}]", transactionId, e);
+                })
+                .then();
+    }
+
+    private final class FieldChanges {
+
+        private final Map<String, Object> setFields = new LinkedHashMap<>();
+
+        private final Set<String> unsetFields = new LinkedHashSet<>();
+
+        private FieldChanges(
+                Transaction before,
+                Transaction after
+        ) {
+            if (!Objects.equals(before.getTransactionId(), after.getTransactionId())) {
+                throw new IllegalArgumentException(
+                        "Cannot diff views of different transactions: [%s] and [%s]"
+                                .formatted(before.getTransactionId(), after.getTransactionId())
+                );
+            }
+            Document beforeDocument = toDocument(before);
+            Document afterDocument = toDocument(after);
+            for (Map.Entry<String, Object> field : afterDocument.entrySet()) {
+                if (!Objects.equals(field.getValue(), beforeDocument.get(field.getKey()))) {
+                    setFields.put(field.getKey(), field.getValue());
+                }
+            }
+            for (String field : beforeDocument.keySet()) {
+                if (CLEARABLE_FIELDS.contains(field) && !afterDocument.containsKey(field)) {
+                    unsetFields.add(field);
+                }
+            }
+        }
+
+        private Document toDocument(Transaction view) {
+            Document document = new Document();
+            mongoOperations.getConverter().write(view, document);
+            document.remove(ID_FIELD);
+            document.remove(CLASS_FIELD);
+            return document;
+        }
+
+        private void merge(FieldChanges later) {
+            later.setFields.forEach(
+                    (
+                     field,
+                     value
+                    ) -> {
+                        setFields.put(field, value);
+                        unsetFields.remove(field);
+                    }
+            );
+            later.unsetFields.forEach(field -> {
+                unsetFields.add(field);
+                setFields.remove(field);
+            });
+        }
+
+        private boolean isEmpty() {
+            return setFields.isEmpty() && unsetFields.isEmpty();
+        }
+
+        private int size() {
+            return setFields.size() + unsetFields.size();
+        }
+
+        private Update toUpdate() {
+            Update update = new Update();
+            setFields.forEach(update::set);
+            unsetFields.forEach(update::unset);
+            return update;
+        }
+    }
+
+    private static final class PendingUpdate {
+
+        private final FieldChanges changes;
+
+        private final Sinks.One<Void> result = Sinks.one();
+
+        private PendingUpdate(FieldChanges changes) {
+            this.changes = changes;
+        }
+
+        private PendingUpdate merge(PendingUpdate later) {
+            changes.merge(later.changes);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package it.pagopa.ecommerce.commons.queues;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.schema.JsonSchema;
+import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SchemaLocation;
+import com.networknt.schema.SpecVersion;
+import com.networknt.schema.ValidationMessage;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import it.pagopa.ecommerce.commons.exceptions.EventPayloadValidationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * Runtime validator of event payloads against the JSON schemas shipped in
+ * {@code schemas/events/v1}.
+ * </p>
+ * <p>
+ * Each schema is loaded and compiled, together with the schemas it references,
+ * the first time it is used and then cached: compiled schemas are immutable and
+ * are shared by all the threads using this validator. Validation runs on the
+ * parsed {@link JsonNode} tree, so that
+ * {@link #read(byte[], String, JsonPointer, ObjectMapper, TypeReference)}
+ * parses a message only once and binds the already validated tree to the target
+ * type.
+ * </p>
+ * <p>
+ * Since validation cost is comparable to the deserialization one, only the
+ * configured fraction of the payloads is validated: a sampling rate of
+ * {@code 1.0} validates every payload while lower values bound the cost while
+ * still detecting producers sending malformed events.
+ * </p>
+ */
+@Slf4j
+public class EventPayloadSchemaValidator {
+
+    /**
+     * Prefix used for all the metrics exported by this validator
+     */
+    public static final String METRIC_PREFIX = "ecommerce.events.schema_validation.";
+
+    /**
+     * Pointer to the event inside a {@link QueueEvent} payload
+     */
+    public static final JsonPointer QUEUE_EVENT_POINTER = JsonPointer.compile("/event");
+
+    private static final String SCHEMAS_LOCATION = "classpath:schemas/events/v1/";
+
+    private static final AttributeKey<String> SCHEMA_ATTRIBUTE = AttributeKey.stringKey("schema");
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private final JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V4);
+
+    private final Map<String, CompiledSchema> schemas = new ConcurrentHashMap<>();
+
+    private final double samplingRate;
+
+    private final DoubleHistogram validationDuration;
+
+    private final LongCounter skippedValidations;
+
+    private record CompiledSchema(
+            JsonSchema schema,
+            Attributes attributes,
+            Attributes validAttributes,
+            Attributes invalidAttributes
+    ) {
+    }
+
+    /**
+     * Build a new validator instance
+     *
+     * @param samplingRate the fraction of payloads to be validated, between
+     *                     {@code 0.0} (no validation) and {@code 1.0} (all payloads
+     *                     validated)
+     * @param meter        the meter used to register metrics
+     */
+    public EventPayloadSchemaValidator(
+            double samplingRate,
+            Meter meter
+    ) {
+        if (!(samplingRate >= 0 && samplingRate <= 1)) {
+            throw new IllegalArgumentException(
+                    "Invalid sampling rate: [%s], it must be between 0 and 1".formatted(samplingRate)
+            );
+        }
+        this.samplingRate = samplingRate;
+        this.validationDuration = meter.histogramBuilder(METRIC_PREFIX + "duration")
+                .setDescription("Time taken to validate an event payload against its schema")
+                .setUnit("ms")
+                .build();
+        this.skippedValidations = meter.counterBuilder(METRIC_PREFIX + "skipped")
+                .setDescription("Number of event payloads not validated because of sampling")
+                .build();
+    }
+
+    /**
+     * Compile the input schemas ahead of time, so that the first validated payloads
+     * do not pay for schema loading
+     *
+     * @param schemaNames the names of the schemas to be compiled
+     * @return this instance
+     */
+    public EventPayloadSchemaValidator precompile(String... schemaNames) {
+        for (String schemaName : schemaNames) {
+            compiledSchema(schemaName);
+        }
+        return this;
+    }
+
+    /**
+     * Validate the input payload against the named schema, if the payload is
+     * selected by sampling
+     *
+     * @param schemaName the schema name, that is the schema file name without the
+     *                   {@code .json} extension (e.g.
+     *                   {@code transaction_activated_event})
+     * @param payload    the parsed payload
+     * @return {@code true} if the payload has been validated, {@code false} if it
+     *         has been skipped because of sampling
+     * @throws EventPayloadValidationException if the payload does not conform to
+     *                                         the schema
+     */
+    public boolean validate(
+                            String schemaName,
+                            JsonNode payload
+    ) {
+        CompiledSchema compiledSchema = compiledSchema(schemaName);
+        if (!isSampled()) {
+            skippedValidations.add(1, compiledSchema.attributes());
+            return false;
+        }
+        long start = System.nanoTime();
+        Set<ValidationMessage> violations = compiledSchema.schema().validate(payload);
+        double elapsed = (System.nanoTime() - start) / 1_000_000d;
+        if (!violations.isEmpty()) {
+            validationDuration.record(elapsed, compiledSchema.invalidAttributes());
+            throw new EventPayloadValidationException(
+                    schemaName,
+                    violations.stream().map(ValidationMessage::getMessage).toList()
+            );
+        }
+        validationDuration.record(elapsed, compiledSchema.validAttributes());
+        return true;
+    }
+
+    /**
+     * Parse the input payload, validate it against the named schema and bind it to
+     * the target type. The payload is parsed only once, the resulting tree being
+     * used both for validation and deserialization
+     *
+     * @param payload      the raw payload
+     * @param schemaName   the schema name
+     * @param objectMapper the object mapper used to parse the payload
+     * @param clazz        the target type
+     * @param <T>          the target type
+     * @return the deserialized payload
+     * @throws IOException                     if the payload cannot be parsed or
+     *                                         bound to the target type
+     * @throws EventPayloadValidationException if the payload does not conform to
+     *                                         the schema
+     */
+    public <T> T read(
+                      byte[] payload,
+                      String schemaName,
+                      ObjectMapper objectMapper,
+                      Class<T> clazz
+    ) throws IOException {
+        return read(payload, schemaName, JsonPointer.empty(), objectMapper, objectMapper.constructType(clazz));
+    }
+
+    /**
+     * Parse the input payload, validate the node found at the input pointer against
+     * the named schema and bind the whole payload to the target type. This allows
+     * validating the event wrapped into a {@link QueueEvent} (see
+     * {@link #QUEUE_EVENT_POINTER})
+     *
+     * @param payload       the raw payload
+     * @param schemaName    the schema name
+     * @param validated     pointer to the node to be validated
+     * @param objectMapper  the object mapper used to parse the payload
+     * @param typeReference the target type
+     * @param <T>           the target type
+     * @return the deserialized payload
+     * @throws IOException                     if the payload cannot be parsed or
+     *                                         bound to the target type
+     * @throws EventPayloadValidationException if the validated node does not
+     *                                         conform to the schema
+     */
+    public <T> T read(
+                      byte[] payload,
+                      String schemaName,
+                      JsonPointer validated,
+                      ObjectMapper objectMapper,
+                      TypeReference<T> typeReference
+    ) throws IOException {
+        return read(payload, schemaName, validated, objectMapper, objectMapper.constructType(typeReference));
+    }
+
+    private <T> T read(
+                       byte[] payload,
+                       String schemaName,
+                       JsonPointer validated,
+                       ObjectMapper objectMapper,
+                       JavaType type
+    ) throws IOException {
+        JsonNode tree = objectMapper.readTree(payload);
+        JsonNode validatedNode = tree.at(validated);
+        if (validatedNode.isMissingNode()) {
+            throw new EventPayloadValidationException(
+                    schemaName,
+                    List.of("no node found at [%s]".formatted(validated))
+            );
+        }
+        validate(schemaName, validatedNode);
+        return objectMapper.treeToValue(tree, type);
+    }
+
+    private boolean isSampled() {
+        return samplingRate >= 1 || (samplingRate > 0 && ThreadLocalRandom.current().nextDouble() < samplingRate);
+    }
+
+    private CompiledSchema compiledSchema(String schemaName) {
+        return schemas.computeIfAbsent(schemaName, this::compile);
+    }
+
+    private CompiledSchema compile(String schemaName) {
+        log.debug("Compiling event schema [{}]", schemaName);
+        JsonSchema schema = schemaFactory.getSchema(SchemaLocation.of(SCHEMAS_LOCATION + schemaName + ".json"));
+        // resolve $refs and build all validators now, so that compiled schemas are
+        // never modified while shared between threads
+        schema.initializeValidators();
+        Attributes attributes = Attributes.of(SCHEMA_ATTRIBUTE, schemaName);
+        return new CompiledSchema(
+                schema,
+                attributes,
+                attributes.toBuilder().put(OUTCOME_ATTRIBUTE, "OK").build(),
+                attributes.toBuilder().put(OUTCOME_ATTRIBUTE, "KO").build()
+        );
+    }
+}
@@ -3,10 +3,8 @@ package it.pagopa.ecommerce.commons.queues;
 import com.azure.core.serializer.json.jackson.JacksonJsonSerializerBuilder;
 import com.azure.core.util.serializer.JsonSerializer;
 import com.azure.core.util.serializer.JsonSerializerProvider;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry;
 
 /**
  * <p>
@@ -16,15 +14,12 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
  */
 public class StrictJsonSerializerProvider implements JsonSerializerProvider {
     /**
-     * Object mapper associated to the {@link JsonSerializer}
+     * Object mapper associated to the {@link JsonSerializer}. A dedicated instance
+     * is used here since it can be customized with mixins (see
+     * {@link #addMixIn(Class, Class)})
      */
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .registerModule(new Jdk8Module())
-            .configure(DeserializationFeature.FAIL_ON_NULL_CREATOR_PROPERTIES, true)
-            .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, true)
-            .configure(DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES, true)
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true)
-            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    private final ObjectMapper objectMapper = ObjectMapperRegistry.getInstance()
+            .newObjectMapper(ObjectMapperRegistry.MapperConfiguration.STRICT);
 
     /**
      * No-args constructor
@@ -1,11 +1,14 @@
 package it.pagopa.ecommerce.commons.queues;
 
 import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.baggage.Baggage;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapSetter;
 import io.opentelemetry.instrumentation.reactor.v3_1.ContextPropagationOperator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,8 +18,8 @@ import reactor.core.publisher.Mono;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.function.Function;
 
 import static com.azure.core.util.tracing.Tracer.PARENT_TRACE_CONTEXT_KEY;
@@ -26,6 +29,13 @@ import static com.azure.core.util.tracing.Tracer.PARENT_TRACE_CONTEXT_KEY;
  * Tracing utilities to wrap {@link Mono}s with manual OpenTelemetry
  * instrumentation.
  * </p>
+ * <p>
+ * Tracing information is propagated through the configured OpenTelemetry
+ * propagators. When these are known to be the W3C trace context ones (see
+ * {@link #TracingUtils(OpenTelemetry, Tracer, boolean)}), {@code traceparent}
+ * and {@code tracestate} are encoded and decoded directly, and the propagators
+ * are used only for non-empty baggage.
+ * </p>
  */
 public class TracingUtils {
     /**
@@ -45,8 +55,11 @@ public class TracingUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(TracingUtils.class);
 
+    private static final TextMapSetter<HashMap<String, String>> RAW_TRACING_INFO_SETTER = HashMap::put;
+
     private final OpenTelemetry openTelemetry;
     private final Tracer tracer;
+    private final boolean w3cTraceContextCodec;
 
     /**
      * Primary constructor
@@ -57,9 +70,60 @@ public class TracingUtils {
     public TracingUtils(
             @NonNull OpenTelemetry openTelemetry,
             @NonNull Tracer tracer
+    ) {
+        this(openTelemetry, tracer, false);
+    }
+
+    /**
+     * Constructor allowing to encode and decode W3C trace context headers directly
+     *
+     * @param openTelemetry        OpenTelemetry API entrypoint
+     * @param tracer               Tracer from which to create spans
+     * @param w3cTraceContextCodec whether the configured propagators are the W3C
+     *                             trace context and, optionally, the W3C baggage
+     *                             ones (OpenTelemetry default), so that trace
+     *                             context can be propagated without going through
+     *                             them
+     */
+    public TracingUtils(
+            @NonNull OpenTelemetry openTelemetry,
+            @NonNull Tracer tracer,
+            boolean w3cTraceContextCodec
     ) {
         this.tracer = tracer;
         this.openTelemetry = openTelemetry;
+        this.w3cTraceContextCodec = w3cTraceContextCodec;
+    }
+
+    /**
+     * {@link TextMapGetter} reading propagated headers from {@link TracingInfo}
+     */
+    private enum TracingInfoGetter implements TextMapGetter<TracingInfo> {
+        INSTANCE;
+
+        private static final List<String> KEYS = List.of(TRACEPARENT, TRACESTATE, BAGGAGE);
+
+        @Override
+        public Iterable<String> keys(@Nonnull TracingInfo carrier) {
+            return KEYS;
+        }
+
+        @Nullable
+        @Override
+        public String get(
+                          @Nullable TracingInfo carrier,
+                          @Nonnull String key
+        ) {
+            if (carrier == null) {
+                return null;
+            }
+            return switch (key) {
+                case TRACEPARENT -> carrier.getTraceparent();
+                case TRACESTATE -> carrier.getTracestate().orElse(null);
+                case BAGGAGE -> carrier.getBaggage().orElse(null);
+                default -> null;
+            };
+        }
     }
 
     /**
@@ -110,20 +174,7 @@ public class TracingUtils {
                             .setParent(Context.current().with(Span.current()))
                             .startSpan();
 
-                    HashMap<String, String> rawTracingInfo = new HashMap<>();
-                    openTelemetry.getPropagators().getTextMapPropagator().inject(
-                            Context.current(),
-                            rawTracingInfo,
-                            HashMap::put
-                    );
-
-                    logger.debug("Raw tracing info: {}", rawTracingInfo);
-
-                    TracingInfo tracingInfo = new TracingInfo(
-                            rawTracingInfo.get(TRACEPARENT),
-                            Optional.ofNullable(rawTracingInfo.get(TRACESTATE)),
-                            Optional.ofNullable(rawTracingInfo.get(BAGGAGE))
-                    );
+                    TracingInfo tracingInfo = injectTracingInfo(Context.current());
 
                     return new TracingContext(span, tracingInfo);
                 },
@@ -168,38 +219,7 @@ public class TracingUtils {
     ) {
         logger.debug("Creating Span with remote tracing context: {}", tracingInfo);
 
-        Context parentContext;
-        if (tracingInfo != null) {
-            parentContext = openTelemetry.getPropagators().getTextMapPropagator().extract(
-                    Context.root(),
-                    tracingInfo,
-                    new TextMapGetter<>() {
-                        @Override
-                        public Iterable<String> keys(@Nonnull TracingInfo carrier) {
-                            return Set.of(TRACEPARENT, TRACESTATE, BAGGAGE);
-                        }
-
-                        @Nullable
-                        @Override
-                        public String get(
-                                          @Nullable TracingInfo carrier,
-                                          @Nonnull String key
-                        ) {
-                            return switch (key) {
-                                case TRACEPARENT -> Optional.ofNullable(carrier).map(TracingInfo::getTraceparent)
-                                        .orElse(null);
-                                case TRACESTATE -> Optional.ofNullable(carrier).flatMap(TracingInfo::getTracestate)
-                                        .orElse(null);
-                                case BAGGAGE -> Optional.ofNullable(carrier).flatMap(TracingInfo::getBaggage)
-                                        .orElse(null);
-                                default -> null;
-                            };
-                        }
-                    }
-            );
-        } else {
-            parentContext = Context.root();
-        }
+        Context parentContext = tracingInfo != null ? extractRemoteContext(tracingInfo) : Context.root();
         return tracer
                 .spanBuilder(spanName)
                 .setSpanKind(SpanKind.CONSUMER)
@@ -207,6 +227,62 @@ public class TracingUtils {
                 .startSpan();
     }
 
+    /**
+     * Build the tracing information to be propagated for the input context
+     *
+     * @param context the context to be propagated
+     * @return the propagated tracing information
+     */
+    @NonNull
+    TracingInfo injectTracingInfo(@NonNull Context context) {
+        if (w3cTraceContextCodec && Baggage.fromContext(context).isEmpty()) {
+            SpanContext spanContext = Span.fromContext(context).getSpanContext();
+            TracingInfo tracingInfo = new TracingInfo(
+                    W3CTraceContextCodec.encodeTraceparent(spanContext),
+                    Optional.ofNullable(W3CTraceContextCodec.encodeTracestate(spanContext)),
+                    Optional.empty()
+            );
+            logger.debug("Tracing info: {}", tracingInfo);
+            return tracingInfo;
+        }
+        HashMap<String, String> rawTracingInfo = new HashMap<>();
+        openTelemetry.getPropagators().getTextMapPropagator().inject(
+                context,
+                rawTracingInfo,
+                RAW_TRACING_INFO_SETTER
+        );
+
+        logger.debug("Raw tracing info: {}", rawTracingInfo);
+
+        return new TracingInfo(
+                rawTracingInfo.get(TRACEPARENT),
+                Optional.ofNullable(rawTracingInfo.get(TRACESTATE)),
+                Optional.ofNullable(rawTracingInfo.get(BAGGAGE))
+        );
+    }
+
+    /**
+     * Extract the remote context propagated with the input tracing information
+     *
+     * @param tracingInfo the propagated tracing information
+     * @return the remote context, child of the root context
+     */
+    @NonNull
+    Context extractRemoteContext(@NonNull TracingInfo tracingInfo) {
+        if (w3cTraceContextCodec && tracingInfo.getBaggage().isEmpty()) {
+            SpanContext spanContext = W3CTraceContextCodec.decode(
+                    tracingInfo.getTraceparent(),
+                    tracingInfo.getTracestate().orElse(null)
+            );
+            return spanContext.isValid() ? Context.root().with(Span.wrap(spanContext)) : Context.root();
+        }
+        return openTelemetry.getPropagators().getTextMapPropagator().extract(
+                Context.root(),
+                tracingInfo,
+                TracingInfoGetter.INSTANCE
+        );
+    }
+
     private <T> @NonNull Mono<T> traceMonoWithSpan(
                                                    @NonNull Span span,
                                                    @NonNull Mono<T> operation
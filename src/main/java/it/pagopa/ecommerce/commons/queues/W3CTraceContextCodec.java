@@ -0,0 +1,198 @@
+package it.pagopa.ecommerce.commons.queues;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.TraceStateBuilder;
+
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Direct encoder and decoder of the {@code traceparent} and {@code tracestate}
+ * headers defined by the <a href="https://w3c.github.io/trace-context/">W3C
+ * Trace Context</a> specification.
+ * </p>
+ * <p>
+ * Headers are read from and written to a {@link SpanContext} without going
+ * through a {@link io.opentelemetry.context.propagation.TextMapPropagator}
+ * carrier, producing and accepting exactly the same values as
+ * {@link io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator}.
+ * </p>
+ */
+final class W3CTraceContextCodec {
+
+    private static final String VERSION_00 = "00";
+
+    private static final char DELIMITER = '-';
+
+    private static final int VERSION_SIZE = 2;
+
+    private static final int TRACE_ID_OFFSET = VERSION_SIZE + 1;
+
+    private static final int SPAN_ID_OFFSET = TRACE_ID_OFFSET + TraceId.getLength() + 1;
+
+    private static final int TRACE_FLAGS_OFFSET = SPAN_ID_OFFSET + SpanId.getLength() + 1;
+
+    private static final int TRACEPARENT_SIZE = TRACE_FLAGS_OFFSET + TraceFlags.getLength();
+
+    private static final int TRACESTATE_MAX_MEMBERS = 32;
+
+    private static final Pattern TRACESTATE_MEMBERS_DELIMITER = Pattern.compile("[ \t]*,[ \t]*");
+
+    private W3CTraceContextCodec() {
+    }
+
+    /**
+     * Encode the {@code traceparent} header for the input span context
+     *
+     * @param spanContext the span context to be encoded
+     * @return the {@code traceparent} header value, or {@code null} if the span
+     *         context is not valid
+     */
+    @Nullable
+    static String encodeTraceparent(SpanContext spanContext) {
+        if (!spanContext.isValid()) {
+            return null;
+        }
+        return new StringBuilder(TRACEPARENT_SIZE)
+                .append(VERSION_00)
+                .append(DELIMITER)
+                .append(spanContext.getTraceId())
+                .append(DELIMITER)
+                .append(spanContext.getSpanId())
+                .append(DELIMITER)
+                .append(spanContext.getTraceFlags().asHex())
+                .toString();
+    }
+
+    /**
+     * Encode the {@code tracestate} header for the input span context
+     *
+     * @param spanContext the span context to be encoded
+     * @return the {@code tracestate} header value, or {@code null} if the span
+     *         context is not valid or has no trace state
+     */
+    @Nullable
+    static String encodeTracestate(SpanContext spanContext) {
+        TraceState traceState = spanContext.getTraceState();
+        if (!spanContext.isValid() || traceState.isEmpty()) {
+            return null;
+        }
+        TraceStateEncoder encoder = new TraceStateEncoder();
+        traceState.forEach(encoder);
+        return encoder.encoded.toString();
+    }
+
+    /**
+     * Decode a remote span context from the input headers. Malformed
+     * {@code tracestate} headers are dropped, keeping the span context decoded from
+     * {@code traceparent}
+     *
+     * @param traceparent the {@code traceparent} header value
+     * @param tracestate  the {@code tracestate} header value, if any
+     * @return the decoded span context, invalid if {@code traceparent} is missing
+     *         or malformed
+     */
+    static SpanContext decode(
+                              @Nullable String traceparent,
+                              @Nullable String tracestate
+    ) {
+        if (traceparent == null || !hasValidFormat(traceparent)) {
+            return SpanContext.getInvalid();
+        }
+        String traceId = traceparent.substring(TRACE_ID_OFFSET, TRACE_ID_OFFSET + TraceId.getLength());
+        String spanId = traceparent.substring(SPAN_ID_OFFSET, SPAN_ID_OFFSET + SpanId.getLength());
+        TraceFlags traceFlags = TraceFlags.fromByte(
+                (byte) Integer.parseInt(traceparent, TRACE_FLAGS_OFFSET, TRACEPARENT_SIZE, 16)
+        );
+        SpanContext spanContext = SpanContext.createFromRemoteParent(
+                traceId,
+                spanId,
+                traceFlags,
+                TraceState.getDefault()
+        );
+        if (!spanContext.isValid()) {
+            return SpanContext.getInvalid();
+        }
+        if (tracestate == null || tracestate.isEmpty()) {
+            return spanContext;
+        }
+        TraceState traceState = decodeTracestate(tracestate);
+        if (traceState.isEmpty()) {
+            return spanContext;
+        }
+        return SpanContext.createFromRemoteParent(traceId, spanId, traceFlags, traceState);
+    }
+
+    private static boolean hasValidFormat(String traceparent) {
+        int length = traceparent.length();
+        if (length < TRACEPARENT_SIZE
+                || (length > TRACEPARENT_SIZE && traceparent.charAt(TRACEPARENT_SIZE) != DELIMITER)) {
+            return false;
+        }
+        if (traceparent.charAt(TRACE_ID_OFFSET - 1) != DELIMITER
+                || traceparent.charAt(SPAN_ID_OFFSET - 1) != DELIMITER
+                || traceparent.charAt(TRACE_FLAGS_OFFSET - 1) != DELIMITER) {
+            return false;
+        }
+        char firstVersionChar = traceparent.charAt(0);
+        char secondVersionChar = traceparent.charAt(1);
+        if (!isBase16(firstVersionChar) || !isBase16(secondVersionChar)
+                || (firstVersionChar == 'f' && secondVersionChar == 'f')) {
+            return false;
+        }
+        // version 00 has a fixed size, future versions can append fields
+        if (firstVersionChar == '0' && secondVersionChar == '0' && length > TRACEPARENT_SIZE) {
+            return false;
+        }
+        return isBase16(traceparent.charAt(TRACE_FLAGS_OFFSET)) && isBase16(traceparent.charAt(TRACE_FLAGS_OFFSET + 1));
+    }
+
+    private static TraceState decodeTracestate(String tracestate) {
+        String[] members = TRACESTATE_MEMBERS_DELIMITER.split(tracestate);
+        if (members.length > TRACESTATE_MAX_MEMBERS) {
+            return TraceState.getDefault();
+        }
+        TraceStateBuilder builder = TraceState.builder();
+        // members are put in reverse order since the builder adds each member in front
+        for (int i = members.length - 1; i >= 0; i--) {
+            String member = members[i];
+            int delimiterIndex = member.indexOf('=');
+            if (delimiterIndex == -1) {
+                return TraceState.getDefault();
+            }
+            builder.put(member.substring(0, delimiterIndex), member.substring(delimiterIndex + 1));
+        }
+        TraceState traceState = builder.build();
+        // invalid members are discarded by the builder, drop the whole trace state
+        return traceState.size() == members.length ? traceState : TraceState.getDefault();
+    }
+
+    private static boolean isBase16(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    /**
+     * Trace state members encoder, in the trace state iteration order
+     */
+    private static final class TraceStateEncoder implements BiConsumer<String, String> {
+
+        private final StringBuilder encoded = new StringBuilder();
+
+        @Override
+        public void accept(
+                           String key,
+                           String value
+        ) {
+            if (!encoded.isEmpty()) {
+                encoded.append(',');
+            }
+            encoded.append(key).append('=').append(value);
+        }
+    }
+}
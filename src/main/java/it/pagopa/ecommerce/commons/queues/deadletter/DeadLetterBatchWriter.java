@@ -0,0 +1,320 @@
+package it.pagopa.ecommerce.commons.queues.deadletter;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import it.pagopa.ecommerce.commons.documents.DeadLetterEvent;
+import it.pagopa.ecommerce.commons.projections.v2.DeadLetterTransactionInfoMapper;
+import it.pagopa.ecommerce.commons.utils.DocumentIds;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.lang.Nullable;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Batching writer for {@link DeadLetterEvent} documents (dead-letter-events
+ * collection).
+ * </p>
+ * <p>
+ * Written events are buffered and inserted with a single bulk insert when
+ * either the max batch size is reached or the max batch delay elapses since the
+ * first buffered event, whichever comes first. Each write completes when the
+ * batch containing it has been inserted, and fails if the batch insert fails.
+ * </p>
+ * <p>
+ * Insertion dates are written with {@link #formatInsertionDate(Instant)}, as
+ * UTC date times with a fixed number of fraction digits, so that their string
+ * order is their chronological order.
+ * </p>
+ * <p>
+ * At most the configured max number of pending events are buffered waiting for
+ * a batch insert: writes exceeding it are rejected with an overflow error (see
+ * {@link Exceptions#isOverflow(Throwable)}), instead of growing the buffer when
+ * the collection is slower than the writers.
+ * </p>
+ * <p>
+ * Events are inserted once the writer is started with {@link #start()}, events
+ * written before are buffered. The writer accepts events until
+ * {@link #shutdown()} is called, that inserts the buffered events, or until it
+ * is disposed, that inserts them in background.
+ * </p>
+ */
+@Slf4j
+public class DeadLetterBatchWriter implements Disposable {
+
+    /**
+     * Prefix used for all the metrics exported by this writer
+     */
+    public static final String METRIC_PREFIX = "ecommerce.deadletter.writer.";
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private static final Attributes OK_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "OK");
+
+    private static final Attributes KO_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "KO");
+
+    private static final Attributes REJECTED_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "REJECTED");
+
+    /**
+     * Insertion date format: UTC date time with nanoseconds, always written with 9
+     * fraction digits (e.g. {@code 2024-08-27T10:07:20.768000000Z})
+     */
+    private static final DateTimeFormatter INSERTION_DATE_FORMATTER = DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final int maxBatchSize;
+
+    private final Duration maxBatchDelay;
+
+    private final int maxPendingEvents;
+
+    private final Scheduler scheduler;
+
+    private final Sinks.Many<PendingEvent> pendingEvents;
+
+    private final Sinks.Empty<Void> terminated = Sinks.empty();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile boolean disposed;
+
+    private final LongCounter batches;
+
+    private final LongCounter events;
+
+    private final LongHistogram batchSize;
+
+    /**
+     * Build a new writer instance
+     *
+     * @param mongoOperations  the reactive Mongo operations used to access the dead
+     *                         letter collection
+     * @param maxBatchSize     the max number of events inserted with a single bulk
+     *                         insert
+     * @param maxBatchDelay    the max time an event is buffered before being
+     *                         inserted
+     * @param maxPendingEvents the max number of events buffered waiting for a batch
+     *                         insert
+     * @param scheduler        the scheduler used to time batch delays
+     * @param meter            the meter used to register metrics
+     */
+    public DeadLetterBatchWriter(
+            ReactiveMongoOperations mongoOperations,
+            int maxBatchSize,
+            Duration maxBatchDelay,
+            int maxPendingEvents,
+            Scheduler scheduler,
+            Meter meter
+    ) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid max batch size: [%s], it must be > 0".formatted(maxBatchSize));
+        }
+        if (maxBatchDelay.isNegative() || maxBatchDelay.isZero()) {
+            throw new IllegalArgumentException(
+                    "Invalid max batch delay: [%s], it must be > 0".formatted(maxBatchDelay)
+            );
+        }
+        if (maxPendingEvents <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid max pending events: [%s], it must be > 0".formatted(maxPendingEvents)
+            );
+        }
+        this.mongoOperations = Objects.requireNonNull(mongoOperations);
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelay = maxBatchDelay;
+        this.maxPendingEvents = maxPendingEvents;
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.pendingEvents = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(maxPendingEvents));
+        this.batches = meter.counterBuilder(METRIC_PREFIX + "batches")
+                .setDescription("Number of dead letter bulk inserts, by outcome")
+                .build();
+        this.events = meter.counterBuilder(METRIC_PREFIX + "events")
+                .setDescription("Number of dead letter events written, by outcome")
+                .build();
+        this.batchSize = meter.histogramBuilder(METRIC_PREFIX + "batch_size")
+                .setDescription("Number of dead letter events per bulk insert")
+                .ofLongs()
+                .build();
+    }
+
+    /**
+     * Start inserting the written events
+     *
+     * @return this writer
+     * @throws IllegalStateException if the writer has already been started
+     */
+    public DeadLetterBatchWriter start() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Dead letter batch writer already started");
+        }
+        subscribe();
+        return this;
+    }
+
+    /**
+     * Write a dead letter event for a message of the input queue, with transaction
+     * info derived from the transaction aggregate, if any
+     *
+     * @param queueName the name of the queue the message was read from
+     * @param data      the dead lettered message
+     * @param aggregate the aggregate of the transaction the message refers to, if
+     *                  known
+     * @return a {@link Mono} emitting the written event once it has been inserted
+     */
+    public Mono<DeadLetterEvent> write(
+                                       String queueName,
+                                       String data,
+                                       @Nullable it.pagopa.ecommerce.commons.domain.v2.Transaction aggregate
+    ) {
+        return Mono.defer(() -> {
+            DeadLetterEvent event = new DeadLetterEvent(
+                    DocumentIds.newId(),
+                    queueName,
+                    formatInsertionDate(Instant.now()),
+                    data,
+                    aggregate == null ? null
+                            : DeadLetterTransactionInfoMapper.toTransactionInfo(aggregate).orElse(null)
+            );
+            return write(event).thenReturn(event);
+        });
+    }
+
+    /**
+     * Format an instant as a dead letter event insertion date. Formatted dates have
+     * a fixed width, so that comparing them as strings, e.g. in Mongo range
+     * queries, is consistent with the chronological order
+     *
+     * @param instant the instant to be formatted
+     * @return the formatted insertion date
+     */
+    public static String formatInsertionDate(Instant instant) {
+        return INSERTION_DATE_FORMATTER.format(instant);
+    }
+
+    /**
+     * Write a dead letter event
+     *
+     * @param event the dead letter event
+     * @return a {@link Mono} completing once the event has been inserted
+     */
+    public Mono<Void> write(DeadLetterEvent event) {
+        return Mono.defer(() -> {
+            PendingEvent pending = new PendingEvent(event, Sinks.empty());
+            Sinks.EmitResult emitResult;
+            // the buffer accepts a single producer at a time
+            synchronized (pendingEvents) {
+                emitResult = pendingEvents.tryEmitNext(pending);
+            }
+            if (emitResult == Sinks.EmitResult.FAIL_OVERFLOW || emitResult == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+                events.add(1, REJECTED_ATTRIBUTES);
+                return Mono.error(
+                        Exceptions.failWithOverflow(
+                                "Cannot write dead letter event with id: [%s], max pending events reached: [%s]"
+                                        .formatted(event.getId(), maxPendingEvents)
+                        )
+                );
+            }
+            if (emitResult.isFailure()) {
+                return Mono.error(
+                        new IllegalStateException(
+                                "Cannot write dead letter event with id: [%s], writer result: [%s]"
+                                        .formatted(event.getId(), emitResult)
+                        )
+                );
+            }
+            return pending.result().asMono();
+        });
+    }
+
+    /**
+     * Stop accepting events and insert the buffered ones
+     *
+     * @return a {@link Mono} completing when all the buffered events have been
+     *         inserted
+     */
+    public Mono<Void> shutdown() {
+        return Mono.defer(() -> {
+            disposed = true;
+            synchronized (pendingEvents) {
+                pendingEvents.tryEmitComplete();
+            }
+            // events written to a writer that was never started are inserted anyway
+            if (started.compareAndSet(false, true)) {
+                subscribe();
+            }
+            return terminated.asMono();
+        });
+    }
+
+    /**
+     * Stop accepting events, inserting the buffered ones in background. Use
+     * {@link #shutdown()} to wait for them to be inserted
+     */
+    @Override
+    public void dispose() {
+        shutdown().subscribe();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    private void subscribe() {
+        // fair backpressure and a single prefetched batch make the buffer request
+        // events only when a batch can be inserted, so that pending events wait in
+        // the bounded sink queue
+        pendingEvents.asFlux()
+                .bufferTimeout(maxBatchSize, maxBatchDelay, scheduler, true)
+                .concatMap(this::insert, 1)
+                .doOnTerminate(terminated::tryEmitEmpty)
+                .subscribe();
+    }
+
+    private Mono<Void> insert(List<PendingEvent> batch) {
+        List<DeadLetterEvent> batchEvents = batch.stream().map(PendingEvent::event).toList();
+        return mongoOperations.insert(batchEvents, DeadLetterEvent.class)
+                .then()
+                .doOnSuccess(ignored -> {
+                    batches.add(1, OK_ATTRIBUTES);
+                    events.add(batch.size(), OK_ATTRIBUTES);
+                    batchSize.record(batch.size());
+                    batch.forEach(pending -> pending.result().tryEmitEmpty());
+                })
+                .onErrorResume(e -> {
+                    log.error("Error inserting [{}] dead letter events", batch.size(), e);
+                    batches.add(1, KO_ATTRIBUTES);
+                    events.add(batch.size(), KO_ATTRIBUTES);
+                    batch.forEach(pending -> pending.result().tryEmitError(e));
+                    return Mono.empty();
+                });
+    }
+
+    private record PendingEvent(
+            DeadLetterEvent event,
+            Sinks.Empty<Void> result
+    ) {
+    }
+}
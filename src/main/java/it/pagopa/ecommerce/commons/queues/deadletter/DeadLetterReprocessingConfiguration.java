@@ -0,0 +1,97 @@
+package it.pagopa.ecommerce.commons.queues.deadletter;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration for a {@link DeadLetterReprocessor}
+ *
+ * @param maxEventsPerSecond max number of dead letter events re-enqueued per
+ *                           second
+ * @param maxConcurrency     max number of messages being sent to the target
+ *                           queue concurrently
+ * @param checkpointInterval number of reprocessed events after which the job
+ *                           progress is saved
+ * @param cursorBatchSize    number of dead letter events fetched per cursor
+ *                           batch
+ * @param messageTimeToLive  time to live of the re-enqueued messages
+ */
+public record DeadLetterReprocessingConfiguration(
+        int maxEventsPerSecond,
+        int maxConcurrency,
+        int checkpointInterval,
+        int cursorBatchSize,
+        Duration messageTimeToLive
+) {
+
+    /**
+     * Default max number of events re-enqueued per second
+     */
+    public static final int DEFAULT_MAX_EVENTS_PER_SECOND = 50;
+
+    /**
+     * Default max number of concurrent sends
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    /**
+     * Default number of events between two progress checkpoints
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+
+    /**
+     * Default cursor batch size
+     */
+    public static final int DEFAULT_CURSOR_BATCH_SIZE = 200;
+
+    /**
+     * Default re-enqueued messages time to live
+     */
+    public static final Duration DEFAULT_MESSAGE_TIME_TO_LIVE = Duration.ofDays(7);
+
+    /**
+     * Validate configuration parameters
+     *
+     * @param maxEventsPerSecond max number of events re-enqueued per second
+     * @param maxConcurrency     max number of concurrent sends
+     * @param checkpointInterval number of events between two checkpoints
+     * @param cursorBatchSize    number of events fetched per cursor batch
+     * @param messageTimeToLive  re-enqueued messages time to live
+     */
+    public DeadLetterReprocessingConfiguration {
+        requirePositive(maxEventsPerSecond, "maxEventsPerSecond");
+        requirePositive(maxConcurrency, "maxConcurrency");
+        requirePositive(checkpointInterval, "checkpointInterval");
+        requirePositive(cursorBatchSize, "cursorBatchSize");
+        Objects.requireNonNull(messageTimeToLive, "messageTimeToLive null not valid");
+        if (messageTimeToLive.isNegative() || messageTimeToLive.isZero()) {
+            throw new IllegalArgumentException(
+                    "Invalid messageTimeToLive: [%s], it must be > 0".formatted(messageTimeToLive)
+            );
+        }
+    }
+
+    /**
+     * Build a configuration with default values
+     *
+     * @return the configuration
+     */
+    public static DeadLetterReprocessingConfiguration withDefaults() {
+        return new DeadLetterReprocessingConfiguration(
+                DEFAULT_MAX_EVENTS_PER_SECOND,
+                DEFAULT_MAX_CONCURRENCY,
+                DEFAULT_CHECKPOINT_INTERVAL,
+                DEFAULT_CURSOR_BATCH_SIZE,
+                DEFAULT_MESSAGE_TIME_TO_LIVE
+        );
+    }
+
+    private static void requirePositive(
+                                        int value,
+                                        String name
+    ) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid %s: [%s], it must be > 0".formatted(name, value));
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package it.pagopa.ecommerce.commons.queues.deadletter;
+
+import com.azure.core.util.serializer.JsonSerializer;
+import com.azure.core.util.serializer.TypeReference;
+import com.mongodb.client.result.UpdateResult;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import it.pagopa.ecommerce.commons.client.QueueAsyncClient;
+import it.pagopa.ecommerce.commons.documents.BaseTransactionEvent;
+import it.pagopa.ecommerce.commons.documents.DeadLetterEvent;
+import it.pagopa.ecommerce.commons.documents.DeadLetterReprocessingCheckpoint;
+import it.pagopa.ecommerce.commons.queues.QueueEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import javax.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Reprocessing engine for {@link DeadLetterEvent} documents: dead letter events
+ * of a queue are streamed by insertion date and their data, that is the dead
+ * lettered {@link QueueEvent}, is sent again to the queue through a
+ * {@link QueueAsyncClient}.
+ * </p>
+ * <p>
+ * Reprocessing is performed as a job identified by a caller provided id:
+ * </p>
+ * <ul>
+ * <li>events are re-enqueued at most at the configured rate, with bounded
+ * concurrency</li>
+ * <li>the job progress, that is the last re-enqueued event in (insertion date,
+ * id) order, is saved every configured number of events and when the job
+ * terminates, successfully or not. Running again a job with the same id resumes
+ * it after the last saved event, so events can be re-enqueued more than once if
+ * a job fails between two checkpoints</li>
+ * <li>events whose data is not a valid queue event are skipped and counted,
+ * since they cannot be sent; a send failure instead stops the job, so that it
+ * can be resumed once the queue is available</li>
+ * </ul>
+ * <p>
+ * Insertion dates are compared as strings, with the time range bounds encoded
+ * with {@link DeadLetterBatchWriter#formatInsertionDate(Instant)}: this is
+ * consistent with the chronological order only for dates written with that
+ * fixed width UTC format, that is for events written by
+ * {@link DeadLetterBatchWriter}. Events whose insertion date has been written
+ * with a different format (e.g. {@code ZonedDateTime#toString}, with a zone
+ * offset or a different number of fraction digits) are not supported by
+ * {@link #reprocess(String, QueueAsyncClient, Instant, Instant)}: they must be
+ * rewritten in the fixed width format with
+ * {@link #normalizeInsertionDates(String)} before being reprocessed, otherwise
+ * they can be missed or reprocessed in the wrong time range. Dead letter events
+ * are not deleted once re-enqueued.
+ * </p>
+ *
+ * @param <E> the event type, that is the event hierarchy root of an event
+ *            version
+ */
+@Slf4j
+public class DeadLetterReprocessor<E extends BaseTransactionEvent<?>> {
+
+    /**
+     * Prefix used for all the metrics exported by this reprocessor
+     */
+    public static final String METRIC_PREFIX = "ecommerce.deadletter.reprocessing.";
+
+    private static final String QUEUE_NAME_FIELD = "queueName";
+
+    private static final String INSERTION_DATE_FIELD = "insertionDate";
+
+    private static final String ID_FIELD = "_id";
+
+    /**
+     * Insertion dates written with
+     * {@link DeadLetterBatchWriter#formatInsertionDate(Instant)}
+     */
+    private static final Pattern FIXED_WIDTH_INSERTION_DATE = Pattern
+            .compile("^\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{9}Z$");
+
+    /**
+     * Index of the dead letter events collection used to stream the events of a
+     * queue in (insertion date, id) order
+     */
+    public static final IndexDefinition INDEX = new Index()
+            .on(QUEUE_NAME_FIELD, Sort.Direction.ASC)
+            .on(INSERTION_DATE_FIELD, Sort.Direction.ASC)
+            .on(ID_FIELD, Sort.Direction.ASC)
+            .named("queueName_insertionDate_id");
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private static final Attributes OK_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "OK");
+
+    private static final Attributes KO_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "KO");
+
+    private static final Attributes SKIPPED_ATTRIBUTES = Attributes.of(OUTCOME_ATTRIBUTE, "SKIPPED");
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final JsonSerializer jsonSerializer;
+
+    private final TypeReference<QueueEvent<E>> queueEventType;
+
+    private final DeadLetterReprocessingConfiguration configuration;
+
+    private final Scheduler scheduler;
+
+    private final Duration eventInterval;
+
+    private final LongCounter events;
+
+    private final LongCounter jobs;
+
+    /**
+     * Build a new reprocessor instance
+     *
+     * @param mongoOperations the reactive Mongo operations used to access the dead
+     *                        letter and checkpoint collections
+     * @param jsonSerializer  the serializer used to read dead lettered queue
+     *                        events, that is the one used by the target
+     *                        {@link QueueAsyncClient}
+     * @param queueEventType  the type of the dead lettered queue events
+     * @param configuration   the reprocessing configuration
+     * @param scheduler       the scheduler used to rate limit reprocessing
+     * @param meter           the meter used to register metrics
+     */
+    public DeadLetterReprocessor(
+            ReactiveMongoOperations mongoOperations,
+            JsonSerializer jsonSerializer,
+            TypeReference<QueueEvent<E>> queueEventType,
+            DeadLetterReprocessingConfiguration configuration,
+            Scheduler scheduler,
+            Meter meter
+    ) {
+        this.mongoOperations = Objects.requireNonNull(mongoOperations);
+        this.jsonSerializer = Objects.requireNonNull(jsonSerializer);
+        this.queueEventType = Objects.requireNonNull(queueEventType);
+        this.configuration = Objects.requireNonNull(configuration);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.eventInterval = Duration.ofNanos(Duration.ofSeconds(1).toNanos() / configuration.maxEventsPerSecond());
+        this.events = meter.counterBuilder(METRIC_PREFIX + "events")
+                .setDescription("Number of dead letter events reprocessed, by outcome")
+                .build();
+        this.jobs = meter.counterBuilder(METRIC_PREFIX + "jobs")
+                .setDescription("Number of reprocessing job runs, by outcome")
+                .build();
+    }
+
+    /**
+     * Build a new reprocessor for v1 queue events
+     *
+     * @param mongoOperations the reactive Mongo operations
+     * @param jsonSerializer  the queue events serializer
+     * @param configuration   the reprocessing configuration
+     * @param scheduler       the scheduler used to rate limit reprocessing
+     * @param meter           the meter used to register metrics
+     * @return the reprocessor instance
+     */
+    public static DeadLetterReprocessor<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> v1(
+                                                                                                         ReactiveMongoOperations mongoOperations,
+                                                                                                         JsonSerializer jsonSerializer,
+                                                                                                         DeadLetterReprocessingConfiguration configuration,
+                                                                                                         Scheduler scheduler,
+                                                                                                         Meter meter
+    ) {
+        return new DeadLetterReprocessor<>(
+                mongoOperations,
+                jsonSerializer,
+                new TypeReference<QueueEvent<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>>>() {
+                },
+                configuration,
+                scheduler,
+                meter
+        );
+    }
+
+    /**
+     * Build a new reprocessor for v2 queue events
+     *
+     * @param mongoOperations the reactive Mongo operations
+     * @param jsonSerializer  the queue events serializer
+     * @param configuration   the reprocessing configuration
+     * @param scheduler       the scheduler used to rate limit reprocessing
+     * @param meter           the meter used to register metrics
+     * @return the reprocessor instance
+     */
+    public static DeadLetterReprocessor<it.pagopa.ecommerce.commons.documents.v2.TransactionEvent<?>> v2(
+                                                                                                         ReactiveMongoOperations mongoOperations,
+                                                                                                         JsonSerializer jsonSerializer,
+                                                                                                         DeadLetterReprocessingConfiguration configuration,
+                                                                                                         Scheduler scheduler,
+                                                                                                         Meter meter
+    ) {
+        return new DeadLetterReprocessor<>(
+                mongoOperations,
+                jsonSerializer,
+                new TypeReference<QueueEvent<it.pagopa.ecommerce.commons.documents.v2.TransactionEvent<?>>>() {
+                },
+                configuration,
+                scheduler,
+                meter
+        );
+    }
+
+    /**
+     * Create the dead letter events index used for reprocessing, if missing
+     *
+     * @return a {@link Mono} completing when the index exists
+     */
+    public Mono<Void> ensureIndexes() {
+        return mongoOperations.indexOps(DeadLetterEvent.class).ensureIndex(INDEX).then();
+    }
+
+    /**
+     * Rewrite in the fixed width UTC format the insertion dates of the dead letter
+     * events of the input queue written with a different format, e.g. by services
+     * using {@code ZonedDateTime#toString}, so that they can be reprocessed. Each
+     * event is updated only if its insertion date has not changed in the meantime;
+     * events whose insertion date cannot be parsed as a zoned date time are logged
+     * and left unchanged
+     *
+     * @param queueName the queue whose dead letter events are normalized
+     * @return a {@link Mono} emitting the number of normalized events
+     */
+    public Mono<Long> normalizeInsertionDates(String queueName) {
+        Query legacyEventsQuery = Query.query(
+                Criteria.where(QUEUE_NAME_FIELD).is(queueName)
+                        .and(INSERTION_DATE_FIELD).not().regex(FIXED_WIDTH_INSERTION_DATE)
+        ).cursorBatchSize(configuration.cursorBatchSize());
+        return mongoOperations.find(legacyEventsQuery, DeadLetterEvent.class)
+                .concatMap(event -> {
+                    Optional<String> normalizedInsertionDate = normalizeInsertionDate(event.getInsertionDate());
+                    if (normalizedInsertionDate.isEmpty()) {
+                        log.warn(
+                                "Cannot normalize insertion date: [{}] of dead letter event with id: [{}]",
+                                event.getInsertionDate(),
+                                event.getId()
+                        );
+                        return Mono.just(0L);
+                    }
+                    return mongoOperations.updateFirst(
+                            Query.query(
+                                    Criteria.where(ID_FIELD).is(event.getId())
+                                            .and(INSERTION_DATE_FIELD).is(event.getInsertionDate())
+                            ),
+                            Update.update(INSERTION_DATE_FIELD, normalizedInsertionDate.get()),
+                            DeadLetterEvent.class
+                    ).map(UpdateResult::getModifiedCount);
+                })
+                .reduce(0L, Long::sum)
+                .doOnNext(
+                        normalizedEvents -> log.info(
+                                "Normalized insertion date of [{}] dead letter events of queue: [{}]",
+                                normalizedEvents,
+                                queueName
+                        )
+                );
+    }
+
+    /**
+     * Parse an insertion date written with a format other than the fixed width one
+     *
+     * @param insertionDate the insertion date
+     * @return the insertion date in the fixed width UTC format, or empty if it
+     *         cannot be parsed
+     */
+    static Optional<String> normalizeInsertionDate(@Nullable String insertionDate) {
+        if (insertionDate == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(
+                    DeadLetterBatchWriter.formatInsertionDate(ZonedDateTime.parse(insertionDate).toInstant())
+            );
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Re-enqueue the dead letter events of the target queue inserted in the input
+     * time range, resuming the job with the input id if it has already been run
+     *
+     * @param jobId       the reprocessing job id
+     * @param targetQueue the queue whose dead letter events are re-enqueued
+     * @param from        the insertion date of the first event to be re-enqueued,
+     *                    inclusive
+     * @param to          the insertion date of the last event to be re-enqueued,
+     *                    exclusive
+     * @return a {@link Mono} emitting the job progress once all the events have
+     *         been re-enqueued, or failing with the error that stopped the job
+     *         after its progress has been saved
+     */
+    public Mono<DeadLetterReprocessingCheckpoint> reprocess(
+                                                            String jobId,
+                                                            QueueAsyncClient targetQueue,
+                                                            Instant from,
+                                                            Instant to
+    ) {
+        String queueName = targetQueue.getQueueName();
+        DeadLetterReprocessingCheckpoint newCheckpoint = new DeadLetterReprocessingCheckpoint(
+                jobId,
+                queueName,
+                DeadLetterBatchWriter.formatInsertionDate(from),
+                DeadLetterBatchWriter.formatInsertionDate(to),
+                null,
+                null,
+                0,
+                0,
+                false
+        );
+        return mongoOperations.findById(jobId, DeadLetterReprocessingCheckpoint.class)
+                .flatMap(checkpoint -> checkSameJob(checkpoint, newCheckpoint))
+                .defaultIfEmpty(newCheckpoint)
+                .flatMap(checkpoint -> checkpoint.isCompleted() ? Mono.just(checkpoint) : run(checkpoint, targetQueue))
+                .doOnNext(checkpoint -> {
+                    jobs.add(1, OK_ATTRIBUTES);
+                    log.info(
+                            "Reprocessing job with id: [{}] completed, re-enqueued events: [{}], skipped events: [{}]",
+                            jobId,
+                            checkpoint.getReprocessedEvents(),
+                            checkpoint.getSkippedEvents()
+                    );
+                })
+                .doOnError(e -> {
+                    jobs.add(1, KO_ATTRIBUTES);
+                    log.error("Reprocessing job with id: [{}] stopped", jobId, e);
+                });
+    }
+
+    private Mono<DeadLetterReprocessingCheckpoint> run(
+                                                       DeadLetterReprocessingCheckpoint checkpoint,
+                                                       QueueAsyncClient targetQueue
+    ) {
+        int checkpointInterval = configuration.checkpointInterval();
+        AtomicLong sinceLastSave = new AtomicLong();
+        return mongoOperations.find(pendingEventsQuery(checkpoint), DeadLetterEvent.class)
+                .delayElements(eventInterval, scheduler)
+                .flatMapSequential(event -> reenqueue(event, targetQueue), configuration.maxConcurrency())
+                .concatMap(reprocessedEvent -> {
+                    // results are emitted in query order, so the checkpoint is always
+                    // the last of a prefix of re-enqueued events
+                    checkpoint.setLastInsertionDate(reprocessedEvent.event().getInsertionDate());
+                    checkpoint.setLastEventId(reprocessedEvent.event().getId());
+                    if (reprocessedEvent.skipped()) {
+                        checkpoint.setSkippedEvents(checkpoint.getSkippedEvents() + 1);
+                    } else {
+                        checkpoint.setReprocessedEvents(checkpoint.getReprocessedEvents() + 1);
+                    }
+                    if (sinceLastSave.incrementAndGet() < checkpointInterval) {
+                        return Mono.just(checkpoint);
+                    }
+                    sinceLastSave.set(0);
+                    return mongoOperations.save(checkpoint);
+                })
+                .onErrorResume(e -> mongoOperations.save(checkpoint).then(Mono.error(e)))
+                .then(Mono.defer(() -> {
+                    checkpoint.setCompleted(true);
+                    return mongoOperations.save(checkpoint);
+                }));
+    }
+
+    private Mono<ReprocessedEvent> reenqueue(
+                                             DeadLetterEvent event,
+                                             QueueAsyncClient targetQueue
+    ) {
+        QueueEvent<E> queueEvent;
+        try {
+            queueEvent = jsonSerializer
+                    .deserializeFromBytes(event.getData().getBytes(StandardCharsets.UTF_8), queueEventType);
+        } catch (RuntimeException e) {
+            log.warn("Skipping dead letter event with id: [{}], data is not a valid queue event", event.getId(), e);
+            events.add(1, SKIPPED_ATTRIBUTES);
+            return Mono.just(new ReprocessedEvent(event, true));
+        }
+        return targetQueue.sendMessageWithResponse(queueEvent, Duration.ZERO, configuration.messageTimeToLive())
+                .doOnNext(response -> events.add(1, OK_ATTRIBUTES))
+                .doOnError(e -> events.add(1, KO_ATTRIBUTES))
+                .thenReturn(new ReprocessedEvent(event, false));
+    }
+
+    private static Mono<DeadLetterReprocessingCheckpoint> checkSameJob(
+                                                                       DeadLetterReprocessingCheckpoint checkpoint,
+                                                                       DeadLetterReprocessingCheckpoint newCheckpoint
+    ) {
+        // range bounds are compared as instants, since checkpoints saved before the
+        // fixed width insertion date format was introduced store them as
+        // Instant#toString
+        if (!checkpoint.getQueueName().equals(newCheckpoint.getQueueName())
+                || !Instant.parse(checkpoint.getFromInsertionDate())
+                        .equals(Instant.parse(newCheckpoint.getFromInsertionDate()))
+                || !Instant.parse(checkpoint.getToInsertionDate())
+                        .equals(Instant.parse(newCheckpoint.getToInsertionDate()))) {
+            return Mono.error(
+                    new IllegalArgumentException(
+                            "Reprocessing job with id: [%s] already exists for queue: [%s] and range: [%s, %s)"
+                                    .formatted(
+                                            checkpoint.getJobId(),
+                                            checkpoint.getQueueName(),
+                                            checkpoint.getFromInsertionDate(),
+                                            checkpoint.getToInsertionDate()
+                                    )
+                    )
+            );
+        }
+        checkpoint.setFromInsertionDate(newCheckpoint.getFromInsertionDate());
+        checkpoint.setToInsertionDate(newCheckpoint.getToInsertionDate());
+        return Mono.just(checkpoint);
+    }
+
+    private Query pendingEventsQuery(DeadLetterReprocessingCheckpoint checkpoint) {
+        Criteria criteria = Criteria.where(QUEUE_NAME_FIELD).is(checkpoint.getQueueName());
+        if (checkpoint.getLastInsertionDate() == null) {
+            criteria = criteria.and(INSERTION_DATE_FIELD)
+                    .gte(checkpoint.getFromInsertionDate())
+                    .lt(checkpoint.getToInsertionDate());
+        } else {
+            criteria = criteria.orOperator(
+                    Criteria.where(INSERTION_DATE_FIELD)
+                            .gt(checkpoint.getLastInsertionDate())
+                            .lt(checkpoint.getToInsertionDate()),
+                    Criteria.where(INSERTION_DATE_FIELD).is(checkpoint.getLastInsertionDate())
+                            .and(ID_FIELD).gt(checkpoint.getLastEventId())
+            );
+        }
+        return Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, INSERTION_DATE_FIELD, ID_FIELD))
+                .cursorBatchSize(configuration.cursorBatchSize());
+    }
+
+    private record ReprocessedEvent(
+            DeadLetterEvent event,
+            boolean skipped
+    ) {
+    }
+}
@@ -0,0 +1,213 @@
+package it.pagopa.ecommerce.commons.redis.converters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * Redis serializer that stores values in a compact binary form.
+ * </p>
+ * <p>
+ * Compact values are made of a fixed header followed by the CBOR encoded
+ * payload:
+ * </p>
+ * <ul>
+ * <li>1 byte: magic value {@value #MAGIC}</li>
+ * <li>1 byte: format version {@value #FORMAT_VERSION}</li>
+ * <li>4 bytes: schema fingerprint of the serialized type</li>
+ * </ul>
+ * <p>
+ * The schema fingerprint is computed from the (recursive) record components
+ * names and types, so that a value written with a different version of the
+ * serialized type, whose positional encoding may not match, is rejected instead
+ * of being silently misread.
+ * </p>
+ * <p>
+ * Values starting with a JSON object token are decoded as plain JSON, allowing
+ * reads of values written by Jackson2JsonRedisSerializer during migration
+ * </p>
+ *
+ * @param <T> the serialized type
+ */
+public class CompactRedisSerializer<T> implements RedisSerializer<T> {
+
+    /**
+     * Magic byte identifying compact encoded values
+     */
+    public static final byte MAGIC = (byte) 0xEC;
+
+    /**
+     * Current compact format version
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Compact header length in bytes: magic, version and schema fingerprint
+     */
+    public static final int HEADER_LENGTH = 6;
+
+    private static final byte JSON_OBJECT_START = '{';
+
+    private final Class<T> type;
+
+    private final RedisValueEncoding writeEncoding;
+
+    private final int schemaFingerprint;
+
+    private final ObjectReader compactReader;
+
+    private final ObjectWriter compactWriter;
+
+    private final ObjectReader jsonReader;
+
+    private final ObjectWriter jsonWriter;
+
+    /**
+     * Build a new compact serializer instance
+     *
+     * @param compactObjectMapper the binary object mapper used for compact values
+     * @param jsonObjectMapper    the object mapper used for plain JSON values
+     * @param type                the serialized type
+     * @param writeEncoding       the encoding used to write values
+     */
+    public CompactRedisSerializer(
+            ObjectMapper compactObjectMapper,
+            ObjectMapper jsonObjectMapper,
+            Class<T> type,
+            RedisValueEncoding writeEncoding
+    ) {
+        this.type = Objects.requireNonNull(type);
+        this.writeEncoding = Objects.requireNonNull(writeEncoding);
+        this.schemaFingerprint = schemaFingerprint(type);
+        this.compactReader = compactObjectMapper.readerFor(type);
+        this.compactWriter = compactObjectMapper.writerFor(type);
+        this.jsonReader = jsonObjectMapper.readerFor(type);
+        this.jsonWriter = jsonObjectMapper.writerFor(type);
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            if (writeEncoding == RedisValueEncoding.JSON) {
+                return jsonWriter.writeValueAsBytes(value);
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+            outputStream.write(
+                    ByteBuffer.allocate(HEADER_LENGTH)
+                            .put(MAGIC)
+                            .put(FORMAT_VERSION)
+                            .putInt(schemaFingerprint)
+                            .array()
+            );
+            compactWriter.writeValue(outputStream, value);
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write %s: %s".formatted(type.getName(), e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes[0] == JSON_OBJECT_START) {
+                return jsonReader.readValue(bytes);
+            }
+            if (bytes[0] != MAGIC || bytes.length < HEADER_LENGTH) {
+                throw new SerializationException("Unrecognized value encoding for %s".formatted(type.getName()));
+            }
+            ByteBuffer header = ByteBuffer.wrap(bytes, 1, HEADER_LENGTH - 1);
+            byte version = header.get();
+            if (version != FORMAT_VERSION) {
+                throw new SerializationException(
+                        "Unsupported compact format version: [%s] for %s".formatted(version, type.getName())
+                );
+            }
+            int fingerprint = header.getInt();
+            if (fingerprint != schemaFingerprint) {
+                throw new SerializationException(
+                        "Schema fingerprint mismatch for %s: expected [%s], found [%s]"
+                                .formatted(type.getName(), schemaFingerprint, fingerprint)
+                );
+            }
+            return compactReader.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read %s: %s".formatted(type.getName(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Get the schema fingerprint written in compact values header
+     *
+     * @return the schema fingerprint of the serialized type
+     */
+    public int getSchemaFingerprint() {
+        return schemaFingerprint;
+    }
+
+    /**
+     * Compute the schema fingerprint of the input type as the CRC32 of its
+     * canonical description, made of record components names and (recursive) types
+     * in declaration order
+     *
+     * @param type the type for which compute the fingerprint
+     * @return the schema fingerprint
+     */
+    static int schemaFingerprint(Class<?> type) {
+        StringBuilder description = new StringBuilder();
+        describe(type, description, new HashSet<>());
+        CRC32 crc32 = new CRC32();
+        crc32.update(description.toString().getBytes(StandardCharsets.UTF_8));
+        return (int) crc32.getValue();
+    }
+
+    private static void describe(
+                                 Type type,
+                                 StringBuilder description,
+                                 Set<Class<?>> visiting
+    ) {
+        if (type instanceof ParameterizedType parameterizedType) {
+            describe(parameterizedType.getRawType(), description, visiting);
+            description.append('<');
+            for (Type typeArgument : parameterizedType.getActualTypeArguments()) {
+                describe(typeArgument, description, visiting);
+                description.append(',');
+            }
+            description.append('>');
+        } else if (type instanceof Class<?> clazz) {
+            description.append(clazz.getName());
+            if (clazz.isRecord() && visiting.add(clazz)) {
+                description.append('{');
+                for (RecordComponent component : clazz.getRecordComponents()) {
+                    description.append(component.getName()).append(':');
+                    describe(component.getGenericType(), description, visiting);
+                    description.append(';');
+                }
+                description.append('}');
+                visiting.remove(clazz);
+            }
+        } else {
+            description.append(type.getTypeName());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package it.pagopa.ecommerce.commons.redis.converters;
+
+/**
+ * Encoding used to write values to Redis. Regardless of the configured
+ * encoding, {@link CompactRedisSerializer} is always able to read values
+ * written with any of the supported encodings, so that the encoding can be
+ * switched with a rolling deployment
+ */
+public enum RedisValueEncoding {
+    /**
+     * Plain JSON encoding, as written by Jackson2JsonRedisSerializer
+     */
+    JSON,
+    /**
+     * Compact, versioned, CBOR encoding with positional (array shaped) fields
+     */
+    COMPACT
+}
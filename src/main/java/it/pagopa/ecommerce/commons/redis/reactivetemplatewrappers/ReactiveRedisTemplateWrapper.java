@@ -1,5 +1,6 @@
 package it.pagopa.ecommerce.commons.redis.reactivetemplatewrappers;
 
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.RecordId;
@@ -10,6 +11,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -178,16 +180,7 @@ public abstract class ReactiveRedisTemplateWrapper<V> {
                                                            V event,
                                                            long streamSize
     ) {
-        return Mono
-                .just(streamSize)
-                .filter(size -> size >= 0)
-                .switchIfEmpty(
-                        Mono.error(
-                                new IllegalArgumentException(
-                                        "Invalid input %s events to trim, it must be >=0".formatted(streamSize)
-                                )
-                        )
-                )
+        return validateStreamSize(streamSize)
                 .flatMap(
                         size -> reactiveRedisTemplate
                                 .opsForStream()
@@ -200,6 +193,69 @@ public abstract class ReactiveRedisTemplateWrapper<V> {
                 );
     }
 
+    /**
+     * Write an event to the stream with the specified key, trimming the stream to
+     * about the wanted size with a single XADD command (XADD ... MAXLEN ~ size).
+     * Approximate trimming lets Redis evict whole macro nodes only, so the stream
+     * may be slightly longer than the wanted size, but both operations are
+     * performed atomically in a single round trip
+     *
+     * @param streamKey  the stream key where send the event to
+     * @param event      the event to be sent
+     * @param streamSize the wanted (approximate) length of the stream
+     * @return a {@link Mono} emitting the {@link RecordId} of the written event
+     */
+    public Mono<RecordId> writeEventToStreamTrimmingEventsApproximately(
+                                                                        String streamKey,
+                                                                        V event,
+                                                                        long streamSize
+    ) {
+        return validateStreamSize(streamSize)
+                .flatMap(
+                        size -> reactiveRedisTemplate
+                                .opsForStream()
+                                .add(ObjectRecord.create(streamKey, event), approximateMaxLength(size))
+                );
+    }
+
+    /**
+     * Write multiple events to the stream with the specified key. Commands are
+     * issued without waiting for each reply, so that they are pipelined over the
+     * connection
+     *
+     * @param streamKey the stream key where send the events to
+     * @param events    the events to be sent
+     * @return a {@link Flux} emitting the {@link RecordId}s of the written events,
+     *         in input events order
+     */
+    public Flux<RecordId> writeEventsToStream(
+                                              String streamKey,
+                                              List<V> events
+    ) {
+        return appendEvents(streamKey, events, XAddOptions.none());
+    }
+
+    /**
+     * Write multiple events to the stream with the specified key, each one trimming
+     * the stream to about the wanted size (XADD ... MAXLEN ~ size). Commands are
+     * issued without waiting for each reply, so that they are pipelined over the
+     * connection
+     *
+     * @param streamKey  the stream key where send the events to
+     * @param events     the events to be sent
+     * @param streamSize the wanted (approximate) length of the stream
+     * @return a {@link Flux} emitting the {@link RecordId}s of the written events,
+     *         in input events order
+     */
+    public Flux<RecordId> writeEventsToStreamTrimmingEventsApproximately(
+                                                                         String streamKey,
+                                                                         List<V> events,
+                                                                         long streamSize
+    ) {
+        return validateStreamSize(streamSize)
+                .flatMapMany(size -> appendEvents(streamKey, events, approximateMaxLength(size)));
+    }
+
     /**
      * Trim events from the stream with input key to the wanted size
      *
@@ -325,6 +381,36 @@ public abstract class ReactiveRedisTemplateWrapper<V> {
      */
     protected abstract String getKeyFromEntity(V value);
 
+    private Flux<RecordId> appendEvents(
+                                        String streamKey,
+                                        List<V> events,
+                                        XAddOptions xAddOptions
+    ) {
+        return Flux.fromIterable(events)
+                .flatMapSequential(
+                        event -> reactiveRedisTemplate
+                                .opsForStream()
+                                .add(ObjectRecord.create(streamKey, event), xAddOptions)
+                );
+    }
+
+    private static Mono<Long> validateStreamSize(long streamSize) {
+        return Mono
+                .just(streamSize)
+                .filter(size -> size >= 0)
+                .switchIfEmpty(
+                        Mono.error(
+                                new IllegalArgumentException(
+                                        "Invalid input %s events to trim, it must be >=0".formatted(streamSize)
+                                )
+                        )
+                );
+    }
+
+    private static XAddOptions approximateMaxLength(long streamSize) {
+        return XAddOptions.maxlen(streamSize).approximateTrimming(true);
+    }
+
     private String compoundKeyWithKeyspace(String key) {
         return "%s:%s".formatted(keyspace, key);
     }
@@ -1,24 +1,21 @@
 package it.pagopa.ecommerce.commons.redis.reactivetemplatewrappers.v2;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 import it.pagopa.ecommerce.commons.domain.v2.IdempotencyKey;
 import it.pagopa.ecommerce.commons.domain.v2.RptId;
-import it.pagopa.ecommerce.commons.redis.converters.v2.JacksonIdempotencyKeyDeserializer;
-import it.pagopa.ecommerce.commons.redis.converters.v2.JacksonIdempotencyKeySerializer;
-import it.pagopa.ecommerce.commons.redis.converters.v2.JacksonRptIdDeserializer;
-import it.pagopa.ecommerce.commons.redis.converters.v2.JacksonRptIdSerializer;
+import it.pagopa.ecommerce.commons.redis.converters.CompactRedisSerializer;
+import it.pagopa.ecommerce.commons.redis.converters.RedisValueEncoding;
 import it.pagopa.ecommerce.commons.repositories.v2.PaymentRequestInfo;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry.MapperConfiguration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
 
-import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
-
 /**
  * Helper class that can be used to properly configure RedisTemplate wrapper
  * adding custom serializers
@@ -64,6 +61,45 @@ public class ReactiveRedisTemplateWrapperBuilder {
         return new ReactivePaymentRequestInfoRedisTemplateWrapper(reactiveRedisTemplate, "keys", entitiesTTL);
     }
 
+    /**
+     * Build {@link ReactivePaymentRequestInfoRedisTemplateWrapper} instance using
+     * input redis connection factory and a {@link CompactRedisSerializer} for
+     * values. Values written with any {@link RedisValueEncoding} can be read back
+     * regardless of the configured one, so the encoding can be switched from
+     * {@link RedisValueEncoding#JSON} to {@link RedisValueEncoding#COMPACT} once
+     * all readers have been updated
+     *
+     * @param reactiveRedisConnectionFactory - the redis connection factory to be
+     *                                       used for
+     * @param entitiesTTL                    - the default TTL to be applied to all
+     *                                       saved entities if not overridden
+     * @param valueEncoding                  - the encoding used to write values
+     * @return ReactivePaymentRequestInfoRedisTemplateWrapper new instance
+     */
+    public static ReactivePaymentRequestInfoRedisTemplateWrapper buildPaymentRequestInfoRedisTemplateWrapper(
+                                                                                                             ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+                                                                                                             Duration entitiesTTL,
+                                                                                                             RedisValueEncoding valueEncoding
+    ) {
+        RedisSerializer<PaymentRequestInfo> serializer = new CompactRedisSerializer<>(
+                ObjectMapperRegistry.getInstance().getObjectMapper(MapperConfiguration.REDIS_V2_COMPACT),
+                ObjectMapperRegistry.getInstance().getObjectMapper(MapperConfiguration.REDIS_V2),
+                PaymentRequestInfo.class,
+                valueEncoding
+        );
+
+        RedisSerializationContext<String, PaymentRequestInfo> serializationContext = RedisSerializationContext
+                .<String, PaymentRequestInfo>newSerializationContext(new StringRedisSerializer())
+                .value(serializer)
+                .build();
+        ReactiveRedisTemplate<String, PaymentRequestInfo> reactiveRedisTemplate = new ReactiveRedisTemplate<>(
+                reactiveRedisConnectionFactory,
+                serializationContext
+        );
+
+        return new ReactivePaymentRequestInfoRedisTemplateWrapper(reactiveRedisTemplate, "keys", entitiesTTL);
+    }
+
     /**
      * Build {@link Jackson2JsonRedisSerializer} specialized instance with object
      * mapper configured to handle {@link RptId} and {@link IdempotencyKey}
@@ -75,15 +111,9 @@ public class ReactiveRedisTemplateWrapperBuilder {
      *         objects serialization proper serialization
      */
     private static <T> Jackson2JsonRedisSerializer<T> buildJackson2RedisSerializer(Class<T> clazz) {
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        SimpleModule rptSerializationModule = new SimpleModule();
-        rptSerializationModule.addSerializer(RptId.class, new JacksonRptIdSerializer());
-        rptSerializationModule.addDeserializer(RptId.class, new JacksonRptIdDeserializer());
-        rptSerializationModule.addSerializer(IdempotencyKey.class, new JacksonIdempotencyKeySerializer());
-        rptSerializationModule.addDeserializer(IdempotencyKey.class, new JacksonIdempotencyKeyDeserializer());
-        objectMapper.registerModule(rptSerializationModule);
-        objectMapper.setSerializationInclusion(NON_NULL);
-        return new Jackson2JsonRedisSerializer<>(objectMapper, clazz);
+        return new Jackson2JsonRedisSerializer<>(
+                ObjectMapperRegistry.getInstance().getObjectMapper(MapperConfiguration.REDIS_V2),
+                clazz
+        );
     }
 }
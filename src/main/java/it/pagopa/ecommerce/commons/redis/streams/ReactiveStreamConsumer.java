@@ -0,0 +1,661 @@
+package it.pagopa.ecommerce.commons.redis.streams;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import it.pagopa.ecommerce.commons.redis.reactivetemplatewrappers.ReactiveRedisTemplateWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ObjectRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * Reactive Redis Streams consumer group processing engine built on top of a
+ * {@link ReactiveRedisTemplateWrapper}.
+ * </p>
+ * <p>
+ * The consumer:
+ * </p>
+ * <ul>
+ * <li>reads new events with XREADGROUP, in batches of configured size blocking
+ * for at most the configured block time</li>
+ * <li>processes events in parallel, preserving ordering for events with the
+ * same ordering key</li>
+ * <li>acknowledges successfully processed events in batches; events whose
+ * processing fails are left pending, together with the following events with
+ * the same ordering key, that are deferred until the failed one is processed
+ * successfully</li>
+ * <li>periodically pages through all the pending events, claims the ones idle
+ * for more than the configured min idle time (e.g. owned by dead consumers or
+ * whose processing failed or was deferred) and processes them again, in stream
+ * order. Deferred events are tracked in memory by each consumer: while paging,
+ * the consumer forgets the tracked events that are no longer pending for the
+ * group (e.g. claimed and acknowledged by another consumer), so that the events
+ * deferred behind them are processed</li>
+ * <li>hands idle pending events already delivered the configured max number of
+ * times to the dead letter handler and acknowledges them, so that a poison
+ * event does not block its ordering key forever. Acknowledged events are not
+ * removed from the stream until it is trimmed</li>
+ * <li>exposes delivery lag, pending, processed, acknowledged, claimed and dead
+ * lettered events metrics</li>
+ * </ul>
+ * <p>
+ * Blocking reads hold the underlying connection for up to the configured block
+ * time: the wrapped template should use a connection factory dedicated to
+ * stream consumption.
+ * </p>
+ * <p>
+ * Disposing the consumer stops consumption and unregisters its pending events
+ * gauge.
+ * </p>
+ *
+ * @param <V> the stream event type
+ */
+@Slf4j
+public class ReactiveStreamConsumer<V> implements Disposable {
+
+    /**
+     * Prefix used for all the metrics exported by this consumer
+     */
+    public static final String METRIC_PREFIX = "ecommerce.redis.stream.consumer.";
+
+    private static final AttributeKey<String> STREAM_KEY_ATTRIBUTE = AttributeKey.stringKey("redis.stream.key");
+
+    private static final AttributeKey<String> GROUP_NAME_ATTRIBUTE = AttributeKey.stringKey("redis.stream.group");
+
+    private static final AttributeKey<String> OUTCOME_ATTRIBUTE = AttributeKey.stringKey("outcome");
+
+    private static final Comparator<RecordId> RECORD_ID_ORDER = Comparator.comparingLong(RecordId::getTimestamp)
+            .thenComparingLong(RecordId::getSequence);
+
+    private final ReactiveRedisTemplateWrapper<V> reactiveRedisTemplateWrapper;
+
+    private final ReactiveStreamOperations<String, Object, Object> streamOperations;
+
+    private final Class<V> eventType;
+
+    private final StreamConsumerConfiguration configuration;
+
+    private final Function<V, String> orderingKeyExtractor;
+
+    private final Function<V, Mono<?>> eventHandler;
+
+    private final Function<MapRecord<String, Object, Object>, Mono<?>> deadLetterHandler;
+
+    private final Attributes attributes;
+
+    private final Attributes successAttributes;
+
+    private final Attributes failureAttributes;
+
+    private final LongCounter processedEvents;
+
+    private final LongCounter acknowledgedEvents;
+
+    private final LongCounter claimedEvents;
+
+    private final LongCounter deferredEvents;
+
+    private final LongCounter deadLetteredEvents;
+
+    private final DoubleHistogram deliveryLag;
+
+    private final ObservableLongGauge pendingEventsGauge;
+
+    private final AtomicLong pendingEvents = new AtomicLong();
+
+    private final AtomicBoolean disposed = new AtomicBoolean();
+
+    private final Sinks.Empty<Void> stopped = Sinks.empty();
+
+    /*
+     * Ids of the events left pending, by ordering key. An event whose key has an
+     * older pending event is deferred, so that events with the same key are never
+     * processed out of stream order
+     */
+    private final Map<String, NavigableSet<RecordId>> pendingRecordIdsByKey = new ConcurrentHashMap<>();
+
+    /*
+     * Ordering key of the events in pendingRecordIdsByKey, with the pending events
+     * recovery run during which they started being tracked
+     */
+    private final Map<RecordId, TrackedRecord> trackedRecords = new ConcurrentHashMap<>();
+
+    private final AtomicLong recoveryRuns = new AtomicLong();
+
+    /**
+     * Build a new stream consumer
+     *
+     * @param reactiveRedisTemplateWrapper the wrapper used to access the stream
+     * @param eventType                    the stream event type
+     * @param configuration                the consumer configuration
+     * @param orderingKeyExtractor         function extracting the ordering key from
+     *                                     an event: events with the same key are
+     *                                     processed sequentially
+     * @param eventHandler                 the event processing function. A
+     *                                     completed Mono marks the event as
+     *                                     processed, an error leaves it pending
+     * @param meter                        the meter used to register metrics
+     */
+    public ReactiveStreamConsumer(
+            ReactiveRedisTemplateWrapper<V> reactiveRedisTemplateWrapper,
+            Class<V> eventType,
+            StreamConsumerConfiguration configuration,
+            Function<V, String> orderingKeyExtractor,
+            Function<V, Mono<?>> eventHandler,
+            Meter meter
+    ) {
+        this(
+                reactiveRedisTemplateWrapper,
+                eventType,
+                configuration,
+                orderingKeyExtractor,
+                eventHandler,
+                ReactiveStreamConsumer::discardDeadLetter,
+                meter
+        );
+    }
+
+    /**
+     * Build a new stream consumer with a dead letter handler
+     *
+     * @param reactiveRedisTemplateWrapper the wrapper used to access the stream
+     * @param eventType                    the stream event type
+     * @param configuration                the consumer configuration
+     * @param orderingKeyExtractor         function extracting the ordering key from
+     *                                     an event: events with the same key are
+     *                                     processed sequentially
+     * @param eventHandler                 the event processing function. A
+     *                                     completed Mono marks the event as
+     *                                     processed, an error leaves it pending
+     * @param deadLetterHandler            the function handling the raw stream
+     *                                     records of the events delivered the max
+     *                                     number of times. A completed Mono
+     *                                     acknowledges the event, an error leaves
+     *                                     it pending
+     * @param meter                        the meter used to register metrics
+     */
+    public ReactiveStreamConsumer(
+            ReactiveRedisTemplateWrapper<V> reactiveRedisTemplateWrapper,
+            Class<V> eventType,
+            StreamConsumerConfiguration configuration,
+            Function<V, String> orderingKeyExtractor,
+            Function<V, Mono<?>> eventHandler,
+            Function<MapRecord<String, Object, Object>, Mono<?>> deadLetterHandler,
+            Meter meter
+    ) {
+        this.reactiveRedisTemplateWrapper = Objects.requireNonNull(reactiveRedisTemplateWrapper);
+        this.streamOperations = reactiveRedisTemplateWrapper.unwrap().opsForStream();
+        this.eventType = Objects.requireNonNull(eventType);
+        this.configuration = Objects.requireNonNull(configuration);
+        this.orderingKeyExtractor = Objects.requireNonNull(orderingKeyExtractor);
+        this.eventHandler = Objects.requireNonNull(eventHandler);
+        this.deadLetterHandler = Objects.requireNonNull(deadLetterHandler);
+        this.attributes = Attributes.of(
+                STREAM_KEY_ATTRIBUTE,
+                configuration.streamKey(),
+                GROUP_NAME_ATTRIBUTE,
+                configuration.groupName()
+        );
+        this.successAttributes = attributes.toBuilder().put(OUTCOME_ATTRIBUTE, "OK").build();
+        this.failureAttributes = attributes.toBuilder().put(OUTCOME_ATTRIBUTE, "KO").build();
+        this.processedEvents = meter.counterBuilder(METRIC_PREFIX + "processed")
+                .setDescription("Number of stream events processed")
+                .build();
+        this.acknowledgedEvents = meter.counterBuilder(METRIC_PREFIX + "acknowledged")
+                .setDescription("Number of stream events acknowledged")
+                .build();
+        this.claimedEvents = meter.counterBuilder(METRIC_PREFIX + "claimed")
+                .setDescription("Number of pending stream events claimed from idle consumers")
+                .build();
+        this.deferredEvents = meter.counterBuilder(METRIC_PREFIX + "deferred")
+                .setDescription("Number of stream events left pending behind an older pending event with the same key")
+                .build();
+        this.deadLetteredEvents = meter.counterBuilder(METRIC_PREFIX + "dead_lettered")
+                .setDescription("Number of stream events acknowledged without processing after max deliveries")
+                .build();
+        this.deliveryLag = meter.histogramBuilder(METRIC_PREFIX + "lag")
+                .setDescription("Time elapsed between event write and event delivery to this consumer")
+                .setUnit("ms")
+                .build();
+        this.pendingEventsGauge = meter.gaugeBuilder(METRIC_PREFIX + "pending")
+                .setDescription("Number of delivered but not yet acknowledged events for the consumer group")
+                .ofLongs()
+                .buildWithCallback(measurement -> measurement.record(pendingEvents.get(), attributes));
+    }
+
+    /**
+     * Start consuming events. Consumption starts on subscription and lasts until
+     * the returned {@link Flux} is cancelled or the consumer is disposed
+     *
+     * @return a {@link Flux} emitting the ids of the acknowledged events
+     */
+    public Flux<RecordId> consume() {
+        return Flux.merge(readNewEvents(), recoverPendingEvents())
+                .takeUntilOther(stopped.asMono())
+                .doOnNext(this::recordDeliveryLag)
+                .groupBy(this::partitionOf)
+                .flatMap(partition -> partition.concatMap(this::processEvent), configuration.parallelism())
+                .bufferTimeout(configuration.ackBatchSize(), configuration.ackMaxDelay())
+                .concatMap(this::acknowledge);
+    }
+
+    /**
+     * Stop consumption, acknowledging the already processed events, and unregister
+     * the pending events gauge
+     */
+    @Override
+    public void dispose() {
+        if (disposed.compareAndSet(false, true)) {
+            stopped.tryEmitEmpty();
+            pendingEventsGauge.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDisposed() {
+        return disposed.get();
+    }
+
+    /**
+     * Get the last observed number of pending events for the consumer group
+     *
+     * @return the number of pending events
+     */
+    public long getPendingEvents() {
+        return pendingEvents.get();
+    }
+
+    private Flux<ObjectRecord<String, V>> readNewEvents() {
+        StreamReadOptions readOptions = StreamReadOptions.empty()
+                .count(configuration.batchSize())
+                .block(configuration.blockTime());
+        Consumer consumer = Consumer.from(configuration.groupName(), configuration.consumerName());
+        return Flux.defer(
+                () -> streamOperations.read(
+                        eventType,
+                        consumer,
+                        readOptions,
+                        StreamOffset.create(configuration.streamKey(), ReadOffset.lastConsumed())
+                )
+                        .onErrorResume(exception -> {
+                            log.error(
+                                    "Error reading events from stream: [{}], group: [{}]",
+                                    configuration.streamKey(),
+                                    configuration.groupName(),
+                                    exception
+                            );
+                            return Mono.delay(configuration.blockTime()).thenMany(Flux.empty());
+                        })
+        ).repeat();
+    }
+
+    private Flux<ObjectRecord<String, V>> recoverPendingEvents() {
+        return Flux.interval(Duration.ZERO, configuration.claimInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> claimPendingEvents());
+    }
+
+    /*
+     * XAUTOCLAIM is not exposed by Spring Data Redis: pending entries are listed
+     * with XPENDING, one page at a time starting after the last listed id, and the
+     * idle ones are claimed with XCLAIM
+     */
+    private Flux<ObjectRecord<String, V>> claimPendingEvents() {
+        return Flux.defer(() -> {
+            long recoveryRun = recoveryRuns.incrementAndGet();
+            AtomicReference<RecordId> lastListedRecordId = new AtomicReference<>();
+            return streamOperations.pending(configuration.streamKey(), configuration.groupName())
+                    .doOnNext(summary -> pendingEvents.set(summary.getTotalPendingMessages()))
+                    .thenMany(
+                            pendingEventsPage(Range.unbounded())
+                                    .expand(
+                                            pendingMessages -> pendingMessages.size() < configuration.batchSize()
+                                                    ? Mono.empty()
+                                                    : pendingEventsPage(
+                                                            Range.rightUnbounded(
+                                                                    Range.Bound.exclusive(
+                                                                            pendingMessages
+                                                                                    .get(pendingMessages.size() - 1)
+                                                                                    .getIdAsString()
+                                                                    )
+                                                            )
+                                                    )
+                                    )
+                    )
+                    .doOnNext(
+                            pendingMessages -> forgetNotPendingRecords(
+                                    recoveryRun,
+                                    lastListedRecordId,
+                                    pendingMessages
+                            )
+                    )
+                    .concatMap(this::claimIdleEvents);
+        })
+                .map(mapRecord -> streamOperations.map(mapRecord, eventType))
+                .doOnNext(claimedRecord -> claimedEvents.add(1, attributes))
+                .onErrorResume(exception -> {
+                    log.error(
+                            "Error claiming pending events from stream: [{}], group: [{}]",
+                            configuration.streamKey(),
+                            configuration.groupName(),
+                            exception
+                    );
+                    return Flux.empty();
+                });
+    }
+
+    private Mono<PendingMessages> pendingEventsPage(Range<String> range) {
+        return streamOperations.pending(
+                configuration.streamKey(),
+                configuration.groupName(),
+                range,
+                configuration.batchSize()
+        );
+    }
+
+    /*
+     * Forget the tracked events, in the id range listed by the input page, that are
+     * no longer pending for the group. Events tracked during the current recovery
+     * run are kept, since they may have been delivered after the page was listed
+     */
+    private void forgetNotPendingRecords(
+                                         long recoveryRun,
+                                         AtomicReference<RecordId> lastListedRecordId,
+                                         PendingMessages pendingMessages
+    ) {
+        RecordId fromExclusive = lastListedRecordId.get();
+        RecordId toInclusive = pendingMessages.size() < configuration.batchSize() ? null
+                : pendingMessages.get(pendingMessages.size() - 1).getId();
+        if (!pendingMessages.isEmpty()) {
+            lastListedRecordId.set(pendingMessages.get(pendingMessages.size() - 1).getId());
+        }
+        Set<RecordId> pendingRecordIds = pendingMessages.stream()
+                .map(PendingMessage::getId)
+                .collect(Collectors.toSet());
+        trackedRecords.forEach(
+                (
+                 recordId,
+                 trackedRecord
+                ) -> {
+                    if (trackedRecord.recoveryRun() < recoveryRun
+                            && (fromExclusive == null || RECORD_ID_ORDER.compare(recordId, fromExclusive) > 0)
+                            && (toInclusive == null || RECORD_ID_ORDER.compare(recordId, toInclusive) <= 0)
+                            && !pendingRecordIds.contains(recordId)
+                            && trackedRecords.remove(recordId, trackedRecord)) {
+                        log.info(
+                                "Event with id: [{}] from stream: [{}] is no longer pending, it has been acknowledged by another consumer",
+                                recordId,
+                                configuration.streamKey()
+                        );
+                        removePendingRecordId(trackedRecord.orderingKey(), recordId);
+                    }
+                }
+        );
+    }
+
+    private Flux<MapRecord<String, Object, Object>> claimIdleEvents(PendingMessages pendingMessages) {
+        Map<Boolean, List<RecordId>> idleRecordIdsByDeliveriesExhausted = pendingMessages.stream()
+                .filter(
+                        pendingMessage -> pendingMessage.getElapsedTimeSinceLastDelivery()
+                                .compareTo(configuration.claimMinIdleTime()) >= 0
+                )
+                .collect(
+                        Collectors.partitioningBy(
+                                pendingMessage -> pendingMessage.getTotalDeliveryCount() >= configuration
+                                        .maxDeliveries() && !isDeferred(pendingMessage.getId()),
+                                Collectors.mapping(PendingMessage::getId, Collectors.toList())
+                        )
+                );
+        return deadLetter(idleRecordIdsByDeliveriesExhausted.get(true))
+                .thenMany(claim(idleRecordIdsByDeliveriesExhausted.get(false)));
+    }
+
+    private Flux<MapRecord<String, Object, Object>> claim(List<RecordId> idleRecordIds) {
+        if (idleRecordIds.isEmpty()) {
+            return Flux.empty();
+        }
+        log.info(
+                "Claiming [{}] idle pending events from stream: [{}], group: [{}]",
+                idleRecordIds.size(),
+                configuration.streamKey(),
+                configuration.groupName()
+        );
+        return streamOperations.claim(
+                configuration.streamKey(),
+                configuration.groupName(),
+                configuration.consumerName(),
+                configuration.claimMinIdleTime(),
+                idleRecordIds.toArray(RecordId[]::new)
+        );
+    }
+
+    /*
+     * Events deferred behind an older pending event are delivered again each time
+     * that event is retried: they are never dead lettered, so that only the
+     * deliveries of the event whose processing fails are counted
+     */
+    private Mono<Void> deadLetter(List<RecordId> recordIds) {
+        return claim(recordIds)
+                .concatMap(
+                        mapRecord -> Mono.defer(() -> deadLetterHandler.apply(mapRecord))
+                                .then(
+                                        reactiveRedisTemplateWrapper.acknowledgeEvents(
+                                                configuration.streamKey(),
+                                                configuration.groupName(),
+                                                mapRecord.getId().getValue()
+                                        )
+                                )
+                                .doOnNext(acknowledged -> {
+                                    log.warn(
+                                            "Event with id: [{}] from stream: [{}] dead lettered after [{}] deliveries",
+                                            mapRecord.getId(),
+                                            configuration.streamKey(),
+                                            configuration.maxDeliveries()
+                                    );
+                                    deadLetteredEvents.add(1, attributes);
+                                    TrackedRecord trackedRecord = trackedRecords.remove(mapRecord.getId());
+                                    if (trackedRecord != null) {
+                                        removePendingRecordId(trackedRecord.orderingKey(), mapRecord.getId());
+                                    }
+                                })
+                                .onErrorResume(exception -> {
+                                    log.error(
+                                            "Error dead lettering event with id: [{}] from stream: [{}], it will be left pending",
+                                            mapRecord.getId(),
+                                            configuration.streamKey(),
+                                            exception
+                                    );
+                                    return Mono.empty();
+                                })
+                )
+                .then();
+    }
+
+    private static Mono<Void> discardDeadLetter(MapRecord<String, Object, Object> mapRecord) {
+        return Mono.fromRunnable(
+                () -> log.error(
+                        "Discarding event with id: [{}] from stream: [{}] after max deliveries",
+                        mapRecord.getId(),
+                        mapRecord.getStream()
+                )
+        );
+    }
+
+    private int partitionOf(ObjectRecord<String, V> objectRecord) {
+        return Math.floorMod(
+                Objects.hashCode(orderingKeyExtractor.apply(objectRecord.getValue())),
+                configuration.parallelism()
+        );
+    }
+
+    private Mono<RecordId> processEvent(ObjectRecord<String, V> objectRecord) {
+        RecordId recordId = objectRecord.getId();
+        String orderingKey = Objects.toString(orderingKeyExtractor.apply(objectRecord.getValue()), "");
+        RecordId oldestPendingRecordId = oldestPendingRecordId(orderingKey);
+        if (oldestPendingRecordId != null && RECORD_ID_ORDER.compare(recordId, oldestPendingRecordId) > 0) {
+            log.debug(
+                    "Deferring event with id: [{}] from stream: [{}] behind pending event with id: [{}]",
+                    recordId,
+                    configuration.streamKey(),
+                    oldestPendingRecordId
+            );
+            addPendingRecordId(orderingKey, recordId);
+            deferredEvents.add(1, attributes);
+            return Mono.empty();
+        }
+        return Mono.defer(() -> eventHandler.apply(objectRecord.getValue()))
+                .then(Mono.just(recordId))
+                .doOnNext(processedRecordId -> {
+                    processedEvents.add(1, successAttributes);
+                    if (trackedRecords.remove(processedRecordId) != null) {
+                        removePendingRecordId(orderingKey, processedRecordId);
+                    }
+                })
+                .onErrorResume(exception -> {
+                    log.error(
+                            "Error processing event with id: [{}] from stream: [{}], it will be left pending",
+                            recordId,
+                            configuration.streamKey(),
+                            exception
+                    );
+                    processedEvents.add(1, failureAttributes);
+                    addPendingRecordId(orderingKey, recordId);
+                    return Mono.empty();
+                });
+    }
+
+    @Nullable
+    private RecordId oldestPendingRecordId(String orderingKey) {
+        NavigableSet<RecordId> pendingRecordIds = pendingRecordIdsByKey.get(orderingKey);
+        if (pendingRecordIds == null) {
+            return null;
+        }
+        // weakly consistent iterator: the set can be emptied concurrently
+        Iterator<RecordId> iterator = pendingRecordIds.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private boolean isDeferred(RecordId recordId) {
+        TrackedRecord trackedRecord = trackedRecords.get(recordId);
+        if (trackedRecord == null) {
+            return false;
+        }
+        RecordId oldestPendingRecordId = oldestPendingRecordId(trackedRecord.orderingKey());
+        return oldestPendingRecordId != null && RECORD_ID_ORDER.compare(recordId, oldestPendingRecordId) > 0;
+    }
+
+    private void addPendingRecordId(
+                                    String orderingKey,
+                                    RecordId recordId
+    ) {
+        trackedRecords.put(recordId, new TrackedRecord(orderingKey, recoveryRuns.get()));
+        pendingRecordIdsByKey.compute(
+                orderingKey,
+                (
+                 key,
+                 recordIds
+                ) -> {
+                    NavigableSet<RecordId> pendingRecordIds = recordIds != null ? recordIds
+                            : new ConcurrentSkipListSet<>(RECORD_ID_ORDER);
+                    pendingRecordIds.add(recordId);
+                    return pendingRecordIds;
+                }
+        );
+    }
+
+    private void removePendingRecordId(
+                                       String orderingKey,
+                                       RecordId recordId
+    ) {
+        pendingRecordIdsByKey.computeIfPresent(
+                orderingKey,
+                (
+                 key,
+                 recordIds
+                ) -> {
+                    recordIds.remove(recordId);
+                    return recordIds.isEmpty() ? null : recordIds;
+                }
+        );
+    }
+
+    private Flux<RecordId> acknowledge(List<RecordId> recordIds) {
+        return reactiveRedisTemplateWrapper.acknowledgeEvents(
+                configuration.streamKey(),
+                configuration.groupName(),
+                recordIds.stream().map(RecordId::getValue).toArray(String[]::new)
+        )
+                .doOnNext(acknowledged -> acknowledgedEvents.add(acknowledged, attributes))
+                .thenMany(Flux.fromIterable(recordIds))
+                .onErrorResume(exception -> {
+                    log.error(
+                            "Error acknowledging [{}] events from stream: [{}], they will be claimed again",
+                            recordIds.size(),
+                            configuration.streamKey(),
+                            exception
+                    );
+                    return Flux.empty();
+                });
+    }
+
+    private void recordDeliveryLag(ObjectRecord<String, V> objectRecord) {
+        RecordId recordId = objectRecord.getId();
+        if (recordId.shouldBeAutoGenerated()) {
+            return;
+        }
+        long lag = Instant.now().toEpochMilli() - recordId.getTimestamp();
+        deliveryLag.record(Math.max(lag, 0), attributes);
+    }
+
+    /**
+     * Ordering key of a tracked pending event
+     *
+     * @param orderingKey the event ordering key
+     * @param recoveryRun the pending events recovery run during which the event
+     *                    started being tracked
+     */
+    private record TrackedRecord(
+            String orderingKey,
+            long recoveryRun
+    ) {
+    }
+}
@@ -0,0 +1,164 @@
+package it.pagopa.ecommerce.commons.redis.streams;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Configuration for a {@link ReactiveStreamConsumer}
+ *
+ * @param streamKey        the stream key to consume events from
+ * @param groupName        the consumer group name. The group must already exist
+ * @param consumerName     the consumer name inside the group, must be unique
+ *                         across running instances
+ * @param batchSize        max number of events read with a single XREADGROUP
+ *                         command
+ * @param blockTime        max time a XREADGROUP command blocks waiting for new
+ *                         events
+ * @param parallelism      max number of ordering keys processed concurrently.
+ *                         Events with the same ordering key are always
+ *                         processed sequentially
+ * @param ackBatchSize     max number of record ids acknowledged with a single
+ *                         XACK command
+ * @param ackMaxDelay      max time a processed record waits before being
+ *                         acknowledged
+ * @param claimMinIdleTime min idle time after which a pending event, delivered
+ *                         to any consumer of the group, is claimed by this
+ *                         consumer
+ * @param claimInterval    interval between two pending events recovery runs
+ * @param maxDeliveries    max number of deliveries of a pending event: idle
+ *                         pending events already delivered this number of times
+ *                         are dead lettered instead of being claimed for
+ *                         processing again
+ */
+public record StreamConsumerConfiguration(
+        String streamKey,
+        String groupName,
+        String consumerName,
+        int batchSize,
+        Duration blockTime,
+        int parallelism,
+        int ackBatchSize,
+        Duration ackMaxDelay,
+        Duration claimMinIdleTime,
+        Duration claimInterval,
+        int maxDeliveries
+) {
+
+    /**
+     * Default max number of events read with a single command
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * Default read block time
+     */
+    public static final Duration DEFAULT_BLOCK_TIME = Duration.ofSeconds(2);
+
+    /**
+     * Default processing parallelism
+     */
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    /**
+     * Default ack batch size
+     */
+    public static final int DEFAULT_ACK_BATCH_SIZE = 50;
+
+    /**
+     * Default ack max delay
+     */
+    public static final Duration DEFAULT_ACK_MAX_DELAY = Duration.ofMillis(200);
+
+    /**
+     * Default min idle time for pending events to be claimed
+     */
+    public static final Duration DEFAULT_CLAIM_MIN_IDLE_TIME = Duration.ofMinutes(1);
+
+    /**
+     * Default interval between pending events recovery runs
+     */
+    public static final Duration DEFAULT_CLAIM_INTERVAL = Duration.ofSeconds(30);
+
+    /**
+     * Default max number of deliveries of a pending event
+     */
+    public static final int DEFAULT_MAX_DELIVERIES = 5;
+
+    /**
+     * Validating constructor
+     *
+     * @param streamKey        the stream key to consume events from
+     * @param groupName        the consumer group name
+     * @param consumerName     the consumer name inside the group
+     * @param batchSize        max number of events read with a single command
+     * @param blockTime        max time a read command blocks
+     * @param parallelism      max number of ordering keys processed concurrently
+     * @param ackBatchSize     max number of record ids acknowledged together
+     * @param ackMaxDelay      max time a processed record waits before being
+     *                         acknowledged
+     * @param claimMinIdleTime min idle time for pending events to be claimed
+     * @param claimInterval    interval between pending events recovery runs
+     * @param maxDeliveries    max number of deliveries of a pending event
+     * @throws IllegalArgumentException for non-positive sizes or durations
+     */
+    public StreamConsumerConfiguration {
+        Objects.requireNonNull(streamKey, "Stream key null not valid");
+        Objects.requireNonNull(groupName, "Group name null not valid");
+        Objects.requireNonNull(consumerName, "Consumer name null not valid");
+        requirePositive(batchSize, "batchSize");
+        requirePositive(blockTime, "blockTime");
+        requirePositive(parallelism, "parallelism");
+        requirePositive(ackBatchSize, "ackBatchSize");
+        requirePositive(ackMaxDelay, "ackMaxDelay");
+        requirePositive(claimMinIdleTime, "claimMinIdleTime");
+        requirePositive(claimInterval, "claimInterval");
+        requirePositive(maxDeliveries, "maxDeliveries");
+    }
+
+    /**
+     * Build a configuration with default values for all tuning parameters
+     *
+     * @param streamKey    the stream key to consume events from
+     * @param groupName    the consumer group name
+     * @param consumerName the consumer name inside the group
+     * @return the configuration instance
+     */
+    public static StreamConsumerConfiguration withDefaults(
+                                                           String streamKey,
+                                                           String groupName,
+                                                           String consumerName
+    ) {
+        return new StreamConsumerConfiguration(
+                streamKey,
+                groupName,
+                consumerName,
+                DEFAULT_BATCH_SIZE,
+                DEFAULT_BLOCK_TIME,
+                DEFAULT_PARALLELISM,
+                DEFAULT_ACK_BATCH_SIZE,
+                DEFAULT_ACK_MAX_DELAY,
+                DEFAULT_CLAIM_MIN_IDLE_TIME,
+                DEFAULT_CLAIM_INTERVAL,
+                DEFAULT_MAX_DELIVERIES
+        );
+    }
+
+    private static void requirePositive(
+                                        int value,
+                                        String name
+    ) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid %s: [%s], it must be > 0".formatted(name, value));
+        }
+    }
+
+    private static void requirePositive(
+                                        Duration value,
+                                        String name
+    ) {
+        Objects.requireNonNull(value, "%s null not valid".formatted(name));
+        if (value.isNegative() || value.isZero()) {
+            throw new IllegalArgumentException("Invalid %s: [%s], it must be > 0".formatted(name, value));
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package it.pagopa.ecommerce.commons.redis.templatewrappers;
 
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StreamOperations;
 import org.springframework.lang.NonNull;
 
 import java.time.Duration;
@@ -184,9 +188,7 @@ public abstract class RedisTemplateWrapper<V> {
                                                      V event,
                                                      long streamSize
     ) {
-        if (streamSize < 0) {
-            throw new IllegalArgumentException("Invalid input %s events to trim, it must be >=0".formatted(streamSize));
-        }
+        validateStreamSize(streamSize);
         redisTemplate.opsForStream().trim(streamKey, streamSize);
         return redisTemplate
                 .opsForStream()
@@ -198,6 +200,71 @@ public abstract class RedisTemplateWrapper<V> {
                 );
     }
 
+    /**
+     * Write an event to the stream with the specified key, trimming the stream to
+     * about the wanted size with a single XADD command (XADD ... MAXLEN ~ size).
+     * Approximate trimming lets Redis evict whole macro nodes only, so the stream
+     * may be slightly longer than the wanted size, but both operations are
+     * performed atomically in a single round trip
+     *
+     * @param streamKey  the stream key where send the event to
+     * @param event      the event to be sent
+     * @param streamSize the wanted (approximate) length of the stream
+     * @return the {@link RecordId} associated to the written event
+     */
+    public RecordId writeEventToStreamTrimmingEventsApproximately(
+                                                                  String streamKey,
+                                                                  V event,
+                                                                  long streamSize
+    ) {
+        validateStreamSize(streamSize);
+        return redisTemplate
+                .opsForStream()
+                .add(
+                        ObjectRecord.create(
+                                streamKey,
+                                event
+                        ),
+                        approximateMaxLength(streamSize)
+                );
+    }
+
+    /**
+     * Write multiple events to the stream with the specified key pipelining all the
+     * XADD commands in a single flush
+     *
+     * @param streamKey the stream key where send the events to
+     * @param events    the events to be sent
+     * @return the {@link RecordId}s associated to the written events, in input
+     *         events order
+     */
+    public List<RecordId> writeEventsToStream(
+                                              String streamKey,
+                                              List<V> events
+    ) {
+        return appendEvents(streamKey, events, XAddOptions.none());
+    }
+
+    /**
+     * Write multiple events to the stream with the specified key pipelining all the
+     * XADD commands in a single flush, each one trimming the stream to about the
+     * wanted size (XADD ... MAXLEN ~ size)
+     *
+     * @param streamKey  the stream key where send the events to
+     * @param events     the events to be sent
+     * @param streamSize the wanted (approximate) length of the stream
+     * @return the {@link RecordId}s associated to the written events, in input
+     *         events order
+     */
+    public List<RecordId> writeEventsToStreamTrimmingEventsApproximately(
+                                                                         String streamKey,
+                                                                         List<V> events,
+                                                                         long streamSize
+    ) {
+        validateStreamSize(streamSize);
+        return appendEvents(streamKey, events, approximateMaxLength(streamSize));
+    }
+
     /**
      * Trim events from the stream with input key to the wanted size
      *
@@ -309,6 +376,37 @@ public abstract class RedisTemplateWrapper<V> {
      */
     protected abstract String getKeyFromEntity(V value);
 
+    private List<RecordId> appendEvents(
+                                        String streamKey,
+                                        List<V> events,
+                                        XAddOptions xAddOptions
+    ) {
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, T> Object execute(RedisOperations<K, T> operations) {
+                StreamOperations<String, Object, Object> streamOperations = (StreamOperations<String, Object, Object>) operations
+                        .opsForStream();
+                events.forEach(event -> streamOperations.add(ObjectRecord.create(streamKey, event), xAddOptions));
+                // results are collected from the pipeline
+                return null;
+            }
+        });
+        return results.stream()
+                .map(result -> result instanceof RecordId recordId ? recordId : RecordId.of(String.valueOf(result)))
+                .toList();
+    }
+
+    private static void validateStreamSize(long streamSize) {
+        if (streamSize < 0) {
+            throw new IllegalArgumentException("Invalid input %s events to trim, it must be >=0".formatted(streamSize));
+        }
+    }
+
+    private static XAddOptions approximateMaxLength(long streamSize) {
+        return XAddOptions.maxlen(streamSize).approximateTrimming(true);
+    }
+
     private String compoundKeyWithKeyspace(String key) {
         return "%s:%s".formatted(keyspace, key);
     }
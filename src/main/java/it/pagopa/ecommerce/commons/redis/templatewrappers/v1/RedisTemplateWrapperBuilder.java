@@ -1,14 +1,10 @@
 package it.pagopa.ecommerce.commons.redis.templatewrappers.v1;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 import it.pagopa.ecommerce.commons.domain.v1.IdempotencyKey;
 import it.pagopa.ecommerce.commons.domain.v1.RptId;
-import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonIdempotencyKeyDeserializer;
-import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonIdempotencyKeySerializer;
-import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonRptIdDeserializer;
-import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonRptIdSerializer;
 import it.pagopa.ecommerce.commons.repositories.v1.PaymentRequestInfo;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry.MapperConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
@@ -16,8 +12,6 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
 
-import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
-
 /**
  * Helper class that can be used to properly configure RedisTemplate wrapper
  * adding custom serializers
@@ -72,15 +66,9 @@ public class RedisTemplateWrapperBuilder {
      *         objects serialization proper serialization
      */
     private static <T> Jackson2JsonRedisSerializer<T> buildJackson2RedisSerializer(Class<T> clazz) {
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        SimpleModule rptSerializationModule = new SimpleModule();
-        rptSerializationModule.addSerializer(RptId.class, new JacksonRptIdSerializer());
-        rptSerializationModule.addDeserializer(RptId.class, new JacksonRptIdDeserializer());
-        rptSerializationModule.addSerializer(IdempotencyKey.class, new JacksonIdempotencyKeySerializer());
-        rptSerializationModule.addDeserializer(IdempotencyKey.class, new JacksonIdempotencyKeyDeserializer());
-        objectMapper.registerModule(rptSerializationModule);
-        objectMapper.setSerializationInclusion(NON_NULL);
-        return new Jackson2JsonRedisSerializer<>(objectMapper, clazz);
+        return new Jackson2JsonRedisSerializer<>(
+                ObjectMapperRegistry.getInstance().getObjectMapper(MapperConfiguration.REDIS_V1),
+                clazz
+        );
     }
 }
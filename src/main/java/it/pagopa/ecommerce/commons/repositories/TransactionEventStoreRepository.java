@@ -0,0 +1,260 @@
+package it.pagopa.ecommerce.commons.repositories;
+
+import it.pagopa.ecommerce.commons.documents.BaseTransactionEvent;
+import it.pagopa.ecommerce.commons.exceptions.EventStoreConcurrencyException;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Reactive repository for the {@code eventstore} collection, where each
+ * transaction is stored as an append-only stream of events.
+ * </p>
+ * <p>
+ * Events appended through this repository are stored with a per-transaction
+ * {@value #SEQUENCE_FIELD} field, starting from 1, that is managed by the
+ * repository only and is not mapped to the event classes. A unique index on
+ * (transactionId, sequence) turns each append into a conditional insert: two
+ * writers appending to the same stream version try to insert the same sequence
+ * and only the first one succeeds, so that concurrent appends are detected
+ * without locks. Events written before this repository was introduced have no
+ * sequence and do not contribute to the stream version.
+ * </p>
+ * <p>
+ * Indexes are declared by {@link #INDEXES} and can be created with
+ * {@link #ensureIndexes()}.
+ * </p>
+ *
+ * @param <E> the event type, that is the event hierarchy root of an event
+ *            version
+ */
+public class TransactionEventStoreRepository<E extends BaseTransactionEvent<?>> {
+
+    /**
+     * Name of the field storing the event position in its transaction stream
+     */
+    public static final String SEQUENCE_FIELD = "sequence";
+
+    private static final String ID_FIELD = "_id";
+
+    private static final String TRANSACTION_ID_FIELD = "transactionId";
+
+    /**
+     * Chronological order of transaction events, by creation instant. Creation
+     * dates are stored as zoned date time strings with variable fraction digits and
+     * offsets, so their string order is not their time order and events are sorted
+     * after being read
+     */
+    public static final Comparator<BaseTransactionEvent<?>> CREATION_DATE_ORDER = Comparator
+            .comparing(event -> event.creationDateTime().toInstant());
+
+    /**
+     * Indexes of the event store collection: events are read by transaction id and
+     * appended checking the per-transaction sequence
+     */
+    public static final List<IndexDefinition> INDEXES = List.of(
+            new Index()
+                    .on(TRANSACTION_ID_FIELD, Sort.Direction.ASC)
+                    .on(SEQUENCE_FIELD, Sort.Direction.ASC)
+                    .named("transactionId_sequence")
+                    .unique()
+                    .partial(PartialIndexFilter.of(Criteria.where(SEQUENCE_FIELD).exists(true))),
+            new Index()
+                    .on(TRANSACTION_ID_FIELD, Sort.Direction.ASC)
+                    .on(ID_FIELD, Sort.Direction.ASC)
+                    .named("transactionId_id")
+    );
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    private final Class<E> eventType;
+
+    private final String collectionName;
+
+    private final int cursorBatchSize;
+
+    /**
+     * Build a new repository instance
+     *
+     * @param mongoOperations the reactive Mongo operations used to access the
+     *                        collection
+     * @param eventType       the event type, used to map read documents
+     * @param cursorBatchSize the number of events fetched per cursor batch when
+     *                        reading a transaction stream
+     */
+    public TransactionEventStoreRepository(
+            ReactiveMongoOperations mongoOperations,
+            Class<E> eventType,
+            int cursorBatchSize
+    ) {
+        if (cursorBatchSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid cursor batch size: [%s], it must be > 0".formatted(cursorBatchSize)
+            );
+        }
+        this.mongoOperations = Objects.requireNonNull(mongoOperations);
+        this.eventType = Objects.requireNonNull(eventType);
+        this.collectionName = mongoOperations.getCollectionName(eventType);
+        this.cursorBatchSize = cursorBatchSize;
+    }
+
+    /**
+     * Build a new repository for v1 events
+     *
+     * @param mongoOperations the reactive Mongo operations
+     * @param cursorBatchSize the number of events fetched per cursor batch
+     * @return the repository instance
+     */
+    public static TransactionEventStoreRepository<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> v1(
+                                                                                                                   ReactiveMongoOperations mongoOperations,
+                                                                                                                   int cursorBatchSize
+    ) {
+        return new TransactionEventStoreRepository<>(
+                mongoOperations,
+                eventClass(it.pagopa.ecommerce.commons.documents.v1.TransactionEvent.class),
+                cursorBatchSize
+        );
+    }
+
+    /**
+     * Build a new repository for v2 events
+     *
+     * @param mongoOperations the reactive Mongo operations
+     * @param cursorBatchSize the number of events fetched per cursor batch
+     * @return the repository instance
+     */
+    public static TransactionEventStoreRepository<it.pagopa.ecommerce.commons.documents.v2.TransactionEvent<?>> v2(
+                                                                                                                   ReactiveMongoOperations mongoOperations,
+                                                                                                                   int cursorBatchSize
+    ) {
+        return new TransactionEventStoreRepository<>(
+                mongoOperations,
+                eventClass(it.pagopa.ecommerce.commons.documents.v2.TransactionEvent.class),
+                cursorBatchSize
+        );
+    }
+
+    /**
+     * Create the event store indexes, if missing
+     *
+     * @return a {@link Mono} completing when all indexes exist
+     */
+    public Mono<Void> ensureIndexes() {
+        return Flux.fromIterable(INDEXES)
+                .concatMap(index -> mongoOperations.indexOps(collectionName).ensureIndex(index))
+                .then();
+    }
+
+    /**
+     * Append the input events to a transaction stream with a single bulk write.
+     * Events are stored in input order with sequences following the expected
+     * version: if the stream has been modified since that version was read no event
+     * is written and the returned {@link Mono} fails with
+     * {@link EventStoreConcurrencyException}
+     *
+     * @param transactionId   the transaction id
+     * @param expectedVersion the stream version read by the caller, that is the
+     *                        sequence of the last event, or 0 for a new stream
+     * @param events          the events to be appended, all belonging to the input
+     *                        transaction
+     * @return a {@link Mono} emitting the new stream version
+     */
+    public Mono<Long> append(
+                             String transactionId,
+                             long expectedVersion,
+                             List<? extends E> events
+    ) {
+        return Mono.defer(() -> {
+            if (expectedVersion < 0) {
+                return Mono.error(
+                        new IllegalArgumentException(
+                                "Invalid expected version: [%s], it must be >= 0".formatted(expectedVersion)
+                        )
+                );
+            }
+            if (events.isEmpty()) {
+                return Mono.just(expectedVersion);
+            }
+            List<Document> documents = new ArrayList<>(events.size());
+            long sequence = expectedVersion;
+            for (E event : events) {
+                if (!transactionId.equals(event.getTransactionId())) {
+                    return Mono.error(
+                            new IllegalArgumentException(
+                                    "Event with id: [%s] belongs to transaction: [%s] instead of: [%s]"
+                                            .formatted(event.getId(), event.getTransactionId(), transactionId)
+                            )
+                    );
+                }
+                Document document = new Document();
+                mongoOperations.getConverter().write(event, document);
+                document.put(SEQUENCE_FIELD, ++sequence);
+                documents.add(document);
+            }
+            long newVersion = sequence;
+            // ordered bulk insert: a stale expected version makes the first event
+            // conflict, so that no event is written
+            return mongoOperations.insert(documents, collectionName)
+                    .then(Mono.just(newVersion))
+                    .onErrorMap(
+                            DuplicateKeyException.class,
+                            e -> new EventStoreConcurrencyException(transactionId, expectedVersion, e)
+                    );
+        });
+    }
+
+    /**
+     * Get the events of a transaction in chronological order (see
+     * {@link #CREATION_DATE_ORDER}). Events are read in stream order, that is by
+     * sequence and then by id, and sorted in memory by creation instant, so that
+     * events created at the same instant keep their stream order
+     *
+     * @param transactionId the transaction id
+     * @return a {@link Flux} emitting the transaction events
+     */
+    public Flux<E> findByTransactionId(String transactionId) {
+        Query query = Query.query(Criteria.where(TRANSACTION_ID_FIELD).is(transactionId))
+                .with(Sort.by(Sort.Direction.ASC, SEQUENCE_FIELD, ID_FIELD))
+                .cursorBatchSize(cursorBatchSize);
+        // stable sort, events created at the same instant are not reordered
+        return mongoOperations.find(query, eventType, collectionName).sort(CREATION_DATE_ORDER);
+    }
+
+    /**
+     * Get the current version of a transaction stream
+     *
+     * @param transactionId the transaction id
+     * @return a {@link Mono} emitting the sequence of the last appended event, or 0
+     *         if no event has been appended through this repository
+     */
+    public Mono<Long> currentVersion(String transactionId) {
+        Query query = Query.query(
+                Criteria.where(TRANSACTION_ID_FIELD).is(transactionId).and(SEQUENCE_FIELD).exists(true)
+        )
+                .with(Sort.by(Sort.Direction.DESC, SEQUENCE_FIELD))
+                .limit(1);
+        query.fields().include(SEQUENCE_FIELD);
+        return mongoOperations.findOne(query, Document.class, collectionName)
+                .map(document -> document.get(SEQUENCE_FIELD, Number.class).longValue())
+                .defaultIfEmpty(0L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Class<E> eventClass(Class<?> rawEventClass) {
+        return (Class<E>) rawEventClass;
+    }
+}
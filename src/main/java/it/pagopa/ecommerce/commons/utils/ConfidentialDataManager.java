@@ -1,5 +1,6 @@
 package it.pagopa.ecommerce.commons.utils;
 
+import it.pagopa.ecommerce.commons.client.AdaptiveConcurrencyLimiter;
 import it.pagopa.ecommerce.commons.domain.Confidential;
 import it.pagopa.ecommerce.commons.exceptions.ConfidentialDataException;
 import it.pagopa.generated.pdv.v1.api.TokenApi;
@@ -45,8 +46,15 @@ public class ConfidentialDataManager {
         String toStringRepresentation();
     }
 
+    /**
+     * Key used to limit concurrent requests to the Personal Data Vault
+     */
+    public static final String CONCURRENCY_LIMITER_KEY = "pdv";
+
     private final TokenApi personalDataVaultClient;
 
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
     /**
      * Primary constructor.
      *
@@ -54,8 +62,23 @@ public class ConfidentialDataManager {
      */
     public ConfidentialDataManager(
             TokenApi personalDataVaultClient
+    ) {
+        this(personalDataVaultClient, AdaptiveConcurrencyLimiter.disabled());
+    }
+
+    /**
+     * Constructor limiting concurrent requests to the Personal Data Vault with the
+     * input limiter
+     *
+     * @param personalDataVaultClient Client for Personal Data Vault
+     * @param concurrencyLimiter      the limiter of concurrent requests
+     */
+    public ConfidentialDataManager(
+            TokenApi personalDataVaultClient,
+            AdaptiveConcurrencyLimiter concurrencyLimiter
     ) {
         this.personalDataVaultClient = personalDataVaultClient;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     /**
@@ -153,14 +176,20 @@ public class ConfidentialDataManager {
      */
     @Nonnull
     public <T extends ConfidentialData> Mono<String> decrypt(Confidential<T> data) {
-        return this.personalDataVaultClient.findPiiUsingGET(data.opaqueData())
+        return concurrencyLimiter.limit(
+                CONCURRENCY_LIMITER_KEY,
+                this.personalDataVaultClient.findPiiUsingGET(data.opaqueData())
+        )
                 .map(PiiResourceDto::getPii)
                 .onErrorMap(WebClientResponseException.class, ConfidentialDataException::new);
     }
 
     @Nonnull
     private Mono<String> encryptData(@Nonnull String data) {
-        return this.personalDataVaultClient.saveUsingPUT(new PiiResourceDto().pii(data))
+        return concurrencyLimiter.limit(
+                CONCURRENCY_LIMITER_KEY,
+                this.personalDataVaultClient.saveUsingPUT(new PiiResourceDto().pii(data))
+        )
                 .map(TokenResourceDto::getToken)
                 .map(UUID::toString)
                 .onErrorMap(WebClientResponseException.class, ConfidentialDataException::new);
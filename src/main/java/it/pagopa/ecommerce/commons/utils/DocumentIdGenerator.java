@@ -0,0 +1,25 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import java.util.UUID;
+
+/**
+ * Generator of unique ids for persisted documents
+ *
+ * @see DocumentIds
+ */
+@FunctionalInterface
+public interface DocumentIdGenerator {
+
+    /**
+     * Generator producing random (version 4) UUIDs, as done before time-ordered ids
+     * were introduced
+     */
+    DocumentIdGenerator RANDOM_UUID = () -> UUID.randomUUID().toString();
+
+    /**
+     * Generate a new unique id
+     *
+     * @return the generated id
+     */
+    String newId();
+}
@@ -0,0 +1,51 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import java.util.Objects;
+
+/**
+ * <p>
+ * Holder of the {@link DocumentIdGenerator} used to generate ids of the
+ * documents created by this library, such as transaction events.
+ * </p>
+ * <p>
+ * Time-ordered UUIDv7 ids are generated by default (see
+ * {@link UuidV7Generator}): consecutive documents get increasing ids, so that
+ * inserts are appended to the id index instead of being scattered across it.
+ * Applications can plug a different generator with
+ * {@link #setGenerator(DocumentIdGenerator)}.
+ * </p>
+ */
+public final class DocumentIds {
+
+    private static volatile DocumentIdGenerator generator = new UuidV7Generator();
+
+    private DocumentIds() {
+    }
+
+    /**
+     * Generate a new document id with the configured generator
+     *
+     * @return the generated id
+     */
+    public static String newId() {
+        return generator.newId();
+    }
+
+    /**
+     * Get the configured generator
+     *
+     * @return the generator used by {@link #newId()}
+     */
+    public static DocumentIdGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Set the generator used by {@link #newId()}
+     *
+     * @param documentIdGenerator the generator to be used
+     */
+    public static void setGenerator(DocumentIdGenerator documentIdGenerator) {
+        generator = Objects.requireNonNull(documentIdGenerator);
+    }
+}
@@ -0,0 +1,262 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Utility class for event creation timestamps.
+ * </p>
+ * <p>
+ * Event creation dates are persisted as strings in the
+ * {@link ZonedDateTime#toString()} format (e.g.
+ * {@code 2023-01-01T10:00:00.123456+01:00[Europe/Rome]}). This class generates
+ * timestamps in the very same format while caching the zone offset resolution
+ * between offset transitions, and parses them with a hand-written fast path
+ * that falls back to {@link ZonedDateTime#parse(CharSequence)} for any input
+ * not matching that format, so that results are always identical to the ones of
+ * the standard parser.
+ * </p>
+ */
+public class EventTimestampUtils {
+
+    private static final Clock SYSTEM_CLOCK = Clock.systemDefaultZone();
+
+    private static final Map<String, ZoneId> ZONE_IDS = new ConcurrentHashMap<>();
+
+    private static volatile OffsetWindow offsetWindow;
+
+    /**
+     * Zone offset valid for the epoch seconds in the range [validFrom, validUntil)
+     */
+    private record OffsetWindow(
+            ZoneId zone,
+            ZoneOffset offset,
+            long validFrom,
+            long validUntil,
+            String suffix
+    ) {
+        boolean isValid(
+                        ZoneId zone,
+                        long epochSecond
+        ) {
+            return this.zone.equals(zone) && epochSecond >= validFrom && epochSecond < validUntil;
+        }
+    }
+
+    /**
+     * Parsed timestamp components, the region is null for offset only timestamps
+     */
+    private record ParsedTimestamp(
+            LocalDateTime dateTime,
+            ZoneOffset offset,
+            String region
+    ) {
+    }
+
+    private EventTimestampUtils() {
+    }
+
+    /**
+     * Get the current timestamp in the system default zone, captured when this
+     * class is loaded
+     *
+     * @return the current timestamp, formatted as
+     *         {@code ZonedDateTime.now().toString()}
+     */
+    public static String now() {
+        return now(SYSTEM_CLOCK);
+    }
+
+    /**
+     * Get the current timestamp of the input clock
+     *
+     * @param clock the clock providing the current instant and zone
+     * @return the current timestamp, formatted as
+     *         {@code ZonedDateTime.now(clock).toString()}
+     */
+    public static String now(Clock clock) {
+        Instant instant = clock.instant();
+        OffsetWindow window = offsetWindow(clock.getZone(), instant);
+        return LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), window.offset()).toString()
+                + window.suffix();
+    }
+
+    /**
+     * Parse the input event timestamp
+     *
+     * @param timestamp the timestamp to be parsed
+     * @return the parsed timestamp, equal to the one returned by
+     *         {@link ZonedDateTime#parse(CharSequence)}
+     * @throws java.time.format.DateTimeParseException if the input timestamp cannot
+     *                                                 be parsed
+     */
+    public static ZonedDateTime parse(String timestamp) {
+        ParsedTimestamp parsed = parseFast(timestamp);
+        if (parsed != null) {
+            try {
+                ZoneId zone = parsed.region() == null ? parsed.offset()
+                        : ZONE_IDS.computeIfAbsent(parsed.region(), ZoneId::of);
+                return ZonedDateTime.ofInstant(parsed.dateTime(), parsed.offset(), zone);
+            } catch (DateTimeException e) {
+                // invalid region, let the standard parser report the error
+            }
+        }
+        return ZonedDateTime.parse(timestamp);
+    }
+
+    /**
+     * Convert the input event timestamp to epoch milliseconds
+     *
+     * @param timestamp the timestamp to be converted
+     * @return the number of milliseconds since epoch
+     * @throws java.time.format.DateTimeParseException if the input timestamp cannot
+     *                                                 be parsed
+     */
+    public static long toEpochMillis(String timestamp) {
+        ParsedTimestamp parsed = parseFast(timestamp);
+        if (parsed == null || (parsed.region() != null && !isValidRegion(parsed.region()))) {
+            return ZonedDateTime.parse(timestamp).toInstant().toEpochMilli();
+        }
+        // the offset in the timestamp already identifies the instant, no zone rules
+        // lookup is needed
+        return parsed.dateTime().toEpochSecond(parsed.offset()) * 1000
+                + parsed.dateTime().getNano() / 1_000_000;
+    }
+
+    private static boolean isValidRegion(String region) {
+        try {
+            ZONE_IDS.computeIfAbsent(region, ZoneId::of);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    private static OffsetWindow offsetWindow(
+                                             ZoneId zone,
+                                             Instant instant
+    ) {
+        OffsetWindow window = offsetWindow;
+        if (window == null || !window.isValid(zone, instant.getEpochSecond())) {
+            ZoneRules rules = zone.getRules();
+            ZoneOffset offset = rules.getOffset(instant);
+            ZoneOffsetTransition nextTransition = rules.nextTransition(instant);
+            window = new OffsetWindow(
+                    zone,
+                    offset,
+                    instant.getEpochSecond(),
+                    nextTransition == null ? Long.MAX_VALUE : nextTransition.toEpochSecond(),
+                    zone instanceof ZoneOffset ? offset.toString() : offset + "[" + zone + "]"
+            );
+            offsetWindow = window;
+        }
+        return window;
+    }
+
+    /*
+     * Parse timestamps in the uuuu-MM-ddTHH:mm[:ss[.S...]](Z|+HH:MM)[[region]]
+     * format, returning null for any other format
+     */
+    private static ParsedTimestamp parseFast(String timestamp) {
+        int length = timestamp.length();
+        if (length < 17 || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T'
+                || timestamp.charAt(13) != ':') {
+            return null;
+        }
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minute = digits(timestamp, 14, 2);
+        int second = 0;
+        int nano = 0;
+        int position = 16;
+        if (position < length && timestamp.charAt(position) == ':') {
+            second = digits(timestamp, position + 1, 2);
+            position += 3;
+            if (position < length && timestamp.charAt(position) == '.') {
+                int fractionStart = ++position;
+                while (position < length && position - fractionStart < 9 && isDigit(timestamp.charAt(position))) {
+                    nano = nano * 10 + (timestamp.charAt(position++) - '0');
+                }
+                int fractionDigits = position - fractionStart;
+                if (fractionDigits == 0) {
+                    return null;
+                }
+                for (int i = fractionDigits; i < 9; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if ((year | month | day | hour | minute | second) < 0 || position >= length) {
+            return null;
+        }
+        ZoneOffset offset;
+        char offsetSign = timestamp.charAt(position);
+        if (offsetSign == 'Z') {
+            offset = ZoneOffset.UTC;
+            position++;
+        } else if ((offsetSign == '+' || offsetSign == '-') && position + 6 <= length
+                && timestamp.charAt(position + 3) == ':') {
+            int offsetHours = digits(timestamp, position + 1, 2);
+            int offsetMinutes = digits(timestamp, position + 4, 2);
+            if ((offsetHours | offsetMinutes) < 0) {
+                return null;
+            }
+            int sign = offsetSign == '+' ? 1 : -1;
+            try {
+                offset = ZoneOffset.ofHoursMinutes(sign * offsetHours, sign * offsetMinutes);
+            } catch (DateTimeException e) {
+                return null;
+            }
+            position += 6;
+        } else {
+            return null;
+        }
+        String region = null;
+        if (position < length) {
+            if (timestamp.charAt(position) != '[' || timestamp.charAt(length - 1) != ']' || length - position < 3) {
+                return null;
+            }
+            region = timestamp.substring(position + 1, length - 1);
+        }
+        try {
+            return new ParsedTimestamp(LocalDateTime.of(year, month, day, hour, minute, second, nano), offset, region);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(
+                              String value,
+                              int start,
+                              int count
+    ) {
+        if (start + count > value.length()) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
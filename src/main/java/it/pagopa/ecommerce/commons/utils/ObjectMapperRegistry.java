@@ -0,0 +1,336 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.ClientErrorDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.ServerErrorDto;
+import it.pagopa.ecommerce.commons.queues.QueueEvent;
+import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonIdempotencyKeyDeserializer;
+import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonIdempotencyKeySerializer;
+import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonRptIdDeserializer;
+import it.pagopa.ecommerce.commons.redis.converters.v1.JacksonRptIdSerializer;
+import org.springframework.util.ClassUtils;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+/**
+ * <p>
+ * Central registry of the {@link ObjectMapper} configurations used across the
+ * library. Each configuration is built once per registry instance and shared,
+ * so that Jackson serializer/deserializer caches are warmed only once.
+ * </p>
+ * <p>
+ * The registry also caches {@link ObjectReader} and {@link ObjectWriter}
+ * instances per (configuration, type) pair: readers and writers are immutable
+ * and thread safe, so hot paths can reuse them avoiding per call type
+ * resolution.
+ * </p>
+ * <p>
+ * Shared mappers returned by this registry must be treated as read-only:
+ * components that need to customize the configuration (e.g. adding mixins) must
+ * obtain a fresh instance through {@link #newObjectMapper(MapperConfiguration)}
+ * </p>
+ */
+public final class ObjectMapperRegistry {
+
+    /**
+     * System property used to enable bytecode acceleration for the default registry
+     * instance
+     */
+    public static final String BYTECODE_ACCELERATION_PROPERTY = "ecommerce.commons.jackson.bytecode-acceleration";
+
+    private static final String BLACKBIRD_MODULE_CLASS_NAME = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+    /**
+     * Available object mapper configurations
+     */
+    public enum MapperConfiguration {
+        /**
+         * Strict typing configuration: fails on unknown, missing or null creator
+         * properties
+         */
+        STRICT,
+        /**
+         * Lenient configuration: same as {@link #STRICT} but unknown properties are
+         * ignored
+         */
+        LENIENT,
+        /**
+         * Redis configuration for v1 domain objects
+         */
+        REDIS_V1,
+        /**
+         * Redis configuration for v2 domain objects
+         */
+        REDIS_V2,
+        /**
+         * Compact (CBOR) Redis configuration for v1 domain objects, with payment
+         * request information serialized as positional arrays
+         */
+        REDIS_V1_COMPACT,
+        /**
+         * Compact (CBOR) Redis configuration for v2 domain objects, with payment
+         * request information serialized as positional arrays
+         */
+        REDIS_V2_COMPACT
+    }
+
+    private record TypeKey(
+            MapperConfiguration configuration,
+            Class<?> type
+    ) {
+    }
+
+    /**
+     * Isolates references to the optional Blackbird dependency so that it is loaded
+     * only when bytecode acceleration is enabled
+     */
+    private static final class BlackbirdSupport {
+        private static Module module() {
+            return new BlackbirdModule();
+        }
+    }
+
+    private static final class DefaultInstanceHolder {
+        private static final ObjectMapperRegistry INSTANCE = new ObjectMapperRegistry(
+                Boolean.getBoolean(BYTECODE_ACCELERATION_PROPERTY)
+        );
+    }
+
+    private final boolean bytecodeAccelerationEnabled;
+
+    private final Map<MapperConfiguration, ObjectMapper> objectMappers = new EnumMap<>(MapperConfiguration.class);
+
+    private final Map<TypeKey, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final Map<TypeKey, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Build a new registry instance. Bytecode acceleration (Blackbird module) is
+     * enabled only if requested and if the module is found on the classpath
+     *
+     * @param bytecodeAcceleration whether bytecode accelerated (de)serialization
+     *                             should be enabled
+     */
+    public ObjectMapperRegistry(boolean bytecodeAcceleration) {
+        this.bytecodeAccelerationEnabled = bytecodeAcceleration
+                && ClassUtils.isPresent(BLACKBIRD_MODULE_CLASS_NAME, ObjectMapperRegistry.class.getClassLoader());
+        for (MapperConfiguration configuration : MapperConfiguration.values()) {
+            objectMappers.put(configuration, newObjectMapper(configuration));
+        }
+        warmUp();
+    }
+
+    /**
+     * Get the default registry instance. Bytecode acceleration for this instance is
+     * driven by the {@value #BYTECODE_ACCELERATION_PROPERTY} system property
+     *
+     * @return the default registry instance
+     */
+    public static ObjectMapperRegistry getInstance() {
+        return DefaultInstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Get the shared object mapper for the input configuration
+     *
+     * @param configuration the wanted configuration
+     * @return the shared object mapper instance
+     */
+    public ObjectMapper getObjectMapper(MapperConfiguration configuration) {
+        return objectMappers.get(Objects.requireNonNull(configuration));
+    }
+
+    /**
+     * Get a cached {@link ObjectReader} for the input configuration and type
+     *
+     * @param configuration the object mapper configuration
+     * @param type          the type to be read
+     * @return the cached reader instance
+     */
+    public ObjectReader readerFor(
+                                  MapperConfiguration configuration,
+                                  Class<?> type
+    ) {
+        return readers.computeIfAbsent(
+                new TypeKey(configuration, type),
+                key -> getObjectMapper(key.configuration).readerFor(key.type)
+        );
+    }
+
+    /**
+     * Get a cached {@link ObjectWriter} for the input configuration and type
+     *
+     * @param configuration the object mapper configuration
+     * @param type          the type to be written
+     * @return the cached writer instance
+     */
+    public ObjectWriter writerFor(
+                                  MapperConfiguration configuration,
+                                  Class<?> type
+    ) {
+        return writers.computeIfAbsent(
+                new TypeKey(configuration, type),
+                key -> getObjectMapper(key.configuration).writerFor(key.type)
+        );
+    }
+
+    /**
+     * Return whether bytecode acceleration is enabled for this registry
+     *
+     * @return true iff bytecode acceleration module is registered on built mappers
+     */
+    public boolean isBytecodeAccelerationEnabled() {
+        return bytecodeAccelerationEnabled;
+    }
+
+    /**
+     * Build a new, non shared, {@link ObjectMapper} instance with the input
+     * configuration. To be used by components that need to further customize the
+     * returned instance
+     *
+     * @param configuration the wanted configuration
+     * @return a new object mapper instance
+     */
+    public ObjectMapper newObjectMapper(MapperConfiguration configuration) {
+        ObjectMapper objectMapper = switch (configuration) {
+            case STRICT -> strictObjectMapper();
+            case LENIENT -> strictObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            case REDIS_V1 -> redisObjectMapper(redisV1Module());
+            case REDIS_V2 -> redisObjectMapper(redisV2Module());
+            case REDIS_V1_COMPACT -> compactRedisObjectMapper(
+                    redisV1Module(),
+                    it.pagopa.ecommerce.commons.repositories.v1.PaymentRequestInfo.class,
+                    it.pagopa.ecommerce.commons.domain.v1.PaymentTransferInfo.class
+            );
+            case REDIS_V2_COMPACT -> compactRedisObjectMapper(
+                    redisV2Module(),
+                    it.pagopa.ecommerce.commons.repositories.v2.PaymentRequestInfo.class,
+                    it.pagopa.ecommerce.commons.domain.v2.PaymentTransferInfo.class
+            );
+        };
+        if (bytecodeAccelerationEnabled) {
+            objectMapper.registerModule(BlackbirdSupport.module());
+        }
+        return objectMapper;
+    }
+
+    private void warmUp() {
+        List.of(
+                new TypeKey(MapperConfiguration.STRICT, QueueEvent.class),
+                new TypeKey(MapperConfiguration.STRICT, ClientErrorDto.class),
+                new TypeKey(MapperConfiguration.STRICT, ServerErrorDto.class),
+                new TypeKey(MapperConfiguration.LENIENT, ClientErrorDto.class),
+                new TypeKey(MapperConfiguration.LENIENT, ServerErrorDto.class),
+                new TypeKey(
+                        MapperConfiguration.REDIS_V1,
+                        it.pagopa.ecommerce.commons.repositories.v1.PaymentRequestInfo.class
+                ),
+                new TypeKey(
+                        MapperConfiguration.REDIS_V2,
+                        it.pagopa.ecommerce.commons.repositories.v2.PaymentRequestInfo.class
+                ),
+                new TypeKey(
+                        MapperConfiguration.REDIS_V1_COMPACT,
+                        it.pagopa.ecommerce.commons.repositories.v1.PaymentRequestInfo.class
+                ),
+                new TypeKey(
+                        MapperConfiguration.REDIS_V2_COMPACT,
+                        it.pagopa.ecommerce.commons.repositories.v2.PaymentRequestInfo.class
+                )
+        ).forEach(key -> {
+            readerFor(key.configuration, key.type);
+            writerFor(key.configuration, key.type);
+        });
+    }
+
+    private static ObjectMapper strictObjectMapper() {
+        return new ObjectMapper()
+                .registerModule(new Jdk8Module())
+                .configure(DeserializationFeature.FAIL_ON_NULL_CREATOR_PROPERTIES, true)
+                .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, true)
+                .configure(DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES, true)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true)
+                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    }
+
+    private static ObjectMapper redisObjectMapper(SimpleModule domainObjectsModule) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(domainObjectsModule);
+        objectMapper.setSerializationInclusion(NON_NULL);
+        return objectMapper;
+    }
+
+    private static ObjectMapper compactRedisObjectMapper(
+                                                         SimpleModule domainObjectsModule,
+                                                         Class<?>... positionalTypes
+    ) {
+        CBORMapper.Builder builder = CBORMapper.builder()
+                .addModule(domainObjectsModule)
+                .serializationInclusion(NON_NULL);
+        for (Class<?> positionalType : positionalTypes) {
+            builder.withConfigOverride(
+                    positionalType,
+                    configOverride -> configOverride.setFormat(JsonFormat.Value.forShape(JsonFormat.Shape.ARRAY))
+            );
+        }
+        return builder.build();
+    }
+
+    private static SimpleModule redisV1Module() {
+        SimpleModule rptSerializationModule = new SimpleModule();
+        rptSerializationModule.addSerializer(
+                it.pagopa.ecommerce.commons.domain.v1.RptId.class,
+                new JacksonRptIdSerializer()
+        );
+        rptSerializationModule.addDeserializer(
+                it.pagopa.ecommerce.commons.domain.v1.RptId.class,
+                new JacksonRptIdDeserializer()
+        );
+        rptSerializationModule.addSerializer(
+                it.pagopa.ecommerce.commons.domain.v1.IdempotencyKey.class,
+                new JacksonIdempotencyKeySerializer()
+        );
+        rptSerializationModule.addDeserializer(
+                it.pagopa.ecommerce.commons.domain.v1.IdempotencyKey.class,
+                new JacksonIdempotencyKeyDeserializer()
+        );
+        return rptSerializationModule;
+    }
+
+    private static SimpleModule redisV2Module() {
+        SimpleModule rptSerializationModule = new SimpleModule();
+        rptSerializationModule.addSerializer(
+                it.pagopa.ecommerce.commons.domain.v2.RptId.class,
+                new it.pagopa.ecommerce.commons.redis.converters.v2.JacksonRptIdSerializer()
+        );
+        rptSerializationModule.addDeserializer(
+                it.pagopa.ecommerce.commons.domain.v2.RptId.class,
+                new it.pagopa.ecommerce.commons.redis.converters.v2.JacksonRptIdDeserializer()
+        );
+        rptSerializationModule.addSerializer(
+                it.pagopa.ecommerce.commons.domain.v2.IdempotencyKey.class,
+                new it.pagopa.ecommerce.commons.redis.converters.v2.JacksonIdempotencyKeySerializer()
+        );
+        rptSerializationModule.addDeserializer(
+                it.pagopa.ecommerce.commons.domain.v2.IdempotencyKey.class,
+                new it.pagopa.ecommerce.commons.redis.converters.v2.JacksonIdempotencyKeyDeserializer()
+        );
+        return rptSerializationModule;
+    }
+}
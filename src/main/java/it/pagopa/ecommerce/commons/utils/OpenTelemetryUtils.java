@@ -5,6 +5,8 @@ import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 
+import java.util.function.Supplier;
+
 /**
  * Open telemetry utility class used to create spans inside the current
  * transaction with custom arguments
@@ -63,6 +65,44 @@ public class OpenTelemetryUtils {
 
     }
 
+    /**
+     * Add span to the current transactions with the input name and attributes,
+     * computed only if the span is recording
+     *
+     * @param spanName   - span name
+     * @param attributes - span attributes supplier
+     * @see RecordingSpanUtils
+     */
+    public void addSpanWithLazyAttributes(
+                                          String spanName,
+                                          Supplier<Attributes> attributes
+    ) {
+
+        Span span = openTelemetryTracer.spanBuilder(spanName).startSpan();
+        RecordingSpanUtils.setAllAttributes(span, attributes);
+        span.end();
+
+    }
+
+    /**
+     * Add an error span to the current transaction with the input name and
+     * attributes, computed only if the span is recording
+     *
+     * @param spanName   - error span name
+     * @param attributes - error span attributes supplier
+     * @see RecordingSpanUtils
+     */
+    public void addErrorSpanWithLazyAttributes(
+                                               String spanName,
+                                               Supplier<Attributes> attributes
+    ) {
+
+        Span span = openTelemetryTracer.spanBuilder(spanName).startSpan();
+        RecordingSpanUtils.setError(span, attributes);
+        span.end();
+
+    }
+
     /**
      * Add an error span to the current transaction with the input name and
      * throwable stacktrace
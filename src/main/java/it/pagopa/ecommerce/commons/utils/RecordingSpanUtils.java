@@ -0,0 +1,85 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Span instrumentation utilities aware of the span recording state.
+ * </p>
+ * <p>
+ * Spans dropped by the sampler are not recording and discard every attribute
+ * set on them: the methods of this class compute attribute values only for
+ * recording spans, so that instrumented code does not pay for attributes that
+ * would be thrown away.
+ * </p>
+ *
+ * @see Span#isRecording()
+ */
+public final class RecordingSpanUtils {
+
+    private RecordingSpanUtils() {
+    }
+
+    /**
+     * Set an attribute on the input span, computing its value only if the span is
+     * recording
+     *
+     * @param span  the span
+     * @param key   the attribute key
+     * @param value the attribute value supplier
+     * @param <T>   the attribute value type
+     * @return the input span
+     */
+    public static <T> Span setAttribute(
+                                        Span span,
+                                        AttributeKey<T> key,
+                                        Supplier<? extends T> value
+    ) {
+        if (span.isRecording()) {
+            span.setAttribute(key, value.get());
+        }
+        return span;
+    }
+
+    /**
+     * Set attributes on the input span, computing them only if the span is
+     * recording
+     *
+     * @param span       the span
+     * @param attributes the attributes supplier
+     * @return the input span
+     */
+    public static Span setAllAttributes(
+                                        Span span,
+                                        Supplier<Attributes> attributes
+    ) {
+        if (span.isRecording()) {
+            span.setAllAttributes(attributes.get());
+        }
+        return span;
+    }
+
+    /**
+     * Mark the input span as failed, with error attributes computed only if the
+     * span is recording
+     *
+     * @param span       the span
+     * @param attributes the error attributes supplier
+     * @return the input span
+     */
+    public static Span setError(
+                                Span span,
+                                Supplier<Attributes> attributes
+    ) {
+        if (span.isRecording()) {
+            span.setAllAttributes(attributes.get());
+            span.setStatus(StatusCode.ERROR);
+        }
+        return span;
+    }
+}
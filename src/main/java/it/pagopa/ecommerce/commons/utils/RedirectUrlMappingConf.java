@@ -2,7 +2,6 @@ package it.pagopa.ecommerce.commons.utils;
 
 import com.fasterxml.jackson.core.JacksonException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.vavr.control.Either;
 import it.pagopa.ecommerce.commons.exceptions.RedirectConfigurationException;
@@ -24,15 +23,8 @@ public class RedirectUrlMappingConf {
 
     private final List<RedirectUrlMappingEntry> urlConfiguration;
 
-    static final ObjectMapper objectMapper;
-
-    static {
-        // configure object mapper for deserialization
-        objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_NULL_CREATOR_PROPERTIES, true)
-                .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, true)
-                .configure(DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES, true);
-
-    }
+    static final ObjectMapper objectMapper = ObjectMapperRegistry.getInstance()
+            .getObjectMapper(ObjectMapperRegistry.MapperConfiguration.STRICT);
 
     /**
      * Constructor
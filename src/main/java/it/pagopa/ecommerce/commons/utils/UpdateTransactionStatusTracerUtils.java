@@ -3,26 +3,62 @@ package it.pagopa.ecommerce.commons.utils;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
 import io.opentelemetry.api.trace.Tracer;
 import it.pagopa.ecommerce.commons.documents.v2.Transaction;
 import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
 
 import jakarta.validation.constraints.NotNull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This utility class traces transaction update status performed by external
- * entities. Tracing is performed by meaning of OpenTelemetry span creation.
+ * entities. Tracing is performed by meaning of OpenTelemetry span creation
+ * and/or metric recording: each status update increments the
+ * {@value #UPDATE_TRANSACTION_STATUS_COUNTER_NAME} counter and, when the
+ * operation duration is known, records it on the
+ * {@value #UPDATE_TRANSACTION_STATUS_DURATION_NAME} histogram, both with the
+ * same attributes set on the span. Span creation can be sampled or disabled,
+ * since metrics already carry all the status update dimensions.
  * {@link UpdateTransactionStatusType} enumeration contains transaction status
  * typologies enumeration {@link UpdateTransactionTrigger} enumeration, instead,
  * contains external actors that trigger the transaction status update
  */
 public class UpdateTransactionStatusTracerUtils {
 
+    /**
+     * Prefix used for all the metrics exported by this tracer
+     */
+    public static final String METRIC_PREFIX = "ecommerce.transaction.status_update.";
+
+    /**
+     * Name of the counter of the traced status updates
+     */
+    public static final String UPDATE_TRANSACTION_STATUS_COUNTER_NAME = METRIC_PREFIX + "count";
+
+    /**
+     * Name of the histogram of the traced status updates duration
+     */
+    public static final String UPDATE_TRANSACTION_STATUS_DURATION_NAME = METRIC_PREFIX + "duration";
+
     private final OpenTelemetryUtils openTelemetryUtils;
 
+    private final double spanSamplingRate;
+
+    private final LongCounter statusUpdates;
+
+    private final DoubleHistogram statusUpdatesDuration;
+
     /**
      * Span attribute used to discriminate transaction update status operation type
      *
@@ -187,6 +223,15 @@ public class UpdateTransactionStatusTracerUtils {
 
     static final String FIELD_NOT_AVAILABLE = "N/A";
 
+    /**
+     * Max number of cached attribute sets, the default cardinality limit of a
+     * metric in the OpenTelemetry SDK: status update dimensions are metric
+     * attributes, so their combinations are expected to stay well below it
+     */
+    static final int MAX_CACHED_ATTRIBUTES = 2000;
+
+    private static final Map<StatusUpdateDimensions, Attributes> ATTRIBUTES_CACHE = new ConcurrentHashMap<>();
+
     /**
      * Utility constructor that create an {@link UpdateTransactionStatusTracerUtils}
      * instance using {@link OpenTelemetryUtils} that will create spans
@@ -195,7 +240,39 @@ public class UpdateTransactionStatusTracerUtils {
      *                           used for span creations
      */
     public UpdateTransactionStatusTracerUtils(OpenTelemetryUtils openTelemetryUtils) {
-        this.openTelemetryUtils = openTelemetryUtils;
+        this(openTelemetryUtils, MeterProvider.noop().get(UpdateTransactionStatusTracerUtils.class.getName()), 1);
+    }
+
+    /**
+     * Build an {@link UpdateTransactionStatusTracerUtils} instance that records
+     * every status update as metrics and creates spans only for the configured
+     * fraction of them
+     *
+     * @param openTelemetryUtils the open telemetry utils used for span creations
+     * @param meter              the meter used to register metrics
+     * @param spanSamplingRate   the fraction of status updates traced with a span,
+     *                           between {@code 0.0} (metrics only) and {@code 1.0}
+     *                           (span for every status update)
+     */
+    public UpdateTransactionStatusTracerUtils(
+            OpenTelemetryUtils openTelemetryUtils,
+            Meter meter,
+            double spanSamplingRate
+    ) {
+        if (!(spanSamplingRate >= 0 && spanSamplingRate <= 1)) {
+            throw new IllegalArgumentException(
+                    "Invalid span sampling rate: [%s], it must be between 0 and 1".formatted(spanSamplingRate)
+            );
+        }
+        this.openTelemetryUtils = Objects.requireNonNull(openTelemetryUtils);
+        this.spanSamplingRate = spanSamplingRate;
+        this.statusUpdates = meter.counterBuilder(UPDATE_TRANSACTION_STATUS_COUNTER_NAME)
+                .setDescription("Number of transaction status updates performed by external entities")
+                .build();
+        this.statusUpdatesDuration = meter.histogramBuilder(UPDATE_TRANSACTION_STATUS_DURATION_NAME)
+                .setDescription("Time taken to perform transaction status updates")
+                .setUnit("ms")
+                .build();
     }
 
     /**
@@ -204,50 +281,101 @@ public class UpdateTransactionStatusTracerUtils {
      * @param statusUpdateInfo transaction status update information
      */
     public void traceStatusUpdateOperation(StatusUpdateInfo statusUpdateInfo) {
-        AttributesBuilder spanAttributes = Attributes
-                .builder()
-                .put(
-                        UPDATE_TRANSACTION_STATUS_TYPE_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getType().toString()
-                )
-                .put(
-                        UPDATE_TRANSACTION_STATUS_OUTCOME_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getOutcome().toString()
-                )
-                .put(
-                        UPDATE_TRANSACTION_STATUS_TRIGGER_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getTrigger().toString()
-                )
-                .put(
-                        UPDATE_TRANSACTION_STATUS_PSP_ID_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getPspId().orElse(FIELD_NOT_AVAILABLE)
-                )
-                .put(
-                        UPDATE_TRANSACTION_STATUS_GATEWAY_OUTCOME_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getGatewayOutcomeResult().map(GatewayOutcomeResult::gatewayOperationOutcome)
-                                .orElse(FIELD_NOT_AVAILABLE)
-                )
-                .put(
-                        UPDATE_TRANSACTION_STATUS_GATEWAY_ERROR_CODE_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getGatewayOutcomeResult().flatMap(GatewayOutcomeResult::errorCode)
-                                .orElse(FIELD_NOT_AVAILABLE)
-                )
-                .put(
-                        UPDATE_TRANSACTION_STATUS_PAYMENT_METHOD_TYPE_CODE_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getPaymentMethodTypeCode().orElse(FIELD_NOT_AVAILABLE)
-                )
-                .put(
-                        UPDATE_TRANSACTION_STATUS_CLIENT_ID_ATTRIBUTE_KEY,
-                        statusUpdateInfo.getClientId().map(Enum::toString).orElse(FIELD_NOT_AVAILABLE)
-                );
-        statusUpdateInfo.isWalletPayment().ifPresent(
-                isWalletPayment -> spanAttributes.put(
-                        UPDATE_TRANSACTION_STATUS_WALLET_PAYMENT_ATTRIBUTE_KEY,
-                        isWalletPayment
-                )
+        Attributes attributes = statusUpdateAttributes(statusUpdateInfo);
+        statusUpdates.add(1, attributes);
+        addSampledSpan(attributes);
+    }
+
+    /**
+     * Trace status update operation for the input tracing information, recording
+     * the time taken to perform it
+     *
+     * @param statusUpdateInfo transaction status update information
+     * @param duration         the status update operation duration
+     */
+    public void traceStatusUpdateOperation(
+                                           StatusUpdateInfo statusUpdateInfo,
+                                           Duration duration
+    ) {
+        Attributes attributes = statusUpdateAttributes(statusUpdateInfo);
+        statusUpdates.add(1, attributes);
+        statusUpdatesDuration.record(duration.toNanos() / 1_000_000d, attributes);
+        addSampledSpan(attributes);
+    }
+
+    private void addSampledSpan(Attributes attributes) {
+        if (spanSamplingRate >= 1
+                || (spanSamplingRate > 0 && ThreadLocalRandom.current().nextDouble() < spanSamplingRate)) {
+            openTelemetryUtils.addSpanWithAttributes(UPDATE_TRANSACTION_STATUS_SPAN_NAME, attributes);
+        }
+    }
+
+    /**
+     * Build the attributes describing the input status update, shared by spans and
+     * metrics. Attribute sets are cached by dimension values, so that recurring
+     * status updates reuse the same immutable instance instead of building and
+     * sorting a new one. Once {@value #MAX_CACHED_ATTRIBUTES} sets are cached, the
+     * attributes of new dimension combinations are built without being cached
+     *
+     * @param statusUpdateInfo transaction status update information
+     * @return the status update attributes
+     */
+    static Attributes statusUpdateAttributes(StatusUpdateInfo statusUpdateInfo) {
+        Optional<GatewayOutcomeResult> gatewayOutcomeResult = statusUpdateInfo.getGatewayOutcomeResult();
+        StatusUpdateDimensions dimensions = new StatusUpdateDimensions(
+                statusUpdateInfo.getType(),
+                statusUpdateInfo.getOutcome(),
+                statusUpdateInfo.getTrigger(),
+                statusUpdateInfo.getClientId().orElse(null),
+                statusUpdateInfo.isWalletPayment().orElse(null),
+                statusUpdateInfo.getPspId().orElse(FIELD_NOT_AVAILABLE),
+                gatewayOutcomeResult.map(GatewayOutcomeResult::gatewayOperationOutcome).orElse(FIELD_NOT_AVAILABLE),
+                gatewayOutcomeResult.flatMap(GatewayOutcomeResult::errorCode).orElse(FIELD_NOT_AVAILABLE),
+                statusUpdateInfo.getPaymentMethodTypeCode().orElse(FIELD_NOT_AVAILABLE)
         );
+        Attributes attributes = ATTRIBUTES_CACHE.get(dimensions);
+        if (attributes == null) {
+            attributes = dimensions.toAttributes();
+            if (ATTRIBUTES_CACHE.size() < MAX_CACHED_ATTRIBUTES) {
+                ATTRIBUTES_CACHE.putIfAbsent(dimensions, attributes);
+            }
+        }
+        return attributes;
+    }
 
-        openTelemetryUtils.addSpanWithAttributes(UPDATE_TRANSACTION_STATUS_SPAN_NAME, spanAttributes.build());
+    /**
+     * Status update dimensions, used as cache key for their attributes
+     */
+    private record StatusUpdateDimensions(
+            UpdateTransactionStatusType type,
+            UpdateTransactionStatusOutcome outcome,
+            UpdateTransactionTrigger trigger,
+            @Nullable Transaction.ClientId clientId,
+            @Nullable Boolean walletPayment,
+            String pspId,
+            String gatewayOutcome,
+            String gatewayErrorCode,
+            String paymentMethodTypeCode
+    ) {
+        private Attributes toAttributes() {
+            AttributesBuilder attributes = Attributes
+                    .builder()
+                    .put(UPDATE_TRANSACTION_STATUS_TYPE_ATTRIBUTE_KEY, type.toString())
+                    .put(UPDATE_TRANSACTION_STATUS_OUTCOME_ATTRIBUTE_KEY, outcome.toString())
+                    .put(UPDATE_TRANSACTION_STATUS_TRIGGER_ATTRIBUTE_KEY, trigger.toString())
+                    .put(
+                            UPDATE_TRANSACTION_STATUS_CLIENT_ID_ATTRIBUTE_KEY,
+                            clientId != null ? clientId.toString() : FIELD_NOT_AVAILABLE
+                    )
+                    .put(UPDATE_TRANSACTION_STATUS_PSP_ID_ATTRIBUTE_KEY, pspId)
+                    .put(UPDATE_TRANSACTION_STATUS_GATEWAY_OUTCOME_ATTRIBUTE_KEY, gatewayOutcome)
+                    .put(UPDATE_TRANSACTION_STATUS_GATEWAY_ERROR_CODE_ATTRIBUTE_KEY, gatewayErrorCode)
+                    .put(UPDATE_TRANSACTION_STATUS_PAYMENT_METHOD_TYPE_CODE_ATTRIBUTE_KEY, paymentMethodTypeCode);
+            if (walletPayment != null) {
+                attributes.put(UPDATE_TRANSACTION_STATUS_WALLET_PAYMENT_ATTRIBUTE_KEY, walletPayment);
+            }
+            return attributes.build();
+        }
     }
 
     /**
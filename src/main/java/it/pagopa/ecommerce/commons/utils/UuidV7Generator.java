@@ -0,0 +1,96 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>
+ * Generator of RFC 9562 version 7 UUIDs: a 48-bit Unix epoch milliseconds
+ * timestamp followed by a 12-bit counter (the {@code rand_a} field, used as
+ * sub-millisecond sequence as allowed by RFC 9562, section 6.2, method 1) and
+ * 62 random bits.
+ * </p>
+ * <p>
+ * Timestamp and counter are advanced together with a single atomic update, so
+ * that UUIDs generated by the same instance are strictly increasing, both as
+ * {@link UUID} values and as strings, even if the system clock goes backwards
+ * or more than 4096 UUIDs are generated within the same millisecond. Random
+ * bits are taken from {@link ThreadLocalRandom}, avoiding the contention on the
+ * shared {@link java.security.SecureRandom} instance used by
+ * {@link UUID#randomUUID()}: generated ids are unique and ordered but not
+ * unpredictable, so they must not be used as secrets.
+ * </p>
+ */
+public class UuidV7Generator implements DocumentIdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+
+    private static final long TIMESTAMP_MASK = 0xFFFF_FFFF_FFFFL;
+
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private static final long VERSION_BITS = 0x7000L;
+
+    private static final long VARIANT_BITS = 0x8000_0000_0000_0000L;
+
+    private static final long RANDOM_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    private final LongSupplier epochMillisClock;
+
+    /**
+     * Last generated timestamp (high 48 bits) and counter (low 12 bits)
+     */
+    private final AtomicLong lastTimestampAndCounter = new AtomicLong();
+
+    /**
+     * Build a new generator based on the system clock
+     */
+    public UuidV7Generator() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Build a new generator based on the input clock
+     *
+     * @param epochMillisClock clock returning the current epoch milliseconds
+     */
+    UuidV7Generator(LongSupplier epochMillisClock) {
+        this.epochMillisClock = epochMillisClock;
+    }
+
+    /**
+     * Generate a new version 7 UUID
+     *
+     * @return the generated UUID
+     */
+    public UUID nextUuid() {
+        long now = (epochMillisClock.getAsLong() & TIMESTAMP_MASK) << COUNTER_BITS;
+        long timestampAndCounter = lastTimestampAndCounter.accumulateAndGet(now, UuidV7Generator::advance);
+        long mostSignificantBits = ((timestampAndCounter >>> COUNTER_BITS) << 16)
+                | VERSION_BITS
+                | (timestampAndCounter & COUNTER_MASK);
+        long leastSignificantBits = VARIANT_BITS | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /*
+     * Use the current timestamp with a zero counter, or increment the last
+     * timestamp and counter if the clock did not advance
+     */
+    private static long advance(
+                                long last,
+                                long now
+    ) {
+        return Math.max(now, last + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String newId() {
+        return nextUuid().toString();
+    }
+}
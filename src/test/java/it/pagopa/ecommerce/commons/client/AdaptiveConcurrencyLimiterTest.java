@@ -0,0 +1,329 @@
+package it.pagopa.ecommerce.commons.client;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleGaugeBuilder;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongGaugeBuilder;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import io.netty.handler.timeout.ReadTimeoutException;
+import it.pagopa.ecommerce.commons.exceptions.ConcurrencyLimitExceededException;
+import it.pagopa.ecommerce.commons.exceptions.NpgResponseException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final String KEY = "psp";
+
+    private static final Duration LATENCY_THRESHOLD = Duration.ofMillis(100);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private AdaptiveConcurrencyLimiter limiter(
+                                               int initialLimit,
+                                               int maxQueueSize
+    ) {
+        return limiter(initialLimit, maxQueueSize, MeterProvider.noop().get("test"));
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(
+                                               int initialLimit,
+                                               int maxQueueSize,
+                                               Meter meter
+    ) {
+        return new AdaptiveConcurrencyLimiter(
+                "client",
+                new AdaptiveConcurrencyLimiterConfiguration(
+                        initialLimit,
+                        1,
+                        10,
+                        maxQueueSize,
+                        LATENCY_THRESHOLD,
+                        0.5
+                ),
+                meter,
+                AdaptiveConcurrencyLimiter::isOverloadError,
+                clock::get
+        );
+    }
+
+    @Test
+    void shouldFailFastWhenLimitIsReachedWithoutQueue() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 0);
+        limiter.limit(KEY, Mono.never()).subscribe();
+        limiter.limit(KEY, Mono.never()).subscribe();
+
+        StepVerifier.create(limiter.limit(KEY, Mono.just("value")))
+                .expectError(ConcurrencyLimitExceededException.class)
+                .verify();
+        // other keys have their own limit
+        StepVerifier.create(limiter.limit("other", Mono.just("value")))
+                .expectNext("value")
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldRunQueuedRequestWhenPermitIsReleased() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+        Sinks.One<String> running = Sinks.one();
+        AtomicInteger subscriptions = new AtomicInteger();
+        limiter.limit(KEY, running.asMono()).subscribe();
+        Mono<String> queued = limiter
+                .limit(KEY, Mono.fromCallable(() -> "queued").doOnSubscribe(s -> subscriptions.incrementAndGet()));
+
+        StepVerifier.create(queued)
+                .expectSubscription()
+                .then(() -> {
+                    assertEquals(0, subscriptions.get());
+                    StepVerifier.create(limiter.limit(KEY, Mono.just("rejected")))
+                            .expectError(ConcurrencyLimitExceededException.class)
+                            .verify();
+                    running.tryEmitValue("running");
+                })
+                .expectNext("queued")
+                .verifyComplete();
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void shouldFreeQueueSlotWhenQueuedRequestIsCancelled() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1);
+        Sinks.One<String> running = Sinks.one();
+        limiter.limit(KEY, running.asMono()).subscribe();
+        Disposable queued = limiter.limit(KEY, Mono.just("cancelled")).subscribe();
+
+        queued.dispose();
+
+        Mono<String> requeued = limiter.limit(KEY, Mono.just("queued"));
+        StepVerifier.create(requeued)
+                .expectSubscription()
+                .then(() -> running.tryEmitValue("running"))
+                .expectNext("queued")
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldIncreaseLimitOnFastSuccessfulRequests() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 0);
+
+        StepVerifier.create(limiter.limit(KEY, Mono.just("value"))).expectNext("value").verifyComplete();
+
+        assertEquals(3, limiter.getLimit(KEY));
+    }
+
+    @Test
+    void shouldDecreaseLimitOnFailedRequests() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 0);
+
+        StepVerifier.create(limiter.limit(KEY, Mono.error(responseException(HttpStatus.SERVICE_UNAVAILABLE))))
+                .expectError(WebClientResponseException.class)
+                .verify();
+
+        assertEquals(2, limiter.getLimit(KEY));
+    }
+
+    @Test
+    void shouldNotChangeLimitOnClientErrorResponses() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 0);
+
+        for (HttpStatus status : List.of(HttpStatus.BAD_REQUEST, HttpStatus.NOT_FOUND, HttpStatus.CONFLICT)) {
+            StepVerifier.create(limiter.limit(KEY, Mono.error(responseException(status))))
+                    .expectError(WebClientResponseException.class)
+                    .verify();
+        }
+        StepVerifier.create(limiter.limit(KEY, Mono.error(new IllegalArgumentException("error"))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        assertEquals(4, limiter.getLimit(KEY));
+    }
+
+    @Test
+    void shouldRecognizeOverloadErrors() {
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadError(responseException(HttpStatus.TOO_MANY_REQUESTS)));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadError(responseException(HttpStatus.BAD_GATEWAY)));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadError(new TimeoutException()));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadError(ReadTimeoutException.INSTANCE));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadError(new ConnectException("refused")));
+        assertTrue(
+                AdaptiveConcurrencyLimiter.isOverloadError(
+                        new WebClientRequestException(
+                                new IOException("connection reset"),
+                                HttpMethod.POST,
+                                URI.create("http://localhost"),
+                                new HttpHeaders()
+                        )
+                )
+        );
+        // wrapped errors are classified on their cause
+        assertTrue(
+                AdaptiveConcurrencyLimiter.isOverloadError(
+                        new NpgResponseException(
+                                "error",
+                                Optional.of(HttpStatus.INTERNAL_SERVER_ERROR),
+                                responseException(HttpStatus.INTERNAL_SERVER_ERROR)
+                        )
+                )
+        );
+        assertFalse(
+                AdaptiveConcurrencyLimiter.isOverloadError(
+                        new NpgResponseException(
+                                "error",
+                                Optional.of(HttpStatus.BAD_REQUEST),
+                                responseException(HttpStatus.BAD_REQUEST)
+                        )
+                )
+        );
+        assertFalse(AdaptiveConcurrencyLimiter.isOverloadError(responseException(HttpStatus.UNAUTHORIZED)));
+        assertFalse(AdaptiveConcurrencyLimiter.isOverloadError(new RuntimeException("error")));
+    }
+
+    @Test
+    void shouldUseCustomOverloadErrorPredicate() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                "client",
+                new AdaptiveConcurrencyLimiterConfiguration(4, 1, 10, 0, LATENCY_THRESHOLD, 0.5),
+                MeterProvider.noop().get("test"),
+                IllegalStateException.class::isInstance
+        );
+
+        StepVerifier.create(limiter.limit(KEY, Mono.error(responseException(HttpStatus.SERVICE_UNAVAILABLE))))
+                .expectError(WebClientResponseException.class)
+                .verify();
+        assertEquals(4, limiter.getLimit(KEY));
+        StepVerifier.create(limiter.limit(KEY, Mono.error(new IllegalStateException("overload"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+        assertEquals(2, limiter.getLimit(KEY));
+    }
+
+    @Test
+    void shouldDecreaseLimitOnSlowRequestsDownToMinLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 0);
+        Mono<String> slowRequest = Mono
+                .fromCallable(() -> clock.addAndGet(LATENCY_THRESHOLD.toNanos() + 1))
+                .map(String::valueOf);
+
+        StepVerifier.create(limiter.limit(KEY, slowRequest)).expectNextCount(1).verifyComplete();
+        assertEquals(1, limiter.getLimit(KEY));
+        StepVerifier.create(limiter.limit(KEY, slowRequest)).expectNextCount(1).verifyComplete();
+        assertEquals(1, limiter.getLimit(KEY));
+    }
+
+    @Test
+    void shouldNotChangeLimitOnCancelledRequests() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 0);
+
+        limiter.limit(KEY, Mono.never()).subscribe().dispose();
+
+        assertEquals(2, limiter.getLimit(KEY));
+        limiter.limit(KEY, Mono.never()).subscribe();
+        StepVerifier.create(limiter.limit(KEY, Mono.just("value"))).expectNext("value").verifyComplete();
+    }
+
+    @Test
+    void shouldNotLimitRequestsWhenDisabled() {
+        Mono<String> request = Mono.just("value");
+
+        assertSame(request, AdaptiveConcurrencyLimiter.disabled().limit(KEY, request));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldExportLimitInFlightAndQueueDepthMetrics() {
+        Meter meter = Mockito.mock(Meter.class, Mockito.RETURNS_DEEP_STUBS);
+        LongCounter rejected = Mockito.mock(LongCounter.class);
+        DoubleGaugeBuilder gaugeBuilder = Mockito.mock(DoubleGaugeBuilder.class);
+        LongGaugeBuilder longGaugeBuilder = Mockito.mock(LongGaugeBuilder.class);
+        when(meter.counterBuilder(anyString()).setDescription(anyString()).build()).thenReturn(rejected);
+        when(meter.gaugeBuilder(anyString())).thenReturn(gaugeBuilder);
+        when(gaugeBuilder.setDescription(anyString())).thenReturn(gaugeBuilder);
+        when(gaugeBuilder.ofLongs()).thenReturn(longGaugeBuilder);
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, meter);
+        ArgumentCaptor<Consumer<ObservableLongMeasurement>> callbacks = ArgumentCaptor.forClass(Consumer.class);
+        verify(longGaugeBuilder, times(3)).buildWithCallback(callbacks.capture());
+
+        limiter.limit(KEY, Mono.never()).subscribe();
+        limiter.limit(KEY, Mono.never()).subscribe();
+        limiter.limit(KEY, Mono.never()).subscribe();
+        StepVerifier.create(limiter.limit(KEY, Mono.just("value")))
+                .expectError(ConcurrencyLimitExceededException.class)
+                .verify();
+
+        Attributes attributes = Attributes.of(
+                AttributeKey.stringKey("client"),
+                "client",
+                AttributeKey.stringKey("key"),
+                KEY
+        );
+        ObservableLongMeasurement limitMeasurement = Mockito.mock(ObservableLongMeasurement.class);
+        ObservableLongMeasurement inFlightMeasurement = Mockito.mock(ObservableLongMeasurement.class);
+        ObservableLongMeasurement queueDepthMeasurement = Mockito.mock(ObservableLongMeasurement.class);
+        callbacks.getAllValues().get(0).accept(limitMeasurement);
+        callbacks.getAllValues().get(1).accept(inFlightMeasurement);
+        callbacks.getAllValues().get(2).accept(queueDepthMeasurement);
+        verify(meter).gaugeBuilder(AdaptiveConcurrencyLimiter.METRIC_PREFIX + "limit");
+        verify(meter).gaugeBuilder(AdaptiveConcurrencyLimiter.METRIC_PREFIX + "in_flight");
+        verify(meter).gaugeBuilder(AdaptiveConcurrencyLimiter.METRIC_PREFIX + "queue_depth");
+        verify(limitMeasurement).record(2, attributes);
+        verify(inFlightMeasurement).record(2, attributes);
+        verify(queueDepthMeasurement).record(1, attributes);
+        verify(rejected).add(1, attributes);
+    }
+
+    private static WebClientResponseException responseException(HttpStatus status) {
+        return WebClientResponseException.create(status.value(), status.getReasonPhrase(), null, null, null);
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiterConfiguration(1, 0, 1, 0, LATENCY_THRESHOLD, 0.5)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiterConfiguration(5, 1, 4, 0, LATENCY_THRESHOLD, 0.5)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiterConfiguration(1, 1, 4, -1, LATENCY_THRESHOLD, 0.5)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiterConfiguration(1, 1, 4, 0, Duration.ZERO, 0.5)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiterConfiguration(1, 1, 4, 0, LATENCY_THRESHOLD, 1)
+        );
+    }
+}
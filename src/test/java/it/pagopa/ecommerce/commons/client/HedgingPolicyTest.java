@@ -0,0 +1,215 @@
+package it.pagopa.ecommerce.commons.client;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class HedgingPolicyTest {
+
+    private static final String OPERATION = "GET_STATE";
+
+    private static final Attributes ATTRIBUTES = Attributes.of(AttributeKey.stringKey("operation"), OPERATION);
+
+    private static final Duration MAX_DELAY = Duration.ofMillis(100);
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private final Meter meter = Mockito.mock(Meter.class, Mockito.RETURNS_DEEP_STUBS);
+
+    private final LongCounter requests = counter("requests");
+
+    private final LongCounter hedged = counter("hedged");
+
+    private final LongCounter wins = counter("wins");
+
+    private final LongCounter budgetExhausted = counter("budget_exhausted");
+
+    private LongCounter counter(String name) {
+        LongCounter counter = Mockito.mock(LongCounter.class);
+        when(meter.counterBuilder(HedgingPolicy.METRIC_PREFIX + name).setDescription(anyString()).build())
+                .thenReturn(counter);
+        return counter;
+    }
+
+    private HedgingPolicy policy(
+                                 double budgetRatio,
+                                 int maxBudget
+    ) {
+        return new HedgingPolicy(
+                new HedgingPolicyConfiguration(
+                        50,
+                        Duration.ofMillis(1),
+                        MAX_DELAY,
+                        20,
+                        budgetRatio,
+                        maxBudget
+                ),
+                meter,
+                scheduler
+        );
+    }
+
+    /**
+     * Request emitting, for each subscription, the next of the input responses
+     */
+    private static Mono<String> request(Queue<Mono<String>> responses) {
+        return Mono.defer(responses::poll);
+    }
+
+    @Test
+    void shouldNotHedgeRequestAnsweringBeforeDelay() {
+        HedgingPolicy policy = policy(1, 1);
+        Queue<Mono<String>> responses = new ArrayDeque<>(
+                List.of(Mono.delay(Duration.ofMillis(50), scheduler).map(tick -> "original"))
+        );
+
+        CompletableFuture<String> result = policy.hedge(OPERATION, request(responses)).toFuture();
+        scheduler.advanceTimeBy(Duration.ofMillis(50));
+
+        assertEquals("original", result.join());
+        scheduler.advanceTimeBy(MAX_DELAY);
+        verify(requests).add(1, ATTRIBUTES);
+        verifyNoInteractions(hedged, wins, budgetExhausted);
+    }
+
+    @Test
+    void shouldReturnHedgedResponseAndCancelOriginalRequest() {
+        HedgingPolicy policy = policy(1, 1);
+        AtomicBoolean originalCancelled = new AtomicBoolean();
+        Queue<Mono<String>> responses = new ArrayDeque<>(
+                List.of(
+                        Mono.<String>never().doOnCancel(() -> originalCancelled.set(true)),
+                        Mono.delay(Duration.ofMillis(10), scheduler).map(tick -> "hedged")
+                )
+        );
+
+        CompletableFuture<String> result = policy.hedge(OPERATION, request(responses)).toFuture();
+        scheduler.advanceTimeBy(MAX_DELAY);
+        assertFalse(result.isDone());
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        assertEquals("hedged", result.join());
+        assertTrue(originalCancelled.get());
+        verify(hedged).add(1, ATTRIBUTES);
+        verify(wins).add(1, ATTRIBUTES);
+    }
+
+    @Test
+    void shouldMarkHedgedRequestInSubscriberContext() {
+        HedgingPolicy policy = policy(1, 1);
+        Queue<Boolean> hedgedRequests = new ArrayDeque<>();
+        Queue<Mono<String>> responses = new ArrayDeque<>(
+                List.of(Mono.never(), Mono.delay(Duration.ofMillis(10), scheduler).map(tick -> "hedged"))
+        );
+        Mono<String> request = Mono.deferContextual(context -> {
+            hedgedRequests.add(HedgingPolicy.isHedgedRequest(context));
+            return responses.poll();
+        });
+
+        CompletableFuture<String> result = policy.hedge(OPERATION, request).toFuture();
+        scheduler.advanceTimeBy(MAX_DELAY.plusMillis(10));
+
+        assertEquals("hedged", result.join());
+        assertEquals(List.of(false, true), List.copyOf(hedgedRequests));
+    }
+
+    @Test
+    void shouldReturnOriginalResponseAnsweringAfterHedgedRequestIsSent() {
+        HedgingPolicy policy = policy(1, 1);
+        AtomicBoolean hedgeCancelled = new AtomicBoolean();
+        Queue<Mono<String>> responses = new ArrayDeque<>(
+                List.of(
+                        Mono.delay(MAX_DELAY.plusMillis(10), scheduler).map(tick -> "original"),
+                        Mono.<String>never().doOnCancel(() -> hedgeCancelled.set(true))
+                )
+        );
+
+        CompletableFuture<String> result = policy.hedge(OPERATION, request(responses)).toFuture();
+        scheduler.advanceTimeBy(MAX_DELAY.plusMillis(10));
+
+        assertEquals("original", result.join());
+        assertTrue(hedgeCancelled.get());
+        verify(hedged).add(1, ATTRIBUTES);
+        verifyNoInteractions(wins);
+    }
+
+    @Test
+    void shouldNotHedgeRequestWhenBudgetIsExhausted() {
+        HedgingPolicy policy = policy(0.5, 1);
+        Queue<Mono<String>> responses = new ArrayDeque<>(
+                List.of(Mono.delay(MAX_DELAY.multipliedBy(2), scheduler).map(tick -> "original"))
+        );
+
+        CompletableFuture<String> result = policy.hedge(OPERATION, request(responses)).toFuture();
+        scheduler.advanceTimeBy(MAX_DELAY.multipliedBy(2));
+
+        assertEquals("original", result.join());
+        verify(budgetExhausted).add(1, ATTRIBUTES);
+        verifyNoInteractions(hedged, wins);
+    }
+
+    @Test
+    void shouldComputeDelayFromObservedLatencyPercentile() {
+        HedgingPolicy policy = policy(1, 1);
+        assertEquals(MAX_DELAY, policy.getDelay(OPERATION));
+
+        for (int i = 1; i <= 20; i++) {
+            Duration latency = Duration.ofMillis(i);
+            CompletableFuture<String> result = policy
+                    .hedge(OPERATION, Mono.delay(latency, scheduler).map(tick -> "original"))
+                    .toFuture();
+            scheduler.advanceTimeBy(latency);
+            assertEquals("original", result.join());
+        }
+
+        assertEquals(Duration.ofMillis(10), policy.getDelay(OPERATION));
+    }
+
+    @Test
+    void shouldNotHedgeRequestsWhenDisabled() {
+        Mono<String> request = Mono.just("value");
+
+        assertSame(request, HedgingPolicy.disabled().hedge(OPERATION, request));
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        Duration delay = Duration.ofMillis(1);
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HedgingPolicyConfiguration(100, delay, delay, 1, 0.1, 1)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HedgingPolicyConfiguration(95, delay.plusMillis(1), delay, 1, 0.1, 1)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HedgingPolicyConfiguration(95, delay, delay, 0, 0.1, 1)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HedgingPolicyConfiguration(95, delay, delay, 1, 0, 1)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HedgingPolicyConfiguration(95, delay, delay, 1, 0.1, 0)
+        );
+    }
+}
@@ -1,5 +1,6 @@
 package it.pagopa.ecommerce.commons.client;
 
+import io.opentelemetry.api.metrics.MeterProvider;
 import it.pagopa.ecommerce.commons.exceptions.JwtIssuerClientException;
 import it.pagopa.ecommerce.commons.generated.jwtissuer.v1.ApiClient;
 import it.pagopa.ecommerce.commons.generated.jwtissuer.v1.api.JwtIssuerApi;
@@ -19,9 +20,12 @@ import org.springframework.web.reactive.function.client.WebClientResponseExcepti
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @ExtendWith(MockitoExtension.class)
 class JwtIssuerClientTests {
 
@@ -156,4 +160,46 @@ class JwtIssuerClientTests {
                 .verify();
     }
 
+    @Test
+    void shouldScaleDownConcurrencyLimitOnlyOnOverloadResponses() {
+        AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+                "jwt-issuer",
+                new AdaptiveConcurrencyLimiterConfiguration(4, 1, 10, 0, Duration.ofSeconds(10), 0.5),
+                MeterProvider.noop().get("test")
+        );
+        JwtIssuerClient limitedClient = new JwtIssuerClient(jwtIssuerApi, concurrencyLimiter);
+
+        Mockito.when(
+                jwtIssuerApi.getTokenPublicKeys()
+        ).thenReturn(
+                Mono.error(
+                        WebClientResponseException.create(
+                                HttpStatus.UNAUTHORIZED.value(),
+                                HttpStatus.UNAUTHORIZED.getReasonPhrase(),
+                                null,
+                                null,
+                                null
+                        )
+                ),
+                Mono.error(
+                        WebClientResponseException.create(
+                                HttpStatus.TOO_MANY_REQUESTS.value(),
+                                HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase(),
+                                null,
+                                null,
+                                null
+                        )
+                )
+        );
+
+        StepVerifier.create(limitedClient.getKeys())
+                .expectError(JwtIssuerClientException.class)
+                .verify();
+        assertEquals(4, concurrencyLimiter.getLimit(JwtIssuerClient.CONCURRENCY_LIMITER_KEY));
+        StepVerifier.create(limitedClient.getKeys())
+                .expectError(JwtIssuerClientException.class)
+                .verify();
+        assertEquals(2, concurrencyLimiter.getLimit(JwtIssuerClient.CONCURRENCY_LIMITER_KEY));
+    }
+
 }
@@ -1,6 +1,7 @@
 package it.pagopa.ecommerce.commons.client;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import io.opentelemetry.api.metrics.MeterProvider;
 import it.pagopa.ecommerce.commons.exceptions.NodeForwarderClientException;
 import it.pagopa.ecommerce.commons.generated.nodeforwarder.v1.api.ProxyApi;
 import okhttp3.Headers;
@@ -17,6 +18,7 @@ import reactor.test.StepVerifier;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -263,4 +265,43 @@ class NodeForwarderClientTest {
                 .verify();
     }
 
+    @Test
+    void shouldScaleDownConcurrencyLimitOnlyOnOverloadResponses() {
+        // assertions
+        String requestId = UUID.randomUUID().toString();
+        AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+                "node-forwarder",
+                new AdaptiveConcurrencyLimiterConfiguration(4, 1, 10, 0, Duration.ofSeconds(10), 0.5),
+                MeterProvider.noop().get("test")
+        );
+        NodeForwarderClient<TestRequest, TestResponse> client = new NodeForwarderClient<>(
+                "apiKey",
+                "http://%s:%s".formatted(mockWebServer.getHostName(), mockWebServer.getPort()),
+                10000,
+                10000,
+                concurrencyLimiter
+        );
+        TestRequest testRequest = new TestRequest("test");
+        URI proxyTo = URI.create("http://localhost:123/test/request");
+        mockWebServer.enqueue(
+                new MockResponse()
+                        .setBody("error")
+                        .setResponseCode(400)
+        );
+        mockWebServer.enqueue(
+                new MockResponse()
+                        .setBody("error")
+                        .setResponseCode(503)
+        );
+        // test
+        StepVerifier.create(client.proxyRequest(testRequest, proxyTo, requestId, TestResponse.class))
+                .expectError(NodeForwarderClientException.class)
+                .verify();
+        assertEquals(4, concurrencyLimiter.getLimit("localhost:123"));
+        StepVerifier.create(client.proxyRequest(testRequest, proxyTo, requestId, TestResponse.class))
+                .expectError(NodeForwarderClientException.class)
+                .verify();
+        assertEquals(2, concurrencyLimiter.getLimit("localhost:123"));
+    }
+
 }
@@ -3,6 +3,12 @@ package it.pagopa.ecommerce.commons.client;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.Tracer;
@@ -24,11 +30,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
 
 import java.math.BigDecimal;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -95,7 +104,6 @@ class NpgClientTests {
 
         SpanBuilder spanBuilder = Mockito.mock(SpanBuilder.class);
         Mockito.when(spanBuilder.setParent(any())).thenReturn(spanBuilder);
-        Mockito.when(spanBuilder.setAttribute(any(AttributeKey.class), anyString())).thenReturn(spanBuilder);
         Mockito.when(spanBuilder.startSpan()).thenReturn(Span.getInvalid());
 
         Mockito.when(tracer.spanBuilder(anyString())).thenReturn(spanBuilder);
@@ -772,6 +780,52 @@ class NpgClientTests {
 
     }
 
+    @Test
+    void shouldHedgeSlowGetState() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+        Meter meter = MeterProvider.noop().get("test");
+        HedgingPolicyConfiguration hedgingConfiguration = new HedgingPolicyConfiguration(
+                95,
+                Duration.ofMillis(10),
+                Duration.ofMillis(100),
+                20,
+                1,
+                1
+        );
+        Span originalSpan = Mockito.mock(Span.class);
+        Span hedgedSpan = Mockito.mock(Span.class);
+        Mockito.when(originalSpan.isRecording()).thenReturn(true);
+        Mockito.when(hedgedSpan.isRecording()).thenReturn(true);
+        SpanBuilder spanBuilder = tracer.spanBuilder("NpgClient#getState");
+        Mockito.when(spanBuilder.startSpan()).thenReturn(originalSpan, hedgedSpan);
+        NpgClient hedgingClient = new NpgClient(
+                paymentServicesApi,
+                tracer,
+                objectMapper,
+                meter,
+                AdaptiveConcurrencyLimiter.disabled(),
+                new HedgingPolicy(hedgingConfiguration, meter, scheduler)
+        );
+        UUID correlationUUID = UUID.randomUUID();
+        StateResponseDto stateResponseDto = new StateResponseDto().state(WorkflowStateDto.PAYMENT_COMPLETE);
+        Mockito.when(paymentServicesApi.pspApiV1BuildStateGet(correlationUUID, SESSION_ID, MOCKED_API_KEY))
+                .thenReturn(Mono.never())
+                .thenReturn(Mono.just(stateResponseDto));
+
+        CompletableFuture<StateResponseDto> result = hedgingClient
+                .getState(correlationUUID, SESSION_ID, MOCKED_API_KEY)
+                .toFuture();
+        scheduler.advanceTimeBy(Duration.ofMillis(100));
+
+        assertEquals(stateResponseDto, result.join());
+        Mockito.verify(paymentServicesApi, Mockito.times(2))
+                .pspApiV1BuildStateGet(correlationUUID, SESSION_ID, MOCKED_API_KEY);
+        Mockito.verify(originalSpan).setAttribute(AttributeKey.booleanKey("npg.hedged_request"), false);
+        Mockito.verify(hedgedSpan).setAttribute(AttributeKey.booleanKey("npg.hedged_request"), true);
+        Mockito.verify(hedgedSpan)
+                .setAttribute(AttributeKey.stringKey("npg.correlation_id"), correlationUUID.toString());
+    }
+
     @Test
     void shouldGetStateOfOrder() {
         UUID correlationUUID = UUID.randomUUID();
@@ -1053,4 +1107,168 @@ class NpgClientTests {
                 .amount(ORDER_REQUEST_PAY);
     }
 
+    @Test
+    void shouldRecordOperationMetrics() throws JsonProcessingException {
+        Meter meter = Mockito.mock(Meter.class, Mockito.RETURNS_DEEP_STUBS);
+        DoubleHistogram duration = Mockito.mock(DoubleHistogram.class);
+        LongUpDownCounter inFlight = Mockito.mock(LongUpDownCounter.class);
+        LongCounter errors = Mockito.mock(LongCounter.class);
+        LongCounter errorCodes = Mockito.mock(LongCounter.class);
+        Mockito.when(
+                meter.histogramBuilder(NpgClient.METRIC_PREFIX + "duration").setDescription(any()).setUnit(any())
+                        .build()
+        ).thenReturn(duration);
+        Mockito.when(meter.upDownCounterBuilder(NpgClient.METRIC_PREFIX + "in_flight").setDescription(any()).build())
+                .thenReturn(inFlight);
+        Mockito.when(meter.counterBuilder(NpgClient.METRIC_PREFIX + "errors").setDescription(any()).build())
+                .thenReturn(errors);
+        Mockito.when(meter.counterBuilder(NpgClient.METRIC_PREFIX + "error_codes").setDescription(any()).build())
+                .thenReturn(errorCodes);
+        NpgClient instrumentedClient = new NpgClient(paymentServicesApi, tracer, objectMapper, meter);
+        UUID correlationUUID = UUID.randomUUID();
+        ConfirmPaymentRequestDto confirmPaymentRequestDto = buildTestConfirmPaymentRequestDto();
+        StateResponseDto stateResponseDto = new StateResponseDto().state(WorkflowStateDto.PAYMENT_COMPLETE);
+        Mockito.when(paymentServicesApi.pspApiV1BuildStateGet(correlationUUID, SESSION_ID, MOCKED_API_KEY))
+                .thenReturn(Mono.just(stateResponseDto));
+        Mockito.when(
+                paymentServicesApi
+                        .pspApiV1BuildConfirmPaymentPost(correlationUUID, MOCKED_API_KEY, confirmPaymentRequestDto)
+        ).thenReturn(
+                Mono.error(
+                        new WebClientResponseException(
+                                "Error while invoke method for confirm payment",
+                                HttpStatus.BAD_REQUEST.value(),
+                                HttpStatus.BAD_REQUEST.getReasonPhrase(),
+                                null,
+                                objectMapper.writeValueAsBytes(
+                                        new ClientErrorDto()
+                                                .errors(
+                                                        List.of(
+                                                                new ErrorsInnerDto().code("GW0001"),
+                                                                new ErrorsInnerDto().code("GW0002")
+                                                        )
+                                                )
+                                ),
+                                null
+                        )
+                )
+        );
+        RefundResponseDto refundResponseDto = buildTestRefundResponseDto();
+        Mockito.when(
+                paymentServicesApi.pspApiV1OperationsOperationIdRefundsPost(
+                        OPERATION_ID,
+                        correlationUUID,
+                        MOCKED_API_KEY,
+                        IDEMPOTENCE_KEY.toString(),
+                        buildRefundRequestDto()
+                )
+        ).thenReturn(Mono.just(refundResponseDto));
+
+        StepVerifier.create(instrumentedClient.getState(correlationUUID, SESSION_ID, MOCKED_API_KEY))
+                .expectNext(stateResponseDto)
+                .verifyComplete();
+        StepVerifier
+                .create(
+                        instrumentedClient.confirmPayment(
+                                correlationUUID,
+                                SESSION_ID,
+                                new BigDecimal(ORDER_REQUEST_PAY),
+                                MOCKED_API_KEY
+                        )
+                )
+                .expectError(NpgResponseException.class)
+                .verify();
+        StepVerifier
+                .create(
+                        instrumentedClient.refundPayment(
+                                correlationUUID,
+                                OPERATION_ID,
+                                IDEMPOTENCE_KEY,
+                                BigDecimal.valueOf(Integer.parseInt(AMOUNT)),
+                                MOCKED_API_KEY,
+                                REFUND_DESCRIPTION,
+                                NpgClient.PaymentMethod.PAYPAL
+                        )
+                )
+                .expectNext(refundResponseDto)
+                .verifyComplete();
+
+        Attributes getStateAttributes = Attributes.of(AttributeKey.stringKey("operation"), "GET_STATE");
+        Mockito.verify(inFlight).add(eq(1L), eq(getStateAttributes), any());
+        Mockito.verify(inFlight).add(eq(-1L), eq(getStateAttributes), any());
+        Mockito.verify(duration).record(
+                anyDouble(),
+                eq(
+                        Attributes.of(
+                                AttributeKey.stringKey("operation"),
+                                "GET_STATE",
+                                AttributeKey.stringKey("payment_method"),
+                                "N/A",
+                                AttributeKey.stringKey("outcome"),
+                                "OK"
+                        )
+                ),
+                any()
+        );
+        Mockito.verify(duration).record(
+                anyDouble(),
+                eq(
+                        Attributes.of(
+                                AttributeKey.stringKey("operation"),
+                                "CONFIRM_PAYMENT",
+                                AttributeKey.stringKey("payment_method"),
+                                NpgClient.PaymentMethod.CARDS.serviceName,
+                                AttributeKey.stringKey("outcome"),
+                                "KO"
+                        )
+                ),
+                any()
+        );
+        Mockito.verify(duration).record(
+                anyDouble(),
+                eq(
+                        Attributes.of(
+                                AttributeKey.stringKey("operation"),
+                                "REFUND_PAYMENT",
+                                AttributeKey.stringKey("payment_method"),
+                                NpgClient.PaymentMethod.PAYPAL.serviceName,
+                                AttributeKey.stringKey("outcome"),
+                                "OK"
+                        )
+                ),
+                any()
+        );
+        // one error per failed operation, one error code count per returned code
+        Mockito.verify(errors).add(
+                eq(1L),
+                eq(
+                        Attributes.of(
+                                AttributeKey.stringKey("operation"),
+                                "CONFIRM_PAYMENT",
+                                AttributeKey.stringKey("payment_method"),
+                                NpgClient.PaymentMethod.CARDS.serviceName,
+                                AttributeKey.longKey("http_status"),
+                                400L
+                        )
+                ),
+                any()
+        );
+        Mockito.verify(errors, Mockito.times(1)).add(anyLong(), any(), any());
+        for (String errorCode : List.of("GW0001", "GW0002")) {
+            Mockito.verify(errorCodes).add(
+                    eq(1L),
+                    eq(
+                            Attributes.of(
+                                    AttributeKey.stringKey("operation"),
+                                    "CONFIRM_PAYMENT",
+                                    AttributeKey.longKey("http_status"),
+                                    400L,
+                                    AttributeKey.stringKey("error_code"),
+                                    errorCode
+                            )
+                    ),
+                    any()
+            );
+        }
+    }
 }
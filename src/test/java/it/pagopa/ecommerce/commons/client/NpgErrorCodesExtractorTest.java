@@ -0,0 +1,84 @@
+package it.pagopa.ecommerce.commons.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.ClientErrorDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.ErrorsInnerDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.ServerErrorDto;
+import it.pagopa.ecommerce.commons.queues.StrictJsonSerializerProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NpgErrorCodesExtractorTest {
+
+    private final ObjectMapper objectMapper = new StrictJsonSerializerProvider().getObjectMapper();
+
+    private final NpgErrorCodesExtractor extractor = new NpgErrorCodesExtractor(
+            objectMapper.getFactory(),
+            NpgErrorCodesExtractor.DEFAULT_MAX_BODY_SIZE
+    );
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                    "{\"errors\":[{\"code\":\"GW0001\",\"description\":\"Invalid request\"}]}",
+                    "{\"errors\":[{\"description\":\"first\",\"code\":\"GW0001\"},{\"code\":\"GW0002\"}]}",
+                    "{\"errors\":[{\"description\":\"no code\"},{\"code\":null}]}",
+                    "{\"errors\":[{\"code\":123}]}",
+                    "{\"errors\":[]}",
+                    "{\"errors\":null}",
+                    "{}"
+            }
+    )
+    void shouldExtractSameErrorCodesAsErrorDtos(String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        List<String> errorCodes = extractor.extractErrorCodes(bytes);
+
+        assertEquals(codes(objectMapper.readValue(bytes, ClientErrorDto.class).getErrors()), errorCodes);
+        assertEquals(codes(objectMapper.readValue(bytes, ServerErrorDto.class).getErrors()), errorCodes);
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                    "",
+                    "not json",
+                    "[]",
+                    "{\"errors\":[{\"code\":\"GW0001\"}",
+                    "{\"errors\":\"GW0001\"}",
+                    "{\"errors\":[\"GW0001\"]}",
+                    "{\"errors\":[{\"code\":{\"value\":\"GW0001\"}}]}"
+            }
+    )
+    void shouldRejectInvalidErrorBodies(String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> extractor.extractErrorCodes(bytes));
+        assertThrows(IOException.class, () -> objectMapper.readValue(bytes, ClientErrorDto.class));
+    }
+
+    @Test
+    void shouldRejectBodiesExceedingMaxSize() {
+        NpgErrorCodesExtractor smallExtractor = new NpgErrorCodesExtractor(objectMapper.getFactory(), 16);
+        byte[] body = "{\"errors\":[{\"code\":\"GW0001\"}]}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> smallExtractor.extractErrorCodes(body));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new NpgErrorCodesExtractor(objectMapper.getFactory(), 0)
+        );
+    }
+
+    private static List<String> codes(List<ErrorsInnerDto> errors) {
+        return errors == null ? List.of()
+                : Arrays.asList(errors.stream().map(ErrorsInnerDto::getCode).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,302 @@
+package it.pagopa.ecommerce.commons.client.reconciliation;
+
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.vavr.control.Either;
+import it.pagopa.ecommerce.commons.client.NpgClient;
+import it.pagopa.ecommerce.commons.documents.NpgOrderReconciliationCheckpoint;
+import it.pagopa.ecommerce.commons.exceptions.NpgApiKeyConfigurationException;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationTypeDto;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OrderResponseDto;
+import it.pagopa.ecommerce.commons.utils.NpgApiKeyConfiguration;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NpgOrderReconcilerTest {
+
+    private static final String JOB_ID = "jobId";
+
+    private static final String PSP_1 = "psp1";
+
+    private static final String PSP_2 = "psp2";
+
+    private static final String PSP_1_API_KEY = "psp1-api-key";
+
+    private static final String PSP_2_API_KEY = "psp2-api-key";
+
+    private final NpgClient npgClient = Mockito.mock(NpgClient.class);
+
+    private final NpgApiKeyConfiguration npgApiKeyConfiguration = Mockito.mock(NpgApiKeyConfiguration.class);
+
+    private final ReactiveMongoOperations mongoOperations = Mockito.mock(ReactiveMongoOperations.class);
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private final NpgOrderReconciler reconciler = new NpgOrderReconciler(
+            npgClient,
+            npgApiKeyConfiguration,
+            mongoOperations,
+            new NpgOrderReconciliationConfiguration(4, 10, 2),
+            scheduler,
+            MeterProvider.noop().get("test")
+    );
+
+    private final List<Long> savedProgress = new ArrayList<>();
+
+    NpgOrderReconcilerTest() {
+        when(mongoOperations.save(any(NpgOrderReconciliationCheckpoint.class))).thenAnswer(invocation -> {
+            NpgOrderReconciliationCheckpoint checkpoint = invocation.getArgument(0);
+            savedProgress.add(checkpoint.getProcessedRequests());
+            return Mono.just(checkpoint);
+        });
+        when(npgApiKeyConfiguration.getApiKeyForPaymentMethod(NpgClient.PaymentMethod.CARDS, PSP_1))
+                .thenReturn(Either.right(PSP_1_API_KEY));
+        when(npgApiKeyConfiguration.getApiKeyForPaymentMethod(NpgClient.PaymentMethod.CARDS, PSP_2))
+                .thenReturn(Either.right(PSP_2_API_KEY));
+        when(npgApiKeyConfiguration.getApiKeyForPaymentMethod(NpgClient.PaymentMethod.PAYPAL, PSP_1))
+                .thenReturn(Either.left(new NpgApiKeyConfigurationException("api key not found")));
+    }
+
+    @Test
+    void shouldReconcileOrdersInRequestOrderAndSaveProgress() {
+        when(mongoOperations.findById(JOB_ID, NpgOrderReconciliationCheckpoint.class)).thenReturn(Mono.empty());
+        OrderResponseDto order = order("endToEndId");
+        when(npgClient.getOrder(any(), eq(PSP_1_API_KEY), eq("order1"))).thenReturn(Mono.just(order));
+        RuntimeException npgError = new RuntimeException("npg unavailable");
+        when(npgClient.getOrder(any(), eq(PSP_1_API_KEY), eq("order3"))).thenReturn(Mono.error(npgError));
+
+        CompletableFuture<List<NpgOrderReconciliationResult>> results = reconciler
+                .reconcile(
+                        JOB_ID,
+                        Flux.just(
+                                request("1", NpgClient.PaymentMethod.CARDS, PSP_1),
+                                request("2", NpgClient.PaymentMethod.PAYPAL, PSP_1),
+                                request("3", NpgClient.PaymentMethod.CARDS, PSP_1)
+                        )
+                )
+                .collectList()
+                .toFuture();
+        scheduler.advanceTimeBy(Duration.ofMillis(100));
+
+        List<NpgOrderReconciliationResult> reconciliationResults = results.join();
+        assertEquals(3, reconciliationResults.size());
+        NpgOrderReconciliationResult reconciled = reconciliationResults.get(0);
+        assertEquals(NpgOrderReconciliationResult.Outcome.RECONCILED, reconciled.outcome());
+        assertEquals(order, reconciled.order());
+        assertEquals(order.getOperations().get(1), reconciled.authorizationOperation());
+        assertEquals("endToEndId", reconciled.paymentEndToEndId());
+        assertEquals("2", reconciliationResults.get(1).request().transactionId());
+        assertEquals(NpgOrderReconciliationResult.Outcome.API_KEY_NOT_FOUND, reconciliationResults.get(1).outcome());
+        assertInstanceOf(NpgApiKeyConfigurationException.class, reconciliationResults.get(1).error());
+        assertEquals(NpgOrderReconciliationResult.Outcome.FAILED, reconciliationResults.get(2).outcome());
+        assertEquals(npgError, reconciliationResults.get(2).error());
+        assertEquals(List.of(2L, 3L), savedProgress);
+        ArgumentCaptor<NpgOrderReconciliationCheckpoint> checkpointCaptor = ArgumentCaptor
+                .forClass(NpgOrderReconciliationCheckpoint.class);
+        verify(mongoOperations, times(2)).save(checkpointCaptor.capture());
+        assertEquals(new NpgOrderReconciliationCheckpoint(JOB_ID, 3, 1, 2, "3", true), checkpointCaptor.getValue());
+    }
+
+    @Test
+    void shouldResolveApiKeysOncePerPspAndRateLimitPerApiKey() {
+        when(mongoOperations.findById(JOB_ID, NpgOrderReconciliationCheckpoint.class)).thenReturn(Mono.empty());
+        when(npgClient.getOrder(any(), any(), any())).thenReturn(Mono.just(order("endToEndId")));
+
+        CompletableFuture<List<NpgOrderReconciliationResult>> results = reconciler
+                .reconcile(
+                        JOB_ID,
+                        Flux.just(
+                                request("1", NpgClient.PaymentMethod.CARDS, PSP_1),
+                                request("2", NpgClient.PaymentMethod.CARDS, PSP_1),
+                                request("3", NpgClient.PaymentMethod.CARDS, PSP_2),
+                                request("4", NpgClient.PaymentMethod.CARDS, PSP_1)
+                        )
+                )
+                .collectList()
+                .toFuture();
+
+        // requests with different api keys are not rate limited by each other
+        verify(npgClient).getOrder(any(), eq(PSP_1_API_KEY), eq("order1"));
+        verify(npgClient).getOrder(any(), eq(PSP_2_API_KEY), eq("order3"));
+        verify(npgClient, never()).getOrder(any(), eq(PSP_1_API_KEY), eq("order2"));
+        scheduler.advanceTimeBy(Duration.ofMillis(100));
+        verify(npgClient).getOrder(any(), eq(PSP_1_API_KEY), eq("order2"));
+        verify(npgClient, never()).getOrder(any(), eq(PSP_1_API_KEY), eq("order4"));
+        scheduler.advanceTimeBy(Duration.ofMillis(100));
+
+        assertEquals(4, results.join().size());
+        verify(npgApiKeyConfiguration, times(1)).getApiKeyForPaymentMethod(NpgClient.PaymentMethod.CARDS, PSP_1);
+        verify(npgApiKeyConfiguration, times(1)).getApiKeyForPaymentMethod(NpgClient.PaymentMethod.CARDS, PSP_2);
+    }
+
+    @Test
+    void shouldResumeJobSkippingProcessedRequests() {
+        when(mongoOperations.findById(JOB_ID, NpgOrderReconciliationCheckpoint.class))
+                .thenReturn(Mono.just(new NpgOrderReconciliationCheckpoint(JOB_ID, 2, 2, 0, "2", false)));
+        when(npgClient.getOrder(any(), eq(PSP_1_API_KEY), eq("order3"))).thenReturn(Mono.just(order(null)));
+
+        List<NpgOrderReconciliationResult> results = reconciler
+                .reconcile(
+                        JOB_ID,
+                        Flux.just(
+                                request("1", NpgClient.PaymentMethod.CARDS, PSP_1),
+                                request("2", NpgClient.PaymentMethod.CARDS, PSP_1),
+                                request("3", NpgClient.PaymentMethod.CARDS, PSP_1)
+                        )
+                )
+                .collectList()
+                .block();
+
+        assertEquals(1, results.size());
+        assertEquals("3", results.get(0).request().transactionId());
+        verify(npgClient, times(1)).getOrder(any(), any(), any());
+        verify(mongoOperations).save(new NpgOrderReconciliationCheckpoint(JOB_ID, 3, 3, 0, "3", true));
+    }
+
+    @Test
+    void shouldNotRunCompletedJob() {
+        when(mongoOperations.findById(JOB_ID, NpgOrderReconciliationCheckpoint.class))
+                .thenReturn(Mono.just(new NpgOrderReconciliationCheckpoint(JOB_ID, 1, 1, 0, "1", true)));
+
+        List<NpgOrderReconciliationResult> results = reconciler
+                .reconcile(JOB_ID, Flux.just(request("1", NpgClient.PaymentMethod.CARDS, PSP_1)))
+                .collectList()
+                .block();
+
+        assertEquals(List.of(), results);
+        verifyNoInteractions(npgClient);
+        verify(mongoOperations, never()).save(any(NpgOrderReconciliationCheckpoint.class));
+    }
+
+    @Test
+    void shouldSaveProgressAndStopOnRequestsError() {
+        when(mongoOperations.findById(JOB_ID, NpgOrderReconciliationCheckpoint.class)).thenReturn(Mono.empty());
+        when(npgClient.getOrder(any(), eq(PSP_1_API_KEY), eq("order1"))).thenReturn(Mono.just(order(null)));
+
+        CompletableFuture<List<NpgOrderReconciliationResult>> results = reconciler
+                .reconcile(
+                        JOB_ID,
+                        Flux.concat(
+                                Flux.just(request("1", NpgClient.PaymentMethod.CARDS, PSP_1)),
+                                Flux.error(new RuntimeException("requests unavailable"))
+                        )
+                )
+                .collectList()
+                .toFuture();
+
+        CompletionException error = assertThrows(CompletionException.class, results::join);
+        assertEquals("requests unavailable", error.getCause().getMessage());
+        assertEquals(List.of(1L), savedProgress);
+    }
+
+    @Test
+    void shouldSaveProgressWhenCancelled() {
+        when(mongoOperations.findById(JOB_ID, NpgOrderReconciliationCheckpoint.class)).thenReturn(Mono.empty());
+        when(npgClient.getOrder(any(), eq(PSP_1_API_KEY), eq("order1"))).thenReturn(Mono.just(order(null)));
+        when(npgClient.getOrder(any(), eq(PSP_2_API_KEY), eq("order2"))).thenReturn(Mono.never());
+
+        List<NpgOrderReconciliationResult> results = reconciler
+                .reconcile(
+                        JOB_ID,
+                        Flux.just(
+                                request("1", NpgClient.PaymentMethod.CARDS, PSP_1),
+                                request("2", NpgClient.PaymentMethod.CARDS, PSP_2),
+                                request("3", NpgClient.PaymentMethod.CARDS, PSP_1)
+                        )
+                )
+                .take(1)
+                .collectList()
+                .block();
+
+        assertEquals(1, results.size());
+        assertEquals(List.of(1L), savedProgress);
+
+        Disposable job = reconciler
+                .reconcile(JOB_ID, Flux.just(request("2", NpgClient.PaymentMethod.CARDS, PSP_2)))
+                .subscribe();
+        job.dispose();
+
+        assertEquals(List.of(1L, 0L), savedProgress);
+    }
+
+    @Test
+    void shouldReconcileOrderWithoutEndToEndIdWhenCircuitDataIsMissing() {
+        when(mongoOperations.findById(JOB_ID, NpgOrderReconciliationCheckpoint.class)).thenReturn(Mono.empty());
+        OrderResponseDto order = new OrderResponseDto()
+                .addOperationsItem(
+                        new OperationDto()
+                                .operationId("authorization")
+                                .operationType(OperationTypeDto.AUTHORIZATION)
+                                .operationResult(OperationResultDto.EXECUTED)
+                                .paymentCircuit(NpgClient.PaymentMethod.BANCOMATPAY.serviceName)
+                                .additionalData(Map.of())
+                );
+        when(npgClient.getOrder(any(), eq(PSP_1_API_KEY), eq("order1"))).thenReturn(Mono.just(order));
+
+        List<NpgOrderReconciliationResult> results = reconciler
+                .reconcile(JOB_ID, Flux.just(request("1", NpgClient.PaymentMethod.CARDS, PSP_1)))
+                .collectList()
+                .block();
+
+        assertEquals(1, results.size());
+        assertEquals(NpgOrderReconciliationResult.Outcome.RECONCILED, results.get(0).outcome());
+        assertEquals(order.getOperations().get(0), results.get(0).authorizationOperation());
+        assertNull(results.get(0).paymentEndToEndId());
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new NpgOrderReconciliationConfiguration(0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new NpgOrderReconciliationConfiguration(1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new NpgOrderReconciliationConfiguration(1, 1, 0));
+    }
+
+    private static NpgOrderReconciliationRequest request(
+                                                         String transactionId,
+                                                         NpgClient.PaymentMethod paymentMethod,
+                                                         String pspId
+    ) {
+        return new NpgOrderReconciliationRequest(transactionId, "order" + transactionId, paymentMethod, pspId);
+    }
+
+    private static OrderResponseDto order(String paymentEndToEndId) {
+        return new OrderResponseDto()
+                .addOperationsItem(
+                        new OperationDto()
+                                .operationId("authorization1")
+                                .operationType(OperationTypeDto.AUTHORIZATION)
+                                .operationResult(OperationResultDto.DECLINED)
+                )
+                .addOperationsItem(
+                        new OperationDto()
+                                .operationId("authorization2")
+                                .operationType(OperationTypeDto.AUTHORIZATION)
+                                .operationResult(OperationResultDto.EXECUTED)
+                                .paymentEndToEndId(paymentEndToEndId)
+                )
+                .addOperationsItem(
+                        new OperationDto()
+                                .operationId("refund")
+                                .operationType(OperationTypeDto.REFUND)
+                                .operationResult(OperationResultDto.EXECUTED)
+                );
+    }
+}
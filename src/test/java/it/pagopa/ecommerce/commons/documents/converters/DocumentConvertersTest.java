@@ -0,0 +1,153 @@
+package it.pagopa.ecommerce.commons.documents.converters;
+
+import it.pagopa.ecommerce.commons.documents.DeadLetterEvent;
+import it.pagopa.ecommerce.commons.documents.v2.ClosureErrorData;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.v2.DeadLetterTestUtils;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpStatus;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentConvertersTest {
+
+    private final MappingMongoConverter reflectiveConverter = mappingConverter(new MongoCustomConversions(List.of()));
+
+    private final MappingMongoConverter handWrittenConverter = mappingConverter(
+            DocumentConverters.customConversions(List.of())
+    );
+
+    private static Stream<Transaction> transactionViews() {
+        ZonedDateTime creationDate = ZonedDateTime.parse("2024-01-01T10:00:00+01:00[Europe/Rome]");
+        Transaction activated = TransactionTestUtils.transactionDocument(TransactionStatusDto.ACTIVATED, creationDate);
+        Transaction closed = TransactionTestUtils.transactionDocument(TransactionStatusDto.CLOSED, creationDate);
+        closed.setFeeTotal(100);
+        closed.setPaymentGateway("NPG");
+        closed.setSendPaymentResultOutcome(TransactionUserReceiptData.Outcome.OK);
+        closed.setAuthorizationCode("authorizationCode");
+        closed.setAuthorizationErrorCode("authorizationErrorCode");
+        closed.setGatewayAuthorizationStatus("EXECUTED");
+        closed.setClosureErrorData(
+                new ClosureErrorData(
+                        HttpStatus.BAD_REQUEST,
+                        "error description",
+                        ClosureErrorData.ErrorType.KO_RESPONSE_RECEIVED
+                )
+        );
+        closed.setPaymentTypeCode("CP");
+        closed.setPspId("pspId");
+        closed.setAuthorizationRequestId("authorizationRequestId");
+        closed.setEndToEndId("endToEndId");
+        closed.setLastProcessedEventId("lastProcessedEventId");
+        Transaction minimal = new Transaction(
+                TransactionTestUtils.TRANSACTION_ID,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+        return Stream.of(activated, closed, minimal);
+    }
+
+    private static Stream<DeadLetterEvent> deadLetterEvents() {
+        return Stream.of(
+                DeadLetterTestUtils.deadLetterEventWithoutTransactionInfo(),
+                DeadLetterTestUtils.deadLetterEventWithIncompleteTransactionInfo(),
+                DeadLetterTestUtils.deadLetterEventWithTransactionInfo(
+                        TransactionAuthorizationRequestData.PaymentGateway.NPG
+                ),
+                DeadLetterTestUtils.deadLetterEventWithTransactionInfo(
+                        TransactionAuthorizationRequestData.PaymentGateway.REDIRECT
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("transactionViews")
+    void shouldMapTransactionViewLikeReflectiveMapping(Transaction view) {
+        assertRoundTripEquivalence(view, Transaction.class);
+    }
+
+    @ParameterizedTest
+    @MethodSource("deadLetterEvents")
+    void shouldMapDeadLetterEventLikeReflectiveMapping(DeadLetterEvent event) {
+        assertRoundTripEquivalence(event, DeadLetterEvent.class);
+    }
+
+    @Test
+    void shouldReadNumbersStoredWithDifferentTypes() {
+        Document document = TransactionViewWritingConverter.INSTANCE.convert(
+                TransactionTestUtils.transactionDocument(TransactionStatusDto.ACTIVATED, ZonedDateTime.now())
+        );
+        document.put("feeTotal", 100L);
+        document.put("lastProcessedEventAt", 10);
+
+        Transaction view = TransactionViewReadingConverter.INSTANCE.convert(document);
+
+        assertEquals(100, view.getFeeTotal());
+        assertEquals(10L, view.getLastProcessedEventAt());
+    }
+
+    @Test
+    void shouldRejectUnknownDeadLetterDetailsType() {
+        Document document = DeadLetterEventWritingConverter.INSTANCE.convert(
+                DeadLetterTestUtils.deadLetterEventWithTransactionInfo(
+                        TransactionAuthorizationRequestData.PaymentGateway.REDIRECT
+                )
+        );
+        document.get("transactionInfo", Document.class).get("details", Document.class).put("_class", "unknown");
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> DeadLetterEventReadingConverter.INSTANCE.convert(document)
+        );
+    }
+
+    private <T> void assertRoundTripEquivalence(
+                                                T value,
+                                                Class<T> type
+    ) {
+        assertTrue(handWrittenConverter.getCustomConversions().hasCustomWriteTarget(type, Document.class));
+        assertTrue(handWrittenConverter.getCustomConversions().hasCustomReadTarget(Document.class, type));
+        Document reflectiveDocument = new Document();
+        reflectiveConverter.write(value, reflectiveDocument);
+        Document handWrittenDocument = new Document();
+        handWrittenConverter.write(value, handWrittenDocument);
+
+        assertEquals(reflectiveDocument, handWrittenDocument);
+        assertEquals(value, handWrittenConverter.read(type, reflectiveDocument));
+        assertEquals(value, reflectiveConverter.read(type, handWrittenDocument));
+    }
+
+    private static MappingMongoConverter mappingConverter(MongoCustomConversions conversions) {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
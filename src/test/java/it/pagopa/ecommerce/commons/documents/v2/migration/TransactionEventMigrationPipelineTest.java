@@ -0,0 +1,147 @@
+package it.pagopa.ecommerce.commons.documents.v2.migration;
+
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.documents.v1.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureRequestedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.v1.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionEventMigrationPipelineTest {
+
+    private final TransactionEventMigrationPipeline pipeline = new TransactionEventMigrationPipeline(
+            new TransactionEventUpcaster(),
+            Schedulers.parallel(),
+            2,
+            2,
+            MeterProvider.noop().get("test")
+    );
+
+    private static List<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> closedTransaction() {
+        String transactionId = UUID.randomUUID().toString().replace("-", "");
+        List<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> events = List.of(
+                TransactionTestUtils.transactionActivateEvent(),
+                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                TransactionTestUtils.transactionAuthorizationCompletedEvent(),
+                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK)
+        );
+        events.forEach(event -> event.setTransactionId(transactionId));
+        return events;
+    }
+
+    @Test
+    void shouldMigrateEventsInBatchesOfTransactions() {
+        List<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> v1Events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            v1Events.addAll(closedTransaction());
+        }
+        Queue<List<TransactionEvent<?>>> writtenBatches = new ConcurrentLinkedQueue<>();
+
+        StepVerifier.create(
+                pipeline.migrate(
+                        Flux.fromIterable(v1Events),
+                        batch -> Mono.fromRunnable(() -> writtenBatches.add(batch))
+                )
+        )
+                .assertNext(result -> {
+                    assertEquals(20, result.read());
+                    // a synthetic closure requested event is added for each transaction
+                    assertEquals(25, result.migrated());
+                    assertEquals(0, result.failed());
+                    assertTrue(result.eventsPerSecond() > 0);
+                })
+                .verifyComplete();
+
+        assertEquals(3, writtenBatches.size());
+        assertEquals(
+                v1Events.stream().map(it.pagopa.ecommerce.commons.documents.v1.TransactionEvent::getId)
+                        .collect(Collectors.toSet()),
+                writtenBatches.stream()
+                        .flatMap(List::stream)
+                        .filter(event -> !(event instanceof TransactionClosureRequestedEvent))
+                        .map(TransactionEvent::getId)
+                        .collect(Collectors.toSet())
+        );
+    }
+
+    @Test
+    void shouldSkipTransactionsThatCannotBeUpcasted() {
+        List<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> invalidTransaction = closedTransaction();
+        invalidTransaction.get(3).setData(null);
+        List<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> v1Events = new ArrayList<>(
+                closedTransaction()
+        );
+        v1Events.addAll(invalidTransaction);
+        Queue<TransactionEvent<?>> written = new ConcurrentLinkedQueue<>();
+
+        StepVerifier.create(
+                pipeline.migrate(
+                        Flux.fromIterable(v1Events),
+                        batch -> Mono.fromRunnable(() -> written.addAll(batch))
+                )
+        )
+                .assertNext(result -> {
+                    assertEquals(8, result.read());
+                    assertEquals(5, result.migrated());
+                    assertEquals(4, result.failed());
+                })
+                .verifyComplete();
+
+        assertTrue(
+                written.stream()
+                        .noneMatch(
+                                event -> event.getTransactionId().equals(invalidTransaction.get(0).getTransactionId())
+                        )
+        );
+    }
+
+    @Test
+    void shouldStopMigrationOnWriteError() {
+        StepVerifier.create(
+                pipeline.migrate(
+                        Flux.fromIterable(closedTransaction()),
+                        batch -> Mono.error(new IllegalStateException("write error"))
+                )
+        )
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    void shouldThrowForInvalidConfiguration() {
+        TransactionEventUpcaster upcaster = new TransactionEventUpcaster();
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TransactionEventMigrationPipeline(
+                        upcaster,
+                        Schedulers.parallel(),
+                        0,
+                        1,
+                        MeterProvider.noop().get("test")
+                )
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TransactionEventMigrationPipeline(
+                        upcaster,
+                        Schedulers.parallel(),
+                        1,
+                        0,
+                        MeterProvider.noop().get("test")
+                )
+        );
+    }
+}
@@ -0,0 +1,305 @@
+package it.pagopa.ecommerce.commons.documents.v2.migration;
+
+import it.pagopa.ecommerce.commons.documents.v1.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v1.TransactionExpiredData;
+import it.pagopa.ecommerce.commons.documents.v1.TransactionRefundedData;
+import it.pagopa.ecommerce.commons.documents.v1.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.documents.v2.*;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.PgsTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.PgsTransactionGatewayAuthorizationRequestedData;
+import it.pagopa.ecommerce.commons.domain.v2.status.TransactionStatusReducer;
+import it.pagopa.ecommerce.commons.domain.v2.status.TransactionStatusSnapshot;
+import it.pagopa.ecommerce.commons.generated.server.model.AuthorizationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.v1.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionEventUpcasterTest {
+
+    private final TransactionEventUpcaster upcaster = new TransactionEventUpcaster();
+
+    private static it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> expired(TransactionStatusDto status) {
+        return new it.pagopa.ecommerce.commons.documents.v1.TransactionExpiredEvent(
+                TransactionTestUtils.TRANSACTION_ID,
+                new TransactionExpiredData(status)
+        );
+    }
+
+    private static it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> refundRequested() {
+        return new it.pagopa.ecommerce.commons.documents.v1.TransactionRefundRequestedEvent(
+                TransactionTestUtils.TRANSACTION_ID,
+                new TransactionRefundedData(TransactionStatusDto.EXPIRED)
+        );
+    }
+
+    private static it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> refunded() {
+        return new it.pagopa.ecommerce.commons.documents.v1.TransactionRefundedEvent(
+                TransactionTestUtils.TRANSACTION_ID,
+                new TransactionRefundedData(TransactionStatusDto.REFUND_REQUESTED)
+        );
+    }
+
+    private static Stream<Arguments> v1TransactionHistories() {
+        return Stream.of(
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                                TransactionTestUtils.transactionAuthorizationCompletedEvent()
+                        )
+                ),
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                                TransactionTestUtils.transactionAuthorizationCompletedEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                                TransactionTestUtils.transactionUserReceiptRequestedEvent(
+                                        TransactionTestUtils
+                                                .transactionUserReceiptData(TransactionUserReceiptData.Outcome.OK)
+                                ),
+                                TransactionTestUtils.transactionUserReceiptAddedEvent(
+                                        TransactionTestUtils
+                                                .transactionUserReceiptData(TransactionUserReceiptData.Outcome.OK)
+                                )
+                        )
+                ),
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                                TransactionTestUtils.transactionAuthorizationCompletedEvent(AuthorizationResultDto.KO),
+                                TransactionTestUtils.transactionClosureFailedEvent(TransactionClosureData.Outcome.OK)
+                        )
+                ),
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                                TransactionTestUtils.transactionAuthorizationCompletedEvent(),
+                                TransactionTestUtils.transactionClosureErrorEvent(),
+                                TransactionTestUtils.transactionClosureRetriedEvent(1),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK)
+                        )
+                ),
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                                TransactionTestUtils.transactionAuthorizationCompletedEvent(),
+                                TransactionTestUtils.transactionClosureErrorEvent(),
+                                expired(TransactionStatusDto.CLOSURE_ERROR),
+                                refundRequested(),
+                                TransactionTestUtils.transactionRefundRetriedEvent(1),
+                                refunded()
+                        )
+                ),
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                                TransactionTestUtils.transactionAuthorizationCompletedEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                                expired(TransactionStatusDto.CLOSED),
+                                TransactionTestUtils.transactionUserReceiptRequestedEvent(
+                                        TransactionTestUtils
+                                                .transactionUserReceiptData(TransactionUserReceiptData.Outcome.KO)
+                                ),
+                                TransactionTestUtils.transactionUserReceiptAddErrorEvent(
+                                        TransactionTestUtils
+                                                .transactionUserReceiptData(TransactionUserReceiptData.Outcome.KO)
+                                ),
+                                TransactionTestUtils.transactionUserReceiptAddRetriedEvent(1)
+                        )
+                ),
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                TransactionTestUtils.transactionUserCanceledEvent(),
+                                TransactionTestUtils.transactionClosureErrorEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK)
+                        )
+                ),
+                Arguments.of(
+                        List.of(
+                                TransactionTestUtils.transactionActivateEvent(),
+                                expired(TransactionStatusDto.ACTIVATED)
+                        )
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("v1TransactionHistories")
+    void shouldReplayUpcastedHistoryToSameStatus(
+                                                 List<it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?>> v1Events
+    ) {
+        TransactionStatusDto v1Status = TransactionTestUtils
+                .reduceEvents(v1Events.toArray(it.pagopa.ecommerce.commons.documents.v1.TransactionEvent[]::new))
+                .getStatus();
+
+        List<TransactionEvent<?>> v2Events = upcaster.upcast(v1Events);
+
+        assertEquals(
+                v1Status,
+                TransactionStatusReducer.reduce(v2Events).map(TransactionStatusSnapshot::status).orElseThrow()
+        );
+        assertEquals(
+                v1Status,
+                ((it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransaction) Flux.fromIterable(v2Events)
+                        .reduce(
+                                (it.pagopa.ecommerce.commons.domain.v2.Transaction) new it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction(),
+                                it.pagopa.ecommerce.commons.domain.v2.Transaction::applyEvent
+                        ).block()).getStatus()
+        );
+    }
+
+    @Test
+    void shouldUpcastActivationKeepingEventMetadata() {
+        it.pagopa.ecommerce.commons.documents.v1.TransactionActivatedEvent v1Event = TransactionTestUtils
+                .transactionActivateEvent();
+
+        TransactionEvent<?> upcasted = upcaster.upcast(v1Event);
+
+        TransactionActivatedEvent activatedEvent = assertInstanceOf(TransactionActivatedEvent.class, upcasted);
+        assertEquals(v1Event.getId(), activatedEvent.getId());
+        assertEquals(v1Event.getTransactionId(), activatedEvent.getTransactionId());
+        assertEquals(v1Event.getCreationDate(), activatedEvent.getCreationDate());
+        assertEquals(v1Event.getEventCode(), activatedEvent.getEventCode());
+        TransactionActivatedData data = activatedEvent.getData();
+        assertEquals(v1Event.getData().getEmail().opaqueData(), data.getEmail().opaqueData());
+        assertEquals(v1Event.getData().getPaymentNotices(), data.getPaymentNotices());
+        assertEquals(v1Event.getData().getClientId().name(), data.getClientId().name());
+        assertEquals(v1Event.getData().getIdCart(), data.getIdCart());
+        assertEquals(
+                v1Event.getData().getPaymentTokenValiditySeconds(),
+                data.getPaymentTokenValiditySeconds()
+        );
+        assertNotNull(data.getTransactionGatewayActivationData());
+        assertNull(data.getUserId());
+    }
+
+    @Test
+    void shouldUpcastAuthorizationEventsToPgsGatewayData() {
+        it.pagopa.ecommerce.commons.documents.v1.TransactionAuthorizationRequestedEvent requestedEvent = TransactionTestUtils
+                .transactionAuthorizationRequestedEvent();
+        it.pagopa.ecommerce.commons.documents.v1.TransactionAuthorizationCompletedEvent completedEvent = TransactionTestUtils
+                .transactionAuthorizationCompletedEvent(AuthorizationResultDto.KO);
+
+        TransactionAuthorizationRequestData requestData = assertInstanceOf(
+                TransactionAuthorizationRequestedEvent.class,
+                upcaster.upcast(requestedEvent)
+        ).getData();
+        TransactionAuthorizationCompletedData completedData = assertInstanceOf(
+                TransactionAuthorizationCompletedEvent.class,
+                upcaster.upcast(completedEvent)
+        ).getData();
+
+        assertEquals(requestedEvent.getData().getAmount(), requestData.getAmount());
+        assertEquals(requestedEvent.getData().getPspId(), requestData.getPspId());
+        assertEquals(requestedEvent.getData().getPaymentGateway().name(), requestData.getPaymentGateway().name());
+        PgsTransactionGatewayAuthorizationRequestedData requestedGatewayData = assertInstanceOf(
+                PgsTransactionGatewayAuthorizationRequestedData.class,
+                requestData.getTransactionGatewayAuthorizationRequestedData()
+        );
+        assertEquals(requestedEvent.getData().getLogo(), requestedGatewayData.getLogo());
+        assertEquals(requestedEvent.getData().getBrand().name(), requestedGatewayData.getBrand().name());
+        assertEquals(completedEvent.getData().getRrn(), completedData.getRrn());
+        assertEquals(
+                new PgsTransactionGatewayAuthorizationData(null, AuthorizationResultDto.KO),
+                completedData.getTransactionGatewayAuthorizationData()
+        );
+    }
+
+    @Test
+    void shouldAddSyntheticClosureRequestedEventBeforeFirstClosureEvent() {
+        it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> closureErrorEvent = TransactionTestUtils
+                .transactionClosureErrorEvent();
+        List<TransactionEvent<?>> upcasted = upcaster.upcast(
+                List.of(
+                        TransactionTestUtils.transactionActivateEvent(),
+                        TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                        TransactionTestUtils.transactionAuthorizationCompletedEvent(),
+                        closureErrorEvent,
+                        TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK)
+                )
+        );
+
+        assertEquals(
+                List.of(
+                        TransactionActivatedEvent.class,
+                        TransactionAuthorizationRequestedEvent.class,
+                        TransactionAuthorizationCompletedEvent.class,
+                        TransactionClosureRequestedEvent.class,
+                        TransactionClosureErrorEvent.class,
+                        TransactionClosedEvent.class
+                ),
+                upcasted.stream().map(Object::getClass).toList()
+        );
+        TransactionEvent<?> closureRequested = upcasted.get(3);
+        assertEquals(
+                closureErrorEvent.getId() + TransactionEventUpcaster.SYNTHETIC_CLOSURE_REQUESTED_ID_SUFFIX,
+                closureRequested.getId()
+        );
+        assertTrue(
+                ZonedDateTime.parse(closureRequested.getCreationDate())
+                        .isBefore(ZonedDateTime.parse(closureErrorEvent.getCreationDate()))
+        );
+        assertEquals(
+                closureRequested.getId(),
+                upcaster.upcast(List.of(upcasted.get(2), closureErrorEvent)).get(1).getId()
+        );
+    }
+
+    @Test
+    void shouldUpcastEventFluxResettingStatePerTransaction() {
+        String otherTransactionId = TransactionTestUtils.TRANSACTION_ID.replace(
+                TransactionTestUtils.TRANSACTION_ID.charAt(0),
+                TransactionTestUtils.TRANSACTION_ID.charAt(0) == 'a' ? 'b' : 'a'
+        );
+        it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> otherTransactionClosedEvent = TransactionTestUtils
+                .transactionClosedEvent(TransactionClosureData.Outcome.OK);
+        otherTransactionClosedEvent.setTransactionId(otherTransactionId);
+
+        StepVerifier.create(
+                upcaster.upcast(
+                        Flux.just(
+                                TransactionTestUtils.transactionAuthorizationCompletedEvent(),
+                                otherTransactionClosedEvent,
+                                TransactionTestUtils.transactionUserCanceledEvent()
+                        )
+                )
+        )
+                .assertNext(event -> assertInstanceOf(TransactionAuthorizationCompletedEvent.class, event))
+                .assertNext(event -> assertInstanceOf(TransactionClosedEvent.class, event))
+                .assertNext(event -> assertInstanceOf(TransactionUserCanceledEvent.class, event))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReturnV2EventsAsTheyAre() {
+        TransactionEvent<?> v2Event = it.pagopa.ecommerce.commons.v2.TransactionTestUtils.transactionActivateEvent();
+
+        assertSame(v2Event, upcaster.upcast(v2Event));
+    }
+
+    @Test
+    void shouldThrowForV1EventWithoutData() {
+        it.pagopa.ecommerce.commons.documents.v1.TransactionEvent<?> v1Event = TransactionTestUtils
+                .transactionClosedEvent(TransactionClosureData.Outcome.OK);
+        v1Event.setData(null);
+
+        assertThrows(IllegalArgumentException.class, () -> upcaster.upcast(v1Event));
+    }
+}
@@ -6826,4 +6826,50 @@ class TransactionTest {
                 )
                 .verifyComplete();
     }
+
+    @Test
+    void shouldShareActivationStateAcrossTransitions() {
+        TransactionActivatedEvent transactionActivatedEvent = TransactionTestUtils.transactionActivateEvent();
+        TransactionAuthorizationRequestedEvent authorizationRequestedEvent = TransactionTestUtils
+                .transactionAuthorizationRequestedEvent();
+        TransactionAuthorizationCompletedEvent authorizationCompletedEvent = TransactionTestUtils
+                .transactionAuthorizationCompletedEvent(
+                        TransactionTestUtils.npgTransactionGatewayAuthorizationData(OperationResultDto.EXECUTED)
+                );
+        TransactionExpiredEvent expiredEvent = TransactionTestUtils
+                .transactionExpiredEvent(TransactionStatusDto.AUTHORIZATION_COMPLETED);
+        Transaction activated = new EmptyTransaction().applyEvent(transactionActivatedEvent);
+        Transaction withRequestedAuthorization = activated.applyEvent(authorizationRequestedEvent);
+        Transaction authorizationCompleted = withRequestedAuthorization.applyEvent(authorizationCompletedEvent);
+        Transaction expired = authorizationCompleted.applyEvent(expiredEvent);
+        TransactionRefundRequestedEvent refundRequestedEvent = TransactionTestUtils
+                .transactionRefundRequestedEvent((BaseTransaction) expired);
+        Transaction refundRequested = expired.applyEvent(refundRequestedEvent);
+
+        assertInstanceOf(TransactionWithRefundRequested.class, refundRequested);
+        BaseTransactionWithRefundRequested refund = (BaseTransactionWithRefundRequested) refundRequested;
+        // payment notices are built once at activation and shared by all following
+        // states
+        assertSame(((BaseTransaction) activated).getPaymentNotices(), refund.getPaymentNotices());
+        assertSame(
+                ((BaseTransactionWithRequestedAuthorization) withRequestedAuthorization)
+                        .getTransactionAuthorizationRequestData(),
+                refund.getTransactionAuthorizationRequestData()
+        );
+        // previous states getters are unchanged
+        assertSame(authorizationCompleted, refund.getTransactionAtPreviousState());
+        assertSame(authorizationCompleted, ((BaseTransactionExpired) expired).getTransactionAtPreviousState());
+        // toString prints the previous state status instead of the previous state
+        BaseTransactionWithRefundRequested refundFromExpired = new BaseTransactionWithRefundRequested(
+                (BaseTransactionWithRequestedAuthorization) expired,
+                null
+        ) {
+            @Override
+            public TransactionStatusDto getStatus() {
+                return TransactionStatusDto.REFUND_REQUESTED;
+            }
+        };
+        assertTrue(refundFromExpired.toString().contains("transactionAtPreviousState=EXPIRED"));
+        assertFalse(refundFromExpired.toString().contains(expired.toString()));
+    }
 }
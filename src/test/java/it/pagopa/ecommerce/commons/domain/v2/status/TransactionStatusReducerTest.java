@@ -0,0 +1,340 @@
+package it.pagopa.ecommerce.commons.domain.v2.status;
+
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptAddErrorEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptRequestedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.RedirectTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.Transaction;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionClosed;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransactionWithCompletedAuthorization;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.AuthorizationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionStatusReducerTest {
+
+    private static final BaseTransaction ACTIVATED = (BaseTransaction) new EmptyTransaction()
+            .applyEvent(TransactionTestUtils.transactionActivateEvent());
+
+    private static TransactionEvent<?> activated() {
+        return TransactionTestUtils.transactionActivateEvent();
+    }
+
+    private static TransactionEvent<?> authorizationRequested() {
+        return TransactionTestUtils.transactionAuthorizationRequestedEvent();
+    }
+
+    private static TransactionEvent<?> authorizationCompleted(boolean authorized) {
+        return TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                TransactionTestUtils.npgTransactionGatewayAuthorizationData(
+                        authorized ? OperationResultDto.EXECUTED : OperationResultDto.DECLINED
+                )
+        );
+    }
+
+    private static TransactionEvent<?> userReceiptRequested(TransactionUserReceiptData.Outcome outcome) {
+        return TransactionTestUtils
+                .transactionUserReceiptRequestedEvent(TransactionTestUtils.transactionUserReceiptData(outcome));
+    }
+
+    private static TransactionEvent<?> userReceiptAdded(TransactionUserReceiptData.Outcome outcome) {
+        return TransactionTestUtils
+                .transactionUserReceiptAddedEvent(TransactionTestUtils.transactionUserReceiptData(outcome));
+    }
+
+    private static TransactionEvent<?> userReceiptAddError(TransactionUserReceiptData.Outcome outcome) {
+        return TransactionTestUtils
+                .transactionUserReceiptAddErrorEvent(TransactionTestUtils.transactionUserReceiptData(outcome));
+    }
+
+    private static TransactionEvent<?> expired() {
+        return TransactionTestUtils.transactionExpiredEvent(ACTIVATED);
+    }
+
+    private static TransactionEvent<?> refundRequested() {
+        return TransactionTestUtils.transactionRefundRequestedEvent(ACTIVATED);
+    }
+
+    private static List<TransactionEvent<?>> eventsPool() {
+        return List.of(
+                activated(),
+                authorizationRequested(),
+                authorizationCompleted(true),
+                authorizationCompleted(false),
+                TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                        TransactionTestUtils.pgsTransactionGatewayAuthorizationData(AuthorizationResultDto.OK)
+                ),
+                TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                        TransactionTestUtils.redirectTransactionGatewayAuthorizationData(
+                                RedirectTransactionGatewayAuthorizationData.Outcome.KO,
+                                null
+                        )
+                ),
+                TransactionTestUtils.transactionAuthorizationOutcomeWaitingEvent(1),
+                TransactionTestUtils.transactionUserCanceledEvent(),
+                TransactionTestUtils.transactionClosureRequestedEvent(),
+                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.KO),
+                TransactionTestUtils.transactionClosureFailedEvent(TransactionClosureData.Outcome.KO),
+                TransactionTestUtils.transactionClosureErrorEvent(),
+                TransactionTestUtils.transactionClosureRetriedEvent(1),
+                TransactionTestUtils.transactionClosureSyntheticEvent(),
+                expired(),
+                userReceiptRequested(TransactionUserReceiptData.Outcome.OK),
+                userReceiptRequested(TransactionUserReceiptData.Outcome.KO),
+                userReceiptAdded(TransactionUserReceiptData.Outcome.OK),
+                userReceiptAdded(TransactionUserReceiptData.Outcome.KO),
+                userReceiptAddError(TransactionUserReceiptData.Outcome.OK),
+                userReceiptAddError(TransactionUserReceiptData.Outcome.KO),
+                TransactionTestUtils.transactionUserReceiptAddRetriedEvent(1),
+                refundRequested(),
+                TransactionTestUtils.transactionRefundErrorEvent(),
+                TransactionTestUtils.transactionRefundRetriedEvent(1),
+                TransactionTestUtils.transactionRefundedEvent(ACTIVATED)
+        );
+    }
+
+    private static Stream<Arguments> transactionHistories() {
+        return Stream.of(
+                Arguments.of(
+                        List.of(activated(), expired()),
+                        TransactionStatusDto.EXPIRED_NOT_AUTHORIZED
+                ),
+                Arguments.of(
+                        List.of(
+                                activated(),
+                                TransactionTestUtils.transactionUserCanceledEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK)
+                        ),
+                        TransactionStatusDto.CANCELED
+                ),
+                Arguments.of(
+                        List.of(
+                                activated(),
+                                TransactionTestUtils.transactionUserCanceledEvent(),
+                                TransactionTestUtils.transactionClosureErrorEvent(),
+                                expired()
+                        ),
+                        TransactionStatusDto.CANCELLATION_EXPIRED
+                ),
+                Arguments.of(
+                        List.of(
+                                activated(),
+                                authorizationRequested(),
+                                authorizationCompleted(false),
+                                TransactionTestUtils.transactionClosureRequestedEvent(),
+                                TransactionTestUtils.transactionClosureFailedEvent(TransactionClosureData.Outcome.OK)
+                        ),
+                        TransactionStatusDto.UNAUTHORIZED
+                ),
+                Arguments.of(
+                        List.of(
+                                activated(),
+                                authorizationRequested(),
+                                authorizationCompleted(true),
+                                TransactionTestUtils.transactionClosureRequestedEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                                userReceiptRequested(TransactionUserReceiptData.Outcome.OK),
+                                userReceiptAdded(TransactionUserReceiptData.Outcome.OK)
+                        ),
+                        TransactionStatusDto.NOTIFIED_OK
+                ),
+                Arguments.of(
+                        List.of(
+                                activated(),
+                                authorizationRequested(),
+                                authorizationCompleted(true),
+                                TransactionTestUtils.transactionClosureRequestedEvent(),
+                                TransactionTestUtils.transactionClosureErrorEvent(),
+                                expired(),
+                                TransactionTestUtils.transactionClosureSyntheticEvent()
+                        ),
+                        TransactionStatusDto.CLOSED
+                ),
+                Arguments.of(
+                        List.of(
+                                activated(),
+                                authorizationRequested(),
+                                authorizationCompleted(true),
+                                TransactionTestUtils.transactionClosureRequestedEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                                userReceiptRequested(TransactionUserReceiptData.Outcome.KO),
+                                userReceiptAddError(TransactionUserReceiptData.Outcome.KO),
+                                refundRequested(),
+                                TransactionTestUtils.transactionRefundErrorEvent(),
+                                TransactionTestUtils.transactionRefundRetriedEvent(1),
+                                TransactionTestUtils.transactionRefundedEvent(ACTIVATED)
+                        ),
+                        TransactionStatusDto.REFUNDED
+                ),
+                Arguments.of(
+                        List.of(
+                                activated(),
+                                authorizationRequested(),
+                                authorizationCompleted(true),
+                                TransactionTestUtils.transactionClosureRequestedEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                                userReceiptRequested(TransactionUserReceiptData.Outcome.OK),
+                                expired(),
+                                userReceiptAdded(TransactionUserReceiptData.Outcome.KO),
+                                refundRequested()
+                        ),
+                        TransactionStatusDto.REFUND_REQUESTED
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("transactionHistories")
+    void shouldReduceTransactionHistoriesToAggregateStatus(
+                                                           List<TransactionEvent<?>> events,
+                                                           TransactionStatusDto expectedStatus
+    ) {
+        assertEquals(expectedStatus, TransactionStatusReducer.reduce(events).orElseThrow().status());
+        assertSameStatusAsAggregateForEachPrefix(events);
+    }
+
+    @Test
+    void shouldComputeSameStatusAsAggregateForRandomEventSequences() {
+        List<TransactionEvent<?>> pool = eventsPool();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            List<TransactionEvent<?>> events = new ArrayList<>();
+            events.add(activated());
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                events.add(pool.get(random.nextInt(pool.size())));
+            }
+            assertSameStatusAsAggregateForEachPrefix(events);
+        }
+    }
+
+    @Test
+    void shouldComputeSameStatusWhenResumingFromPrefixStatus() {
+        List<TransactionEvent<?>> pool = eventsPool();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            List<TransactionEvent<?>> events = new ArrayList<>();
+            events.add(activated());
+            int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                events.add(pool.get(random.nextInt(pool.size())));
+            }
+            TransactionStatusDto expected = TransactionStatusReducer.reduce(events).orElseThrow().status();
+            for (int prefix = 1; prefix <= events.size(); prefix++) {
+                Optional<TransactionStatusReducer> resumed = resume(events.subList(0, prefix));
+                if (resumed.isEmpty()) {
+                    continue;
+                }
+                events.subList(prefix, events.size()).forEach(resumed.get()::apply);
+                assertEquals(expected, resumed.get().snapshot().orElseThrow().status(), "events: " + events);
+            }
+        }
+    }
+
+    @Test
+    void shouldNotResumeStatusesWrappingPreviousStatus() {
+        assertTrue(TransactionStatusReducer.resume(TransactionStatusDto.EXPIRED, true, null).isEmpty());
+        assertTrue(TransactionStatusReducer.resume(TransactionStatusDto.CLOSURE_ERROR, true, null).isEmpty());
+        assertTrue(TransactionStatusReducer.resume(null, null, null).isEmpty());
+    }
+
+    /*
+     * Resume a reducer from the data a projection keeps for the input events: the
+     * status, the authorization outcome and the outcome of the last accepted user
+     * receipt event
+     */
+    private static Optional<TransactionStatusReducer> resume(List<TransactionEvent<?>> events) {
+        TransactionStatusReducer reducer = new TransactionStatusReducer();
+        TransactionUserReceiptData.Outcome userReceiptOutcome = null;
+        for (TransactionEvent<?> event : events) {
+            Optional<TransactionStatusSnapshot> before = reducer.snapshot();
+            reducer.apply(event);
+            boolean accepted = !before.equals(reducer.snapshot());
+            if (accepted && (event instanceof TransactionUserReceiptRequestedEvent
+                    || event instanceof TransactionUserReceiptAddErrorEvent)) {
+                userReceiptOutcome = ((TransactionUserReceiptData) event.getData()).getResponseOutcome();
+            }
+        }
+        TransactionStatusSnapshot snapshot = reducer.snapshot().orElseThrow();
+        return TransactionStatusReducer.resume(snapshot.status(), snapshot.wasAuthorized(), userReceiptOutcome);
+    }
+
+    @Test
+    void shouldReturnEmptyStatusForNotActivatedTransaction() {
+        assertTrue(TransactionStatusReducer.reduce(List.<TransactionEvent<?>>of()).isEmpty());
+        assertTrue(TransactionStatusReducer.reduce(List.of(authorizationRequested(), expired())).isEmpty());
+        StepVerifier.create(TransactionStatusReducer.reduce(Flux.<TransactionEvent<?>>empty()))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReduceEventFlux() {
+        StepVerifier.create(
+                TransactionStatusReducer.reduce(
+                        Flux.just(
+                                activated(),
+                                authorizationRequested(),
+                                authorizationCompleted(true),
+                                TransactionTestUtils.transactionClosureRequestedEvent(),
+                                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.KO)
+                        )
+                )
+        )
+                .expectNext(
+                        new TransactionStatusSnapshot(
+                                TransactionStatusDto.CLOSED,
+                                true,
+                                TransactionClosureData.Outcome.KO
+                        )
+                )
+                .verifyComplete();
+    }
+
+    private static void assertSameStatusAsAggregateForEachPrefix(List<TransactionEvent<?>> events) {
+        TransactionStatusReducer reducer = new TransactionStatusReducer();
+        Transaction transaction = new EmptyTransaction();
+        for (TransactionEvent<?> event : events) {
+            transaction = transaction.applyEvent(event);
+            Optional<TransactionStatusSnapshot> snapshot = reducer.apply(event).snapshot();
+            if (transaction instanceof BaseTransaction baseTransaction) {
+                TransactionStatusSnapshot actual = snapshot.orElseThrow();
+                assertEquals(baseTransaction.getStatus(), actual.status(), () -> "Events: " + eventCodes(events));
+                if (baseTransaction instanceof BaseTransactionWithCompletedAuthorization completed) {
+                    assertEquals(completed.wasTransactionAuthorized(), actual.wasAuthorized());
+                }
+                if (baseTransaction instanceof BaseTransactionClosed closed) {
+                    assertEquals(
+                            closed.getTransactionClosureData().getResponseOutcome(),
+                            actual.closureOutcome()
+                    );
+                }
+            } else {
+                assertTrue(snapshot.isEmpty());
+            }
+        }
+    }
+
+    private static List<String> eventCodes(List<TransactionEvent<?>> events) {
+        return events.stream().map(TransactionEvent::getEventCode).toList();
+    }
+}
@@ -0,0 +1,94 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationCompletedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.authorization.NpgTransactionGatewayAuthorizationData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterNpgTransactionInfoDetailsData;
+import it.pagopa.ecommerce.commons.documents.v2.deadletter.DeadLetterTransactionInfo;
+import it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.Transaction;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadLetterTransactionInfoMapperTest {
+
+    @Test
+    void shouldMapAuthorizedTransaction() {
+        TransactionAuthorizationRequestedEvent authorizationRequestedEvent = TransactionTestUtils
+                .transactionAuthorizationRequestedEvent();
+        TransactionAuthorizationCompletedEvent authorizationCompletedEvent = TransactionTestUtils
+                .transactionAuthorizationCompletedEvent(
+                        TransactionTestUtils.npgTransactionGatewayAuthorizationData(OperationResultDto.EXECUTED)
+                );
+        Transaction aggregate = replay(
+                List.of(
+                        TransactionTestUtils.transactionActivateEvent(),
+                        authorizationRequestedEvent,
+                        authorizationCompletedEvent
+                )
+        );
+
+        DeadLetterTransactionInfo transactionInfo = DeadLetterTransactionInfoMapper.toTransactionInfo(aggregate)
+                .orElseThrow();
+
+        TransactionAuthorizationRequestData requestData = authorizationRequestedEvent.getData();
+        NpgTransactionGatewayAuthorizationData npgData = (NpgTransactionGatewayAuthorizationData) authorizationCompletedEvent
+                .getData().getTransactionGatewayAuthorizationData();
+        assertEquals(TransactionTestUtils.TRANSACTION_ID, transactionInfo.getTransactionId());
+        assertEquals(requestData.getAuthorizationRequestId(), transactionInfo.getAuthorizationRequestId());
+        assertEquals(TransactionStatusDto.AUTHORIZATION_COMPLETED, transactionInfo.getECommerceStatus());
+        assertEquals(requestData.getPaymentGateway(), transactionInfo.getGateway());
+        assertEquals(List.of(TransactionTestUtils.PAYMENT_TOKEN), transactionInfo.getPaymentTokens());
+        assertEquals(requestData.getPspId(), transactionInfo.getPspId());
+        assertEquals(requestData.getPaymentMethodName(), transactionInfo.getPaymentMethodName());
+        assertEquals(requestData.getAmount() + requestData.getFee(), transactionInfo.getGrandTotal());
+        assertEquals(authorizationCompletedEvent.getData().getRrn(), transactionInfo.getRrn());
+        assertEquals(
+                new DeadLetterNpgTransactionInfoDetailsData(
+                        npgData.getOperationResult(),
+                        npgData.getOperationId(),
+                        null,
+                        npgData.getPaymentEndToEndId()
+                ),
+                transactionInfo.getDetails()
+        );
+    }
+
+    @Test
+    void shouldMapActivatedTransactionWithoutAuthorizationData() {
+        Transaction aggregate = replay(List.of(TransactionTestUtils.transactionActivateEvent()));
+
+        DeadLetterTransactionInfo transactionInfo = DeadLetterTransactionInfoMapper.toTransactionInfo(aggregate)
+                .orElseThrow();
+
+        assertEquals(TransactionTestUtils.TRANSACTION_ID, transactionInfo.getTransactionId());
+        assertEquals(TransactionStatusDto.ACTIVATED, transactionInfo.getECommerceStatus());
+        assertEquals(List.of(TransactionTestUtils.PAYMENT_TOKEN), transactionInfo.getPaymentTokens());
+        assertNull(transactionInfo.getAuthorizationRequestId());
+        assertNull(transactionInfo.getGateway());
+        assertNull(transactionInfo.getGrandTotal());
+        assertNull(transactionInfo.getRrn());
+        assertNull(transactionInfo.getDetails());
+    }
+
+    @Test
+    void shouldNotMapTransactionWithoutActivation() {
+        assertTrue(DeadLetterTransactionInfoMapper.toTransactionInfo(new EmptyTransaction()).isEmpty());
+    }
+
+    private static Transaction replay(List<TransactionEvent<?>> events) {
+        Transaction aggregate = new EmptyTransaction();
+        for (TransactionEvent<?> event : events) {
+            aggregate = aggregate.applyEvent(event);
+        }
+        return aggregate;
+    }
+}
@@ -0,0 +1,195 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import it.pagopa.ecommerce.commons.documents.BaseTransactionView;
+import it.pagopa.ecommerce.commons.documents.v2.ClosureErrorData;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionUserReceiptData;
+import it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.pojos.BaseTransaction;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionViewMapperTest {
+
+    private static final String AUTHORIZATION_ERROR_CODE = "authorizationErrorCode";
+
+    private static final TransactionEvent<?> LAST_PROCESSED_EVENT = TransactionTestUtils.transactionActivateEvent();
+
+    private static final ClosureErrorData CLOSURE_ERROR_DATA = new ClosureErrorData(
+            HttpStatus.INTERNAL_SERVER_ERROR,
+            "closure error",
+            ClosureErrorData.ErrorType.KO_RESPONSE_RECEIVED
+    );
+
+    @Test
+    void shouldMapAllFieldsOfNotifiedTransaction() {
+        BaseTransaction aggregate = TransactionTestUtils.reduceEvents(
+                TransactionTestUtils.transactionActivateEvent(),
+                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                        TransactionTestUtils.npgTransactionGatewayAuthorizationData(
+                                OperationResultDto.EXECUTED,
+                                AUTHORIZATION_ERROR_CODE
+                        )
+                ),
+                TransactionTestUtils.transactionClosureRequestedEvent(),
+                TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                TransactionTestUtils.transactionUserReceiptRequestedEvent(
+                        TransactionTestUtils.transactionUserReceiptData(TransactionUserReceiptData.Outcome.OK)
+                ),
+                TransactionTestUtils.transactionUserReceiptAddedEvent(
+                        TransactionTestUtils.transactionUserReceiptData(TransactionUserReceiptData.Outcome.OK)
+                )
+        );
+        Transaction expected = expectedView(aggregate, TransactionStatusDto.NOTIFIED_OK);
+        expected.setSendPaymentResultOutcome(TransactionUserReceiptData.Outcome.OK);
+
+        Transaction view = toView(aggregate);
+
+        assertFieldsEquals(expected, view);
+        assertNull(view.getClosureErrorData());
+    }
+
+    @Test
+    void shouldMapAllFieldsOfClosureErrorTransaction() {
+        BaseTransaction aggregate = TransactionTestUtils.reduceEvents(
+                TransactionTestUtils.transactionActivateEvent(),
+                TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                        TransactionTestUtils.npgTransactionGatewayAuthorizationData(
+                                OperationResultDto.EXECUTED,
+                                AUTHORIZATION_ERROR_CODE
+                        )
+                ),
+                TransactionTestUtils.transactionClosureRequestedEvent(),
+                TransactionTestUtils.transactionClosureErrorEvent(CLOSURE_ERROR_DATA)
+        );
+        Transaction expected = expectedView(aggregate, TransactionStatusDto.CLOSURE_ERROR);
+        expected.setClosureErrorData(CLOSURE_ERROR_DATA);
+
+        Transaction view = toView(aggregate);
+
+        assertFieldsEquals(expected, view);
+        assertNull(view.getSendPaymentResultOutcome());
+    }
+
+    @Test
+    void shouldPopulateEveryViewField() throws IllegalAccessException {
+        Transaction notified = toView(
+                TransactionTestUtils.reduceEvents(
+                        TransactionTestUtils.transactionActivateEvent(),
+                        TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                        TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                                TransactionTestUtils.npgTransactionGatewayAuthorizationData(
+                                        OperationResultDto.EXECUTED,
+                                        AUTHORIZATION_ERROR_CODE
+                                )
+                        ),
+                        TransactionTestUtils.transactionClosureRequestedEvent(),
+                        TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK),
+                        TransactionTestUtils.transactionUserReceiptRequestedEvent(
+                                TransactionTestUtils.transactionUserReceiptData(TransactionUserReceiptData.Outcome.OK)
+                        )
+                )
+        );
+        Transaction closureError = toView(
+                TransactionTestUtils.reduceEvents(
+                        TransactionTestUtils.transactionActivateEvent(),
+                        TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                        TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                                TransactionTestUtils.npgTransactionGatewayAuthorizationData(
+                                        OperationResultDto.EXECUTED,
+                                        AUTHORIZATION_ERROR_CODE
+                                )
+                        ),
+                        TransactionTestUtils.transactionClosureRequestedEvent(),
+                        TransactionTestUtils.transactionClosureErrorEvent(CLOSURE_ERROR_DATA)
+                )
+        );
+
+        // every view field must be filled by the mapper for at least one status
+        for (Field field : viewFields()) {
+            field.setAccessible(true);
+            assertTrue(
+                    field.get(notified) != null || field.get(closureError) != null,
+                    "View field [%s] is never populated by the mapper".formatted(field.getName())
+            );
+        }
+    }
+
+    @Test
+    void shouldNotMapTransactionWithoutActivation() {
+        assertTrue(TransactionViewMapper.toView(new EmptyTransaction(), null).isEmpty());
+    }
+
+    private static Transaction toView(BaseTransaction aggregate) {
+        return TransactionViewMapper.toView(
+                (it.pagopa.ecommerce.commons.domain.v2.Transaction) aggregate,
+                LAST_PROCESSED_EVENT
+        ).orElseThrow();
+    }
+
+    private static Transaction expectedView(
+                                            BaseTransaction aggregate,
+                                            TransactionStatusDto status
+    ) {
+        Transaction expected = new Transaction(
+                TransactionTestUtils.TRANSACTION_ID,
+                TransactionTestUtils.transactionActivateEvent().getData().getPaymentNotices(),
+                10,
+                TransactionTestUtils.EMAIL,
+                status,
+                Transaction.ClientId.CHECKOUT,
+                aggregate.getCreationDate().toString(),
+                TransactionTestUtils.ID_CART,
+                TransactionTestUtils.RRN,
+                TransactionTestUtils.USER_ID,
+                TransactionTestUtils.PAYMENT_TYPE_CODE,
+                TransactionTestUtils.PSP_ID,
+                LAST_PROCESSED_EVENT.creationDateEpochMillis()
+        );
+        expected.setLastProcessedEventId(LAST_PROCESSED_EVENT.getId());
+        expected.setPaymentGateway(TransactionTestUtils.PAYMENT_GATEWAY.toString());
+        expected.setAuthorizationRequestId(TransactionTestUtils.AUTHORIZATION_REQUEST_ID);
+        expected.setAuthorizationCode(TransactionTestUtils.AUTHORIZATION_CODE);
+        expected.setAuthorizationErrorCode(AUTHORIZATION_ERROR_CODE);
+        expected.setGatewayAuthorizationStatus(OperationResultDto.EXECUTED.toString());
+        expected.setEndToEndId(TransactionTestUtils.NPG_PAYMENT_END_TO_END_ID);
+        return expected;
+    }
+
+    private static void assertFieldsEquals(
+                                           Transaction expected,
+                                           Transaction actual
+    ) {
+        for (Field field : viewFields()) {
+            field.setAccessible(true);
+            assertEquals(
+                    assertDoesNotThrow(() -> field.get(expected)),
+                    assertDoesNotThrow(() -> field.get(actual)),
+                    "Unexpected value for view field [%s]".formatted(field.getName())
+            );
+        }
+        assertEquals(expected, actual);
+    }
+
+    private static List<Field> viewFields() {
+        return Stream.concat(
+                Stream.of(BaseTransactionView.class.getDeclaredFields()),
+                Stream.of(Transaction.class.getDeclaredFields())
+        )
+                .filter(field -> !java.lang.reflect.Modifier.isStatic(field.getModifiers()))
+                .toList();
+    }
+}
@@ -0,0 +1,311 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import com.mongodb.client.result.UpdateResult;
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.documents.v2.ClosureErrorData;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.repositories.TransactionEventStoreRepository;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionViewProjectorTest {
+
+    private static final String TRANSACTION_ID = TransactionTestUtils.TRANSACTION_ID;
+
+    private final ReactiveMongoOperations mongoOperations = Mockito.mock(ReactiveMongoOperations.class);
+
+    @SuppressWarnings("unchecked")
+    private final TransactionEventStoreRepository<TransactionEvent<?>> eventStoreRepository = Mockito
+            .mock(TransactionEventStoreRepository.class);
+
+    private final TransactionViewProjector projector = new TransactionViewProjector(
+            mongoOperations,
+            eventStoreRepository,
+            MeterProvider.noop().get("test")
+    );
+
+    @Test
+    void shouldApplyOnlyNewEventsAndWriteOnlyChangedFields() {
+        List<TransactionEvent<?>> events = closedTransactionEvents();
+        Transaction currentView = fullRebuild(events.subList(0, 2));
+        givenViewAndEvents(currentView, events);
+        ArgumentCaptor<UpdateDefinition> updateCaptor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoOperations.updateFirst(queryCaptor.capture(), updateCaptor.capture(), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        Long previousLastProcessedEventAt = currentView.getLastProcessedEventAt();
+        String previousLastProcessedEventId = currentView.getLastProcessedEventId();
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.UPDATED, result.outcome());
+                    assertEquals(3, result.appliedEvents());
+                    // same result as a rebuild from the whole history
+                    assertEquals(fullRebuild(events), result.view());
+                    assertEquals(TransactionStatusDto.CLOSED, result.view().getStatus());
+                })
+                .verifyComplete();
+
+        Document setFields = (Document) ((Update) updateCaptor.getValue()).getUpdateObject().get("$set");
+        assertEquals(
+                Set.of(
+                        "rrn",
+                        "authorizationCode",
+                        "gatewayAuthorizationStatus",
+                        "endToEndId",
+                        "status",
+                        "lastProcessedEventAt",
+                        "lastProcessedEventId"
+                ),
+                setFields.keySet()
+        );
+        assertEquals(
+                new Document("transactionId", TRANSACTION_ID)
+                        .append("lastProcessedEventAt", previousLastProcessedEventAt)
+                        .append("lastProcessedEventId", previousLastProcessedEventId),
+                queryCaptor.getValue().getQueryObject()
+        );
+        verify(eventStoreRepository).findByTransactionId(TRANSACTION_ID);
+    }
+
+    @Test
+    void shouldApplyEventsWithNonTimeOrderedIdsCreatedAfterLastProcessedEvent() {
+        List<TransactionEvent<?>> events = closedTransactionEvents();
+        // random ids, as written by DocumentIdGenerator.RANDOM_UUID or older services:
+        // the event created after the last processed one has the smallest id
+        for (TransactionEvent<?> event : events) {
+            event.setId(UUID.randomUUID().toString());
+        }
+        events.get(3).setId("00000000-0000-4000-8000-000000000000");
+        Transaction currentView = fullRebuild(events.subList(0, 3));
+        givenViewAndEvents(currentView, events);
+        when(mongoOperations.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.UPDATED, result.outcome());
+                    assertEquals(2, result.appliedEvents());
+                    assertEquals(events.get(4).getId(), result.view().getLastProcessedEventId());
+                    assertEquals(fullRebuild(events), result.view());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldBreakCreationDateTiesOnStreamOrder() {
+        List<TransactionEvent<?>> events = closedTransactionEvents();
+        // authorization completed and closure requested created within the same
+        // millisecond
+        events.get(3).setCreationDate(events.get(2).getCreationDate());
+        Transaction currentView = fullRebuild(events.subList(0, 3));
+        assertEquals(events.get(2).getId(), currentView.getLastProcessedEventId());
+        givenViewAndEvents(currentView, events);
+        when(mongoOperations.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.UPDATED, result.outcome());
+                    // the already processed event with the same creation date is not applied
+                    // again, the following one is not skipped
+                    assertEquals(2, result.appliedEvents());
+                    assertEquals(fullRebuild(events), result.view());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReplayFullHistoryForViewWithoutLastProcessedEventId() {
+        List<TransactionEvent<?>> events = closedTransactionEvents();
+        Transaction currentView = fullRebuild(events.subList(0, 3));
+        currentView.setLastProcessedEventId(null);
+        givenViewAndEvents(currentView, events);
+        when(mongoOperations.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.UPDATED, result.outcome());
+                    assertEquals(2, result.appliedEvents());
+                    assertEquals(fullRebuild(events), result.view());
+                })
+                .verifyComplete();
+
+        verify(eventStoreRepository).findByTransactionId(TRANSACTION_ID);
+    }
+
+    @Test
+    void shouldUnsetClosureErrorDataWhenClosureErrorIsLeft() {
+        List<TransactionEvent<?>> events = withCreationDates(
+                List.of(
+                        TransactionTestUtils.transactionActivateEvent(),
+                        TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                        TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                                TransactionTestUtils.npgTransactionGatewayAuthorizationData(OperationResultDto.EXECUTED)
+                        ),
+                        TransactionTestUtils.transactionClosureRequestedEvent(),
+                        TransactionTestUtils.transactionClosureErrorEvent(
+                                new ClosureErrorData(
+                                        HttpStatus.INTERNAL_SERVER_ERROR,
+                                        "closure error",
+                                        ClosureErrorData.ErrorType.KO_RESPONSE_RECEIVED
+                                )
+                        ),
+                        TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK)
+                )
+        );
+        Transaction currentView = fullRebuild(events.subList(0, 5));
+        assertNotNull(currentView.getClosureErrorData());
+        givenViewAndEvents(currentView, events);
+        ArgumentCaptor<UpdateDefinition> updateCaptor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        when(mongoOperations.updateFirst(any(Query.class), updateCaptor.capture(), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.UPDATED, result.outcome());
+                    assertEquals(fullRebuild(events), result.view());
+                    assertNull(result.view().getClosureErrorData());
+                })
+                .verifyComplete();
+
+        Document unsetFields = (Document) ((Update) updateCaptor.getValue()).getUpdateObject().get("$unset");
+        assertEquals(Set.of("closureErrorData"), unsetFields.keySet());
+    }
+
+    @Test
+    void shouldNotWriteUpToDateView() {
+        List<TransactionEvent<?>> events = closedTransactionEvents();
+        givenViewAndEvents(fullRebuild(events), events);
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.UP_TO_DATE, result.outcome());
+                    assertEquals(0, result.appliedEvents());
+                })
+                .verifyComplete();
+
+        verify(mongoOperations, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), any(Class.class));
+    }
+
+    @Test
+    void shouldReportConflictWhenViewWasConcurrentlyUpdated() {
+        List<TransactionEvent<?>> events = closedTransactionEvents();
+        givenViewAndEvents(fullRebuild(events.subList(0, 3)), events);
+        when(mongoOperations.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> assertEquals(TransactionViewProjector.Outcome.CONFLICT, result.outcome()))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldCreateMissingViewFromFullHistory() {
+        List<TransactionEvent<?>> events = closedTransactionEvents();
+        when(mongoOperations.findById(TRANSACTION_ID, Transaction.class)).thenReturn(Mono.empty());
+        when(eventStoreRepository.findByTransactionId(TRANSACTION_ID)).thenReturn(Flux.fromIterable(events));
+        when(mongoOperations.insert(any(Transaction.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.CREATED, result.outcome());
+                    assertEquals(5, result.appliedEvents());
+                    assertEquals(fullRebuild(events), result.view());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReportConflictWhenViewWasConcurrentlyCreated() {
+        when(mongoOperations.findById(TRANSACTION_ID, Transaction.class)).thenReturn(Mono.empty());
+        when(eventStoreRepository.findByTransactionId(TRANSACTION_ID))
+                .thenReturn(Flux.fromIterable(closedTransactionEvents()));
+        when(mongoOperations.insert(any(Transaction.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("duplicate key")));
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> assertEquals(TransactionViewProjector.Outcome.CONFLICT, result.outcome()))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReportNotFoundTransaction() {
+        when(mongoOperations.findById(TRANSACTION_ID, Transaction.class)).thenReturn(Mono.empty());
+        when(eventStoreRepository.findByTransactionId(TRANSACTION_ID)).thenReturn(Flux.empty());
+
+        StepVerifier.create(projector.project(TRANSACTION_ID))
+                .assertNext(result -> {
+                    assertEquals(TransactionViewProjector.Outcome.NOT_FOUND, result.outcome());
+                    assertNull(result.view());
+                })
+                .verifyComplete();
+    }
+
+    private void givenViewAndEvents(
+                                    Transaction view,
+                                    List<TransactionEvent<?>> events
+    ) {
+        when(mongoOperations.findById(TRANSACTION_ID, Transaction.class)).thenReturn(Mono.just(view));
+        when(eventStoreRepository.findByTransactionId(TRANSACTION_ID)).thenReturn(Flux.fromIterable(events));
+    }
+
+    private static Transaction fullRebuild(List<TransactionEvent<?>> events) {
+        it.pagopa.ecommerce.commons.domain.v2.Transaction aggregate = new EmptyTransaction();
+        for (TransactionEvent<?> event : events) {
+            aggregate = aggregate.applyEvent(event);
+        }
+        return TransactionViewMapper.toView(aggregate, events.get(events.size() - 1)).orElseThrow();
+    }
+
+    private static List<TransactionEvent<?>> closedTransactionEvents() {
+        return withCreationDates(
+                List.of(
+                        TransactionTestUtils.transactionActivateEvent(),
+                        TransactionTestUtils.transactionAuthorizationRequestedEvent(),
+                        TransactionTestUtils.transactionAuthorizationCompletedEvent(
+                                TransactionTestUtils.npgTransactionGatewayAuthorizationData(OperationResultDto.EXECUTED)
+                        ),
+                        TransactionTestUtils.transactionClosureRequestedEvent(),
+                        TransactionTestUtils.transactionClosedEvent(TransactionClosureData.Outcome.OK)
+                )
+        );
+    }
+
+    private static List<TransactionEvent<?>> withCreationDates(List<TransactionEvent<?>> events) {
+        ZonedDateTime creationDate = ZonedDateTime.parse("2024-01-01T10:00:00.123+01:00[Europe/Rome]");
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setTransactionId(TRANSACTION_ID);
+            events.get(i).setCreationDate(creationDate.plusSeconds(i).toString());
+        }
+        return events;
+    }
+}
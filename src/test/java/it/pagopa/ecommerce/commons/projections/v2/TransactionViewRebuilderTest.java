@@ -0,0 +1,194 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionActivatedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationCompletedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureData;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionClosureRequestedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionExpiredEvent;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.OperationResultDto;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionViewRebuilderTest {
+
+    private final TransactionViewRebuilder transactionViewRebuilder = new TransactionViewRebuilder(
+            Schedulers.parallel(),
+            4,
+            MeterProvider.noop().get("test")
+    );
+
+    @Test
+    void shouldRebuildClosedTransactionView() {
+        List<TransactionEvent<?>> events = closedTransactionEvents(TransactionTestUtils.TRANSACTION_ID);
+
+        StepVerifier.create(transactionViewRebuilder.rebuild(Flux.fromIterable(events)))
+                .assertNext(view -> {
+                    assertEquals(TransactionTestUtils.TRANSACTION_ID, view.getTransactionId());
+                    assertEquals(TransactionStatusDto.CLOSED, view.getStatus());
+                    assertEquals(TransactionTestUtils.RRN, view.getRrn());
+                    assertNotNull(view.getPspId());
+                    assertNotNull(view.getPaymentTypeCode());
+                    assertNotNull(view.getFeeTotal());
+                    assertEquals(
+                            ZonedDateTime.parse(events.get(events.size() - 1).getCreationDate()).toInstant()
+                                    .toEpochMilli(),
+                            view.getLastProcessedEventAt()
+                    );
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldRebuildManyTransactionsInParallel() {
+        List<String> transactionIds = new ArrayList<>();
+        List<TransactionEvent<?>> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String transactionId = UUID.randomUUID().toString().replace("-", "");
+            transactionIds.add(transactionId);
+            events.addAll(
+                    i % 2 == 0 ? closedTransactionEvents(transactionId)
+                            : List.of(withTransactionId(TransactionTestUtils.transactionActivateEvent(), transactionId))
+            );
+        }
+
+        StepVerifier.create(
+                transactionViewRebuilder.rebuild(Flux.fromIterable(events)).collectList()
+        )
+                .assertNext(views -> {
+                    assertEquals(
+                            transactionIds.stream().sorted().toList(),
+                            views.stream().map(Transaction::getTransactionId).sorted().toList()
+                    );
+                    views.sort(Comparator.comparing(view -> transactionIds.indexOf(view.getTransactionId())));
+                    for (int i = 0; i < views.size(); i++) {
+                        assertEquals(
+                                i % 2 == 0 ? TransactionStatusDto.CLOSED : TransactionStatusDto.ACTIVATED,
+                                views.get(i).getStatus()
+                        );
+                    }
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldSkipTransactionsWithoutActivation() {
+        TransactionClosureRequestedEvent orphanEvent = TransactionTestUtils.transactionClosureRequestedEvent();
+        orphanEvent.setTransactionId(UUID.randomUUID().toString().replace("-", ""));
+
+        StepVerifier.create(
+                transactionViewRebuilder.rebuild(
+                        Flux.<TransactionEvent<?>>just(orphanEvent)
+                                .concatWith(
+                                        Flux.just(
+                                                withTransactionId(
+                                                        TransactionTestUtils.transactionActivateEvent(),
+                                                        TransactionTestUtils.TRANSACTION_ID
+                                                )
+                                        )
+                                )
+                )
+        )
+                .assertNext(view -> assertEquals(TransactionTestUtils.TRANSACTION_ID, view.getTransactionId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldKeepAuthorizationDataForExpiredTransaction() {
+        List<TransactionEvent<?>> events = new ArrayList<>(
+                closedTransactionEvents(TransactionTestUtils.TRANSACTION_ID).subList(0, 3)
+        );
+        TransactionExpiredEvent expiredEvent = TransactionTestUtils
+                .transactionExpiredEvent(TransactionStatusDto.AUTHORIZATION_COMPLETED);
+        events.add(expiredEvent);
+
+        StepVerifier.create(transactionViewRebuilder.rebuild(Flux.fromIterable(events)))
+                .assertNext(view -> {
+                    assertEquals(TransactionStatusDto.EXPIRED, view.getStatus());
+                    assertEquals(TransactionTestUtils.RRN, view.getRrn());
+                    assertNotNull(view.getPspId());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldReduceEventsInCreationInstantOrder() {
+        List<TransactionEvent<?>> events = closedTransactionEvents(TransactionTestUtils.TRANSACTION_ID);
+        ZonedDateTime creationDate = ZonedDateTime.parse("2024-01-01T09:59:59.5Z");
+        for (int i = 0; i < events.size(); i++) {
+            ZonedDateTime eventCreationDate = creationDate.plusNanos(i * 250_000_000L);
+            // string order of mixed offsets and fraction digits is not time order
+            events.get(i).setCreationDate(
+                    i % 2 == 0 ? eventCreationDate.withZoneSameInstant(ZoneId.of("Europe/Rome")).toString()
+                            : eventCreationDate.toString()
+            );
+        }
+        List<TransactionEvent<?>> shuffledEvents = new ArrayList<>(events);
+        Collections.reverse(shuffledEvents);
+
+        StepVerifier.create(transactionViewRebuilder.rebuild(Flux.fromIterable(shuffledEvents)))
+                .assertNext(view -> {
+                    assertEquals(TransactionStatusDto.CLOSED, view.getStatus());
+                    assertEquals(
+                            events.get(events.size() - 1).creationDateEpochMillis(),
+                            view.getLastProcessedEventAt()
+                    );
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldRejectInvalidParallelism() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TransactionViewRebuilder(Schedulers.parallel(), 0, MeterProvider.noop().get("test"))
+        );
+    }
+
+    private static List<TransactionEvent<?>> closedTransactionEvents(String transactionId) {
+        TransactionActivatedEvent transactionActivatedEvent = TransactionTestUtils.transactionActivateEvent();
+        TransactionAuthorizationRequestedEvent authorizationRequestedEvent = TransactionTestUtils
+                .transactionAuthorizationRequestedEvent();
+        TransactionAuthorizationCompletedEvent authorizationCompletedEvent = TransactionTestUtils
+                .transactionAuthorizationCompletedEvent(
+                        TransactionTestUtils.npgTransactionGatewayAuthorizationData(OperationResultDto.EXECUTED)
+                );
+        TransactionClosureRequestedEvent closureRequestedEvent = TransactionTestUtils
+                .transactionClosureRequestedEvent();
+        TransactionClosedEvent closedEvent = TransactionTestUtils
+                .transactionClosedEvent(TransactionClosureData.Outcome.OK);
+        return List.of(
+                withTransactionId(transactionActivatedEvent, transactionId),
+                withTransactionId(authorizationRequestedEvent, transactionId),
+                withTransactionId(authorizationCompletedEvent, transactionId),
+                withTransactionId(closureRequestedEvent, transactionId),
+                withTransactionId(closedEvent, transactionId)
+        );
+    }
+
+    private static <T extends TransactionEvent<?>> T withTransactionId(
+                                                                       T event,
+                                                                       String transactionId
+    ) {
+        event.setTransactionId(transactionId);
+        return event;
+    }
+}
@@ -0,0 +1,213 @@
+package it.pagopa.ecommerce.commons.projections.v2;
+
+import com.mongodb.client.result.UpdateResult;
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.documents.v2.ClosureErrorData;
+import it.pagopa.ecommerce.commons.documents.v2.Transaction;
+import it.pagopa.ecommerce.commons.generated.server.model.TransactionStatusDto;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionViewUpdateWriterTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(100);
+
+    private static final ZonedDateTime CREATION_DATE = ZonedDateTime.parse("2024-01-01T10:00:00+01:00[Europe/Rome]");
+
+    private static final ClosureErrorData CLOSURE_ERROR_DATA = new ClosureErrorData(
+            HttpStatus.INTERNAL_SERVER_ERROR,
+            "closure error",
+            ClosureErrorData.ErrorType.KO_RESPONSE_RECEIVED
+    );
+
+    private final ReactiveMongoOperations mongoOperations = Mockito.mock(ReactiveMongoOperations.class);
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    TransactionViewUpdateWriterTest() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoOperations.getConverter()).thenReturn(converter);
+    }
+
+    @Test
+    void shouldComputeOnlyChangedFields() {
+        TransactionViewUpdateWriter writer = writer(Duration.ZERO);
+        Transaction before = view();
+        before.setClosureErrorData(CLOSURE_ERROR_DATA);
+        Transaction after = view();
+        after.setStatus(TransactionStatusDto.CLOSED);
+        after.setLastProcessedEventAt(10L);
+
+        assertTrue(writer.diff(view(), view()).getUpdateObject().isEmpty());
+        Document update = writer.diff(before, after).getUpdateObject();
+        assertEquals(
+                new Document("status", TransactionStatusDto.CLOSED.toString()).append("lastProcessedEventAt", 10L),
+                update.get("$set")
+        );
+        assertEquals(new Document("closureErrorData", 1), update.get("$unset"));
+    }
+
+    @Test
+    void shouldNotUnsetFieldsMissingFromPartiallyPopulatedView() {
+        TransactionViewUpdateWriter writer = writer(Duration.ZERO);
+        Transaction after = view();
+        after.setRrn(null);
+        after.setEmail(null);
+        after.setPaymentNotices(null);
+        after.setStatus(TransactionStatusDto.CLOSED);
+
+        Document update = writer.diff(view(), after).getUpdateObject();
+
+        assertEquals(
+                new Document("$set", new Document("status", TransactionStatusDto.CLOSED.toString())),
+                update
+        );
+    }
+
+    @Test
+    void shouldRejectViewsOfDifferentTransactions() {
+        TransactionViewUpdateWriter writer = writer(Duration.ZERO);
+        Transaction other = view();
+        other.setTransactionId("otherTransactionId");
+
+        assertThrows(IllegalArgumentException.class, () -> writer.diff(view(), other));
+    }
+
+    @Test
+    void shouldWriteChangedFieldsImmediatelyWithoutCoalescingWindow() {
+        TransactionViewUpdateWriter writer = writer(Duration.ZERO);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updateCaptor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        when(mongoOperations.updateFirst(queryCaptor.capture(), updateCaptor.capture(), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        Transaction after = view();
+        after.setStatus(TransactionStatusDto.CLOSED);
+
+        StepVerifier.create(writer.write(view(), after)).verifyComplete();
+        StepVerifier.create(writer.write(view(), view())).verifyComplete();
+
+        verify(mongoOperations, times(1)).updateFirst(any(Query.class), any(UpdateDefinition.class), any(Class.class));
+        assertEquals(
+                new Document("transactionId", TransactionTestUtils.TRANSACTION_ID),
+                queryCaptor.getValue().getQueryObject()
+        );
+        assertEquals(
+                new Document("$set", new Document("status", TransactionStatusDto.CLOSED.toString())),
+                ((Update) updateCaptor.getValue()).getUpdateObject()
+        );
+    }
+
+    @Test
+    void shouldCoalesceUpdatesToSameTransactionWithinWindow() {
+        TransactionViewUpdateWriter writer = writer(WINDOW);
+        ArgumentCaptor<UpdateDefinition> updateCaptor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        when(mongoOperations.updateFirst(any(Query.class), updateCaptor.capture(), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        Transaction first = view();
+        first.setStatus(TransactionStatusDto.CLOSURE_ERROR);
+        first.setClosureErrorData(CLOSURE_ERROR_DATA);
+        Transaction second = view();
+        second.setStatus(TransactionStatusDto.CLOSED);
+        second.setLastProcessedEventAt(10L);
+
+        CompletableFuture<Void> firstWrite = writer.write(view(), first).toFuture();
+        scheduler.advanceTimeBy(WINDOW.dividedBy(2));
+        CompletableFuture<Void> secondWrite = writer.write(first, second).toFuture();
+        assertFalse(firstWrite.isDone());
+        scheduler.advanceTimeBy(WINDOW);
+
+        assertTrue(firstWrite.isDone());
+        assertTrue(secondWrite.isDone());
+        verify(mongoOperations, times(1)).updateFirst(any(Query.class), any(UpdateDefinition.class), any(Class.class));
+        Document update = ((Update) updateCaptor.getValue()).getUpdateObject();
+        // later changes override earlier ones, closure error data set by the first
+        // update is unset by the second one
+        assertEquals(
+                new Document("status", TransactionStatusDto.CLOSED.toString()).append("lastProcessedEventAt", 10L),
+                update.get("$set")
+        );
+        assertEquals(new Document("closureErrorData", 1), update.get("$unset"));
+    }
+
+    @Test
+    void shouldFlushPendingUpdatesImmediately() {
+        TransactionViewUpdateWriter writer = writer(WINDOW);
+        when(mongoOperations.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        Transaction after = view();
+        after.setStatus(TransactionStatusDto.CLOSED);
+
+        CompletableFuture<Void> write = writer.write(view(), after).toFuture();
+        StepVerifier.create(writer.flush()).verifyComplete();
+        assertTrue(write.isDone());
+        scheduler.advanceTimeBy(WINDOW);
+
+        verify(mongoOperations, times(1)).updateFirst(any(Query.class), any(UpdateDefinition.class), any(Class.class));
+    }
+
+    @Test
+    void shouldPropagateWriteErrorToAllCoalescedUpdates() {
+        TransactionViewUpdateWriter writer = writer(WINDOW);
+        RuntimeException error = new RuntimeException("write error");
+        when(mongoOperations.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Transaction.class)))
+                .thenReturn(Mono.error(error));
+        Transaction first = view();
+        first.setRrn("updatedRrn");
+        Transaction second = view();
+        second.setStatus(TransactionStatusDto.CLOSED);
+
+        CompletableFuture<Void> firstWrite = writer.write(view(), first).toFuture();
+        CompletableFuture<Void> secondWrite = writer.write(view(), second).toFuture();
+        scheduler.advanceTimeBy(WINDOW);
+
+        assertTrue(firstWrite.isCompletedExceptionally());
+        assertTrue(secondWrite.isCompletedExceptionally());
+    }
+
+    @Test
+    void shouldRejectNegativeCoalescingWindow() {
+        assertThrows(IllegalArgumentException.class, () -> writer(Duration.ofMillis(-1)));
+    }
+
+    private TransactionViewUpdateWriter writer(Duration coalescingWindow) {
+        return new TransactionViewUpdateWriter(
+                mongoOperations,
+                coalescingWindow,
+                scheduler,
+                MeterProvider.noop().get("test")
+        );
+    }
+
+    private static Transaction view() {
+        return TransactionTestUtils.transactionDocument(TransactionStatusDto.ACTIVATED, CREATION_DATE);
+    }
+}
@@ -0,0 +1,165 @@
+package it.pagopa.ecommerce.commons.queues;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.exceptions.EventPayloadValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventPayloadSchemaValidatorTest {
+
+    private static final String ACTIVATED_EVENT_SCHEMA = "transaction_activated_event";
+
+    private static final String ACTIVATED_EVENT = """
+            {
+              "version": "v1",
+              "id": "eventId",
+              "transactionId": "transactionId",
+              "rptId": "77777777777111111111111111111",
+              "paymentToken": "paymentToken",
+              "transactionEventCode": "TRANSACTION_ACTIVATED_EVENT",
+              "creationDate": "2023-01-01T10:00:00.000Z",
+              "data": {
+                "description": "description",
+                "amount": 100,
+                "email": "foo@example.com",
+                "faultCode": "faultCode",
+                "faultCodeString": "faultCodeString",
+                "paymentToken": "paymentToken"
+              }
+            }
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final EventPayloadSchemaValidator validator = new EventPayloadSchemaValidator(
+            1.0,
+            MeterProvider.noop().get("test")
+    ).precompile(ACTIVATED_EVENT_SCHEMA);
+
+    private ObjectNode activatedEvent() throws Exception {
+        return (ObjectNode) objectMapper.readTree(ACTIVATED_EVENT);
+    }
+
+    @Test
+    void shouldValidateConformingPayload() throws Exception {
+        assertTrue(validator.validate(ACTIVATED_EVENT_SCHEMA, activatedEvent()));
+    }
+
+    @Test
+    void shouldRejectPayloadWithMissingRequiredField() throws Exception {
+        ObjectNode event = activatedEvent();
+        event.remove("transactionId");
+
+        EventPayloadValidationException exception = assertThrows(
+                EventPayloadValidationException.class,
+                () -> validator.validate(ACTIVATED_EVENT_SCHEMA, event)
+        );
+        assertEquals(ACTIVATED_EVENT_SCHEMA, exception.getSchemaName());
+        assertEquals(1, exception.getViolations().size());
+        assertTrue(exception.getViolations().get(0).contains("transactionId"));
+    }
+
+    @Test
+    void shouldRejectPayloadViolatingReferencedSchema() throws Exception {
+        ObjectNode event = activatedEvent();
+        event.put("version", "v2");
+
+        EventPayloadValidationException exception = assertThrows(
+                EventPayloadValidationException.class,
+                () -> validator.validate(ACTIVATED_EVENT_SCHEMA, event)
+        );
+        assertTrue(exception.getViolations().get(0).contains("version"));
+    }
+
+    @Test
+    void shouldSkipValidationWithZeroSamplingRate() throws Exception {
+        EventPayloadSchemaValidator skippingValidator = new EventPayloadSchemaValidator(
+                0,
+                MeterProvider.noop().get("test")
+        );
+        ObjectNode event = activatedEvent();
+        event.remove("data");
+
+        assertFalse(skippingValidator.validate(ACTIVATED_EVENT_SCHEMA, event));
+    }
+
+    @Test
+    void shouldValidateAndBindPayloadParsedOnce() throws Exception {
+        Map<String, Object> event = validator.read(
+                ACTIVATED_EVENT.getBytes(StandardCharsets.UTF_8),
+                ACTIVATED_EVENT_SCHEMA,
+                objectMapper,
+                Map.class
+        );
+
+        assertEquals("transactionId", event.get("transactionId"));
+    }
+
+    @Test
+    void shouldValidateEventWrappedIntoQueueEvent() throws Exception {
+        String queueEvent = """
+                {"event": %s, "tracingInfo": null}
+                """.formatted(ACTIVATED_EVENT);
+
+        JsonNode event = validator.read(
+                queueEvent.getBytes(StandardCharsets.UTF_8),
+                ACTIVATED_EVENT_SCHEMA,
+                EventPayloadSchemaValidator.QUEUE_EVENT_POINTER,
+                objectMapper,
+                new TypeReference<JsonNode>() {
+                }
+        );
+
+        assertEquals("eventId", event.at("/event/id").asText());
+    }
+
+    @Test
+    void shouldRejectQueueEventWithoutEvent() {
+        byte[] queueEvent = "{\"tracingInfo\": null}".getBytes(StandardCharsets.UTF_8);
+        TypeReference<JsonNode> type = new TypeReference<>() {
+        };
+
+        assertThrows(
+                EventPayloadValidationException.class,
+                () -> validator.read(
+                        queueEvent,
+                        ACTIVATED_EVENT_SCHEMA,
+                        EventPayloadSchemaValidator.QUEUE_EVENT_POINTER,
+                        objectMapper,
+                        type
+                )
+        );
+    }
+
+    @Test
+    void shouldShareCompiledSchemaAcrossThreads() throws Exception {
+        JsonNode event = activatedEvent();
+
+        assertTrue(
+                IntStream.range(0, 1000)
+                        .parallel()
+                        .allMatch(i -> validator.validate(ACTIVATED_EVENT_SCHEMA, event))
+        );
+    }
+
+    @Test
+    void shouldThrowForInvalidSamplingRate() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new EventPayloadSchemaValidator(1.5, MeterProvider.noop().get("test"))
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new EventPayloadSchemaValidator(Double.NaN, MeterProvider.noop().get("test"))
+        );
+    }
+}
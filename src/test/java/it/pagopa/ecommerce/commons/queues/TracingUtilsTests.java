@@ -2,8 +2,14 @@ package it.pagopa.ecommerce.commons.queues;
 
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.baggage.Baggage;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
 import io.opentelemetry.context.propagation.ContextPropagators;
 import io.opentelemetry.context.propagation.TextMapPropagator;
 import io.opentelemetry.context.propagation.TextMapSetter;
@@ -14,10 +20,12 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.HashMap;
+import java.util.Optional;
 import java.util.function.Function;
 
 import static it.pagopa.ecommerce.commons.queues.TracingInfoTest.MOCK_TRACING_INFO;
 import static it.pagopa.ecommerce.commons.queues.TracingUtils.TRACEPARENT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 
 public class TracingUtilsTests {
@@ -28,6 +36,15 @@ public class TracingUtilsTests {
 
     private final TracingUtils tracingUtils = new TracingUtils(openTelemetry, tracer);
 
+    private final TracingUtils w3cCodecTracingUtils = new TracingUtils(openTelemetry, tracer, true);
+
+    private static final SpanContext SPAN_CONTEXT = SpanContext.create(
+            "0af7651916cd43dd8448eb211c80319c",
+            "b7ad6b7169203331",
+            TraceFlags.getSampled(),
+            TraceState.builder().put("vendor", "value").build()
+    );
+
     @BeforeEach
     void setUpOpenTelemetryMocks() {
         TextMapPropagator textMapPropagator = Mockito.spy(W3CTraceContextPropagator.getInstance());
@@ -119,4 +136,57 @@ public class TracingUtilsTests {
                 .expectErrorMatches(e -> e.equals(expected))
                 .verify();
     }
+
+    @Test
+    void w3cCodecInjectsSameTracingInfoAsW3CPropagator() {
+        Context context = Context.root().with(Span.wrap(SPAN_CONTEXT));
+        HashMap<String, String> expected = new HashMap<>();
+        W3CTraceContextPropagator.getInstance().inject(context, expected, HashMap::put);
+
+        TracingInfo tracingInfo = w3cCodecTracingUtils.injectTracingInfo(context);
+
+        assertEquals(
+                new TracingInfo(
+                        expected.get(TRACEPARENT),
+                        Optional.of(expected.get(TracingUtils.TRACESTATE)),
+                        Optional.empty()
+                ),
+                tracingInfo
+        );
+        Mockito.verify(openTelemetry, Mockito.never()).getPropagators();
+    }
+
+    @Test
+    void w3cCodecExtractsRemoteSpanContext() {
+        TracingInfo tracingInfo = new TracingInfo(
+                "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01",
+                Optional.of("vendor=value"),
+                Optional.empty()
+        );
+
+        Context context = w3cCodecTracingUtils.extractRemoteContext(tracingInfo);
+
+        assertEquals(
+                SpanContext.createFromRemoteParent(
+                        SPAN_CONTEXT.getTraceId(),
+                        SPAN_CONTEXT.getSpanId(),
+                        SPAN_CONTEXT.getTraceFlags(),
+                        SPAN_CONTEXT.getTraceState()
+                ),
+                Span.fromContext(context).getSpanContext()
+        );
+        Mockito.verify(openTelemetry, Mockito.never()).getPropagators();
+    }
+
+    @Test
+    void w3cCodecUsesPropagatorsForNonEmptyBaggage() {
+        Context context = Context.root().with(Span.wrap(SPAN_CONTEXT))
+                .with(Baggage.builder().put("key", "value").build());
+
+        TracingInfo tracingInfo = w3cCodecTracingUtils.injectTracingInfo(context);
+
+        assertEquals("mock_traceparent", tracingInfo.getTraceparent());
+        w3cCodecTracingUtils.extractRemoteContext(MOCK_TRACING_INFO);
+        Mockito.verify(openTelemetry, Mockito.times(2)).getPropagators();
+    }
 }
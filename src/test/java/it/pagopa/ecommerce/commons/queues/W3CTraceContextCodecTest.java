@@ -0,0 +1,150 @@
+package it.pagopa.ecommerce.commons.queues;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class W3CTraceContextCodecTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    private static final String SPAN_ID = "b7ad6b7169203331";
+
+    private static final String TRACEPARENT = "00-" + TRACE_ID + "-" + SPAN_ID + "-01";
+
+    private static final TextMapGetter<Map<String, String>> MAP_GETTER = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(Map<String, String> carrier) {
+            return carrier.keySet();
+        }
+
+        @Nullable
+        @Override
+        public String get(
+                          @Nullable Map<String, String> carrier,
+                          String key
+        ) {
+            return carrier == null ? null : carrier.get(key);
+        }
+    };
+
+    private static Stream<Arguments> spanContexts() {
+        return Stream.of(
+                Arguments.of(SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getSampled(), TraceState.getDefault())),
+                Arguments.of(SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getDefault(), TraceState.getDefault())),
+                Arguments.of(
+                        SpanContext.create(
+                                TRACE_ID,
+                                SPAN_ID,
+                                TraceFlags.getSampled(),
+                                TraceState.builder().put("vendor1", "value1").put("vendor2@tenant", "value2").build()
+                        )
+                ),
+                Arguments.of(SpanContext.getInvalid())
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("spanContexts")
+    void shouldEncodeSameHeadersAsW3CPropagator(SpanContext spanContext) {
+        Map<String, String> expected = new HashMap<>();
+        W3CTraceContextPropagator.getInstance()
+                .inject(Context.root().with(Span.wrap(spanContext)), expected, Map::put);
+
+        assertEquals(expected.get(TracingUtils.TRACEPARENT), W3CTraceContextCodec.encodeTraceparent(spanContext));
+        assertEquals(expected.get(TracingUtils.TRACESTATE), W3CTraceContextCodec.encodeTracestate(spanContext));
+    }
+
+    private static Stream<Arguments> headers() {
+        String tooManyMembers = IntStream.range(0, 33).mapToObj("k%s=v"::formatted)
+                .collect(Collectors.joining(","));
+        return Stream.of(
+                Arguments.of(TRACEPARENT, null),
+                Arguments.of("00-" + TRACE_ID + "-" + SPAN_ID + "-00", null),
+                Arguments.of(TRACEPARENT, ""),
+                Arguments.of(TRACEPARENT, "vendor1=value1,vendor2@tenant=value2"),
+                Arguments.of(TRACEPARENT, "vendor1=value1 \t, vendor2=value2"),
+                Arguments.of(TRACEPARENT, "vendor1=value1,invalid"),
+                Arguments.of(TRACEPARENT, "vendor1=value1,INVALID=value2"),
+                Arguments.of(TRACEPARENT, tooManyMembers),
+                Arguments.of("01-" + TRACE_ID + "-" + SPAN_ID + "-01-future", null),
+                Arguments.of("00-" + TRACE_ID + "-" + SPAN_ID + "-01-future", null),
+                Arguments.of("ff-" + TRACE_ID + "-" + SPAN_ID + "-01", null),
+                Arguments.of("0g-" + TRACE_ID + "-" + SPAN_ID + "-01", null),
+                Arguments.of("00-" + TRACE_ID.toUpperCase() + "-" + SPAN_ID + "-01", null),
+                Arguments.of("00-" + TRACE_ID + "-" + SPAN_ID + "-0A", null),
+                Arguments.of("00-00000000000000000000000000000000-" + SPAN_ID + "-01", null),
+                Arguments.of("00-" + TRACE_ID + "-0000000000000000-01", null),
+                Arguments.of("00_" + TRACE_ID + "_" + SPAN_ID + "_01", null),
+                Arguments.of(TRACEPARENT.substring(1), null),
+                Arguments.of("", null),
+                Arguments.of(null, "vendor1=value1")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("headers")
+    void shouldDecodeSameSpanContextAsW3CPropagator(
+                                                    @Nullable String traceparent,
+                                                    @Nullable String tracestate
+    ) {
+        Map<String, String> carrier = new HashMap<>();
+        if (traceparent != null) {
+            carrier.put(TracingUtils.TRACEPARENT, traceparent);
+        }
+        if (tracestate != null) {
+            carrier.put(TracingUtils.TRACESTATE, tracestate);
+        }
+        SpanContext expected = Span
+                .fromContext(W3CTraceContextPropagator.getInstance().extract(Context.root(), carrier, MAP_GETTER))
+                .getSpanContext();
+
+        SpanContext decoded = W3CTraceContextCodec.decode(traceparent, tracestate);
+
+        assertEquals(expected, decoded);
+        assertEquals(expected.getTraceState().asMap(), decoded.getTraceState().asMap());
+        assertEquals(expected.isRemote(), decoded.isRemote());
+    }
+
+    @Test
+    void shouldRoundTripSpanContext() {
+        SpanContext spanContext = SpanContext.create(
+                TRACE_ID,
+                SPAN_ID,
+                TraceFlags.getSampled(),
+                TraceState.builder().put("vendor1", "value1").put("vendor2", "value2").build()
+        );
+
+        SpanContext decoded = W3CTraceContextCodec.decode(
+                W3CTraceContextCodec.encodeTraceparent(spanContext),
+                W3CTraceContextCodec.encodeTracestate(spanContext)
+        );
+
+        assertEquals(
+                SpanContext.createFromRemoteParent(
+                        TRACE_ID,
+                        SPAN_ID,
+                        TraceFlags.getSampled(),
+                        spanContext.getTraceState()
+                ),
+                decoded
+        );
+    }
+}
@@ -0,0 +1,228 @@
+package it.pagopa.ecommerce.commons.queues.deadletter;
+
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.documents.DeadLetterEvent;
+import it.pagopa.ecommerce.commons.domain.v2.EmptyTransaction;
+import it.pagopa.ecommerce.commons.domain.v2.Transaction;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DeadLetterBatchWriterTest {
+
+    private static final Duration MAX_BATCH_DELAY = Duration.ofMillis(500);
+
+    private final ReactiveMongoOperations mongoOperations = Mockito.mock(ReactiveMongoOperations.class);
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private final DeadLetterBatchWriter writer = writer(2, 10).start();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldInsertBatchesBySizeAndDelay() {
+        ArgumentCaptor<Collection<DeadLetterEvent>> batchCaptor = ArgumentCaptor.forClass(Collection.class);
+        when(mongoOperations.insert(batchCaptor.capture(), eq(DeadLetterEvent.class)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+
+        CompletableFuture<Void> first = writer.write(deadLetterEvent("1")).toFuture();
+        CompletableFuture<Void> second = writer.write(deadLetterEvent("2")).toFuture();
+        CompletableFuture<Void> third = writer.write(deadLetterEvent("3")).toFuture();
+
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        scheduler.advanceTimeBy(MAX_BATCH_DELAY);
+        assertTrue(third.isDone());
+        List<Collection<DeadLetterEvent>> batches = batchCaptor.getAllValues();
+        assertEquals(
+                List.of(List.of("1", "2"), List.of("3")),
+                batches.stream().map(batch -> batch.stream().map(DeadLetterEvent::getId).toList()).toList()
+        );
+    }
+
+    @Test
+    void shouldFailAllWritesOfFailedBatch() {
+        when(mongoOperations.insert(anyCollection(), eq(DeadLetterEvent.class)))
+                .thenReturn(Flux.error(new RuntimeException("insert error")))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+
+        CompletableFuture<Void> first = writer.write(deadLetterEvent("1")).toFuture();
+        CompletableFuture<Void> second = writer.write(deadLetterEvent("2")).toFuture();
+        CompletableFuture<Void> third = writer.write(deadLetterEvent("3")).toFuture();
+        scheduler.advanceTimeBy(MAX_BATCH_DELAY);
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        // the writer keeps accepting events after a failed batch
+        assertTrue(third.isDone());
+        assertFalse(third.isCompletedExceptionally());
+    }
+
+    @Test
+    void shouldInsertBufferedEventsOnShutdownAndRejectNewWrites() {
+        when(mongoOperations.insert(anyCollection(), eq(DeadLetterEvent.class)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+
+        CompletableFuture<Void> write = writer.write(deadLetterEvent("1")).toFuture();
+        StepVerifier.create(writer.shutdown()).verifyComplete();
+
+        assertTrue(write.isDone());
+        StepVerifier.create(writer.write(deadLetterEvent("2")))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    void shouldBufferEventsUntilStarted() {
+        when(mongoOperations.insert(anyCollection(), eq(DeadLetterEvent.class)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+        DeadLetterBatchWriter notStarted = writer(2, 10);
+
+        CompletableFuture<Void> first = notStarted.write(deadLetterEvent("1")).toFuture();
+        CompletableFuture<Void> second = notStarted.write(deadLetterEvent("2")).toFuture();
+
+        assertFalse(first.isDone());
+        verify(mongoOperations, never()).insert(anyCollection(), eq(DeadLetterEvent.class));
+        notStarted.start();
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertThrows(IllegalStateException.class, notStarted::start);
+    }
+
+    @Test
+    void shouldRejectWritesExceedingMaxPendingEvents() {
+        when(mongoOperations.insert(anyCollection(), eq(DeadLetterEvent.class))).thenReturn(Flux.never());
+        DeadLetterBatchWriter boundedWriter = writer(1, 2).start();
+
+        List<CompletableFuture<Void>> writes = IntStream.range(0, 10)
+                .mapToObj(i -> boundedWriter.write(deadLetterEvent(String.valueOf(i))).toFuture())
+                .toList();
+
+        // besides the pending events, only the batch being inserted and a few events
+        // prefetched by the batching operators are accepted, the following writes
+        // are rejected right away
+        List<Boolean> rejected = writes.stream().map(CompletableFuture::isCompletedExceptionally).toList();
+        int firstRejected = rejected.indexOf(true);
+        assertTrue(firstRejected >= 2 && firstRejected <= 6, "first rejected write: " + firstRejected);
+        assertFalse(rejected.subList(0, firstRejected).contains(true));
+        assertFalse(rejected.subList(firstRejected, rejected.size()).contains(false));
+        CompletionException error = assertThrows(CompletionException.class, writes.get(9)::join);
+        assertTrue(Exceptions.isOverflow(error.getCause()));
+    }
+
+    @Test
+    void shouldInsertBufferedEventsInBackgroundWhenDisposed() {
+        when(mongoOperations.insert(anyCollection(), eq(DeadLetterEvent.class)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+
+        CompletableFuture<Void> write = writer.write(deadLetterEvent("1")).toFuture();
+        assertFalse(writer.isDisposed());
+        writer.dispose();
+
+        assertTrue(writer.isDisposed());
+        assertTrue(write.isDone());
+        StepVerifier.create(writer.write(deadLetterEvent("2")))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    void shouldWriteEventWithTransactionInfoDerivedFromAggregate() {
+        when(mongoOperations.insert(anyCollection(), eq(DeadLetterEvent.class)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+        Transaction aggregate = new EmptyTransaction().applyEvent(TransactionTestUtils.transactionActivateEvent());
+
+        CompletableFuture<DeadLetterEvent> withAggregate = writer.write("queue", "data", aggregate).toFuture();
+        CompletableFuture<DeadLetterEvent> withoutAggregate = writer.write("queue", "data", null).toFuture();
+
+        DeadLetterEvent event = withAggregate.join();
+        assertEquals("queue", event.getQueueName());
+        assertEquals("data", event.getData());
+        assertNotNull(event.getId());
+        assertEquals(30, event.getInsertionDate().length());
+        assertTrue(event.getInsertionDate().endsWith("Z"));
+        assertEquals(TransactionTestUtils.TRANSACTION_ID, event.getTransactionInfo().getTransactionId());
+        assertNull(withoutAggregate.join().getTransactionInfo());
+    }
+
+    @Test
+    void shouldFormatInsertionDatesInChronologicalStringOrder() {
+        // instants with mixed fraction lengths, in chronological order
+        List<Instant> instants = List.of(
+                Instant.parse("2024-08-27T10:07:20Z"),
+                Instant.parse("2024-08-27T10:07:20.000000001Z"),
+                Instant.parse("2024-08-27T10:07:20.1Z"),
+                Instant.parse("2024-08-27T10:07:20.123Z"),
+                Instant.parse("2024-08-27T10:07:20.123456Z"),
+                Instant.parse("2024-08-27T10:07:20.123456789Z"),
+                Instant.parse("2024-08-27T10:07:20.5Z"),
+                Instant.parse("2024-08-27T10:07:21Z"),
+                OffsetDateTime.parse("2024-08-27T12:07:21.5+02:00").toInstant()
+        );
+
+        List<String> insertionDates = instants.stream().map(DeadLetterBatchWriter::formatInsertionDate).toList();
+
+        assertEquals(insertionDates.stream().sorted().toList(), insertionDates);
+        assertEquals("2024-08-27T10:07:20.000000000Z", insertionDates.get(0));
+        assertEquals("2024-08-27T10:07:21.500000000Z", insertionDates.get(insertionDates.size() - 1));
+        for (int i = 0; i < instants.size(); i++) {
+            assertEquals(30, insertionDates.get(i).length());
+            assertEquals(instants.get(i), Instant.parse(insertionDates.get(i)));
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> writer(0, 10));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new DeadLetterBatchWriter(
+                        mongoOperations,
+                        1,
+                        Duration.ZERO,
+                        10,
+                        scheduler,
+                        MeterProvider.noop().get("test")
+                )
+        );
+        assertThrows(IllegalArgumentException.class, () -> writer(1, 0));
+    }
+
+    private DeadLetterBatchWriter writer(
+                                         int maxBatchSize,
+                                         int maxPendingEvents
+    ) {
+        return new DeadLetterBatchWriter(
+                mongoOperations,
+                maxBatchSize,
+                MAX_BATCH_DELAY,
+                maxPendingEvents,
+                scheduler,
+                MeterProvider.noop().get("test")
+        );
+    }
+
+    private static DeadLetterEvent deadLetterEvent(String id) {
+        return new DeadLetterEvent(id, "queue", "2024-08-27T10:07:20.768428223Z", "data", null);
+    }
+}
@@ -0,0 +1,336 @@
+package it.pagopa.ecommerce.commons.queues.deadletter;
+
+import com.azure.core.http.rest.Response;
+import com.azure.core.util.serializer.JsonSerializer;
+import com.azure.storage.queue.models.SendMessageResult;
+import com.mongodb.client.result.UpdateResult;
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.client.QueueAsyncClient;
+import it.pagopa.ecommerce.commons.documents.DeadLetterEvent;
+import it.pagopa.ecommerce.commons.documents.DeadLetterReprocessingCheckpoint;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionActivatedEvent;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.queues.QueueEvent;
+import it.pagopa.ecommerce.commons.queues.StrictJsonSerializerProvider;
+import it.pagopa.ecommerce.commons.queues.TracingInfoTest;
+import it.pagopa.ecommerce.commons.queues.mixin.deserialization.v2.TransactionEventMixInClassFieldDiscriminator;
+import it.pagopa.ecommerce.commons.queues.mixin.serialization.v2.QueueEventMixInClassFieldDiscriminator;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DeadLetterReprocessorTest {
+
+    private static final String JOB_ID = "jobId";
+
+    private static final String QUEUE_NAME = "queue";
+
+    private static final Instant FROM = Instant.parse("2024-08-27T00:00:00Z");
+
+    private static final Instant TO = Instant.parse("2024-08-28T00:00:00Z");
+
+    private final ReactiveMongoOperations mongoOperations = Mockito.mock(ReactiveMongoOperations.class);
+
+    private final QueueAsyncClient queueAsyncClient = Mockito.mock(QueueAsyncClient.class);
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private final JsonSerializer jsonSerializer = new StrictJsonSerializerProvider()
+            .addMixIn(QueueEvent.class, QueueEventMixInClassFieldDiscriminator.class)
+            .addMixIn(TransactionEvent.class, TransactionEventMixInClassFieldDiscriminator.class)
+            .createInstance();
+
+    private final DeadLetterReprocessor<TransactionEvent<?>> reprocessor = DeadLetterReprocessor.v2(
+            mongoOperations,
+            jsonSerializer,
+            new DeadLetterReprocessingConfiguration(10, 2, 2, 100, Duration.ofDays(1)),
+            scheduler,
+            MeterProvider.noop().get("test")
+    );
+
+    private final List<Long> savedProgress = new ArrayList<>();
+
+    DeadLetterReprocessorTest() {
+        when(queueAsyncClient.getQueueName()).thenReturn(QUEUE_NAME);
+        when(mongoOperations.save(any(DeadLetterReprocessingCheckpoint.class))).thenAnswer(invocation -> {
+            DeadLetterReprocessingCheckpoint checkpoint = invocation.getArgument(0);
+            savedProgress.add(checkpoint.getReprocessedEvents() + checkpoint.getSkippedEvents());
+            return Mono.just(checkpoint);
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReenqueueDeadLetterEventsAndSkipInvalidOnes() {
+        when(mongoOperations.findById(JOB_ID, DeadLetterReprocessingCheckpoint.class)).thenReturn(Mono.empty());
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoOperations.find(queryCaptor.capture(), eq(DeadLetterEvent.class))).thenReturn(
+                Flux.just(
+                        deadLetterEvent("1", validData()),
+                        deadLetterEvent("2", "not a queue event"),
+                        deadLetterEvent("3", validData())
+                )
+        );
+        ArgumentCaptor<QueueEvent<TransactionEvent<?>>> queueEventCaptor = ArgumentCaptor.forClass(QueueEvent.class);
+        when(queueAsyncClient.sendMessageWithResponse(queueEventCaptor.capture(), any(), any()))
+                .thenReturn(Mono.just(Mockito.mock(Response.class)));
+
+        CompletableFuture<DeadLetterReprocessingCheckpoint> result = reprocessor
+                .reprocess(JOB_ID, queueAsyncClient, FROM, TO)
+                .toFuture();
+        // events are re-enqueued at the configured rate
+        scheduler.advanceTimeBy(Duration.ofMillis(200));
+        assertFalse(result.isDone());
+        scheduler.advanceTimeBy(Duration.ofMillis(100));
+
+        DeadLetterReprocessingCheckpoint checkpoint = result.join();
+        assertTrue(checkpoint.isCompleted());
+        assertEquals(2, checkpoint.getReprocessedEvents());
+        assertEquals(1, checkpoint.getSkippedEvents());
+        assertEquals("3", checkpoint.getLastEventId());
+        assertEquals(List.of(2L, 3L), savedProgress);
+        assertEquals(2, queueEventCaptor.getAllValues().size());
+        assertInstanceOf(TransactionActivatedEvent.class, queueEventCaptor.getValue().event());
+        verify(queueAsyncClient, times(2)).sendMessageWithResponse(any(), eq(Duration.ZERO), eq(Duration.ofDays(1)));
+        Query query = queryCaptor.getValue();
+        assertEquals(
+                new Document("queueName", QUEUE_NAME)
+                        .append(
+                                "insertionDate",
+                                new Document("$gte", "2024-08-27T00:00:00.000000000Z")
+                                        .append("$lt", "2024-08-28T00:00:00.000000000Z")
+                        ),
+                query.getQueryObject()
+        );
+        assertEquals(new Document("insertionDate", 1).append("_id", 1), query.getSortObject());
+    }
+
+    @Test
+    void shouldQueryRangeWithFixedWidthBoundsForMixedFractionLengths() {
+        when(mongoOperations.findById(JOB_ID, DeadLetterReprocessingCheckpoint.class)).thenReturn(Mono.empty());
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoOperations.find(queryCaptor.capture(), eq(DeadLetterEvent.class))).thenReturn(Flux.empty());
+
+        StepVerifier.create(
+                reprocessor.reprocess(
+                        JOB_ID,
+                        queueAsyncClient,
+                        Instant.parse("2024-08-27T10:00:00.5Z"),
+                        Instant.parse("2024-08-27T10:00:00.123456Z").plusSeconds(1)
+                )
+        )
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // with Instant#toString the lower bound "...00.5Z" would be greater than an
+        // event inserted at "...00.500000001Z", and the upper bound "...01.123456Z"
+        // greater than an event inserted at "...01.123456789Z"
+        assertEquals(
+                new Document("$gte", "2024-08-27T10:00:00.500000000Z").append("$lt", "2024-08-27T10:00:01.123456000Z"),
+                queryCaptor.getValue().getQueryObject().get("insertionDate")
+        );
+    }
+
+    @Test
+    void shouldResumeJobAfterLastSavedEvent() {
+        DeadLetterReprocessingCheckpoint savedCheckpoint = checkpoint();
+        savedCheckpoint.setLastInsertionDate("2024-08-27T10:00:00Z");
+        savedCheckpoint.setLastEventId("1");
+        savedCheckpoint.setReprocessedEvents(1);
+        when(mongoOperations.findById(JOB_ID, DeadLetterReprocessingCheckpoint.class))
+                .thenReturn(Mono.just(savedCheckpoint));
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoOperations.find(queryCaptor.capture(), eq(DeadLetterEvent.class)))
+                .thenReturn(Flux.just(deadLetterEvent("2", validData())));
+        when(queueAsyncClient.sendMessageWithResponse(any(), any(), any()))
+                .thenReturn(Mono.just(Mockito.mock(Response.class)));
+
+        CompletableFuture<DeadLetterReprocessingCheckpoint> result = reprocessor
+                .reprocess(JOB_ID, queueAsyncClient, FROM, TO)
+                .toFuture();
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        DeadLetterReprocessingCheckpoint checkpoint = result.join();
+        assertTrue(checkpoint.isCompleted());
+        assertEquals(2, checkpoint.getReprocessedEvents());
+        assertEquals(
+                new Document("queueName", QUEUE_NAME).append(
+                        "$or",
+                        List.of(
+                                new Document(
+                                        "insertionDate",
+                                        new Document("$gt", "2024-08-27T10:00:00Z")
+                                                // range bounds of checkpoints saved with Instant#toString
+                                                // are converted to the fixed width format
+                                                .append("$lt", "2024-08-28T00:00:00.000000000Z")
+                                ),
+                                new Document("insertionDate", "2024-08-27T10:00:00Z")
+                                        .append("_id", new Document("$gt", "1"))
+                        )
+                ),
+                queryCaptor.getValue().getQueryObject()
+        );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSaveProgressAndStopOnSendError() {
+        when(mongoOperations.findById(JOB_ID, DeadLetterReprocessingCheckpoint.class)).thenReturn(Mono.empty());
+        when(mongoOperations.find(any(Query.class), eq(DeadLetterEvent.class))).thenReturn(
+                Flux.just(
+                        deadLetterEvent("1", validData()),
+                        deadLetterEvent("2", validData()),
+                        deadLetterEvent("3", validData())
+                )
+        );
+        Response<SendMessageResult> response = Mockito.mock(Response.class);
+        when(queueAsyncClient.sendMessageWithResponse(any(), any(), any()))
+                .thenReturn(Mono.just(response))
+                .thenReturn(Mono.error(new RuntimeException("queue unavailable")));
+
+        CompletableFuture<DeadLetterReprocessingCheckpoint> result = reprocessor
+                .reprocess(JOB_ID, queueAsyncClient, FROM, TO)
+                .toFuture();
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertEquals("queue unavailable", error.getCause().getMessage());
+        assertEquals(List.of(1L), savedProgress);
+    }
+
+    @Test
+    void shouldRejectExistingJobWithDifferentRange() {
+        when(mongoOperations.findById(JOB_ID, DeadLetterReprocessingCheckpoint.class))
+                .thenReturn(Mono.just(checkpoint()));
+
+        CompletableFuture<DeadLetterReprocessingCheckpoint> result = reprocessor
+                .reprocess(JOB_ID, queueAsyncClient, FROM, TO.plusSeconds(1))
+                .toFuture();
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        verify(mongoOperations, never()).find(any(Query.class), eq(DeadLetterEvent.class));
+    }
+
+    @Test
+    void shouldNotRunCompletedJob() {
+        DeadLetterReprocessingCheckpoint completedCheckpoint = checkpoint();
+        completedCheckpoint.setCompleted(true);
+        when(mongoOperations.findById(JOB_ID, DeadLetterReprocessingCheckpoint.class))
+                .thenReturn(Mono.just(completedCheckpoint));
+
+        assertEquals(completedCheckpoint, reprocessor.reprocess(JOB_ID, queueAsyncClient, FROM, TO).block());
+        verify(mongoOperations, never()).find(any(Query.class), eq(DeadLetterEvent.class));
+    }
+
+    @Test
+    void shouldNormalizeLegacyInsertionDates() {
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoOperations.find(queryCaptor.capture(), eq(DeadLetterEvent.class))).thenReturn(
+                Flux.just(
+                        new DeadLetterEvent(
+                                "1",
+                                QUEUE_NAME,
+                                "2024-08-27T12:07:20.768+02:00[Europe/Rome]",
+                                "data",
+                                null
+                        ),
+                        new DeadLetterEvent("2", QUEUE_NAME, "2024-08-27T10:07:20Z", "data", null),
+                        new DeadLetterEvent("3", QUEUE_NAME, "not a date", "data", null)
+                )
+        );
+        ArgumentCaptor<Query> updateQueryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updateCaptor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        when(
+                mongoOperations
+                        .updateFirst(updateQueryCaptor.capture(), updateCaptor.capture(), eq(DeadLetterEvent.class))
+        )
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(reprocessor.normalizeInsertionDates(QUEUE_NAME))
+                .expectNext(2L)
+                .verifyComplete();
+
+        Document legacyEventsQuery = queryCaptor.getValue().getQueryObject();
+        assertEquals(QUEUE_NAME, legacyEventsQuery.get("queueName"));
+        Pattern fixedWidthFormat = (Pattern) ((Document) legacyEventsQuery.get("insertionDate")).get("$not");
+        assertTrue(fixedWidthFormat.matcher(DeadLetterBatchWriter.formatInsertionDate(FROM)).matches());
+        assertFalse(fixedWidthFormat.matcher(FROM.toString()).matches());
+        assertEquals(
+                List.of(
+                        new Document("_id", "1").append("insertionDate", "2024-08-27T12:07:20.768+02:00[Europe/Rome]"),
+                        new Document("_id", "2").append("insertionDate", "2024-08-27T10:07:20Z")
+                ),
+                updateQueryCaptor.getAllValues().stream().map(Query::getQueryObject).toList()
+        );
+        assertEquals(
+                List.of("2024-08-27T10:07:20.768000000Z", "2024-08-27T10:07:20.000000000Z"),
+                updateCaptor.getAllValues().stream()
+                        .map(update -> ((Document) update.getUpdateObject().get("$set")).get("insertionDate"))
+                        .toList()
+        );
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new DeadLetterReprocessingConfiguration(0, 1, 1, 1, Duration.ofDays(1))
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new DeadLetterReprocessingConfiguration(1, 1, 1, 1, Duration.ZERO)
+        );
+    }
+
+    private String validData() {
+        QueueEvent<TransactionActivatedEvent> queueEvent = new QueueEvent<>(
+                TransactionTestUtils.transactionActivateEvent(),
+                TracingInfoTest.MOCK_TRACING_INFO
+        );
+        return new String(jsonSerializer.serializeToBytes(queueEvent), StandardCharsets.UTF_8);
+    }
+
+    private static DeadLetterEvent deadLetterEvent(
+                                                   String id,
+                                                   String data
+    ) {
+        return new DeadLetterEvent(id, QUEUE_NAME, "2024-08-27T10:00:0%sZ".formatted(id), data, null);
+    }
+
+    private static DeadLetterReprocessingCheckpoint checkpoint() {
+        return new DeadLetterReprocessingCheckpoint(
+                JOB_ID,
+                QUEUE_NAME,
+                FROM.toString(),
+                TO.toString(),
+                null,
+                null,
+                0,
+                0,
+                false
+        );
+    }
+}
@@ -0,0 +1,157 @@
+package it.pagopa.ecommerce.commons.redis.converters;
+
+import it.pagopa.ecommerce.commons.domain.v2.IdempotencyKey;
+import it.pagopa.ecommerce.commons.domain.v2.PaymentTransferInfo;
+import it.pagopa.ecommerce.commons.domain.v2.RptId;
+import it.pagopa.ecommerce.commons.repositories.v2.PaymentRequestInfo;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry.MapperConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRedisSerializerTest {
+
+    private final ObjectMapperRegistry objectMapperRegistry = ObjectMapperRegistry.getInstance();
+
+    private final PaymentRequestInfo paymentRequestInfo = new PaymentRequestInfo(
+            new RptId("77777777777302016432223611415"),
+            "77777777777",
+            "companyName",
+            "Pagamento di Test",
+            12000L,
+            "2021-07-31",
+            "1fb8539bdbc94123849a21be8eead8dd",
+            "2021-07-31",
+            new IdempotencyKey("32009090901", "aabbccddee"),
+            List.of(
+                    new PaymentTransferInfo("77777777777", false, 10000L, "category1"),
+                    new PaymentTransferInfo("77777777778", true, 2000L, null)
+            ),
+            true,
+            "302016432223611415"
+    );
+
+    private CompactRedisSerializer<PaymentRequestInfo> serializer(RedisValueEncoding valueEncoding) {
+        return new CompactRedisSerializer<>(
+                objectMapperRegistry.getObjectMapper(MapperConfiguration.REDIS_V2_COMPACT),
+                objectMapperRegistry.getObjectMapper(MapperConfiguration.REDIS_V2),
+                PaymentRequestInfo.class,
+                valueEncoding
+        );
+    }
+
+    @ParameterizedTest
+    @EnumSource(RedisValueEncoding.class)
+    void shouldRoundTripValue(RedisValueEncoding valueEncoding) {
+        CompactRedisSerializer<PaymentRequestInfo> serializer = serializer(valueEncoding);
+        assertEquals(paymentRequestInfo, serializer.deserialize(serializer.serialize(paymentRequestInfo)));
+    }
+
+    @Test
+    void shouldWriteCompactHeader() {
+        CompactRedisSerializer<PaymentRequestInfo> serializer = serializer(RedisValueEncoding.COMPACT);
+        byte[] serialized = serializer.serialize(paymentRequestInfo);
+        assertEquals(CompactRedisSerializer.MAGIC, serialized[0]);
+        assertEquals(CompactRedisSerializer.FORMAT_VERSION, serialized[1]);
+        assertEquals(
+                CompactRedisSerializer.schemaFingerprint(PaymentRequestInfo.class),
+                serializer.getSchemaFingerprint()
+        );
+    }
+
+    @Test
+    void shouldWriteJsonCompatibleWithJackson2JsonRedisSerializer() {
+        Jackson2JsonRedisSerializer<PaymentRequestInfo> jsonSerializer = new Jackson2JsonRedisSerializer<>(
+                objectMapperRegistry.getObjectMapper(MapperConfiguration.REDIS_V2),
+                PaymentRequestInfo.class
+        );
+        assertArrayEquals(
+                jsonSerializer.serialize(paymentRequestInfo),
+                serializer(RedisValueEncoding.JSON).serialize(paymentRequestInfo)
+        );
+    }
+
+    @Test
+    void shouldReadValuesWrittenByJackson2JsonRedisSerializer() {
+        Jackson2JsonRedisSerializer<PaymentRequestInfo> jsonSerializer = new Jackson2JsonRedisSerializer<>(
+                objectMapperRegistry.getObjectMapper(MapperConfiguration.REDIS_V2),
+                PaymentRequestInfo.class
+        );
+        assertEquals(
+                paymentRequestInfo,
+                serializer(RedisValueEncoding.COMPACT).deserialize(jsonSerializer.serialize(paymentRequestInfo))
+        );
+    }
+
+    @Test
+    void shouldProduceSmallerValuesThanJson() {
+        byte[] json = serializer(RedisValueEncoding.JSON).serialize(paymentRequestInfo);
+        byte[] compact = serializer(RedisValueEncoding.COMPACT).serialize(paymentRequestInfo);
+        assertTrue(
+                compact.length * 2 < json.length,
+                "Compact size: [%s], json size: [%s]".formatted(compact.length, json.length)
+        );
+    }
+
+    @Test
+    void shouldRejectValueWithDifferentSchemaFingerprint() {
+        CompactRedisSerializer<PaymentRequestInfo> serializer = serializer(RedisValueEncoding.COMPACT);
+        byte[] serialized = serializer.serialize(paymentRequestInfo);
+        serialized[2] = (byte) ~serialized[2];
+        SerializationException exception = assertThrows(
+                SerializationException.class,
+                () -> serializer.deserialize(serialized)
+        );
+        assertTrue(exception.getMessage().contains("Schema fingerprint mismatch"));
+    }
+
+    @Test
+    void shouldRejectUnsupportedFormatVersion() {
+        CompactRedisSerializer<PaymentRequestInfo> serializer = serializer(RedisValueEncoding.COMPACT);
+        byte[] serialized = serializer.serialize(paymentRequestInfo);
+        serialized[1] = CompactRedisSerializer.FORMAT_VERSION + 1;
+        assertThrows(SerializationException.class, () -> serializer.deserialize(serialized));
+    }
+
+    @Test
+    void shouldRejectUnknownEncoding() {
+        CompactRedisSerializer<PaymentRequestInfo> serializer = serializer(RedisValueEncoding.COMPACT);
+        byte[] serialized = serializer.serialize(paymentRequestInfo);
+        byte[] truncated = Arrays.copyOf(serialized, 3);
+        assertThrows(
+                SerializationException.class,
+                () -> serializer.deserialize(
+                        new byte[] {
+                                0x00,
+                                0x01
+                        }
+                )
+        );
+        assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+    }
+
+    @Test
+    void shouldHandleNullValues() {
+        CompactRedisSerializer<PaymentRequestInfo> serializer = serializer(RedisValueEncoding.COMPACT);
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    void shouldComputeDifferentFingerprintsForDifferentSchemas() {
+        assertNotEquals(
+                CompactRedisSerializer.schemaFingerprint(PaymentRequestInfo.class),
+                CompactRedisSerializer
+                        .schemaFingerprint(it.pagopa.ecommerce.commons.repositories.v1.PaymentRequestInfo.class)
+        );
+    }
+}
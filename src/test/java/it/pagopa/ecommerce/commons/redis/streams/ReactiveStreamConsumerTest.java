@@ -0,0 +1,669 @@
+package it.pagopa.ecommerce.commons.redis.streams;
+
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import it.pagopa.ecommerce.commons.redis.reactivetemplatewrappers.ReactiveRedisTemplateWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ObjectRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+class ReactiveStreamConsumerTest {
+
+    private static final String STREAM_KEY = "stream-key";
+
+    private static final String GROUP_NAME = "group";
+
+    private static final String CONSUMER_NAME = "consumer-1";
+
+    record TestEvent(
+            String key,
+            int sequence
+    ) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private final ReactiveRedisTemplateWrapper<TestEvent> reactiveRedisTemplateWrapper = Mockito
+            .mock(ReactiveRedisTemplateWrapper.class);
+
+    @SuppressWarnings("unchecked")
+    private final ReactiveRedisTemplate<String, TestEvent> reactiveRedisTemplate = Mockito
+            .mock(ReactiveRedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final ReactiveStreamOperations<String, Object, Object> streamOperations = Mockito
+            .mock(ReactiveStreamOperations.class);
+
+    private final StreamConsumerConfiguration configuration = new StreamConsumerConfiguration(
+            STREAM_KEY,
+            GROUP_NAME,
+            CONSUMER_NAME,
+            10,
+            Duration.ofMillis(10),
+            4,
+            3,
+            Duration.ofMillis(50),
+            Duration.ofMinutes(1),
+            Duration.ofHours(1),
+            3
+    );
+
+    @BeforeEach
+    void setup() {
+        Mockito.when(reactiveRedisTemplateWrapper.unwrap()).thenReturn(reactiveRedisTemplate);
+        Mockito.when(reactiveRedisTemplate.<Object, Object>opsForStream()).thenReturn(streamOperations);
+        Mockito.when(streamOperations.pending(STREAM_KEY, GROUP_NAME)).thenReturn(
+                Mono.just(new PendingMessagesSummary(GROUP_NAME, 0, Range.unbounded(), Map.of()))
+        );
+        Mockito.when(streamOperations.pending(eq(STREAM_KEY), eq(GROUP_NAME), any(Range.class), anyLong()))
+                .thenReturn(Mono.just(new PendingMessages(GROUP_NAME, List.of())));
+        Mockito.when(
+                reactiveRedisTemplateWrapper.acknowledgeEvents(eq(STREAM_KEY), eq(GROUP_NAME), any(String[].class))
+        )
+                .thenAnswer(invocation -> Mono.just((long) (invocation.getArguments().length - 2)));
+    }
+
+    @Test
+    void shouldProcessAndAcknowledgeEventsPreservingPerKeyOrdering() {
+        List<ObjectRecord<String, TestEvent>> records = IntStream.range(0, 12)
+                .mapToObj(i -> objectRecord(i, new TestEvent("key-" + (i % 3), i)))
+                .toList();
+        stubRead(Flux.fromIterable(records));
+        Map<String, List<Integer>> processedSequences = new ConcurrentHashMap<>();
+        ReactiveStreamConsumer<TestEvent> consumer = consumer(
+                event -> Mono.delay(Duration.ofMillis((12 - event.sequence()) * 2L))
+                        .doOnNext(
+                                ignored -> processedSequences
+                                        .computeIfAbsent(
+                                                event.key(),
+                                                key -> Collections.synchronizedList(new ArrayList<>())
+                                        )
+                                        .add(event.sequence())
+                        )
+        );
+
+        StepVerifier.create(consumer.consume().take(12).collectList())
+                .assertNext(
+                        acknowledged -> assertEquals(
+                                records.stream().map(ObjectRecord::getId).collect(Collectors.toSet()),
+                                Set.copyOf(acknowledged)
+                        )
+                )
+                .verifyComplete();
+
+        assertEquals(3, processedSequences.size());
+        processedSequences.values()
+                .forEach(sequences -> assertEquals(sequences.stream().sorted().toList(), sequences));
+        Mockito.verify(reactiveRedisTemplateWrapper, Mockito.atLeast(4))
+                .acknowledgeEvents(eq(STREAM_KEY), eq(GROUP_NAME), any(String[].class));
+    }
+
+    @Test
+    void shouldLeaveFailedEventsPending() {
+        List<ObjectRecord<String, TestEvent>> records = IntStream.range(0, 3)
+                .mapToObj(i -> objectRecord(i, new TestEvent("key-" + i, i)))
+                .toList();
+        stubRead(Flux.fromIterable(records));
+        ReactiveStreamConsumer<TestEvent> consumer = consumer(
+                event -> event.sequence() == 1 ? Mono.error(new RuntimeException("processing error")) : Mono.empty()
+        );
+
+        StepVerifier.create(consumer.consume().take(2))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        ArgumentCaptor<String[]> acknowledgedIds = ArgumentCaptor.forClass(String[].class);
+        Mockito.verify(reactiveRedisTemplateWrapper, Mockito.atLeastOnce())
+                .acknowledgeEvents(eq(STREAM_KEY), eq(GROUP_NAME), acknowledgedIds.capture());
+        List<String> allAcknowledgedIds = acknowledgedIds.getAllValues().stream().flatMap(Arrays::stream).toList();
+        assertFalse(allAcknowledgedIds.contains(records.get(1).getId().getValue()));
+        assertTrue(allAcknowledgedIds.contains(records.get(0).getId().getValue()));
+        assertTrue(allAcknowledgedIds.contains(records.get(2).getId().getValue()));
+    }
+
+    @Test
+    void shouldClaimIdlePendingEvents() {
+        stubRead(Flux.never());
+        RecordId idleRecordId = RecordId.of(System.currentTimeMillis() - 600_000 + "-0");
+        RecordId recentRecordId = RecordId.of(System.currentTimeMillis() + "-0");
+        Mockito.when(streamOperations.pending(STREAM_KEY, GROUP_NAME)).thenReturn(
+                Mono.just(
+                        new PendingMessagesSummary(
+                                GROUP_NAME,
+                                2,
+                                Range.unbounded(),
+                                Map.of("dead-consumer", 1L, CONSUMER_NAME, 1L)
+                        )
+                )
+        );
+        Mockito.when(streamOperations.pending(eq(STREAM_KEY), eq(GROUP_NAME), any(Range.class), anyLong()))
+                .thenReturn(
+                        Mono.just(
+                                new PendingMessages(
+                                        GROUP_NAME,
+                                        List.of(
+                                                new PendingMessage(
+                                                        idleRecordId,
+                                                        Consumer.from(GROUP_NAME, "dead-consumer"),
+                                                        Duration.ofMinutes(5),
+                                                        1
+                                                ),
+                                                new PendingMessage(
+                                                        recentRecordId,
+                                                        Consumer.from(GROUP_NAME, CONSUMER_NAME),
+                                                        Duration.ofSeconds(1),
+                                                        1
+                                                )
+                                        )
+                                )
+                        )
+                );
+        MapRecord<String, Object, Object> claimedRecord = MapRecord
+                .<String, Object, Object>create(STREAM_KEY, Map.of("key", "claimed"))
+                .withId(idleRecordId);
+        Mockito.when(
+                streamOperations.claim(
+                        eq(STREAM_KEY),
+                        eq(GROUP_NAME),
+                        eq(CONSUMER_NAME),
+                        eq(configuration.claimMinIdleTime()),
+                        any(RecordId[].class)
+                )
+        ).thenReturn(Flux.just(claimedRecord));
+        Mockito.when(streamOperations.map(claimedRecord, TestEvent.class))
+                .thenReturn(ObjectRecord.create(STREAM_KEY, new TestEvent("claimed", 0)).withId(idleRecordId));
+        List<TestEvent> processedEvents = Collections.synchronizedList(new ArrayList<>());
+        ReactiveStreamConsumer<TestEvent> consumer = consumer(
+                event -> Mono.fromRunnable(() -> processedEvents.add(event))
+        );
+
+        StepVerifier.create(consumer.consume().take(1))
+                .expectNext(idleRecordId)
+                .verifyComplete();
+
+        assertEquals(List.of(new TestEvent("claimed", 0)), processedEvents);
+        assertEquals(2, consumer.getPendingEvents());
+        ArgumentCaptor<RecordId[]> claimedIds = ArgumentCaptor.forClass(RecordId[].class);
+        Mockito.verify(streamOperations).claim(
+                eq(STREAM_KEY),
+                eq(GROUP_NAME),
+                eq(CONSUMER_NAME),
+                eq(configuration.claimMinIdleTime()),
+                claimedIds.capture()
+        );
+        assertArrayEquals(
+                new RecordId[] {
+                        idleRecordId
+                },
+                claimedIds.getValue()
+        );
+    }
+
+    @Test
+    void shouldPageThroughAllPendingEvents() {
+        stubRead(Flux.never());
+        long now = System.currentTimeMillis();
+        List<PendingMessage> firstPage = IntStream.range(0, configuration.batchSize())
+                .mapToObj(
+                        i -> new PendingMessage(
+                                RecordId.of(now + "-" + i),
+                                Consumer.from(GROUP_NAME, CONSUMER_NAME),
+                                Duration.ofSeconds(1),
+                                1
+                        )
+                )
+                .toList();
+        RecordId idleRecordId = RecordId.of(now + "-" + configuration.batchSize());
+        Mockito.when(streamOperations.pending(eq(STREAM_KEY), eq(GROUP_NAME), any(Range.class), anyLong()))
+                .thenReturn(
+                        Mono.just(new PendingMessages(GROUP_NAME, firstPage)),
+                        Mono.just(
+                                new PendingMessages(
+                                        GROUP_NAME,
+                                        List.of(
+                                                new PendingMessage(
+                                                        idleRecordId,
+                                                        Consumer.from(GROUP_NAME, "dead-consumer"),
+                                                        Duration.ofMinutes(5),
+                                                        1
+                                                )
+                                        )
+                                )
+                        )
+                );
+        MapRecord<String, Object, Object> claimedRecord = MapRecord
+                .<String, Object, Object>create(STREAM_KEY, Map.of("key", "claimed"))
+                .withId(idleRecordId);
+        Mockito.when(
+                streamOperations.claim(
+                        eq(STREAM_KEY),
+                        eq(GROUP_NAME),
+                        eq(CONSUMER_NAME),
+                        eq(configuration.claimMinIdleTime()),
+                        any(RecordId[].class)
+                )
+        ).thenReturn(Flux.just(claimedRecord));
+        Mockito.when(streamOperations.map(claimedRecord, TestEvent.class))
+                .thenReturn(ObjectRecord.create(STREAM_KEY, new TestEvent("claimed", 0)).withId(idleRecordId));
+        ReactiveStreamConsumer<TestEvent> consumer = consumer(event -> Mono.empty());
+
+        StepVerifier.create(consumer.consume().take(1))
+                .expectNext(idleRecordId)
+                .verifyComplete();
+
+        ArgumentCaptor<Range<String>> pendingRanges = ArgumentCaptor.forClass(Range.class);
+        Mockito.verify(streamOperations, Mockito.times(2))
+                .pending(eq(STREAM_KEY), eq(GROUP_NAME), pendingRanges.capture(), eq(10L));
+        assertEquals(Range.unbounded(), pendingRanges.getAllValues().get(0));
+        assertEquals(
+                Range.rightUnbounded(Range.Bound.exclusive(firstPage.get(firstPage.size() - 1).getIdAsString())),
+                pendingRanges.getAllValues().get(1)
+        );
+        ArgumentCaptor<RecordId[]> claimedIds = ArgumentCaptor.forClass(RecordId[].class);
+        Mockito.verify(streamOperations).claim(
+                eq(STREAM_KEY),
+                eq(GROUP_NAME),
+                eq(CONSUMER_NAME),
+                eq(configuration.claimMinIdleTime()),
+                claimedIds.capture()
+        );
+        assertArrayEquals(
+                new RecordId[] {
+                        idleRecordId
+                },
+                claimedIds.getValue()
+        );
+    }
+
+    @Test
+    void shouldDeferEventsBehindFailedEventWithSameKeyUntilItIsReclaimed() {
+        StreamConsumerConfiguration shortClaimIntervalConfiguration = shortClaimIntervalConfiguration();
+        List<ObjectRecord<String, TestEvent>> records = List.of(
+                objectRecord(0, new TestEvent("key", 0)),
+                objectRecord(1, new TestEvent("key", 1)),
+                objectRecord(2, new TestEvent("key", 2)),
+                objectRecord(3, new TestEvent("other-key", 3))
+        );
+        stubRead(Flux.fromIterable(records));
+        List<ObjectRecord<String, TestEvent>> keyRecords = records.subList(0, 3);
+        Mockito.when(streamOperations.pending(eq(STREAM_KEY), eq(GROUP_NAME), any(Range.class), anyLong()))
+                .thenReturn(
+                        Mono.just(new PendingMessages(GROUP_NAME, List.of())),
+                        Mono.just(
+                                new PendingMessages(
+                                        GROUP_NAME,
+                                        keyRecords.stream()
+                                                .map(
+                                                        objectRecord -> new PendingMessage(
+                                                                objectRecord.getId(),
+                                                                Consumer.from(GROUP_NAME, CONSUMER_NAME),
+                                                                Duration.ofMinutes(5),
+                                                                1
+                                                        )
+                                                )
+                                                .toList()
+                                )
+                        ),
+                        Mono.just(new PendingMessages(GROUP_NAME, List.of()))
+                );
+        List<MapRecord<String, Object, Object>> claimedRecords = keyRecords.stream()
+                .map(
+                        objectRecord -> MapRecord
+                                .<String, Object, Object>create(
+                                        STREAM_KEY,
+                                        Map.of("sequence", objectRecord.getValue().sequence())
+                                )
+                                .withId(objectRecord.getId())
+                )
+                .toList();
+        Mockito.when(
+                streamOperations.claim(
+                        eq(STREAM_KEY),
+                        eq(GROUP_NAME),
+                        eq(CONSUMER_NAME),
+                        eq(shortClaimIntervalConfiguration.claimMinIdleTime()),
+                        any(RecordId[].class)
+                )
+        ).thenReturn(Flux.fromIterable(claimedRecords));
+        for (int i = 0; i < keyRecords.size(); i++) {
+            Mockito.when(streamOperations.map(claimedRecords.get(i), TestEvent.class)).thenReturn(keyRecords.get(i));
+        }
+        List<Integer> processedSequences = Collections.synchronizedList(new ArrayList<>());
+        ReactiveStreamConsumer<TestEvent> consumer = new ReactiveStreamConsumer<>(
+                reactiveRedisTemplateWrapper,
+                TestEvent.class,
+                shortClaimIntervalConfiguration,
+                TestEvent::key,
+                event -> {
+                    processedSequences.add(event.sequence());
+                    return event.sequence() == 0 && processedSequences.indexOf(0) == processedSequences.size() - 1
+                            ? Mono.error(new RuntimeException("processing error"))
+                            : Mono.empty();
+                },
+                MeterProvider.noop().get("test")
+        );
+
+        StepVerifier.create(consumer.consume().take(4))
+                .expectNext(records.get(3).getId())
+                .expectNext(records.get(0).getId(), records.get(1).getId(), records.get(2).getId())
+                .verifyComplete();
+
+        assertEquals(List.of(0, 3, 0, 1, 2), processedSequences);
+    }
+
+    @Test
+    void shouldProcessDeferredEventsOnceFailedEventIsAcknowledgedByAnotherConsumer() {
+        StreamConsumerConfiguration shortClaimIntervalConfiguration = shortClaimIntervalConfiguration();
+        List<ObjectRecord<String, TestEvent>> records = List.of(
+                objectRecord(0, new TestEvent("key", 0)),
+                objectRecord(1, new TestEvent("key", 1))
+        );
+        stubRead(Flux.fromIterable(records));
+        // both events are pending but not idle, then the failed one is claimed and
+        // acknowledged by another consumer and the deferred one becomes idle
+        Mockito.when(streamOperations.pending(eq(STREAM_KEY), eq(GROUP_NAME), any(Range.class), anyLong()))
+                .thenReturn(
+                        Mono.just(
+                                new PendingMessages(
+                                        GROUP_NAME,
+                                        records.stream()
+                                                .map(
+                                                        objectRecord -> new PendingMessage(
+                                                                objectRecord.getId(),
+                                                                Consumer.from(GROUP_NAME, CONSUMER_NAME),
+                                                                Duration.ofSeconds(1),
+                                                                1
+                                                        )
+                                                )
+                                                .toList()
+                                )
+                        ),
+                        Mono.just(
+                                new PendingMessages(
+                                        GROUP_NAME,
+                                        List.of(
+                                                new PendingMessage(
+                                                        records.get(1).getId(),
+                                                        Consumer.from(GROUP_NAME, CONSUMER_NAME),
+                                                        Duration.ofMinutes(5),
+                                                        1
+                                                )
+                                        )
+                                )
+                        ),
+                        Mono.just(new PendingMessages(GROUP_NAME, List.of()))
+                );
+        MapRecord<String, Object, Object> claimedRecord = mapRecord(records.get(1));
+        Mockito.when(
+                streamOperations.claim(
+                        eq(STREAM_KEY),
+                        eq(GROUP_NAME),
+                        eq(CONSUMER_NAME),
+                        eq(shortClaimIntervalConfiguration.claimMinIdleTime()),
+                        any(RecordId[].class)
+                )
+        ).thenReturn(Flux.just(claimedRecord));
+        Mockito.when(streamOperations.map(claimedRecord, TestEvent.class)).thenReturn(records.get(1));
+        List<Integer> processedSequences = Collections.synchronizedList(new ArrayList<>());
+        ReactiveStreamConsumer<TestEvent> consumer = new ReactiveStreamConsumer<>(
+                reactiveRedisTemplateWrapper,
+                TestEvent.class,
+                shortClaimIntervalConfiguration,
+                TestEvent::key,
+                event -> {
+                    processedSequences.add(event.sequence());
+                    return event.sequence() == 0 ? Mono.error(new RuntimeException("processing error")) : Mono.empty();
+                },
+                MeterProvider.noop().get("test")
+        );
+
+        StepVerifier.create(consumer.consume().take(1))
+                .expectNext(records.get(1).getId())
+                .verifyComplete();
+
+        assertEquals(List.of(0, 1), processedSequences);
+    }
+
+    @Test
+    void shouldDeadLetterEventsDeliveredMaxTimes() {
+        stubRead(Flux.never());
+        RecordId poisonRecordId = RecordId.of(System.currentTimeMillis() - 600_000 + "-0");
+        Mockito.when(streamOperations.pending(eq(STREAM_KEY), eq(GROUP_NAME), any(Range.class), anyLong()))
+                .thenReturn(
+                        Mono.just(
+                                new PendingMessages(
+                                        GROUP_NAME,
+                                        List.of(
+                                                new PendingMessage(
+                                                        poisonRecordId,
+                                                        Consumer.from(GROUP_NAME, "dead-consumer"),
+                                                        Duration.ofMinutes(5),
+                                                        configuration.maxDeliveries()
+                                                )
+                                        )
+                                )
+                        )
+                );
+        MapRecord<String, Object, Object> poisonRecord = MapRecord
+                .<String, Object, Object>create(STREAM_KEY, Map.of("key", "poison"))
+                .withId(poisonRecordId);
+        Mockito.when(
+                streamOperations.claim(
+                        eq(STREAM_KEY),
+                        eq(GROUP_NAME),
+                        eq(CONSUMER_NAME),
+                        eq(configuration.claimMinIdleTime()),
+                        any(RecordId[].class)
+                )
+        ).thenReturn(Flux.just(poisonRecord));
+        List<MapRecord<String, Object, Object>> deadLetters = Collections.synchronizedList(new ArrayList<>());
+        List<TestEvent> processedEvents = Collections.synchronizedList(new ArrayList<>());
+        ReactiveStreamConsumer<TestEvent> consumer = new ReactiveStreamConsumer<>(
+                reactiveRedisTemplateWrapper,
+                TestEvent.class,
+                configuration,
+                TestEvent::key,
+                event -> Mono.fromRunnable(() -> processedEvents.add(event)),
+                deadLetter -> Mono.fromRunnable(() -> deadLetters.add(deadLetter)),
+                MeterProvider.noop().get("test")
+        );
+
+        StepVerifier.create(consumer.consume())
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(200))
+                .thenCancel()
+                .verify();
+
+        assertEquals(List.of(poisonRecord), deadLetters);
+        assertEquals(List.of(), processedEvents);
+        Mockito.verify(reactiveRedisTemplateWrapper)
+                .acknowledgeEvents(STREAM_KEY, GROUP_NAME, poisonRecordId.getValue());
+        Mockito.verify(streamOperations, Mockito.never()).map(any(MapRecord.class), eq(TestEvent.class));
+    }
+
+    @Test
+    void shouldStopConsumingAndCloseGaugeOnDispose() {
+        stubRead(Flux.never());
+        Meter meter = Mockito.mock(Meter.class, Mockito.RETURNS_DEEP_STUBS);
+        ObservableLongGauge pendingEventsGauge = Mockito.mock(ObservableLongGauge.class);
+        Mockito.when(
+                meter.gaugeBuilder(ReactiveStreamConsumer.METRIC_PREFIX + "pending").setDescription(any()).ofLongs()
+                        .buildWithCallback(any())
+        ).thenReturn(pendingEventsGauge);
+        ReactiveStreamConsumer<TestEvent> consumer = new ReactiveStreamConsumer<>(
+                reactiveRedisTemplateWrapper,
+                TestEvent.class,
+                configuration,
+                TestEvent::key,
+                event -> Mono.empty(),
+                meter
+        );
+
+        StepVerifier.create(consumer.consume())
+                .expectSubscription()
+                .then(consumer::dispose)
+                .verifyComplete();
+
+        assertTrue(consumer.isDisposed());
+        consumer.dispose();
+        Mockito.verify(pendingEventsGauge).close();
+    }
+
+    @Test
+    void shouldKeepReadingAfterReadErrors() {
+        ObjectRecord<String, TestEvent> objectRecord = objectRecord(0, new TestEvent("key", 0));
+        Mockito.when(
+                streamOperations.read(
+                        eq(TestEvent.class),
+                        any(Consumer.class),
+                        any(StreamReadOptions.class),
+                        any(StreamOffset.class)
+                )
+        ).thenReturn(Flux.error(new RuntimeException("connection error")), Flux.just(objectRecord), Flux.never());
+        ReactiveStreamConsumer<TestEvent> consumer = consumer(event -> Mono.empty());
+
+        StepVerifier.create(consumer.consume().take(1))
+                .expectNext(objectRecord.getId())
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldNotAcknowledgeEventsWhenAcknowledgeFails() {
+        stubRead(Flux.just(objectRecord(0, new TestEvent("key", 0))));
+        Mockito.when(
+                reactiveRedisTemplateWrapper.acknowledgeEvents(eq(STREAM_KEY), eq(GROUP_NAME), any(String[].class))
+        )
+                .thenReturn(Mono.error(new RuntimeException("ack error")));
+        ReactiveStreamConsumer<TestEvent> consumer = consumer(event -> Mono.empty());
+
+        StepVerifier.create(consumer.consume())
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(200))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new StreamConsumerConfiguration(
+                        STREAM_KEY,
+                        GROUP_NAME,
+                        CONSUMER_NAME,
+                        0,
+                        Duration.ofMillis(10),
+                        4,
+                        3,
+                        Duration.ofMillis(50),
+                        Duration.ofMinutes(1),
+                        Duration.ofHours(1),
+                        3
+                )
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new StreamConsumerConfiguration(
+                        STREAM_KEY,
+                        GROUP_NAME,
+                        CONSUMER_NAME,
+                        10,
+                        Duration.ZERO,
+                        4,
+                        3,
+                        Duration.ofMillis(50),
+                        Duration.ofMinutes(1),
+                        Duration.ofHours(1),
+                        3
+                )
+        );
+        StreamConsumerConfiguration defaults = StreamConsumerConfiguration
+                .withDefaults(STREAM_KEY, GROUP_NAME, CONSUMER_NAME);
+        assertEquals(StreamConsumerConfiguration.DEFAULT_BATCH_SIZE, defaults.batchSize());
+    }
+
+    private ReactiveStreamConsumer<TestEvent> consumer(Function<TestEvent, Mono<?>> eventHandler) {
+        return new ReactiveStreamConsumer<>(
+                reactiveRedisTemplateWrapper,
+                TestEvent.class,
+                configuration,
+                TestEvent::key,
+                eventHandler,
+                MeterProvider.noop().get("test")
+        );
+    }
+
+    private StreamConsumerConfiguration shortClaimIntervalConfiguration() {
+        return new StreamConsumerConfiguration(
+                STREAM_KEY,
+                GROUP_NAME,
+                CONSUMER_NAME,
+                10,
+                Duration.ofMillis(10),
+                4,
+                1,
+                Duration.ofMillis(10),
+                Duration.ofMinutes(1),
+                Duration.ofMillis(200),
+                3
+        );
+    }
+
+    private static MapRecord<String, Object, Object> mapRecord(ObjectRecord<String, TestEvent> objectRecord) {
+        return MapRecord
+                .<String, Object, Object>create(STREAM_KEY, Map.of("sequence", objectRecord.getValue().sequence()))
+                .withId(objectRecord.getId());
+    }
+
+    private void stubRead(Flux<ObjectRecord<String, TestEvent>> firstBatch) {
+        Mockito.when(
+                streamOperations.read(
+                        eq(TestEvent.class),
+                        any(Consumer.class),
+                        any(StreamReadOptions.class),
+                        any(StreamOffset.class)
+                )
+        ).thenReturn(firstBatch, Flux.never());
+    }
+
+    private static ObjectRecord<String, TestEvent> objectRecord(
+                                                                int index,
+                                                                TestEvent event
+    ) {
+        return ObjectRecord.create(STREAM_KEY, event)
+                .withId(RecordId.of(System.currentTimeMillis() + "-" + index));
+    }
+}
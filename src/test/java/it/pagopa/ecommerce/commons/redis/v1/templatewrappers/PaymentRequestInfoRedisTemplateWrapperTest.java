@@ -5,10 +5,13 @@ import it.pagopa.ecommerce.commons.repositories.v1.PaymentRequestInfo;
 import it.pagopa.ecommerce.commons.v1.TransactionTestUtils;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StreamOperations;
 import org.springframework.data.redis.core.ValueOperations;
 
@@ -20,6 +23,7 @@ import java.util.Set;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 
 class PaymentRequestInfoRedisTemplateWrapperTest {
 
@@ -249,6 +253,91 @@ class PaymentRequestInfoRedisTemplateWrapperTest {
                 .trim(streamKey, streamSize);
     }
 
+    @Test
+    void shouldWriteEventToStreamTrimmingEventsApproximatelyWithSingleCommand() {
+        // assertions
+        String streamKey = "streamKey";
+        int streamSize = 10;
+        PaymentRequestInfo paymentRequestInfo = TransactionTestUtils.paymentRequestInfoV1();
+        RecordId expectedRecordId = RecordId.of(System.currentTimeMillis(), 0);
+        Mockito.when(redisTemplate.opsForStream()).thenReturn((StreamOperations) streamOperations);
+        Mockito.when(
+                streamOperations.add(
+                        argThat(
+                                (ObjectRecord<String, PaymentRequestInfo> r) -> r.getValue().equals(paymentRequestInfo)
+                        ),
+                        eq(XAddOptions.maxlen(streamSize).approximateTrimming(true))
+                )
+        ).thenReturn(expectedRecordId);
+        // test
+        RecordId recordId = paymentRequestInfoRedisTemplateWrapper
+                .writeEventToStreamTrimmingEventsApproximately(streamKey, paymentRequestInfo, streamSize);
+
+        // assertions
+        assertEquals(expectedRecordId, recordId);
+        Mockito.verify(streamOperations, Mockito.times(0)).trim(any(), Mockito.anyLong());
+        Mockito.verify(streamOperations, Mockito.times(1))
+                .add(any(ObjectRecord.class), any(XAddOptions.class));
+    }
+
+    @Test
+    void shouldWriteEventsToStreamInSinglePipeline() {
+        // assertions
+        String streamKey = "streamKey";
+        int streamSize = 10;
+        PaymentRequestInfo paymentRequestInfo = TransactionTestUtils.paymentRequestInfoV1();
+        List<RecordId> expectedRecordIds = List.of(
+                RecordId.of(System.currentTimeMillis(), 0),
+                RecordId.of(System.currentTimeMillis(), 1)
+        );
+        RedisOperations<String, PaymentRequestInfo> pipelinedOperations = Mockito.mock(RedisOperations.class);
+        Mockito.when(pipelinedOperations.opsForStream()).thenReturn((StreamOperations) streamOperations);
+        Mockito.when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            SessionCallback<?> sessionCallback = invocation.getArgument(0);
+            sessionCallback.execute(pipelinedOperations);
+            return List.copyOf(expectedRecordIds);
+        });
+        // test
+        List<RecordId> plain = paymentRequestInfoRedisTemplateWrapper
+                .writeEventsToStream(streamKey, List.of(paymentRequestInfo, paymentRequestInfo));
+        List<RecordId> trimmed = paymentRequestInfoRedisTemplateWrapper
+                .writeEventsToStreamTrimmingEventsApproximately(
+                        streamKey,
+                        List.of(paymentRequestInfo, paymentRequestInfo),
+                        streamSize
+                );
+
+        // assertions
+        assertEquals(expectedRecordIds, plain);
+        assertEquals(expectedRecordIds, trimmed);
+        Mockito.verify(redisTemplate, Mockito.times(2)).executePipelined(any(SessionCallback.class));
+        Mockito.verify(streamOperations, Mockito.times(2))
+                .add(any(ObjectRecord.class), eq(XAddOptions.none()));
+        Mockito.verify(streamOperations, Mockito.times(2))
+                .add(any(ObjectRecord.class), eq(XAddOptions.maxlen(streamSize).approximateTrimming(true)));
+    }
+
+    @Test
+    void shouldThrowExceptionWritingEventsToStreamWithInvalidStreamSize() {
+        // assertions
+        String streamKey = "streamKey";
+        PaymentRequestInfo paymentRequestInfo = TransactionTestUtils.paymentRequestInfoV1();
+        // test
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> paymentRequestInfoRedisTemplateWrapper
+                        .writeEventToStreamTrimmingEventsApproximately(streamKey, paymentRequestInfo, -1)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> paymentRequestInfoRedisTemplateWrapper
+                        .writeEventsToStreamTrimmingEventsApproximately(streamKey, List.of(paymentRequestInfo), -1)
+        );
+
+        // assertions
+        Mockito.verify(redisTemplate, Mockito.times(0)).executePipelined(any(SessionCallback.class));
+    }
+
     @Test
     void shouldTrimEventsSuccessfully() {
         // assertions
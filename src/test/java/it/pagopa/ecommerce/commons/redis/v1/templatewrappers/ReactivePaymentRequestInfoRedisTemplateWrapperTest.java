@@ -6,6 +6,7 @@ import it.pagopa.ecommerce.commons.v1.TransactionTestUtils;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.RecordId;
@@ -307,6 +308,130 @@ class ReactivePaymentRequestInfoRedisTemplateWrapperTest {
         Mockito.verify(streamOperations).add(ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>any());
     }
 
+    @Test
+    void shouldWriteEventToStreamTrimmingEventsApproximatelyWithSingleCommand() {
+        // assertions
+        String streamKey = "streamKey";
+        int streamSize = 10;
+        PaymentRequestInfo paymentRequestInfo = TransactionTestUtils.paymentRequestInfoV1();
+        RecordId expectedRecordId = RecordId.of(System.currentTimeMillis(), 0);
+        XAddOptions expectedOptions = XAddOptions.maxlen(streamSize).approximateTrimming(true);
+
+        Mockito.when(redisTemplate.opsForStream()).thenReturn((ReactiveStreamOperations) streamOperations);
+        Mockito.when(
+                streamOperations
+                        .add(
+                                ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>argThat(
+                                        rec -> streamKey.equals(rec.getStream())
+                                                && paymentRequestInfo.equals(rec.getValue())
+                                ),
+                                ArgumentMatchers.eq(expectedOptions)
+                        )
+        ).thenReturn(Mono.just(expectedRecordId));
+        // test
+        StepVerifier.create(
+                paymentRequestInfoRedisTemplateWrapper
+                        .writeEventToStreamTrimmingEventsApproximately(streamKey, paymentRequestInfo, streamSize)
+        )
+                .expectNext(expectedRecordId)
+                .verifyComplete();
+
+        // assertions
+        Mockito.verify(streamOperations, Mockito.times(0)).trim(any(), Mockito.anyLong());
+        Mockito.verify(streamOperations, Mockito.times(1))
+                .add(ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>any(), any(XAddOptions.class));
+    }
+
+    @Test
+    void shouldWriteEventsToStreamPreservingOrder() {
+        // assertions
+        String streamKey = "streamKey";
+        int streamSize = 10;
+        PaymentRequestInfo first = TransactionTestUtils.paymentRequestInfoV1();
+        PaymentRequestInfo second = new PaymentRequestInfo(
+                first.id(),
+                first.paFiscalCode(),
+                first.paName(),
+                "second",
+                first.amount(),
+                first.dueDate(),
+                first.paymentToken(),
+                first.activationDate(),
+                first.idempotencyKey(),
+                first.transferList(),
+                first.isAllCCP(),
+                first.creditorReferenceId()
+        );
+        RecordId firstRecordId = RecordId.of(System.currentTimeMillis(), 0);
+        RecordId secondRecordId = RecordId.of(System.currentTimeMillis(), 1);
+
+        Mockito.when(redisTemplate.opsForStream()).thenReturn((ReactiveStreamOperations) streamOperations);
+        Mockito.when(
+                streamOperations.add(
+                        ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>argThat(
+                                rec -> rec != null && first.equals(rec.getValue())
+                        ),
+                        any(XAddOptions.class)
+                )
+        ).thenReturn(Mono.delay(Duration.ofMillis(50)).thenReturn(firstRecordId));
+        Mockito.when(
+                streamOperations.add(
+                        ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>argThat(
+                                rec -> rec != null && second.equals(rec.getValue())
+                        ),
+                        any(XAddOptions.class)
+                )
+        ).thenReturn(Mono.just(secondRecordId));
+        // test
+        StepVerifier
+                .create(paymentRequestInfoRedisTemplateWrapper.writeEventsToStream(streamKey, List.of(first, second)))
+                .expectNext(firstRecordId, secondRecordId)
+                .verifyComplete();
+        StepVerifier.create(
+                paymentRequestInfoRedisTemplateWrapper
+                        .writeEventsToStreamTrimmingEventsApproximately(streamKey, List.of(first, second), streamSize)
+        )
+                .expectNext(firstRecordId, secondRecordId)
+                .verifyComplete();
+
+        // assertions
+        Mockito.verify(streamOperations, Mockito.times(2))
+                .add(
+                        ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>any(),
+                        ArgumentMatchers.eq(XAddOptions.none())
+                );
+        Mockito.verify(streamOperations, Mockito.times(2))
+                .add(
+                        ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>any(),
+                        ArgumentMatchers.eq(XAddOptions.maxlen(streamSize).approximateTrimming(true))
+                );
+    }
+
+    @Test
+    void shouldThrowExceptionWritingEventsToStreamWithInvalidStreamSize() {
+        // assertions
+        String streamKey = "streamKey";
+        PaymentRequestInfo paymentRequestInfo = TransactionTestUtils.paymentRequestInfoV1();
+        Mockito.when(redisTemplate.opsForStream()).thenReturn((ReactiveStreamOperations) streamOperations);
+        // test
+        StepVerifier.create(
+                paymentRequestInfoRedisTemplateWrapper
+                        .writeEventToStreamTrimmingEventsApproximately(streamKey, paymentRequestInfo, -1)
+        )
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(
+                paymentRequestInfoRedisTemplateWrapper
+                        .writeEventsToStreamTrimmingEventsApproximately(streamKey, List.of(paymentRequestInfo), -1)
+        )
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        // assertions
+        Mockito.verify(streamOperations, Mockito.times(0))
+                .add(ArgumentMatchers.<ObjectRecord<String, PaymentRequestInfo>>any(), any(XAddOptions.class));
+    }
+
     @Test
     void shouldTrimEventsSuccessfully() {
         // assertions
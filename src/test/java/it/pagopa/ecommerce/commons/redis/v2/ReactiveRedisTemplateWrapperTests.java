@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import it.pagopa.ecommerce.commons.domain.v2.IdempotencyKey;
 import it.pagopa.ecommerce.commons.domain.v2.RptId;
+import it.pagopa.ecommerce.commons.redis.converters.RedisValueEncoding;
 import it.pagopa.ecommerce.commons.redis.converters.v2.JacksonIdempotencyKeyDeserializer;
 import it.pagopa.ecommerce.commons.redis.converters.v2.JacksonIdempotencyKeySerializer;
 import it.pagopa.ecommerce.commons.redis.converters.v2.JacksonRptIdDeserializer;
@@ -117,6 +118,51 @@ class ReactiveRedisTemplateWrapperTests {
         assertEquals(actual, paymentRequestInfo);
     }
 
+    @Test
+    void shouldReadLegacyJsonValuesWithCompactPaymentRequestWrapper() {
+        Duration ttl = Duration.ofMinutes(10);
+        ReactivePaymentRequestInfoRedisTemplateWrapper paymentRequestInfoRedisTemplateWrapper = ReactiveRedisTemplateWrapperBuilder
+                .buildPaymentRequestInfoRedisTemplateWrapper(
+                        reactiveRedisConnectionFactory,
+                        ttl,
+                        RedisValueEncoding.COMPACT
+                );
+        assertEquals(ttl, paymentRequestInfoRedisTemplateWrapper.getDefaultTTL());
+        ReactiveRedisTemplate<String, PaymentRequestInfo> reactiveRedisTemplate = paymentRequestInfoRedisTemplateWrapper
+                .unwrap();
+
+        PaymentRequestInfo paymentRequestInfo = new PaymentRequestInfo(
+                new RptId("77777777777302016432223611415"),
+                "77777777777",
+                "companyName",
+                "Pagamento di Test",
+                12000L,
+                "2021-07-31",
+                "1fb8539bdbc94123849a21be8eead8dd",
+                "2021-07-31",
+                null,
+                null,
+                null,
+                null
+        );
+
+        ByteBuffer legacyJson = ByteBuffer
+                .wrap(buildJackson2RedisSerializer(PaymentRequestInfo.class).serialize(paymentRequestInfo));
+        ByteBuffer compact = reactiveRedisTemplate.getSerializationContext().getValueSerializationPair().getWriter()
+                .write(paymentRequestInfo);
+
+        assertTrue(compact.remaining() < legacyJson.remaining());
+        assertEquals(
+                paymentRequestInfo,
+                reactiveRedisTemplate.getSerializationContext().getValueSerializationPair().getReader()
+                        .read(legacyJson)
+        );
+        assertEquals(
+                paymentRequestInfo,
+                reactiveRedisTemplate.getSerializationContext().getValueSerializationPair().getReader().read(compact)
+        );
+    }
+
     private static <T> Jackson2JsonRedisSerializer<T> buildJackson2RedisSerializer(Class<T> clazz) {
 
         ObjectMapper objectMapper = new ObjectMapper();
@@ -0,0 +1,194 @@
+package it.pagopa.ecommerce.commons.repositories;
+
+import it.pagopa.ecommerce.commons.documents.v2.TransactionEvent;
+import it.pagopa.ecommerce.commons.exceptions.EventStoreConcurrencyException;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionEventStoreRepositoryTest {
+
+    private static final String COLLECTION_NAME = "eventstore";
+
+    private final ReactiveMongoOperations mongoOperations = Mockito.mock(ReactiveMongoOperations.class);
+
+    private final TransactionEventStoreRepository<TransactionEvent<?>> repository;
+
+    TransactionEventStoreRepositoryTest() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoOperations.getConverter()).thenReturn(converter);
+        when(mongoOperations.getCollectionName(TransactionEvent.class)).thenReturn(COLLECTION_NAME);
+        repository = TransactionEventStoreRepository.v2(mongoOperations, 50);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldAppendEventsWithSequencesInSingleBulkInsert() {
+        List<TransactionEvent<?>> events = List.of(
+                TransactionTestUtils.transactionActivateEvent(),
+                TransactionTestUtils.transactionAuthorizationRequestedEvent()
+        );
+        ArgumentCaptor<Collection<Document>> documentsCaptor = ArgumentCaptor.forClass(Collection.class);
+        when(mongoOperations.insert(documentsCaptor.capture(), eq(COLLECTION_NAME)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+
+        StepVerifier.create(repository.append(TransactionTestUtils.TRANSACTION_ID, 3, events))
+                .expectNext(5L)
+                .verifyComplete();
+
+        List<Document> documents = List.copyOf(documentsCaptor.getValue());
+        assertEquals(2, documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            assertEquals(4L + i, document.get(TransactionEventStoreRepository.SEQUENCE_FIELD));
+            assertEquals(events.get(i).getId(), document.get("_id"));
+            assertEquals(events.get(i).getEventCode(), document.get("eventCode"));
+            assertEquals(events.get(i).getClass().getName(), document.get("_class"));
+        }
+        verify(mongoOperations, times(1)).insert(anyCollection(), eq(COLLECTION_NAME));
+    }
+
+    @Test
+    void shouldFailAppendOnConflictingSequence() {
+        when(mongoOperations.insert(anyCollection(), eq(COLLECTION_NAME)))
+                .thenReturn(Flux.error(new DuplicateKeyException("duplicate key")));
+
+        StepVerifier.create(
+                repository.append(
+                        TransactionTestUtils.TRANSACTION_ID,
+                        0,
+                        List.of(TransactionTestUtils.transactionActivateEvent())
+                )
+        )
+                .expectErrorSatisfies(error -> {
+                    EventStoreConcurrencyException exception = assertInstanceOf(
+                            EventStoreConcurrencyException.class,
+                            error
+                    );
+                    assertEquals(TransactionTestUtils.TRANSACTION_ID, exception.getTransactionId());
+                    assertEquals(0, exception.getExpectedVersion());
+                })
+                .verify();
+    }
+
+    @Test
+    void shouldRejectInvalidAppends() {
+        TransactionEvent<?> otherTransactionEvent = TransactionTestUtils.transactionActivateEvent();
+        otherTransactionEvent.setTransactionId("otherTransactionId");
+
+        StepVerifier.create(
+                repository.append(TransactionTestUtils.TRANSACTION_ID, 0, List.of(otherTransactionEvent))
+        )
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(
+                repository.append(
+                        TransactionTestUtils.TRANSACTION_ID,
+                        -1,
+                        List.of(TransactionTestUtils.transactionActivateEvent())
+                )
+        )
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(repository.append(TransactionTestUtils.TRANSACTION_ID, 2, List.of()))
+                .expectNext(2L)
+                .verifyComplete();
+        verify(mongoOperations, never()).insert(anyCollection(), anyString());
+    }
+
+    @Test
+    void shouldGetEventsOrderedByCreationInstantWithCursorBatchSize() {
+        TransactionEvent<?> first = eventCreatedAt("2024-01-01T10:00:00+01:00[Europe/Rome]");
+        TransactionEvent<?> second = eventCreatedAt("2024-01-01T09:00:00.1Z");
+        TransactionEvent<?> third = eventCreatedAt("2024-01-01T09:30:00Z");
+        // same instant as the third one, read after it
+        TransactionEvent<?> fourth = eventCreatedAt("2024-01-01T10:30:00.000+01:00");
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        when(mongoOperations.find(queryCaptor.capture(), eq(TransactionEvent.class), eq(COLLECTION_NAME)))
+                .thenReturn(Flux.just(third, second, fourth, first));
+
+        StepVerifier.create(repository.findByTransactionId(TransactionTestUtils.TRANSACTION_ID))
+                .expectNext(first, second, third, fourth)
+                .verifyComplete();
+
+        Query query = queryCaptor.getValue();
+        assertEquals(
+                new Document("transactionId", TransactionTestUtils.TRANSACTION_ID),
+                query.getQueryObject()
+        );
+        assertEquals(new Document("sequence", 1).append("_id", 1), query.getSortObject());
+        assertEquals(50, query.getMeta().getCursorBatchSize());
+    }
+
+    @Test
+    void shouldGetCurrentVersion() {
+        when(mongoOperations.findOne(any(Query.class), eq(Document.class), eq(COLLECTION_NAME)))
+                .thenReturn(Mono.just(new Document(TransactionEventStoreRepository.SEQUENCE_FIELD, 7L)))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(repository.currentVersion(TransactionTestUtils.TRANSACTION_ID))
+                .expectNext(7L)
+                .verifyComplete();
+        StepVerifier.create(repository.currentVersion(TransactionTestUtils.TRANSACTION_ID))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldEnsureIndexes() {
+        ReactiveIndexOperations indexOperations = Mockito.mock(ReactiveIndexOperations.class);
+        when(mongoOperations.indexOps(COLLECTION_NAME)).thenReturn(indexOperations);
+        when(indexOperations.ensureIndex(any(IndexDefinition.class))).thenReturn(Mono.just("index"));
+
+        StepVerifier.create(repository.ensureIndexes()).verifyComplete();
+
+        verify(indexOperations, times(2)).ensureIndex(any(IndexDefinition.class));
+        IndexDefinition sequenceIndex = TransactionEventStoreRepository.INDEXES.get(0);
+        assertEquals(
+                new Document("transactionId", 1).append(TransactionEventStoreRepository.SEQUENCE_FIELD, 1),
+                sequenceIndex.getIndexKeys()
+        );
+        assertEquals(true, sequenceIndex.getIndexOptions().get("unique"));
+        assertTrue(sequenceIndex.getIndexOptions().containsKey("partialFilterExpression"));
+    }
+
+    @Test
+    void shouldThrowForInvalidCursorBatchSize() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> TransactionEventStoreRepository.v1(mongoOperations, 0)
+        );
+    }
+
+    private static TransactionEvent<?> eventCreatedAt(String creationDate) {
+        TransactionEvent<?> event = TransactionTestUtils.transactionActivateEvent();
+        event.setCreationDate(creationDate);
+        return event;
+    }
+}
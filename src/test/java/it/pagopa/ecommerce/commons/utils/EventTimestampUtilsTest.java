@@ -0,0 +1,132 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.ecommerce.commons.documents.v2.TransactionActivatedEvent;
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventTimestampUtilsTest {
+
+    private static final List<ZoneId> ZONES = List.of(
+            ZoneId.of("Europe/Rome"),
+            ZoneId.of("UTC"),
+            ZoneId.of("America/New_York"),
+            ZoneOffset.UTC,
+            ZoneOffset.ofHoursMinutes(5, 30),
+            ZoneOffset.ofHours(-3)
+    );
+
+    @Test
+    void shouldGenerateAndParseTimestampsLikeZonedDateTime() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            Instant instant = Instant.ofEpochSecond(
+                    random.nextLong(0, 4_102_444_800L),
+                    switch (i % 4) {
+                    case 0 -> 0;
+                    case 1 -> random.nextInt(1000) * 1_000_000;
+                    case 2 -> random.nextInt(1_000_000) * 1000;
+                    default -> random.nextInt(1_000_000_000);
+                    }
+            );
+            Clock clock = Clock.fixed(instant, ZONES.get(random.nextInt(ZONES.size())));
+
+            String timestamp = EventTimestampUtils.now(clock);
+
+            assertEquals(ZonedDateTime.now(clock).toString(), timestamp);
+            assertEquals(ZonedDateTime.parse(timestamp), EventTimestampUtils.parse(timestamp));
+            assertEquals(instant.toEpochMilli(), EventTimestampUtils.toEpochMillis(timestamp));
+        }
+    }
+
+    @Test
+    void shouldGenerateTimestampsAcrossOffsetTransitions() {
+        ZoneId zone = ZoneId.of("Europe/Rome");
+        ZonedDateTime beforeTransition = ZonedDateTime.of(2023, 3, 26, 1, 59, 59, 0, zone);
+        for (ZonedDateTime dateTime : List.of(
+                beforeTransition,
+                beforeTransition.plusSeconds(1),
+                beforeTransition.plusMonths(7),
+                beforeTransition
+        )) {
+            Clock clock = Clock.fixed(dateTime.toInstant(), zone);
+            assertEquals(ZonedDateTime.now(clock).toString(), EventTimestampUtils.now(clock));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                    "2023-01-01T10:00Z",
+                    "2023-01-01T10:00:05+01:00",
+                    "2023-01-01T10:00:05.1-03:30",
+                    "2023-01-01T10:00:05.123456789Z[UTC]",
+                    "2023-10-29T02:30:00+02:00[Europe/Rome]",
+                    "2023-10-29T02:30:00+01:00[Europe/Rome]",
+                    "2023-01-01T10:00:05+01:00:30",
+                    "2023-01-01T10:00:05+00:00",
+                    "+12023-01-01T10:00:05Z",
+                    "2023-01-01T10:00:05.Z"
+            }
+    )
+    void shouldParseTimestampsLikeZonedDateTime(String timestamp) {
+        ZonedDateTime expected = ZonedDateTime.parse(timestamp);
+
+        assertEquals(expected, EventTimestampUtils.parse(timestamp));
+        assertEquals(expected.toInstant().toEpochMilli(), EventTimestampUtils.toEpochMillis(timestamp));
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                    "",
+                    "invalid",
+                    "2023-13-01T10:00:05Z",
+                    "2023-01-01T10:00:05.1234567891Z",
+                    "2023-01-01T10:00:05+19:00",
+                    "2023-01-01T10:00:05Z[Invalid/Zone]",
+                    "2023-01-01T10:00:05"
+            }
+    )
+    void shouldRejectInvalidTimestamps(String timestamp) {
+        assertThrows(DateTimeParseException.class, () -> EventTimestampUtils.parse(timestamp));
+        assertThrows(DateTimeParseException.class, () -> EventTimestampUtils.toEpochMillis(timestamp));
+    }
+
+    @Test
+    void shouldMemoizeEventCreationDate() throws Exception {
+        TransactionActivatedEvent event = TransactionTestUtils.transactionActivateEvent();
+        ZonedDateTime creationDate = event.creationDateTime();
+
+        assertSame(creationDate, event.creationDateTime());
+        assertEquals(ZonedDateTime.parse(event.getCreationDate()), creationDate);
+        assertEquals(creationDate.toInstant().toEpochMilli(), event.creationDateEpochMillis());
+
+        event.setCreationDate("2023-01-01T10:00:05Z");
+        assertEquals(ZonedDateTime.parse("2023-01-01T10:00:05Z"), event.creationDateTime());
+
+        JsonNode serialized = new ObjectMapper().findAndRegisterModules().valueToTree(event);
+        assertEquals("2023-01-01T10:00:05Z", serialized.get("creationDate").asText());
+        assertFalse(serialized.has("parsedCreationDate"));
+
+        TransactionActivatedEvent notParsed = TransactionTestUtils.transactionActivateEvent();
+        notParsed.setId(event.getId());
+        notParsed.setCreationDate(event.getCreationDate());
+        assertEquals(notParsed, event);
+        assertEquals(notParsed.hashCode(), event.hashCode());
+    }
+}
@@ -0,0 +1,71 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import it.pagopa.ecommerce.commons.generated.npg.v1.dto.ClientErrorDto;
+import it.pagopa.ecommerce.commons.utils.ObjectMapperRegistry.MapperConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectMapperRegistryTest {
+
+    private final ObjectMapperRegistry objectMapperRegistry = new ObjectMapperRegistry(false);
+
+    @ParameterizedTest
+    @EnumSource(MapperConfiguration.class)
+    void shouldReturnSharedObjectMapperInstance(MapperConfiguration configuration) {
+        ObjectMapper first = objectMapperRegistry.getObjectMapper(configuration);
+        ObjectMapper second = objectMapperRegistry.getObjectMapper(configuration);
+        assertSame(first, second);
+        assertNotSame(first, objectMapperRegistry.newObjectMapper(configuration));
+    }
+
+    @Test
+    void shouldReturnSameDefaultInstance() {
+        assertSame(ObjectMapperRegistry.getInstance(), ObjectMapperRegistry.getInstance());
+    }
+
+    @Test
+    void shouldCacheReadersAndWriters() {
+        assertSame(
+                objectMapperRegistry.readerFor(MapperConfiguration.STRICT, ClientErrorDto.class),
+                objectMapperRegistry.readerFor(MapperConfiguration.STRICT, ClientErrorDto.class)
+        );
+        assertSame(
+                objectMapperRegistry.writerFor(MapperConfiguration.STRICT, ClientErrorDto.class),
+                objectMapperRegistry.writerFor(MapperConfiguration.STRICT, ClientErrorDto.class)
+        );
+        assertNotSame(
+                objectMapperRegistry.readerFor(MapperConfiguration.STRICT, ClientErrorDto.class),
+                objectMapperRegistry.readerFor(MapperConfiguration.LENIENT, ClientErrorDto.class)
+        );
+    }
+
+    @Test
+    void shouldIgnoreUnknownPropertiesOnlyWithLenientConfiguration() throws Exception {
+        String json = """
+                {"errors":[],"unknownField":"value"}
+                """;
+        assertThrows(
+                UnrecognizedPropertyException.class,
+                () -> objectMapperRegistry.readerFor(MapperConfiguration.STRICT, ClientErrorDto.class).readValue(json)
+        );
+        ClientErrorDto clientErrorDto = objectMapperRegistry
+                .readerFor(MapperConfiguration.LENIENT, ClientErrorDto.class).readValue(json);
+        assertNotNull(clientErrorDto.getErrors());
+    }
+
+    @Test
+    void shouldEnableBytecodeAccelerationWhenRequested() {
+        ObjectMapperRegistry acceleratedRegistry = new ObjectMapperRegistry(true);
+        assertTrue(acceleratedRegistry.isBytecodeAccelerationEnabled());
+        assertTrue(
+                acceleratedRegistry.getObjectMapper(MapperConfiguration.STRICT).getRegisteredModuleIds()
+                        .contains("com.fasterxml.jackson.module.blackbird.BlackbirdModule")
+        );
+        assertFalse(objectMapperRegistry.isBytecodeAccelerationEnabled());
+    }
+}
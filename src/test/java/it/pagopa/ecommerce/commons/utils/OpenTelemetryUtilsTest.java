@@ -74,4 +74,38 @@ class OpenTelemetryUtilsTest {
         verify(span, times(1)).end();
     }
 
+    @Test
+    void shouldCreateSpanWithLazyAttributesOnlyIfRecording() {
+        // prerequisite
+        String spanName = "spanName";
+        Attributes attributes = Attributes.of(AttributeKey.stringKey("key"), "value");
+        given(openTelemetryTracer.spanBuilder(spanName)).willReturn(spanBuilder);
+        given(spanBuilder.startSpan()).willReturn(span);
+        given(span.isRecording()).willReturn(true, false);
+        // test
+        openTelemetryUtils.addSpanWithLazyAttributes(spanName, () -> attributes);
+        openTelemetryUtils.addSpanWithLazyAttributes(spanName, () -> {
+            throw new IllegalStateException("attributes computed for non recording span");
+        });
+        // assertions
+        verify(span, times(1)).setAllAttributes(attributes);
+        verify(span, times(2)).end();
+    }
+
+    @Test
+    void shouldCreateErrorSpanWithLazyAttributes() {
+        // prerequisite
+        String spanName = "spanName";
+        Attributes attributes = Attributes.of(AttributeKey.stringKey("key"), "value");
+        given(openTelemetryTracer.spanBuilder(spanName)).willReturn(spanBuilder);
+        given(spanBuilder.startSpan()).willReturn(span);
+        given(span.isRecording()).willReturn(true);
+        // test
+        openTelemetryUtils.addErrorSpanWithLazyAttributes(spanName, () -> attributes);
+        // assertions
+        verify(span, times(1)).setAllAttributes(attributes);
+        verify(span, times(1)).setStatus(StatusCode.ERROR);
+        verify(span, times(1)).end();
+    }
+
 }
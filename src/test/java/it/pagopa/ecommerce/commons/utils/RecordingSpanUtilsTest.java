@@ -0,0 +1,57 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+class RecordingSpanUtilsTest {
+
+    private static final AttributeKey<String> KEY = AttributeKey.stringKey("key");
+
+    private static final Attributes ATTRIBUTES = Attributes.of(KEY, "value");
+
+    private final Span span = Mockito.mock(Span.class);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSetAttributesOnRecordingSpan() {
+        given(span.isRecording()).willReturn(true);
+        Supplier<String> value = Mockito.mock(Supplier.class);
+        given(value.get()).willReturn("value");
+
+        assertSame(span, RecordingSpanUtils.setAttribute(span, KEY, value));
+        assertSame(span, RecordingSpanUtils.setAllAttributes(span, () -> ATTRIBUTES));
+        assertSame(span, RecordingSpanUtils.setError(span, () -> ATTRIBUTES));
+
+        verify(span, times(1)).setAttribute(KEY, "value");
+        verify(span, times(2)).setAllAttributes(ATTRIBUTES);
+        verify(span, times(1)).setStatus(StatusCode.ERROR);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldNotComputeAttributesForNonRecordingSpan() {
+        given(span.isRecording()).willReturn(false);
+        Supplier<String> value = Mockito.mock(Supplier.class);
+        Supplier<Attributes> attributes = Mockito.mock(Supplier.class);
+
+        RecordingSpanUtils.setAttribute(span, KEY, value);
+        RecordingSpanUtils.setAllAttributes(span, attributes);
+        RecordingSpanUtils.setError(span, attributes);
+
+        verifyNoInteractions(value, attributes);
+        verify(span, never()).setAttribute(any(AttributeKey.class), any());
+        verify(span, never()).setAllAttributes(any());
+        verify(span, never()).setStatus(any());
+    }
+}
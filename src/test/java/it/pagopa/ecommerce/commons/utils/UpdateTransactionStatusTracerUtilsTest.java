@@ -1,6 +1,11 @@
 package it.pagopa.ecommerce.commons.utils;
 
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
 import it.pagopa.ecommerce.commons.documents.v2.Transaction;
 import it.pagopa.ecommerce.commons.documents.v2.TransactionAuthorizationRequestData;
 import org.junit.jupiter.api.Test;
@@ -14,7 +19,9 @@ import org.mockito.Captor;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -542,4 +549,238 @@ class UpdateTransactionStatusTracerUtilsTest {
         );
     }
 
+    private static Stream<Arguments> statusUpdateInfoMethodSource() {
+        UpdateTransactionStatusTracerUtils.GatewayOutcomeResult gatewayOutcomeResult = new UpdateTransactionStatusTracerUtils.GatewayOutcomeResult(
+                "KO",
+                Optional.of("error")
+        );
+        return Stream.of(
+                Arguments.of(
+                        new UpdateTransactionStatusTracerUtils.SendPaymentResultNodoStatusUpdate(
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                                "pspId",
+                                "CP",
+                                Transaction.ClientId.CHECKOUT,
+                                false,
+                                gatewayOutcomeResult
+                        )
+                ),
+                Arguments.of(
+                        new UpdateTransactionStatusTracerUtils.ClosePaymentNodoStatusUpdate(
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                                "pspId",
+                                "CP",
+                                Transaction.ClientId.IO,
+                                true,
+                                gatewayOutcomeResult
+                        )
+                ),
+                Arguments.of(
+                        new UpdateTransactionStatusTracerUtils.UserCancelClosePaymentNodoStatusUpdate(
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                                Transaction.ClientId.CHECKOUT,
+                                gatewayOutcomeResult
+                        )
+                ),
+                Arguments.of(
+                        new UpdateTransactionStatusTracerUtils.PaymentGatewayStatusUpdate(
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionTrigger.NPG,
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                                new UpdateTransactionStatusTracerUtils.PaymentGatewayStatusUpdateContext(
+                                        "pspId",
+                                        gatewayOutcomeResult,
+                                        "CP",
+                                        Transaction.ClientId.CHECKOUT,
+                                        false
+                                )
+                        )
+                ),
+                Arguments.of(
+                        new UpdateTransactionStatusTracerUtils.AuthorizationRequestedStatusUpdate(
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionTrigger.REDIRECT,
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                                "pspId",
+                                "RPIC",
+                                Transaction.ClientId.CHECKOUT,
+                                false,
+                                gatewayOutcomeResult
+                        )
+                ),
+                Arguments.of(
+                        new UpdateTransactionStatusTracerUtils.ErrorStatusTransactionUpdate(
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusType.AUTHORIZATION_OUTCOME,
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionTrigger.UNKNOWN,
+                                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.INVALID_REQUEST
+                        )
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("statusUpdateInfoMethodSource")
+    void shouldRecordStatusUpdateMetricsWithSpanAttributes(
+                                                           UpdateTransactionStatusTracerUtils.StatusUpdateInfo statusUpdateInfo
+    ) {
+        Meter meter = Mockito.mock(Meter.class, RETURNS_DEEP_STUBS);
+        LongCounter counter = Mockito.mock(LongCounter.class);
+        DoubleHistogram histogram = Mockito.mock(DoubleHistogram.class);
+        when(
+                meter.counterBuilder(UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_COUNTER_NAME)
+                        .setDescription(any()).build()
+        ).thenReturn(counter);
+        when(
+                meter.histogramBuilder(UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_DURATION_NAME)
+                        .setDescription(any()).setUnit(any()).build()
+        ).thenReturn(histogram);
+        UpdateTransactionStatusTracerUtils tracerUtils = new UpdateTransactionStatusTracerUtils(
+                openTelemetryUtils,
+                meter,
+                1
+        );
+
+        tracerUtils.traceStatusUpdateOperation(statusUpdateInfo, Duration.ofMillis(15));
+
+        verify(openTelemetryUtils, times(1)).addSpanWithAttributes(
+                eq(UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_SPAN_NAME),
+                attributesCaptor.capture()
+        );
+        Attributes attributes = attributesCaptor.getValue();
+        verify(counter, times(1)).add(1, attributes);
+        verify(histogram, times(1)).record(15d, attributes);
+        Set<AttributeKey<?>> expectedKeys = statusUpdateInfo.isWalletPayment().isPresent() ? Set.of(
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_TYPE_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_OUTCOME_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_TRIGGER_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_PSP_ID_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_PAYMENT_METHOD_TYPE_CODE_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_CLIENT_ID_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_WALLET_PAYMENT_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_GATEWAY_OUTCOME_ATTRIBUTE_KEY,
+                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_GATEWAY_ERROR_CODE_ATTRIBUTE_KEY
+        )
+                : Set.of(
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_TYPE_ATTRIBUTE_KEY,
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_OUTCOME_ATTRIBUTE_KEY,
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_TRIGGER_ATTRIBUTE_KEY,
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_PSP_ID_ATTRIBUTE_KEY,
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_PAYMENT_METHOD_TYPE_CODE_ATTRIBUTE_KEY,
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_CLIENT_ID_ATTRIBUTE_KEY,
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_GATEWAY_OUTCOME_ATTRIBUTE_KEY,
+                        UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_GATEWAY_ERROR_CODE_ATTRIBUTE_KEY
+                );
+        assertEquals(expectedKeys, attributes.asMap().keySet());
+        assertEquals(
+                statusUpdateInfo.getType().toString(),
+                attributes.get(UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_TYPE_ATTRIBUTE_KEY)
+        );
+        assertEquals(
+                statusUpdateInfo.getOutcome().toString(),
+                attributes.get(UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_OUTCOME_ATTRIBUTE_KEY)
+        );
+    }
+
+    @Test
+    void shouldNotCreateSpanWithZeroSpanSamplingRate() {
+        UpdateTransactionStatusTracerUtils tracerUtils = new UpdateTransactionStatusTracerUtils(
+                openTelemetryUtils,
+                MeterProvider.noop().get("test"),
+                0
+        );
+
+        tracerUtils.traceStatusUpdateOperation(
+                new UpdateTransactionStatusTracerUtils.ErrorStatusTransactionUpdate(
+                        UpdateTransactionStatusTracerUtils.UpdateTransactionStatusType.SEND_PAYMENT_RESULT_OUTCOME,
+                        UpdateTransactionStatusTracerUtils.UpdateTransactionTrigger.NODO,
+                        UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.TRANSACTION_NOT_FOUND
+                )
+        );
+
+        verify(openTelemetryUtils, never()).addSpanWithAttributes(any(), any());
+    }
+
+    @Test
+    void shouldThrowExceptionForInvalidSpanSamplingRate() {
+        Meter meter = MeterProvider.noop().get("test");
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new UpdateTransactionStatusTracerUtils(openTelemetryUtils, meter, 1.1)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new UpdateTransactionStatusTracerUtils(openTelemetryUtils, meter, -0.1)
+        );
+    }
+
+    @Test
+    void shouldReuseCachedAttributesForSameDimensions() {
+        UpdateTransactionStatusTracerUtils.StatusUpdateInfo first = new UpdateTransactionStatusTracerUtils.SendPaymentResultNodoStatusUpdate(
+                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                "pspId1",
+                "CP",
+                Transaction.ClientId.CHECKOUT,
+                true,
+                new UpdateTransactionStatusTracerUtils.GatewayOutcomeResult("OK", Optional.empty())
+        );
+        UpdateTransactionStatusTracerUtils.StatusUpdateInfo second = new UpdateTransactionStatusTracerUtils.SendPaymentResultNodoStatusUpdate(
+                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                "pspId2",
+                "PPAL",
+                Transaction.ClientId.CHECKOUT,
+                true,
+                new UpdateTransactionStatusTracerUtils.GatewayOutcomeResult("KO", Optional.of("error"))
+        );
+        UpdateTransactionStatusTracerUtils.StatusUpdateInfo sameAsSecond = new UpdateTransactionStatusTracerUtils.SendPaymentResultNodoStatusUpdate(
+                UpdateTransactionStatusTracerUtils.UpdateTransactionStatusOutcome.OK,
+                "pspId2",
+                "PPAL",
+                Transaction.ClientId.CHECKOUT,
+                true,
+                new UpdateTransactionStatusTracerUtils.GatewayOutcomeResult("KO", Optional.of("error"))
+        );
+
+        assertSame(
+                UpdateTransactionStatusTracerUtils.statusUpdateAttributes(second),
+                UpdateTransactionStatusTracerUtils.statusUpdateAttributes(sameAsSecond)
+        );
+        assertNotEquals(
+                UpdateTransactionStatusTracerUtils.statusUpdateAttributes(first),
+                UpdateTransactionStatusTracerUtils.statusUpdateAttributes(second)
+        );
+        assertEquals(
+                Attributes.builder()
+                        .put(
+                                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_TYPE_ATTRIBUTE_KEY,
+                                "SEND_PAYMENT_RESULT_OUTCOME"
+                        )
+                        .put(UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_OUTCOME_ATTRIBUTE_KEY, "OK")
+                        .put(UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_TRIGGER_ATTRIBUTE_KEY, "NODO")
+                        .put(
+                                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_CLIENT_ID_ATTRIBUTE_KEY,
+                                "CHECKOUT"
+                        )
+                        .put(
+                                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_WALLET_PAYMENT_ATTRIBUTE_KEY,
+                                true
+                        )
+                        .put(
+                                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_PSP_ID_ATTRIBUTE_KEY,
+                                "pspId2"
+                        )
+                        .put(
+                                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_PAYMENT_METHOD_TYPE_CODE_ATTRIBUTE_KEY,
+                                "PPAL"
+                        )
+                        .put(
+                                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_GATEWAY_OUTCOME_ATTRIBUTE_KEY,
+                                "KO"
+                        )
+                        .put(
+                                UpdateTransactionStatusTracerUtils.UPDATE_TRANSACTION_STATUS_GATEWAY_ERROR_CODE_ATTRIBUTE_KEY,
+                                "error"
+                        )
+                        .build(),
+                UpdateTransactionStatusTracerUtils.statusUpdateAttributes(second)
+        );
+    }
+
 }
@@ -0,0 +1,105 @@
+package it.pagopa.ecommerce.commons.utils;
+
+import it.pagopa.ecommerce.commons.v2.TransactionTestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7GeneratorTest {
+
+    @Test
+    void shouldGenerateVersion7UuidsWithEpochMillisTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = new UuidV7Generator().nextUuid();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(timestamp >= before && timestamp <= after);
+        assertEquals(uuid, UUID.fromString(uuid.toString()));
+    }
+
+    @Test
+    void shouldGenerateIncreasingIdsWithinSameMillisecondAndWhenClockGoesBackwards() {
+        AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+        UuidV7Generator generator = new UuidV7Generator(clock::get);
+        List<String> ids = new ArrayList<>();
+        // more ids than the 12-bit counter can hold within the same millisecond
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.newId());
+        }
+        clock.addAndGet(-1000);
+        for (int i = 0; i < 100; i++) {
+            ids.add(generator.newId());
+        }
+        clock.addAndGet(60_000);
+        ids.add(generator.newId());
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, "ids not increasing at index " + i);
+            assertTrue(UUID.fromString(ids.get(i - 1)).compareTo(UUID.fromString(ids.get(i))) < 0);
+        }
+        assertEquals(clock.get(), UUID.fromString(ids.get(ids.size() - 1)).getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    void shouldGenerateUniqueIdsConcurrently() throws Exception {
+        UuidV7Generator generator = new UuidV7Generator();
+        int threads = 8;
+        int idsPerThread = 50_000;
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                String last = "";
+                boolean increasing = true;
+                for (int j = 0; j < idsPerThread; j++) {
+                    String id = generator.newId();
+                    increasing &= last.compareTo(id) < 0;
+                    ids.add(id);
+                    last = id;
+                }
+                return increasing;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * idsPerThread, ids.size());
+    }
+
+    @Test
+    void shouldUsePluggableGeneratorForEventIds() {
+        DocumentIdGenerator defaultGenerator = DocumentIds.getGenerator();
+        assertInstanceOf(UuidV7Generator.class, defaultGenerator);
+        assertEquals(7, UUID.fromString(TransactionTestUtils.transactionActivateEvent().getId()).version());
+        try {
+            DocumentIds.setGenerator(() -> "fixed-id");
+            assertEquals("fixed-id", TransactionTestUtils.transactionActivateEvent().getId());
+            assertEquals(
+                    "fixed-id",
+                    it.pagopa.ecommerce.commons.v1.TransactionTestUtils.transactionActivateEvent().getId()
+            );
+        } finally {
+            DocumentIds.setGenerator(defaultGenerator);
+        }
+    }
+}
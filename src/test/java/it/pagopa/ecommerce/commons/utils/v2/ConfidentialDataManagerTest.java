@@ -1,5 +1,8 @@
 package it.pagopa.ecommerce.commons.utils.v2;
 
+import io.opentelemetry.api.metrics.MeterProvider;
+import it.pagopa.ecommerce.commons.client.AdaptiveConcurrencyLimiter;
+import it.pagopa.ecommerce.commons.client.AdaptiveConcurrencyLimiterConfiguration;
 import it.pagopa.ecommerce.commons.domain.Confidential;
 import it.pagopa.ecommerce.commons.domain.v2.Email;
 import it.pagopa.ecommerce.commons.domain.v2.FiscalCode;
@@ -19,6 +22,7 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.UUID;
 
 import static it.pagopa.ecommerce.commons.v2.TransactionTestUtils.EMAIL_STRING;
@@ -125,4 +129,53 @@ class ConfidentialDataManagerTest {
                 .expectError(ConfidentialDataException.class)
                 .verify();
     }
+
+    @Test
+    void shouldScaleDownConcurrencyLimitOnlyOnOverloadResponses() {
+        Email email = new Email(EMAIL_STRING);
+        AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+                "pdv",
+                new AdaptiveConcurrencyLimiterConfiguration(4, 1, 10, 0, Duration.ofSeconds(10), 0.5),
+                MeterProvider.noop().get("test")
+        );
+        ConfidentialDataManager limitedConfidentialDataManager = new ConfidentialDataManager(
+                pdvClient,
+                concurrencyLimiter
+        );
+
+        /* preconditions */
+        Mockito.when(pdvClient.saveUsingPUT(new PiiResourceDto().pii(EMAIL_STRING)))
+                .thenReturn(
+                        Mono.error(
+                                WebClientResponseException.create(
+                                        HttpStatus.BAD_REQUEST.value(),
+                                        HttpStatus.BAD_REQUEST.getReasonPhrase(),
+                                        HttpHeaders.EMPTY,
+                                        null,
+                                        Charset.defaultCharset(),
+                                        null
+                                )
+                        ),
+                        Mono.error(
+                                WebClientResponseException.create(
+                                        HttpStatus.BAD_GATEWAY.value(),
+                                        HttpStatus.BAD_GATEWAY.getReasonPhrase(),
+                                        HttpHeaders.EMPTY,
+                                        null,
+                                        Charset.defaultCharset(),
+                                        null
+                                )
+                        )
+                );
+
+        /* assertions */
+        StepVerifier.create(limitedConfidentialDataManager.encrypt(email))
+                .expectError(ConfidentialDataException.class)
+                .verify();
+        assertEquals(4, concurrencyLimiter.getLimit(ConfidentialDataManager.CONCURRENCY_LIMITER_KEY));
+        StepVerifier.create(limitedConfidentialDataManager.encrypt(email))
+                .expectError(ConfidentialDataException.class)
+                .verify();
+        assertEquals(2, concurrencyLimiter.getLimit(ConfidentialDataManager.CONCURRENCY_LIMITER_KEY));
+    }
 }